@@ -4,12 +4,12 @@ import com.amazonaws.services.s3.AmazonS3;
 import org.molgenis.amazon.bucket.client.AmazonBucketClient;
 import org.molgenis.data.DatabaseAction;
 import org.molgenis.data.MolgenisDataException;
-import org.molgenis.data.RepositoryCollection;
 import org.molgenis.data.excel.ExcelUtils;
 import org.molgenis.data.file.FileRepositoryCollectionFactory;
 import org.molgenis.data.file.FileStore;
 import org.molgenis.data.file.model.FileMeta;
 import org.molgenis.data.file.model.FileMetaFactory;
+import org.molgenis.data.file.support.FileRepositoryCollection;
 import org.molgenis.data.importer.EntityImportReport;
 import org.molgenis.data.importer.ImportService;
 import org.molgenis.data.importer.ImportServiceFactory;
@@ -72,10 +72,12 @@ public class AmazonBucketIngester
 			File renamed = new File(
 					String.format("%s%s%s.%s", file.getParent(), File.separatorChar, targetEntityTypeName, extension));
 			Files.copy(file.toPath(), renamed.toPath(), StandardCopyOption.REPLACE_EXISTING);
-			RepositoryCollection repositoryCollection = fileRepositoryCollectionFactory.createFileRepositoryCollection(
-					renamed);
-			EntityImportReport report = importService.doImport(repositoryCollection, DatabaseAction.ADD_UPDATE_EXISTING,
-					null);
+			EntityImportReport report;
+			try (FileRepositoryCollection repositoryCollection = fileRepositoryCollectionFactory.createFileRepositoryCollection(
+					renamed))
+			{
+				report = importService.doImport(repositoryCollection, DatabaseAction.ADD_UPDATE_EXISTING, null);
+			}
 			progress.status("Download and import from Amazon Bucket done.");
 			progress.progress(3,
 					"Successfully imported " + report.getNrImportedEntitiesMap().keySet().toString() + " entities.");
@@ -5,8 +5,8 @@ import org.molgenis.core.ui.wizard.AbstractWizardPage;
 import org.molgenis.core.ui.wizard.Wizard;
 import org.molgenis.data.DataService;
 import org.molgenis.data.MolgenisDataException;
-import org.molgenis.data.RepositoryCollection;
 import org.molgenis.data.file.FileRepositoryCollectionFactory;
+import org.molgenis.data.file.support.FileRepositoryCollection;
 import org.molgenis.data.file.util.FileExtensionUtils;
 import org.molgenis.data.importer.EntitiesValidationReport;
 import org.molgenis.data.importer.ImportService;
@@ -24,6 +24,7 @@ import org.springframework.validation.ObjectError;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 
 import static java.util.Comparator.comparing;
@@ -94,8 +95,18 @@ public class OptionsWizardPage extends AbstractWizardPage
 			String fileName = tmpFile.getName();
 
 			// FIXME: can this be done a bit cleaner?
-			String extension = FileExtensionUtils.findExtensionFromPossibilities(fileName,
-					fileRepositoryCollectionFactory.createFileRepositoryCollection(tmpFile).getFileNameExtensions());
+			String extension;
+			try (FileRepositoryCollection repositoryCollection = fileRepositoryCollectionFactory.createFileRepositoryCollection(
+					tmpFile))
+			{
+				extension = FileExtensionUtils.findExtensionFromPossibilities(fileName,
+						repositoryCollection.getFileNameExtensions());
+			}
+			catch (IOException | RuntimeException e)
+			{
+				ImportWizardUtil.handleException(e, importWizard, result, LOG, entityImportOption);
+				return null;
+			}
 
 			File file = new File(tmpFile.getParent(), userGivenName + "." + extension);
 			if (!tmpFile.renameTo(file))
@@ -117,57 +128,59 @@ public class OptionsWizardPage extends AbstractWizardPage
 		return null;
 	}
 
-	private String validateInput(File file, ImportWizard wizard, BindingResult result)
+	private String validateInput(File file, ImportWizard wizard, BindingResult result) throws IOException
 	{
 
 		// decide what importer to use...
-		RepositoryCollection source = fileRepositoryCollectionFactory.createFileRepositoryCollection(file);
-		ImportService importService = importServiceFactory.getImportService(file, source);
-		EntitiesValidationReport validationReport = importService.validateImport(file, source);
-
-		wizard.setEntitiesImportable(validationReport.getSheetsImportable());
-		wizard.setFieldsDetected(validationReport.getFieldsImportable());
-		wizard.setFieldsRequired(validationReport.getFieldsRequired());
-		wizard.setFieldsAvailable(validationReport.getFieldsAvailable());
-		wizard.setFieldsUnknown(validationReport.getFieldsUnknown());
-
-		Set<String> allPackages = new HashSet<>(validationReport.getPackages());
-		List<Package> packages = dataService.getMeta().getPackages();
-		for (Package p : packages)
+		try (FileRepositoryCollection source = fileRepositoryCollectionFactory.createFileRepositoryCollection(file))
 		{
-			allPackages.add(p.getId());
-		}
+			ImportService importService = importServiceFactory.getImportService(file, source);
+			EntitiesValidationReport validationReport = importService.validateImport(file, source);
+
+			wizard.setEntitiesImportable(validationReport.getSheetsImportable());
+			wizard.setFieldsDetected(validationReport.getFieldsImportable());
+			wizard.setFieldsRequired(validationReport.getFieldsRequired());
+			wizard.setFieldsAvailable(validationReport.getFieldsAvailable());
+			wizard.setFieldsUnknown(validationReport.getFieldsUnknown());
+
+			Set<String> allPackages = new HashSet<>(validationReport.getPackages());
+			List<Package> packages = dataService.getMeta().getPackages();
+			for (Package p : packages)
+			{
+				allPackages.add(p.getId());
+			}
 
-		List<String> entitiesInDefaultPackage = new ArrayList<>();
-		for (String entityTypeId : validationReport.getSheetsImportable().keySet())
-		{
-			if (validationReport.getSheetsImportable().get(entityTypeId))
+			List<String> entitiesInDefaultPackage = new ArrayList<>();
+			for (String entityTypeId : validationReport.getSheetsImportable().keySet())
 			{
-				if (isInDefaultPackage(entityTypeId, allPackages)) entitiesInDefaultPackage.add(entityTypeId);
+				if (validationReport.getSheetsImportable().get(entityTypeId))
+				{
+					if (isInDefaultPackage(entityTypeId, allPackages)) entitiesInDefaultPackage.add(entityTypeId);
+				}
 			}
-		}
-		wizard.setEntitiesInDefaultPackage(entitiesInDefaultPackage);
+			wizard.setEntitiesInDefaultPackage(entitiesInDefaultPackage);
 
-		Map<String, String> packageSelection = getPackageSelection(packages);
-		if (packageSelection.isEmpty())
-		{
-			throw new NoWritablePackageException();
-		}
-		wizard.setPackages(packageSelection);
+			Map<String, String> packageSelection = getPackageSelection(packages);
+			if (packageSelection.isEmpty())
+			{
+				throw new NoWritablePackageException();
+			}
+			wizard.setPackages(packageSelection);
 
-		String msg = null;
-		if (validationReport.valid())
-		{
-			wizard.setFile(file);
-			msg = "File is validated and can be imported.";
-		}
-		else
-		{
-			wizard.setValidationMessage(
-					"File did not pass validation see results below. Please resolve the errors and try again.");
-		}
+			String msg = null;
+			if (validationReport.valid())
+			{
+				wizard.setFile(file);
+				msg = "File is validated and can be imported.";
+			}
+			else
+			{
+				wizard.setValidationMessage(
+						"File did not pass validation see results below. Please resolve the errors and try again.");
+			}
 
-		return msg;
+			return msg;
+		}
 	}
 
 	private boolean isInDefaultPackage(String entityTypeId, Set<String> packages)
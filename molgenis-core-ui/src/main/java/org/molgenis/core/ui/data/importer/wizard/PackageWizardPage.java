@@ -4,8 +4,8 @@ import org.molgenis.core.ui.wizard.AbstractWizardPage;
 import org.molgenis.core.ui.wizard.Wizard;
 import org.molgenis.data.DatabaseAction;
 import org.molgenis.data.MolgenisDataException;
-import org.molgenis.data.RepositoryCollection;
 import org.molgenis.data.file.FileRepositoryCollectionFactory;
+import org.molgenis.data.file.support.FileRepositoryCollection;
 import org.molgenis.data.importer.ImportService;
 import org.molgenis.data.importer.ImportServiceFactory;
 import org.molgenis.data.meta.MetaDataService;
@@ -71,42 +71,42 @@ public class PackageWizardPage extends AbstractWizardPage
 					throw new IOException("unknown database action: " + entityImportOption);
 				}
 
-				RepositoryCollection repositoryCollection = fileRepositoryCollectionFactory.createFileRepositoryCollection(
-						importWizard.getFile());
-
-				ImportService importService = importServiceFactory.getImportService(importWizard.getFile(),
-						repositoryCollection);
-
-				// Do integration test only if there are no previous errors found
-				if (!importWizard.getEntitiesImportable().containsValue(false))
+				try (FileRepositoryCollection repositoryCollection = fileRepositoryCollectionFactory.createFileRepositoryCollection(
+						importWizard.getFile()))
 				{
-					// The package name that is selected in the "package selection" page
-					String selectedPackage = request.getParameter("selectedPackage");
-
-					// The entities that can be imported
-					Map<String, Boolean> entitiesImportable = importService.determineImportableEntities(metaDataService,
-							repositoryCollection, selectedPackage);
-
-					// The results of the attribute checks are stored in maps with the entityname as key, those need to be updated with the packagename
-					updateFieldReports(importWizard, selectedPackage, entitiesImportable);
-					// Set the entities that can be imported
-					importWizard.setEntitiesImportable(entitiesImportable);
-
-					// The entities that can not be imported. If even one entity can not be imported, everything fails
-					List<String> entitiesNotImportable = entitiesImportable.entrySet()
-																		   .stream()
-																		   .filter(entity -> !entity.getValue())
-																		   .map(Map.Entry::getKey)
-																		   .collect(toList());
-
-					if (!entitiesNotImportable.isEmpty())
+					ImportService importService = importServiceFactory.getImportService(importWizard.getFile(),
+							repositoryCollection);
+
+					// Do integration test only if there are no previous errors found
+					if (!importWizard.getEntitiesImportable().containsValue(false))
 					{
-						throw new MolgenisDataException(
-								"You are trying to upload entities that are not compatible with the already existing entities: "
-										+ entitiesNotImportable.toString());
+						// The package name that is selected in the "package selection" page
+						String selectedPackage = request.getParameter("selectedPackage");
+
+						// The entities that can be imported
+						Map<String, Boolean> entitiesImportable = importService.determineImportableEntities(metaDataService,
+								repositoryCollection, selectedPackage);
+
+						// The results of the attribute checks are stored in maps with the entityname as key, those need to be updated with the packagename
+						updateFieldReports(importWizard, selectedPackage, entitiesImportable);
+						// Set the entities that can be imported
+						importWizard.setEntitiesImportable(entitiesImportable);
+
+						// The entities that can not be imported. If even one entity can not be imported, everything fails
+						List<String> entitiesNotImportable = entitiesImportable.entrySet()
+																			   .stream()
+																			   .filter(entity -> !entity.getValue())
+																			   .map(Map.Entry::getKey)
+																			   .collect(toList());
+
+						if (!entitiesNotImportable.isEmpty())
+						{
+							throw new MolgenisDataException(
+									"You are trying to upload entities that are not compatible with the already existing entities: "
+											+ entitiesNotImportable.toString());
+						}
 					}
 				}
-
 			}
 			catch (RuntimeException | IOException e)
 			{
@@ -3,8 +3,8 @@ package org.molgenis.core.ui.data.importer.wizard;
 import org.molgenis.core.ui.wizard.AbstractWizardPage;
 import org.molgenis.core.ui.wizard.Wizard;
 import org.molgenis.core.util.FileUploadUtils;
-import org.molgenis.data.RepositoryCollection;
 import org.molgenis.data.file.FileRepositoryCollectionFactory;
+import org.molgenis.data.file.support.FileRepositoryCollection;
 import org.molgenis.data.importer.ImportService;
 import org.molgenis.data.importer.ImportServiceFactory;
 import org.slf4j.Logger;
@@ -64,12 +64,14 @@ public class UploadWizardPage extends AbstractWizardPage
 			{
 				importWizard.setFile(file);
 
-				RepositoryCollection repositoryCollection = fileRepositoryCollectionFactory.createFileRepositoryCollection(
-						file);
-				ImportService importService = importServiceFactory.getImportService(file, repositoryCollection);
+				try (FileRepositoryCollection repositoryCollection = fileRepositoryCollectionFactory.createFileRepositoryCollection(
+						file))
+				{
+					ImportService importService = importServiceFactory.getImportService(file, repositoryCollection);
 
-				importWizard.setSupportedDatabaseActions(importService.getSupportedDatabaseActions());
-				importWizard.setMustChangeEntityName(importService.getMustChangeEntityName());
+					importWizard.setSupportedDatabaseActions(importService.getSupportedDatabaseActions());
+					importWizard.setMustChangeEntityName(importService.getMustChangeEntityName());
+				}
 			}
 
 		}
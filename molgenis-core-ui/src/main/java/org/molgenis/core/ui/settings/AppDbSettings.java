@@ -58,6 +58,8 @@ public class AppDbSettings extends DefaultSettingsEntity implements AppSettings
 
 		private static final String CUSTOM_JAVASCRIPT = "custom_javascript";
 
+		private static final String CACHE_MAX_SIZE_MB = "cache_max_size_mb";
+
 		private final MenuManagerServiceImpl menuManagerServiceImpl;
 
 		public Meta(MenuManagerServiceImpl menuManagerServiceImpl)
@@ -128,6 +130,14 @@ public class AppDbSettings extends DefaultSettingsEntity implements AppSettings
 										   .setDescription(
 												   "Custom javascript headers, specified as comma separated list. These headers will be included in the molgenis header before the applications own javascript headers. Values not ending with the extension 'js' will be ignored");
 
+			addAttribute(CACHE_MAX_SIZE_MB).setDataType(INT)
+										   .setNillable(false)
+										   .setDefaultValue(String.valueOf(AppSettings.DEFAULT_CACHE_MAX_SIZE_MB))
+										   .setRangeMin(1L)
+										   .setLabel("Entity cache size (MB)")
+										   .setDescription(
+												   "Memory budget of the entity cache in megabytes, shared by all entity types.");
+
 			// tracking settings
 			Attribute trackingAttr = addAttribute(TRACKING).setDataType(COMPOUND).setLabel("Tracking");
 
@@ -383,4 +393,17 @@ public class AppDbSettings extends DefaultSettingsEntity implements AppSettings
 	{
 		return getString(Meta.CUSTOM_JAVASCRIPT);
 	}
+
+	@Override
+	public int getCacheMaxSizeMb()
+	{
+		Integer cacheMaxSizeMb = getInt(Meta.CACHE_MAX_SIZE_MB);
+		return cacheMaxSizeMb != null ? cacheMaxSizeMb : DEFAULT_CACHE_MAX_SIZE_MB;
+	}
+
+	@Override
+	public void setCacheMaxSizeMb(int cacheMaxSizeMb)
+	{
+		set(Meta.CACHE_MAX_SIZE_MB, cacheMaxSizeMb);
+	}
 }
@@ -7,6 +7,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.molgenis.data.Entity;
 import org.molgenis.data.EntityKey;
 import org.molgenis.data.cache.utils.CombinedEntityCache;
+import org.molgenis.data.cache.utils.DehydratedEntity;
 import org.molgenis.data.cache.utils.EntityHydration;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.data.transaction.DefaultMolgenisTransactionListener;
@@ -14,7 +15,6 @@ import org.molgenis.data.transaction.TransactionManager;
 import org.slf4j.Logger;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -49,7 +49,7 @@ public class L1Cache extends DefaultMolgenisTransactionListener
 
 	private CombinedEntityCache createCache()
 	{
-		Cache<EntityKey, Optional<Map<String, Object>>> cache = CaffeinatedGuava.build(
+		Cache<EntityKey, Optional<DehydratedEntity>> cache = CaffeinatedGuava.build(
 				Caffeine.newBuilder().maximumSize(MAX_CACHE_SIZE).recordStats());
 		return new CombinedEntityCache(entityHydration, cache);
 	}
@@ -0,0 +1,86 @@
+package org.molgenis.data.cache.l2;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+import org.molgenis.data.cache.utils.DehydratedEntity;
+import org.molgenis.data.cache.utils.DehydratedEntitySchema;
+
+import javax.annotation.Nonnull;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Estimates the heap size in bytes of a dehydrated entity stored in the {@link L2Cache}.
+ * <p>
+ * The estimate assumes a 64-bit JVM with compressed object pointers. The {@link DehydratedEntitySchema} is not counted
+ * since it is shared by all dehydrated entities of an entity type.
+ */
+class DehydratedEntityWeigher implements Weigher<Object, Optional<DehydratedEntity>>
+{
+	private static final int OPTIONAL_SIZE = 16;
+	private static final int DEHYDRATED_ENTITY_SIZE = 24;
+	private static final int PRIMITIVE_SIZE = 8;
+	private static final int ARRAY_HEADER_SIZE = 16;
+	private static final int REFERENCE_SIZE = 4;
+	private static final int STRING_SIZE = 40;
+	private static final int LIST_SIZE = 40;
+	private static final int OBJECT_SIZE = 16;
+	private static final int LONG_SIZE = 24;
+	private static final int TEMPORAL_SIZE = 24;
+
+	@Override
+	public int weigh(@Nonnull Object id, @Nonnull Optional<DehydratedEntity> dehydratedEntity)
+	{
+		long weight =
+				estimateSize(id) + OPTIONAL_SIZE + dehydratedEntity.map(this::estimateDehydratedEntitySize).orElse(0L);
+		return (int) Math.min(weight, Integer.MAX_VALUE);
+	}
+
+	private long estimateDehydratedEntitySize(DehydratedEntity dehydratedEntity)
+	{
+		DehydratedEntitySchema schema = dehydratedEntity.getSchema();
+		int nrPrimitiveSlots = schema.getNrPrimitiveSlots();
+		long weight = DEHYDRATED_ENTITY_SIZE + 3 * ARRAY_HEADER_SIZE + (long) schema.getNrObjectSlots() * REFERENCE_SIZE
+				+ (long) nrPrimitiveSlots * PRIMITIVE_SIZE + (nrPrimitiveSlots + 63) / 64 * PRIMITIVE_SIZE;
+		for (int i = 0; i < schema.getNrAttributes(); ++i)
+		{
+			if (!schema.isPrimitive(i))
+			{
+				weight += estimateSize(dehydratedEntity.getValue(i));
+			}
+		}
+		return weight;
+	}
+
+	private static long estimateSize(Object value)
+	{
+		if (value == null || value instanceof Boolean)
+		{
+			return 0;
+		}
+		if (value instanceof String)
+		{
+			return STRING_SIZE + 2L * ((String) value).length();
+		}
+		if (value instanceof Long || value instanceof Double)
+		{
+			return LONG_SIZE;
+		}
+		if (value instanceof LocalDate || value instanceof Instant)
+		{
+			return TEMPORAL_SIZE;
+		}
+		if (value instanceof Collection)
+		{
+			Collection<?> collection = (Collection<?>) value;
+			long weight = LIST_SIZE + ARRAY_HEADER_SIZE + (long) collection.size() * REFERENCE_SIZE;
+			for (Object element : collection)
+			{
+				weight += estimateSize(element);
+			}
+			return weight;
+		}
+		return OBJECT_SIZE;
+	}
+}
@@ -1,30 +1,38 @@
 package org.molgenis.data.cache.l2;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.guava.CaffeinatedGuava;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Policy.Eviction;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.molgenis.data.event.BootstrappingEvent;
 import org.molgenis.data.Entity;
 import org.molgenis.data.EntityKey;
 import org.molgenis.data.MolgenisDataException;
 import org.molgenis.data.Repository;
+import org.molgenis.data.cache.utils.DehydratedEntity;
 import org.molgenis.data.cache.utils.EntityHydration;
-import org.molgenis.data.meta.MetaDataService;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.data.transaction.DefaultMolgenisTransactionListener;
+import org.molgenis.data.transaction.RemoteTransactionListener;
 import org.molgenis.data.transaction.TransactionInformation;
 import org.molgenis.data.transaction.TransactionManager;
+import org.molgenis.settings.AppSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -32,29 +40,51 @@ import static com.google.common.collect.Maps.newConcurrentMap;
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.empty;
 import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 import static java.util.stream.StreamSupport.stream;
+import static org.molgenis.data.event.BootstrappingEvent.BootstrappingStatus.FINISHED;
+import static org.molgenis.settings.AppSettings.DEFAULT_CACHE_MAX_SIZE_MB;
 
 /**
  * In-memory cache of entities read from cacheable repositories.
+ * <p>
+ * All entity type caches share a global memory budget. The size of a cached entity is estimated by the
+ * {@link DehydratedEntityWeigher}. Part of the budget is divided evenly over the entity type caches, the remainder is
+ * divided periodically based on the number of cache hits of each entity type. Frequently read entity types can grow
+ * while the long tail of rarely read entity types is evicted. The budget is read from the {@link AppSettings} when
+ * the budget is divided, until the application is bootstrapped the default budget is used.
  */
 @Service
-public class L2Cache extends DefaultMolgenisTransactionListener
+public class L2Cache extends DefaultMolgenisTransactionListener implements RemoteTransactionListener
 {
 	private static final Logger LOG = LoggerFactory.getLogger(L2Cache.class);
-	private static final int MAX_CACHE_SIZE_PER_ENTITY = 1000;
+	private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
 	/**
-	 * maps entity id to the loading cache with Object key and Optional dehydrated entity value
+	 * Fraction of the budget that is divided evenly over all entity type caches
 	 */
-	private final ConcurrentMap<String, LoadingCache<Object, Optional<Map<String, Object>>>> caches;
+	private static final double GUARANTEED_BUDGET_FRACTION = 0.2;
+	/**
+	 * Weight of the latest period when computing the smoothed number of hits of an entity type cache
+	 */
+	private static final double HITS_SMOOTHING_FACTOR = 0.5;
+
+	/**
+	 * maps entity type id to the cache with Object key and Optional dehydrated entity value
+	 */
+	private final ConcurrentMap<String, EntityTypeCache> caches;
 	private final EntityHydration entityHydration;
 	private final TransactionInformation transactionInformation;
+	private final AppSettings appSettings;
+	private volatile boolean bootstrappingDone = false;
+	private volatile long maximumWeight = DEFAULT_CACHE_MAX_SIZE_MB * BYTES_PER_MEGABYTE;
 
 	public L2Cache(TransactionManager transactionManager, EntityHydration entityHydration,
-			TransactionInformation transactionInformation)
+			TransactionInformation transactionInformation, AppSettings appSettings)
 	{
 		this.entityHydration = requireNonNull(entityHydration);
 		this.transactionInformation = requireNonNull(transactionInformation);
+		this.appSettings = requireNonNull(appSettings);
 		caches = newConcurrentMap();
 		requireNonNull(transactionManager).addTransactionListener(this);
 	}
@@ -63,16 +93,36 @@ public class L2Cache extends DefaultMolgenisTransactionListener
 	public void afterCommitTransaction(String transactionId)
 	{
 		//TODO: trace logging
-		transactionInformation.getEntirelyDirtyRepositories().forEach(caches::remove);
-		transactionInformation.getDirtyEntities().forEach(this::evict);
+		evict(transactionInformation.getDirtyEntities(), transactionInformation.getEntirelyDirtyRepositories());
+	}
+
+	@Override
+	public void afterRemoteCommit(Set<EntityKey> dirtyEntities, Set<String> entirelyDirtyRepositories,
+			Set<String> dirtyRepositories)
+	{
+		LOG.trace("Evicting entities dirtied by remote transactions");
+		evict(dirtyEntities, entirelyDirtyRepositories);
+	}
+
+	@Override
+	public void remoteCommitsMissed()
+	{
+		LOG.debug("Evicting all entities because remote transactions might have been missed");
+		caches.clear();
+	}
+
+	private void evict(Set<EntityKey> dirtyEntities, Set<String> entirelyDirtyRepositories)
+	{
+		entirelyDirtyRepositories.forEach(caches::remove);
+		dirtyEntities.forEach(this::evict);
 	}
 
 	private void evict(EntityKey entityKey)
 	{
-		LoadingCache<Object, Optional<Map<String, Object>>> cache = caches.get(entityKey.getEntityTypeId());
-		if (cache != null)
+		EntityTypeCache entityTypeCache = caches.get(entityKey.getEntityTypeId());
+		if (entityTypeCache != null)
 		{
-			cache.invalidate(entityKey.getId());
+			entityTypeCache.getCache().invalidate(entityKey.getId());
 		}
 	}
 
@@ -87,9 +137,18 @@ public class L2Cache extends DefaultMolgenisTransactionListener
 	 */
 	public Entity get(Repository<Entity> repository, Object id)
 	{
-		LoadingCache<Object, Optional<Map<String, Object>>> cache = getEntityCache(repository);
+		LoadingCache<Object, Optional<DehydratedEntity>> cache = getEntityCache(repository);
 		EntityType entityType = repository.getEntityType();
-		return cache.getUnchecked(id).map(e -> entityHydration.hydrate(e, entityType)).orElse(null);
+		Optional<DehydratedEntity> dehydratedEntity;
+		try
+		{
+			dehydratedEntity = cache.get(id);
+		}
+		catch (RuntimeException e)
+		{
+			throw new UncheckedExecutionException(e);
+		}
+		return requireNonNull(dehydratedEntity).map(e -> entityHydration.hydrate(e, entityType)).orElse(null);
 	}
 
 	/**
@@ -102,17 +161,12 @@ public class L2Cache extends DefaultMolgenisTransactionListener
 	 */
 	public List<Entity> getBatch(Repository<Entity> repository, Iterable<Object> ids)
 	{
+		Map<Object, Optional<DehydratedEntity>> dehydratedEntities;
 		try
 		{
-			return getEntityCache(repository).getAll(ids)
-											 .values()
-											 .stream()
-											 .filter(Optional::isPresent)
-											 .map(Optional::get)
-											 .map(e -> entityHydration.hydrate(e, repository.getEntityType()))
-											 .collect(Collectors.toList());
+			dehydratedEntities = getEntityCache(repository).getAll(ids);
 		}
-		catch (ExecutionException exception)
+		catch (CompletionException exception)
 		{
 			// rethrow unchecked
 			if (exception.getCause() != null && exception.getCause() instanceof RuntimeException)
@@ -121,6 +175,25 @@ public class L2Cache extends DefaultMolgenisTransactionListener
 			}
 			throw new MolgenisDataException(exception);
 		}
+		return dehydratedEntities.values()
+								 .stream()
+								 .filter(Optional::isPresent)
+								 .map(Optional::get)
+								 .map(e -> entityHydration.hydrate(e, repository.getEntityType()))
+								 .collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns a snapshot of the statistics of the cache of each entity type.
+	 *
+	 * @return list of cache statistics, one per cached entity type
+	 */
+	public List<L2CacheStatistics> getStatistics()
+	{
+		return caches.entrySet()
+					 .stream()
+					 .map(entry -> entry.getValue().getStatistics(entry.getKey()))
+					 .collect(toList());
 	}
 
 	/**
@@ -133,10 +206,79 @@ public class L2Cache extends DefaultMolgenisTransactionListener
 		if (LOG.isDebugEnabled())
 		{
 			LOG.debug("Cache stats:");
-			for (Map.Entry<String, LoadingCache<Object, Optional<Map<String, Object>>>> cacheEntry : caches.entrySet())
+			getStatistics().forEach(statistics -> LOG.debug("{}", statistics));
+		}
+	}
+
+	/**
+	 * Updates the smoothed number of hits of each entity type cache and divides the budget accordingly.
+	 */
+	@Scheduled(fixedRate = 10000)
+	public synchronized void rebalance()
+	{
+		updateMaximumWeight();
+		caches.values().forEach(EntityTypeCache::updateSmoothedHits);
+		divideBudget();
+	}
+
+	@EventListener
+	public void onApplicationEvent(BootstrappingEvent bootstrappingEvent)
+	{
+		this.bootstrappingDone = bootstrappingEvent.getStatus() == FINISHED;
+		if (bootstrappingDone)
+		{
+			updateMaximumWeight();
+			divideBudget();
+		}
+	}
+
+	/**
+	 * Reads the budget from the application settings, the settings can only be read once the application is
+	 * bootstrapped.
+	 */
+	private void updateMaximumWeight()
+	{
+		if (!bootstrappingDone)
+		{
+			return;
+		}
+		int maximumSizeMegabytes = appSettings.getCacheMaxSizeMb();
+		if (maximumSizeMegabytes <= 0)
+		{
+			LOG.warn("Ignoring cache size of {} MB, the cache size must be greater than zero", maximumSizeMegabytes);
+			return;
+		}
+		maximumWeight = maximumSizeMegabytes * BYTES_PER_MEGABYTE;
+	}
+
+	/**
+	 * Divides the budget over the entity type caches. Each cache gets an equal share of the guaranteed part of the
+	 * budget and a share of the remainder proportional to its smoothed number of hits.
+	 */
+	private synchronized void divideBudget()
+	{
+		Collection<EntityTypeCache> entityTypeCaches = caches.values();
+		int nrCaches = entityTypeCaches.size();
+		if (nrCaches == 0)
+		{
+			return;
+		}
+
+		long guaranteedWeight = (long) (maximumWeight * GUARANTEED_BUDGET_FRACTION / nrCaches);
+		long adaptiveBudget = maximumWeight - guaranteedWeight * nrCaches;
+		double totalSmoothedHits = entityTypeCaches.stream().mapToDouble(EntityTypeCache::getSmoothedHits).sum();
+		for (EntityTypeCache entityTypeCache : entityTypeCaches)
+		{
+			long adaptiveWeight;
+			if (totalSmoothedHits > 0)
 			{
-				LOG.debug("{}:{}", cacheEntry.getKey(), cacheEntry.getValue().stats());
+				adaptiveWeight = (long) (adaptiveBudget * entityTypeCache.getSmoothedHits() / totalSmoothedHits);
 			}
+			else
+			{
+				adaptiveWeight = adaptiveBudget / nrCaches;
+			}
+			entityTypeCache.setMaximumWeight(Math.max(1, guaranteedWeight + adaptiveWeight));
 		}
 	}
 
@@ -147,30 +289,44 @@ public class L2Cache extends DefaultMolgenisTransactionListener
 	 *                   repository is used to look up the existing cache
 	 * @return the LoadingCache for the repository
 	 */
-	private LoadingCache<Object, Optional<Map<String, Object>>> getEntityCache(Repository<Entity> repository)
+	private LoadingCache<Object, Optional<DehydratedEntity>> getEntityCache(Repository<Entity> repository)
 	{
 		String id = repository.getEntityType().getId();
-		if (!caches.containsKey(id))
+		EntityTypeCache entityTypeCache = caches.get(id);
+		if (entityTypeCache == null)
 		{
-			caches.putIfAbsent(id, createEntityCache(repository));
+			EntityTypeCache newEntityTypeCache = createEntityCache(repository);
+			entityTypeCache = caches.putIfAbsent(id, newEntityTypeCache);
+			if (entityTypeCache == null)
+			{
+				entityTypeCache = newEntityTypeCache;
+				divideBudget();
+			}
 		}
-		return caches.get(id);
+		return entityTypeCache.getCache();
 	}
 
 	/**
-	 * Creates a new Entity cache
+	 * Creates a new Entity cache. The new cache starts with the average smoothed number of hits of the existing
+	 * caches so that it gets a fair share of the budget while it warms up.
 	 *
 	 * @param repository the {@link Repository} to load the entities from
-	 * @return newly created LoadingCache
+	 * @return newly created entity type cache
 	 */
-	private LoadingCache<Object, Optional<Map<String, Object>>> createEntityCache(Repository<Entity> repository)
+	private EntityTypeCache createEntityCache(Repository<Entity> repository)
 	{
-		Caffeine<Object, Object> cacheBuilder = Caffeine.newBuilder().recordStats().expireAfterAccess(10, MINUTES);
-		if (!MetaDataService.isMetaEntityType(repository.getEntityType()))
-		{
-			cacheBuilder.maximumSize(MAX_CACHE_SIZE_PER_ENTITY);
-		}
-		return CaffeinatedGuava.build(cacheBuilder, createCacheLoader(repository));
+		LoadingCache<Object, Optional<DehydratedEntity>> cache = Caffeine.newBuilder()
+																		 .recordStats()
+																		 .expireAfterAccess(10, MINUTES)
+																		 .maximumWeight(maximumWeight)
+																		 .weigher(new DehydratedEntityWeigher())
+																		 .build(createCacheLoader(repository));
+		double smoothedHits = caches.values()
+									.stream()
+									.mapToDouble(EntityTypeCache::getSmoothedHits)
+									.average()
+									.orElse(0);
+		return new EntityTypeCache(cache, smoothedHits);
 	}
 
 	/**
@@ -179,9 +335,9 @@ public class L2Cache extends DefaultMolgenisTransactionListener
 	 * @param repository the Repository to load the entities from
 	 * @return the {@link CacheLoader}
 	 */
-	private CacheLoader<Object, Optional<Map<String, Object>>> createCacheLoader(final Repository<Entity> repository)
+	private CacheLoader<Object, Optional<DehydratedEntity>> createCacheLoader(final Repository<Entity> repository)
 	{
-		return new CacheLoader<Object, Optional<Map<String, Object>>>()
+		return new CacheLoader<Object, Optional<DehydratedEntity>>()
 		{
 			/**
 			 * Loads a single entity from the repository.
@@ -189,7 +345,7 @@ public class L2Cache extends DefaultMolgenisTransactionListener
 			 * @return dehydrated entity or empty if the entity was not present in the repository
 			 */
 			@Override
-			public Optional<Map<String, Object>> load(@Nonnull Object id)
+			public Optional<DehydratedEntity> load(@Nonnull Object id)
 			{
 				return Optional.ofNullable(repository.findOneById(id)).map(entityHydration::dehydrate);
 			}
@@ -200,12 +356,12 @@ public class L2Cache extends DefaultMolgenisTransactionListener
 			 * @return Map mapping id to loaded entity, or to empty optional if the entity was not present in the repository
 			 */
 			@Override
-			public Map<Object, Optional<Map<String, Object>>> loadAll(Iterable<?> ids)
+			public Map<Object, Optional<DehydratedEntity>> loadAll(@Nonnull Iterable<?> ids)
 			{
 				Stream<Object> typedIds = stream(ids.spliterator(), false).map(id -> id);
-				Map<Object, Optional<Map<String, Object>>> result = repository.findAll(typedIds)
-																			  .collect(toMap(Entity::getIdValue,
-																					  this::dehydrateEntity));
+				Map<Object, Optional<DehydratedEntity>> result = repository.findAll(typedIds)
+																		   .collect(toMap(Entity::getIdValue,
+																				   this::dehydrateEntity));
 				for (Object key : ids)
 				{
 					// cache the absence of these entities in the backend as empty values
@@ -214,10 +370,60 @@ public class L2Cache extends DefaultMolgenisTransactionListener
 				return result;
 			}
 
-			private Optional<Map<String, Object>> dehydrateEntity(Entity entity)
+			private Optional<DehydratedEntity> dehydrateEntity(Entity entity)
 			{
 				return Optional.of(entityHydration.dehydrate(entity));
 			}
 		};
 	}
+
+	/**
+	 * Cache of a single entity type together with the bookkeeping needed to divide the budget.
+	 */
+	private static class EntityTypeCache
+	{
+		private final LoadingCache<Object, Optional<DehydratedEntity>> cache;
+		private CacheStats previousStats;
+		private double smoothedHits;
+
+		EntityTypeCache(LoadingCache<Object, Optional<DehydratedEntity>> cache, double smoothedHits)
+		{
+			this.cache = requireNonNull(cache);
+			this.previousStats = CacheStats.empty();
+			this.smoothedHits = smoothedHits;
+		}
+
+		LoadingCache<Object, Optional<DehydratedEntity>> getCache()
+		{
+			return cache;
+		}
+
+		double getSmoothedHits()
+		{
+			return smoothedHits;
+		}
+
+		void updateSmoothedHits()
+		{
+			CacheStats stats = cache.stats();
+			long hits = stats.minus(previousStats).hitCount();
+			smoothedHits = HITS_SMOOTHING_FACTOR * hits + (1 - HITS_SMOOTHING_FACTOR) * smoothedHits;
+			previousStats = stats;
+		}
+
+		void setMaximumWeight(long weight)
+		{
+			cache.policy().eviction().ifPresent(eviction -> eviction.setMaximum(weight));
+		}
+
+		L2CacheStatistics getStatistics(String entityTypeId)
+		{
+			// apply pending writes so that the weighted size is up to date
+			cache.cleanUp();
+			Optional<Eviction<Object, Optional<DehydratedEntity>>> eviction = cache.policy().eviction();
+			long weightedSize = eviction.map(e -> e.weightedSize().orElse(0)).orElse(0L);
+			long maximum = eviction.map(Eviction::getMaximum).orElse(0L);
+			return new L2CacheStatistics(entityTypeId, cache.stats(), weightedSize, maximum);
+		}
+	}
 }
@@ -0,0 +1,60 @@
+package org.molgenis.data.cache.l2;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Snapshot of the statistics of the {@link L2Cache} for a single entity type.
+ */
+public class L2CacheStatistics
+{
+	private final String entityTypeId;
+	private final CacheStats cacheStats;
+	private final long weightedSize;
+	private final long maximumWeight;
+
+	L2CacheStatistics(String entityTypeId, CacheStats cacheStats, long weightedSize, long maximumWeight)
+	{
+		this.entityTypeId = requireNonNull(entityTypeId);
+		this.cacheStats = requireNonNull(cacheStats);
+		this.weightedSize = weightedSize;
+		this.maximumWeight = maximumWeight;
+	}
+
+	public String getEntityTypeId()
+	{
+		return entityTypeId;
+	}
+
+	/**
+	 * @return cumulative hit, miss, load and eviction counts
+	 */
+	public CacheStats getCacheStats()
+	{
+		return cacheStats;
+	}
+
+	/**
+	 * @return estimated size in bytes of the entities currently in the cache
+	 */
+	public long getWeightedSize()
+	{
+		return weightedSize;
+	}
+
+	/**
+	 * @return share of the L2 cache budget in bytes currently assigned to this entity type
+	 */
+	public long getMaximumWeight()
+	{
+		return maximumWeight;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "L2CacheStatistics{" + "entityTypeId='" + entityTypeId + '\'' + ", cacheStats=" + cacheStats
+				+ ", weightedSize=" + weightedSize + ", maximumWeight=" + maximumWeight + '}';
+	}
+}
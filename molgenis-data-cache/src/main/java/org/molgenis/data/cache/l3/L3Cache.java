@@ -3,44 +3,74 @@ package org.molgenis.data.cache.l3;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.guava.CaffeinatedGuava;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
 import org.molgenis.data.Entity;
+import org.molgenis.data.EntityKey;
 import org.molgenis.data.Fetch;
 import org.molgenis.data.Query;
 import org.molgenis.data.Repository;
+import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.data.support.QueryImpl;
 import org.molgenis.data.transaction.DefaultMolgenisTransactionListener;
+import org.molgenis.data.transaction.RemoteTransactionListener;
 import org.molgenis.data.transaction.TransactionInformation;
 import org.molgenis.data.transaction.TransactionManager;
 import org.slf4j.Logger;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 
 import static com.google.common.collect.Maps.newConcurrentMap;
+import static com.google.common.collect.Sets.newConcurrentHashSet;
+import static com.google.common.collect.Sets.newHashSet;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.stream.Collectors.toList;
+import static org.molgenis.data.transaction.TransactionManager.TRANSACTION_ID_RESOURCE_NAME;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * In-memory Query cache containing Queries and resulting ids from cacheable repositories
+ * <p>
+ * After a commit only the cached queries that could be affected by the transaction are evicted. A cached query is
+ * affected if its result contains a changed entity (the entity matched before the transaction), if a changed entity
+ * could match its rules after the transaction, or if it depends on the data of a dirty referenced entity type. The
+ * values of the changed entities are taken from the entities that were written in the transaction, a repository of
+ * which the changed entities are not known is evicted entirely.
  */
 @Service
-public class L3Cache extends DefaultMolgenisTransactionListener
+public class L3Cache extends DefaultMolgenisTransactionListener implements RemoteTransactionListener
 {
 	private static final Logger LOG = getLogger(L3Cache.class);
 	private static final int MAX_CACHE_SIZE_PER_QUERY = 1000;
+	/**
+	 * Repositories with more dirty entities are evicted entirely instead of matching the changed entities
+	 */
+	static final int MAX_DIRTY_ENTITIES_PER_REPOSITORY = 100;
 
 	/**
-	 * maps entity name to the loading cache with Query key and List of Identifiers
+	 * maps entity name to the query cache with Query key and List of Identifiers
 	 */
-	private final ConcurrentMap<String, LoadingCache<Query<Entity>, List<Object>>> caches = newConcurrentMap();
+	private final ConcurrentMap<String, QueryCache> caches = newConcurrentMap();
 	private final TransactionInformation transactionInformation;
+	/**
+	 * maps transaction id to the entities written in the transaction
+	 */
+	private final ConcurrentMap<String, WrittenEntities> writtenEntities = newConcurrentMap();
 
 	public L3Cache(TransactionManager transactionManager, TransactionInformation transactionInformation)
 	{
@@ -48,65 +78,296 @@ public class L3Cache extends DefaultMolgenisTransactionListener
 		requireNonNull(transactionManager).addTransactionListener(this);
 	}
 
+	@Override
+	public void transactionStarted(String transactionId)
+	{
+		writtenEntities.put(transactionId, new WrittenEntities());
+	}
+
+	@Override
+	public void doCleanupAfterCompletion(String transactionId)
+	{
+		writtenEntities.remove(transactionId);
+	}
+
+	/**
+	 * Registers an entity that was added or updated in the current transaction.
+	 */
+	void putWritten(EntityType entityType, Entity entity)
+	{
+		WrittenEntities entities = getWrittenEntities();
+		if (entities != null)
+		{
+			entities.put(entityType.getId(), entity.getIdValue(), entity);
+		}
+	}
+
+	/**
+	 * Registers an entity that was deleted in the current transaction.
+	 */
+	void putDeleted(EntityType entityType, Object id)
+	{
+		WrittenEntities entities = getWrittenEntities();
+		if (entities != null)
+		{
+			entities.put(entityType.getId(), id, null);
+		}
+	}
+
+	private WrittenEntities getWrittenEntities()
+	{
+		String transactionId = (String) TransactionSynchronizationManager.getResource(TRANSACTION_ID_RESOURCE_NAME);
+		return transactionId != null ? writtenEntities.get(transactionId) : null;
+	}
+
 	@Override
 	public void afterCommitTransaction(String transactionId)
 	{
-		transactionInformation.getDirtyRepositories().forEach(caches::remove);
+		Set<String> dirtyRepositories = transactionInformation.getDirtyRepositories();
+		if (dirtyRepositories.isEmpty())
+		{
+			return;
+		}
+		Set<String> entirelyDirtyRepositories = transactionInformation.getEntirelyDirtyRepositories();
+		WrittenEntities transactionEntities = writtenEntities.get(transactionId);
+		Multimap<String, Object> dirtyEntityIds = HashMultimap.create();
+		transactionInformation.getDirtyEntities()
+							  .forEach(entityKey -> dirtyEntityIds.put(entityKey.getEntityTypeId(),
+									  entityKey.getId()));
+
+		for (String entityTypeId : dirtyRepositories)
+		{
+			Collection<Object> entityIds = dirtyEntityIds.get(entityTypeId);
+			if (entirelyDirtyRepositories.contains(entityTypeId) || entityIds.isEmpty())
+			{
+				caches.remove(entityTypeId);
+			}
+			else
+			{
+				evictQueries(entityTypeId, entityIds, transactionEntities);
+			}
+		}
+		evictQueriesReferencing(dirtyRepositories);
+	}
+
+	/**
+	 * Evicts the cached queries of a repository that could be affected by changes to the given entities.
+	 */
+	private void evictQueries(String entityTypeId, Collection<Object> entityIds, WrittenEntities transactionEntities)
+	{
+		QueryCache queryCache = caches.get(entityTypeId);
+		if (queryCache == null || queryCache.isEmpty())
+		{
+			return;
+		}
+		if (entityIds.size() > MAX_DIRTY_ENTITIES_PER_REPOSITORY)
+		{
+			caches.remove(entityTypeId);
+			return;
+		}
+
+		List<Entity> changedEntities =
+				transactionEntities != null ? transactionEntities.getEntities(entityTypeId, entityIds) : null;
+		if (changedEntities == null)
+		{
+			LOG.trace("Changed entities of repository '{}' are unknown, removing query cache", entityTypeId);
+			caches.remove(entityTypeId);
+			return;
+		}
+		queryCache.evictQueries(newHashSet(entityIds), changedEntities);
+	}
+
+	private void evictQueriesReferencing(Set<String> dirtyRepositories)
+	{
+		caches.values().forEach(queryCache -> queryCache.evictQueriesReferencing(dirtyRepositories));
+	}
+
+	/**
+	 * Changes made by remote transactions are not retrieved, the values of the changed entities might not be
+	 * available from this instance yet. All cached queries of the dirty repositories are evicted.
+	 */
+	@Override
+	public void afterRemoteCommit(Set<EntityKey> dirtyEntities, Set<String> entirelyDirtyRepositories,
+			Set<String> dirtyRepositories)
+	{
+		LOG.trace("Removing query caches of repositories dirtied by remote transactions");
+		dirtyRepositories.forEach(caches::remove);
+		evictQueriesReferencing(dirtyRepositories);
+	}
+
+	@Override
+	public void remoteCommitsMissed()
+	{
+		LOG.debug("Removing all query caches because remote transactions might have been missed");
+		caches.clear();
 	}
 
 	public List<Object> get(Repository<Entity> repository, Query<Entity> query)
 	{
 		// Set fetch to null because we are only caching identifiers
-		LoadingCache<Query<Entity>, List<Object>> cache = getQueryCache(repository);
+		QueryCache queryCache = getQueryCache(repository);
 		Query<Entity> fetchlessQuery = new QueryImpl<>(query);
 		fetchlessQuery.setFetch(null);
-		return cache.getUnchecked(fetchlessQuery);
+		return queryCache.get(fetchlessQuery);
 	}
 
-	private LoadingCache<Query<Entity>, List<Object>> getQueryCache(Repository<Entity> repository)
+	private QueryCache getQueryCache(Repository<Entity> repository)
 	{
 		String id = repository.getEntityType().getId();
 		if (!caches.containsKey(id))
 		{
-			caches.putIfAbsent(id, createQueryCache(repository));
+			caches.putIfAbsent(id, new QueryCache(repository));
 		}
 		return caches.get(id);
 	}
 
-	private LoadingCache<Query<Entity>, List<Object>> createQueryCache(Repository<Entity> repository)
+	/**
+	 * Cached queries of a single repository
+	 */
+	private static class QueryCache
 	{
-		LOG.trace("Creating Query cache for repository {}", repository.getName());
-		return CaffeinatedGuava.build(Caffeine.newBuilder()
-											  .recordStats()
-											  .maximumSize(MAX_CACHE_SIZE_PER_QUERY)
-											  .expireAfterAccess(10, MINUTES), createCacheLoader(repository));
+		private final Repository<Entity> repository;
+		private final EntityType entityType;
+		private final LoadingCache<Query<Entity>, List<Object>> cache;
+		/**
+		 * ids of the referenced entity types that the cached queries depend on
+		 */
+		private final Set<String> referencedEntityTypeIds = newConcurrentHashSet();
+
+		QueryCache(Repository<Entity> repository)
+		{
+			this.repository = requireNonNull(repository);
+			this.entityType = repository.getEntityType();
+			LOG.trace("Creating Query cache for repository {}", repository.getName());
+			this.cache = CaffeinatedGuava.build(Caffeine.newBuilder()
+														.recordStats()
+														.maximumSize(MAX_CACHE_SIZE_PER_QUERY)
+														.expireAfterAccess(10, MINUTES), createCacheLoader());
+		}
+
+		List<Object> get(Query<Entity> query)
+		{
+			return cache.getUnchecked(query);
+		}
+
+		boolean isEmpty()
+		{
+			return cache.size() == 0;
+		}
+
+		CacheStats stats()
+		{
+			return cache.stats();
+		}
+
+		/**
+		 * Evicts the cached queries that are affected by changes to the given entities.
+		 *
+		 * @param entityIds ids of the changed entities
+		 * @param entities  values of the changed entities that still exist
+		 */
+		void evictQueries(Set<Object> entityIds, List<Entity> entities)
+		{
+			cache.asMap().entrySet().removeIf(entry -> isAffected(entry.getKey(), entry.getValue(), entityIds,
+					entities));
+		}
+
+		private boolean isAffected(Query<Entity> query, List<Object> cachedIds, Set<Object> entityIds,
+				List<Entity> entities)
+		{
+			// a changed entity that matched before the change could shift the results of later pages
+			if (query.getOffset() > 0)
+			{
+				return true;
+			}
+			if (cachedIds.stream().anyMatch(entityIds::contains))
+			{
+				return true;
+			}
+			return entities.stream().anyMatch(entity -> QueryMatcher.couldMatch(query, entityType, entity));
+		}
+
+		/**
+		 * Evicts the cached queries that depend on the data of one of the given referenced entity types.
+		 */
+		void evictQueriesReferencing(Set<String> entityTypeIds)
+		{
+			if (Collections.disjoint(referencedEntityTypeIds, entityTypeIds))
+			{
+				return;
+			}
+			cache.asMap()
+				 .keySet()
+				 .removeIf(query -> !Collections.disjoint(QueryMatcher.getReferencedEntityTypeIds(query, entityType),
+						 entityTypeIds));
+		}
+
+		/**
+		 * Create a cacheloader that loads entity ids from the repository and stores them together with their query
+		 *
+		 * @return the {@link CacheLoader}
+		 */
+		private CacheLoader<Query<Entity>, List<Object>> createCacheLoader()
+		{
+			String repositoryName = repository.getName();
+			Fetch idAttributeFetch = new Fetch().field(entityType.getIdAttribute().getName());
+			return new CacheLoader<Query<Entity>, List<Object>>()
+			{
+				/**
+				 * Loads {@link Entity} identifiers for a {@link Query}
+				 * @param query the cache key to load
+				 * @return {@link List} of identifier {@link Object}s
+				 */
+				@Override
+				public List<Object> load(@Nonnull Query<Entity> query)
+				{
+					LOG.trace("Loading identifiers from repository {} for query {}", repositoryName, query);
+					referencedEntityTypeIds.addAll(QueryMatcher.getReferencedEntityTypeIds(query, entityType));
+					return repository.findAll(new QueryImpl<>(query).fetch(idAttributeFetch))
+									 .map(Entity::getIdValue)
+									 .collect(toList());
+				}
+			};
+		}
 	}
 
 	/**
-	 * Create a cacheloader that loads entity ids from the repository and stores them together with their query
-	 *
-	 * @return the {@link CacheLoader}
+	 * Entities written in a transaction by entity type id, deleted entities have a <tt>null</tt> value. Entity types
+	 * with more written entities than {@link #MAX_DIRTY_ENTITIES_PER_REPOSITORY} are no longer tracked.
 	 */
-	private CacheLoader<Query<Entity>, List<Object>> createCacheLoader(final Repository<Entity> repository)
-	{
-		String repositoryName = repository.getName();
-		Fetch idAttributeFetch = new Fetch().field(repository.getEntityType().getIdAttribute().getName());
-		return new CacheLoader<Query<Entity>, List<Object>>()
-		{
-			/**
-			 * Loads {@link Entity} identifiers for a {@link Query}
-			 * @param query the cache key to load
-			 * @return {@link List} of identifier {@link Object}s
-			 */
-			@Override
-			public List<Object> load(@Nonnull Query<Entity> query)
+	private static class WrittenEntities
+	{
+		private final Map<String, Map<Object, Entity>> entities = new HashMap<>();
+		private final Set<String> untrackedEntityTypeIds = new HashSet<>();
+
+		void put(String entityTypeId, Object id, Entity entity)
+		{
+			if (untrackedEntityTypeIds.contains(entityTypeId))
+			{
+				return;
+			}
+			Map<Object, Entity> entityTypeEntities = entities.computeIfAbsent(entityTypeId, k -> new HashMap<>());
+			entityTypeEntities.put(id, entity);
+			if (entityTypeEntities.size() > MAX_DIRTY_ENTITIES_PER_REPOSITORY)
 			{
-				LOG.trace("Loading identifiers from repository {} for query {}", repositoryName, query);
-				return repository.findAll(new QueryImpl<>(query).fetch(idAttributeFetch))
-								 .map(Entity::getIdValue)
-								 .collect(toList());
+				entities.remove(entityTypeId);
+				untrackedEntityTypeIds.add(entityTypeId);
 			}
-		};
+		}
+
+		/**
+		 * @return the written entities with the given ids that were not deleted, or <tt>null</tt> if one of the ids was
+		 * not written
+		 */
+		List<Entity> getEntities(String entityTypeId, Collection<Object> ids)
+		{
+			Map<Object, Entity> entityTypeEntities = entities.get(entityTypeId);
+			if (entityTypeEntities == null || !entityTypeEntities.keySet().containsAll(ids))
+			{
+				return null;
+			}
+			return ids.stream().map(entityTypeEntities::get).filter(Objects::nonNull).collect(toList());
+		}
 	}
 
 	/**
@@ -119,7 +380,7 @@ public class L3Cache extends DefaultMolgenisTransactionListener
 		if (LOG.isDebugEnabled())
 		{
 			LOG.debug("Cache stats:");
-			for (Map.Entry<String, LoadingCache<Query<Entity>, List<Object>>> cacheEntry : caches.entrySet())
+			for (Map.Entry<String, QueryCache> cacheEntry : caches.entrySet())
 			{
 				LOG.debug("{}:{}", cacheEntry.getKey(), cacheEntry.getValue().stats());
 			}
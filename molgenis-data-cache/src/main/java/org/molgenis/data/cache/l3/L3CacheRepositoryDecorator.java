@@ -17,7 +17,8 @@ import static org.slf4j.LoggerFactory.getLogger;
  * Retrieves identifiers from the {@link L3Cache} based on a {@link Query}
  * if {@link RepositoryCapability#CACHEABLE}.
  * <p>
- * Delegates to the underlying {@link Repository}
+ * Delegates to the underlying {@link Repository}. Entities that are written one at a time are registered with the
+ * {@link L3Cache} so that it can evict the affected queries after commit without reading the entities again.
  */
 public class L3CacheRepositoryDecorator extends AbstractRepositoryDecorator<Entity>
 {
@@ -42,7 +43,7 @@ public class L3CacheRepositoryDecorator extends AbstractRepositoryDecorator<Enti
 	/**
 	 * Retrieves a {@link List} of identifiers from the {@link L3Cache} if the
 	 * {@link Repository} is cacheable and the {@link Query} is
-	 * limited (i.e. contains a pageSize) between 0 and MAX_PAGE_SIZE
+	 * limited (i.e. contains a pageSize) between 0 and MAX_PAGE_SIZE and does not filter on row-level permissions
 	 *
 	 * @param query The {@link Query}
 	 * @return A stream of {@link Entity}
@@ -54,7 +55,8 @@ public class L3CacheRepositoryDecorator extends AbstractRepositoryDecorator<Enti
 		{
 			// FIXME page size for metadata is always 0, and batching is done by the postgres repository
 			// FIXME Only superusers are able to use the L3 cache for metadata
-			if (cacheable && query.getPageSize() > 0 && query.getPageSize() <= MAX_PAGE_SIZE)
+			if (cacheable && query.getPageSize() > 0 && query.getPageSize() <= MAX_PAGE_SIZE && !isPermittedQuery(
+					query))
 			{
 				List<Object> ids = l3Cache.get(delegate(), query);
 				return delegate().findAll(ids.stream(), query.getFetch());
@@ -77,7 +79,8 @@ public class L3CacheRepositoryDecorator extends AbstractRepositoryDecorator<Enti
 	@Override
 	public Entity findOne(Query<Entity> query)
 	{
-		if (transactionInformation.isRepositoryCompletelyClean(getEntityType()) && cacheable)
+		if (transactionInformation.isRepositoryCompletelyClean(getEntityType()) && cacheable && !isPermittedQuery(
+				query))
 		{
 			// pageSize is irrelevant for findOne, would be a waste to cache them in different entries
 			// sort may affect which of the results is the first result, so cannot ignore that.
@@ -91,4 +94,53 @@ public class L3CacheRepositoryDecorator extends AbstractRepositoryDecorator<Enti
 		}
 		return delegate().findOne(query);
 	}
+
+	@Override
+	public void add(Entity entity)
+	{
+		delegate().add(entity);
+		if (cacheable)
+		{
+			l3Cache.putWritten(getEntityType(), entity);
+		}
+	}
+
+	@Override
+	public void update(Entity entity)
+	{
+		delegate().update(entity);
+		if (cacheable)
+		{
+			l3Cache.putWritten(getEntityType(), entity);
+		}
+	}
+
+	@Override
+	public void delete(Entity entity)
+	{
+		delegate().delete(entity);
+		if (cacheable)
+		{
+			l3Cache.putDeleted(getEntityType(), entity.getIdValue());
+		}
+	}
+
+	@Override
+	public void deleteById(Object id)
+	{
+		delegate().deleteById(id);
+		if (cacheable)
+		{
+			l3Cache.putDeleted(getEntityType(), id);
+		}
+	}
+
+	/**
+	 * Queries that filter on row-level permissions are not cached, changes in access control lists do not evict
+	 * cache entries.
+	 */
+	private static boolean isPermittedQuery(Query<Entity> query)
+	{
+		return QueryUtils.containsOperator(query, QueryRule.Operator.PERMITTED);
+	}
 }
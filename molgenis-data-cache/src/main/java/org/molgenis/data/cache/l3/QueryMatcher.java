@@ -0,0 +1,313 @@
+package org.molgenis.data.cache.l3;
+
+import org.apache.commons.lang3.StringUtils;
+import org.molgenis.data.Entity;
+import org.molgenis.data.Query;
+import org.molgenis.data.QueryRule;
+import org.molgenis.data.QueryRule.Operator;
+import org.molgenis.data.meta.model.Attribute;
+import org.molgenis.data.meta.model.EntityType;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static org.molgenis.data.QueryRule.Operator.AND;
+import static org.molgenis.data.QueryRule.Operator.NOT;
+import static org.molgenis.data.QueryRule.Operator.OR;
+
+/**
+ * Conservative analysis of the {@link QueryRule}s of cached queries.
+ * <p>
+ * {@link #couldMatch(Query, EntityType, Entity)} only returns false if it is certain that an entity does not match a
+ * query. Rules that cannot be evaluated in memory (e.g. search, like, negation or rules on computed or nested
+ * attributes) are assumed to match.
+ */
+class QueryMatcher
+{
+	private static final char NESTED_ATTRIBUTE_SEPARATOR = '.';
+
+	private QueryMatcher()
+	{
+	}
+
+	/**
+	 * Returns whether an entity could match the rules of a query.
+	 *
+	 * @param query      query
+	 * @param entityType entity type of the queried repository
+	 * @param entity     entity of the given entity type
+	 * @return false if the entity certainly does not match the query, true otherwise
+	 */
+	static boolean couldMatch(Query<Entity> query, EntityType entityType, Entity entity)
+	{
+		return couldMatch(query.getRules(), entityType, entity);
+	}
+
+	private static boolean couldMatch(List<QueryRule> rules, EntityType entityType, Entity entity)
+	{
+		boolean containsAnd = false;
+		boolean containsOr = false;
+		for (QueryRule rule : rules)
+		{
+			Operator operator = rule.getOperator();
+			if (operator == AND)
+			{
+				containsAnd = true;
+			}
+			else if (operator == OR)
+			{
+				containsOr = true;
+			}
+			else if (operator == NOT)
+			{
+				return true;
+			}
+		}
+		if (containsAnd && containsOr)
+		{
+			// operator precedence differs between repository implementations
+			return true;
+		}
+
+		boolean anyRuleCouldMatch = false;
+		for (QueryRule rule : rules)
+		{
+			Operator operator = rule.getOperator();
+			if (operator == AND || operator == OR)
+			{
+				continue;
+			}
+			boolean ruleCouldMatch = couldMatch(rule, entityType, entity);
+			if (!containsOr && !ruleCouldMatch)
+			{
+				return false;
+			}
+			anyRuleCouldMatch |= ruleCouldMatch;
+		}
+		return !containsOr || anyRuleCouldMatch;
+	}
+
+	private static boolean couldMatch(QueryRule rule, EntityType entityType, Entity entity)
+	{
+		Operator operator = rule.getOperator();
+		if (operator == Operator.NESTED)
+		{
+			return couldMatch(rule.getNestedRules(), entityType, entity);
+		}
+
+		String field = rule.getField();
+		if (field == null || field.indexOf(NESTED_ATTRIBUTE_SEPARATOR) != -1)
+		{
+			return true;
+		}
+		Attribute attribute = entityType.getAttribute(field);
+		if (attribute == null || attribute.hasExpression() || attribute.isMappedBy())
+		{
+			return true;
+		}
+
+		Object value = entity.get(field);
+		switch (operator)
+		{
+			case EQUALS:
+				return containsEqualValue(value, rule.getValue());
+			case IN:
+				Object inValue = rule.getValue();
+				if (!(inValue instanceof Iterable<?>))
+				{
+					return true;
+				}
+				for (Object queryValue : (Iterable<?>) inValue)
+				{
+					if (containsEqualValue(value, queryValue))
+					{
+						return true;
+					}
+				}
+				return false;
+			case LESS:
+				return compare(value, rule.getValue(), comparison -> comparison < 0);
+			case LESS_EQUAL:
+				return compare(value, rule.getValue(), comparison -> comparison <= 0);
+			case GREATER:
+				return compare(value, rule.getValue(), comparison -> comparison > 0);
+			case GREATER_EQUAL:
+				return compare(value, rule.getValue(), comparison -> comparison >= 0);
+			case RANGE:
+				Object range = rule.getValue();
+				if (!(range instanceof Iterable<?>))
+				{
+					return true;
+				}
+				Iterator<?> rangeValues = ((Iterable<?>) range).iterator();
+				if (!rangeValues.hasNext())
+				{
+					return true;
+				}
+				Object from = rangeValues.next();
+				if (!rangeValues.hasNext())
+				{
+					return true;
+				}
+				Object to = rangeValues.next();
+				return compare(value, from, comparison -> comparison >= 0) && compare(value, to,
+						comparison -> comparison <= 0);
+			// $CASES-OMITTED$
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Returns whether an entity value, which can be a reference or collection of references, could equal a query
+	 * value.
+	 */
+	private static boolean containsEqualValue(Object entityValue, Object queryValue)
+	{
+		if (entityValue instanceof Iterable<?>)
+		{
+			Iterator<?> iterator = ((Iterable<?>) entityValue).iterator();
+			if (!iterator.hasNext())
+			{
+				return queryValue == null;
+			}
+			while (iterator.hasNext())
+			{
+				if (couldEqual(iterator.next(), queryValue))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+		return couldEqual(entityValue, queryValue);
+	}
+
+	private static boolean couldEqual(Object entityValue, Object queryValue)
+	{
+		Object value = normalize(entityValue);
+		Object otherValue = normalize(queryValue);
+		if (value == null || otherValue == null)
+		{
+			return value == null && otherValue == null;
+		}
+		if (value instanceof Number && otherValue instanceof Number)
+		{
+			return compareNumbers((Number) value, (Number) otherValue) == 0;
+		}
+		if (value instanceof String && otherValue instanceof String)
+		{
+			// collation of the repository might be case insensitive
+			return ((String) value).equalsIgnoreCase((String) otherValue);
+		}
+		if (value.getClass() != otherValue.getClass())
+		{
+			return true;
+		}
+		return value.equals(otherValue);
+	}
+
+	/**
+	 * Compares numbers, dates and date times. Comparisons of other values, e.g. strings of which the ordering
+	 * depends on the collation, could always match.
+	 */
+	@SuppressWarnings("unchecked")
+	private static boolean compare(Object entityValue, Object queryValue, IntPredicate predicate)
+	{
+		Object value = normalize(entityValue);
+		Object otherValue = normalize(queryValue);
+		if (value == null)
+		{
+			return false;
+		}
+		if (otherValue == null || value instanceof Iterable<?>)
+		{
+			return true;
+		}
+		if (value instanceof Number && otherValue instanceof Number)
+		{
+			return predicate.test(compareNumbers((Number) value, (Number) otherValue));
+		}
+		if ((value instanceof LocalDate || value instanceof Instant) && value.getClass() == otherValue.getClass())
+		{
+			return predicate.test(((Comparable<Object>) value).compareTo(otherValue));
+		}
+		return true;
+	}
+
+	private static int compareNumbers(Number number, Number otherNumber)
+	{
+		if (isIntegral(number) && isIntegral(otherNumber))
+		{
+			return Long.compare(number.longValue(), otherNumber.longValue());
+		}
+		return Double.compare(number.doubleValue(), otherNumber.doubleValue());
+	}
+
+	private static boolean isIntegral(Number number)
+	{
+		return number instanceof Integer || number instanceof Long || number instanceof Short
+				|| number instanceof Byte;
+	}
+
+	private static Object normalize(Object value)
+	{
+		return value instanceof Entity ? ((Entity) value).getIdValue() : value;
+	}
+
+	/**
+	 * Returns the ids of the entity types other than the queried entity type of which the data affects the query
+	 * result: referenced entity types traversed by nested query rule fields (e.g. refAttr.attr) and the referencing
+	 * entity types of one-to-many attributes.
+	 *
+	 * @param query      query
+	 * @param entityType entity type of the queried repository
+	 * @return entity type ids, empty if the query only depends on the queried entity type
+	 */
+	static Set<String> getReferencedEntityTypeIds(Query<Entity> query, EntityType entityType)
+	{
+		Set<String> entityTypeIds = newHashSet();
+		addReferencedEntityTypeIds(query.getRules(), entityType, entityTypeIds);
+		return entityTypeIds;
+	}
+
+	private static void addReferencedEntityTypeIds(List<QueryRule> rules, EntityType entityType,
+			Set<String> entityTypeIds)
+	{
+		for (QueryRule rule : rules)
+		{
+			List<QueryRule> nestedRules = rule.getNestedRules();
+			if (nestedRules != null && !nestedRules.isEmpty())
+			{
+				addReferencedEntityTypeIds(nestedRules, entityType, entityTypeIds);
+			}
+
+			String field = rule.getField();
+			if (field == null)
+			{
+				continue;
+			}
+			String[] attributeNames = StringUtils.split(field, NESTED_ATTRIBUTE_SEPARATOR);
+			EntityType entityTypeAtCurrentDepth = entityType;
+			for (int depth = 0; depth < attributeNames.length && entityTypeAtCurrentDepth != null; ++depth)
+			{
+				Attribute attribute = entityTypeAtCurrentDepth.getAttribute(attributeNames[depth]);
+				if (attribute == null)
+				{
+					break;
+				}
+				EntityType refEntityType = attribute.getRefEntity();
+				if (refEntityType != null && (depth + 1 < attributeNames.length || attribute.isMappedBy()))
+				{
+					entityTypeIds.add(refEntityType.getId());
+				}
+				entityTypeAtCurrentDepth = refEntityType;
+			}
+		}
+	}
+}
@@ -6,7 +6,6 @@ import org.molgenis.data.Entity;
 import org.molgenis.data.EntityKey;
 import org.molgenis.data.meta.model.EntityType;
 
-import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -20,7 +19,7 @@ import static java.util.Optional.empty;
 public class CombinedEntityCache
 {
 	private final EntityHydration entityHydration;
-	private final Cache<EntityKey, Optional<Map<String, Object>>> cache;
+	private final Cache<EntityKey, Optional<DehydratedEntity>> cache;
 
 	/**
 	 * Creates a new {@link CombinedEntityCache}
@@ -28,7 +27,7 @@ public class CombinedEntityCache
 	 * @param entityHydration {@link EntityHydration} used to hydrate and dehydrate the entities and generate cache keys
 	 * @param cache           the {@link Cache} to store the entities in
 	 */
-	public CombinedEntityCache(EntityHydration entityHydration, Cache<EntityKey, Optional<Map<String, Object>>> cache)
+	public CombinedEntityCache(EntityHydration entityHydration, Cache<EntityKey, Optional<DehydratedEntity>> cache)
 	{
 		this.entityHydration = requireNonNull(entityHydration);
 		this.cache = requireNonNull(cache);
@@ -69,7 +68,7 @@ public class CombinedEntityCache
 	@SuppressFBWarnings(value = "NP_OPTIONAL_RETURN_NULL", justification = "Intentional behavior")
 	public Optional<Entity> getIfPresent(EntityType entityType, Object id)
 	{
-		Optional<Map<String, Object>> optionalDehydratedEntity = cache.getIfPresent(EntityKey.create(entityType, id));
+		Optional<DehydratedEntity> optionalDehydratedEntity = cache.getIfPresent(EntityKey.create(entityType, id));
 		if (optionalDehydratedEntity == null)
 		{
 			// no information present in cache
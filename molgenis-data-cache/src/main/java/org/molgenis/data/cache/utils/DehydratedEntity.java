@@ -0,0 +1,125 @@
+package org.molgenis.data.cache.utils;
+
+import org.molgenis.data.meta.AttributeType;
+import org.molgenis.util.UnexpectedEnumException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Compact representation of the values required to rebuild an entity.
+ * <p>
+ * Values are stored in the slots described by the {@link DehydratedEntitySchema} of the entity type. Numeric and
+ * boolean values are stored in a primitive long array, null values of these attributes are tracked in a bit mask.
+ */
+public class DehydratedEntity
+{
+	private final DehydratedEntitySchema schema;
+	private final Object[] objectValues;
+	private final long[] primitiveValues;
+	private final long[] primitiveNullMask;
+
+	DehydratedEntity(DehydratedEntitySchema schema)
+	{
+		this.schema = requireNonNull(schema);
+		this.objectValues = new Object[schema.getNrObjectSlots()];
+		int nrPrimitiveSlots = schema.getNrPrimitiveSlots();
+		this.primitiveValues = new long[nrPrimitiveSlots];
+		this.primitiveNullMask = new long[(nrPrimitiveSlots + 63) / 64];
+	}
+
+	public DehydratedEntitySchema getSchema()
+	{
+		return schema;
+	}
+
+	/**
+	 * Returns the value of the attribute with the given name.
+	 *
+	 * @param attributeName attribute name
+	 * @return attribute value or null if the value is null or the attribute is not stored
+	 */
+	public Object get(String attributeName)
+	{
+		int index = schema.getAttributeIndex(attributeName);
+		return index != -1 ? getValue(index) : null;
+	}
+
+	/**
+	 * Returns the value of the attribute at the given index in the {@link DehydratedEntitySchema}.
+	 */
+	public Object getValue(int index)
+	{
+		int slot = schema.getSlot(index);
+		if (!schema.isPrimitive(index))
+		{
+			return objectValues[slot];
+		}
+		if ((primitiveNullMask[slot >> 6] & (1L << slot)) != 0)
+		{
+			return null;
+		}
+
+		long primitiveValue = primitiveValues[slot];
+		AttributeType attributeType = schema.getAttributeType(index);
+		switch (attributeType)
+		{
+			case BOOL:
+				return primitiveValue != 0;
+			case DECIMAL:
+				return Double.longBitsToDouble(primitiveValue);
+			case INT:
+				return (int) primitiveValue;
+			case LONG:
+				return primitiveValue;
+			default:
+				throw new UnexpectedEnumException(attributeType);
+		}
+	}
+
+	void setValue(int index, Object value)
+	{
+		int slot = schema.getSlot(index);
+		if (!schema.isPrimitive(index))
+		{
+			objectValues[slot] = value;
+			return;
+		}
+		if (value == null)
+		{
+			primitiveNullMask[slot >> 6] |= 1L << slot;
+			return;
+		}
+
+		AttributeType attributeType = schema.getAttributeType(index);
+		switch (attributeType)
+		{
+			case BOOL:
+				primitiveValues[slot] = (Boolean) value ? 1 : 0;
+				break;
+			case DECIMAL:
+				primitiveValues[slot] = Double.doubleToRawLongBits(((Number) value).doubleValue());
+				break;
+			case INT:
+			case LONG:
+				primitiveValues[slot] = ((Number) value).longValue();
+				break;
+			default:
+				throw new UnexpectedEnumException(attributeType);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder stringBuilder = new StringBuilder("DehydratedEntity{");
+		for (int i = 0; i < schema.getNrAttributes(); ++i)
+		{
+			if (i > 0)
+			{
+				stringBuilder.append(", ");
+			}
+			stringBuilder.append(schema.getAttributeName(i)).append('=').append(getValue(i));
+		}
+		return stringBuilder.append('}').toString();
+	}
+}
@@ -0,0 +1,191 @@
+package org.molgenis.data.cache.utils;
+
+import org.molgenis.data.meta.AttributeType;
+import org.molgenis.data.meta.model.Attribute;
+import org.molgenis.data.meta.model.EntityType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMapWithExpectedSize;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Layout of the {@link DehydratedEntity}s of an {@link EntityType}, shared by all dehydrated entities of that type.
+ * <p>
+ * Each non-computed atomic attribute gets a slot. Values of {@link AttributeType#BOOL}, {@link AttributeType#INT},
+ * {@link AttributeType#LONG} and {@link AttributeType#DECIMAL} attributes are stored in a primitive long array, the
+ * other values are stored in an object array. The schema only holds the attribute names and types, not the entity
+ * type itself.
+ */
+public class DehydratedEntitySchema
+{
+	private final Signature signature;
+	/**
+	 * index in the object or primitive values array for each attribute
+	 */
+	private final int[] slots;
+	private final Map<String, Integer> attributeIndices;
+	private final int nrObjectSlots;
+	private final int nrPrimitiveSlots;
+
+	private DehydratedEntitySchema(Signature signature)
+	{
+		this.signature = requireNonNull(signature);
+
+		int nrAttributes = signature.attributeNames.length;
+		slots = new int[nrAttributes];
+		attributeIndices = newHashMapWithExpectedSize(nrAttributes);
+
+		int objectSlot = 0;
+		int primitiveSlot = 0;
+		for (int i = 0; i < nrAttributes; ++i)
+		{
+			slots[i] = isPrimitive(signature.attributeTypes[i]) ? primitiveSlot++ : objectSlot++;
+			attributeIndices.put(signature.attributeNames[i], i);
+		}
+		nrObjectSlots = objectSlot;
+		nrPrimitiveSlots = primitiveSlot;
+	}
+
+	public static DehydratedEntitySchema create(EntityType entityType)
+	{
+		return create(Signature.create(entityType.getId(), getStoredAttributes(entityType)));
+	}
+
+	static DehydratedEntitySchema create(Signature signature)
+	{
+		return new DehydratedEntitySchema(signature);
+	}
+
+	/**
+	 * Returns the attributes of an entity type that are stored in a dehydrated entity, in schema order. Computed
+	 * attributes are not stored but calculated based on the metadata.
+	 */
+	static List<Attribute> getStoredAttributes(EntityType entityType)
+	{
+		List<Attribute> attributes = newArrayList();
+		for (Attribute attribute : entityType.getAtomicAttributes())
+		{
+			if (!attribute.hasExpression())
+			{
+				attributes.add(attribute);
+			}
+		}
+		return attributes;
+	}
+
+	static boolean isPrimitive(AttributeType attributeType)
+	{
+		switch (attributeType)
+		{
+			case BOOL:
+			case DECIMAL:
+			case INT:
+			case LONG:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * @return the number of stored attributes
+	 */
+	public int getNrAttributes()
+	{
+		return signature.attributeNames.length;
+	}
+
+	public String getAttributeName(int index)
+	{
+		return signature.attributeNames[index];
+	}
+
+	public AttributeType getAttributeType(int index)
+	{
+		return signature.attributeTypes[index];
+	}
+
+	/**
+	 * @return index of the attribute with the given name or -1 if the attribute is not stored
+	 */
+	public int getAttributeIndex(String attributeName)
+	{
+		Integer index = attributeIndices.get(attributeName);
+		return index != null ? index : -1;
+	}
+
+	public boolean isPrimitive(int index)
+	{
+		return isPrimitive(signature.attributeTypes[index]);
+	}
+
+	int getSlot(int index)
+	{
+		return slots[index];
+	}
+
+	public int getNrObjectSlots()
+	{
+		return nrObjectSlots;
+	}
+
+	public int getNrPrimitiveSlots()
+	{
+		return nrPrimitiveSlots;
+	}
+
+	/**
+	 * Identifies a schema by the entity type id and the names and types of the stored attributes in schema order.
+	 * Entity type instances with the same signature share a schema.
+	 */
+	static class Signature
+	{
+		private final String entityTypeId;
+		private final String[] attributeNames;
+		private final AttributeType[] attributeTypes;
+
+		private Signature(String entityTypeId, String[] attributeNames, AttributeType[] attributeTypes)
+		{
+			this.entityTypeId = requireNonNull(entityTypeId);
+			this.attributeNames = requireNonNull(attributeNames);
+			this.attributeTypes = requireNonNull(attributeTypes);
+		}
+
+		static Signature create(String entityTypeId, List<Attribute> storedAttributes)
+		{
+			int nrAttributes = storedAttributes.size();
+			String[] attributeNames = new String[nrAttributes];
+			AttributeType[] attributeTypes = new AttributeType[nrAttributes];
+			for (int i = 0; i < nrAttributes; ++i)
+			{
+				Attribute attribute = storedAttributes.get(i);
+				attributeNames[i] = attribute.getName();
+				attributeTypes[i] = attribute.getDataType();
+			}
+			return new Signature(entityTypeId, attributeNames, attributeTypes);
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Signature signature = (Signature) o;
+			return entityTypeId.equals(signature.entityTypeId) && Arrays.equals(attributeNames,
+					signature.attributeNames) && Arrays.equals(attributeTypes, signature.attributeTypes);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int result = entityTypeId.hashCode();
+			result = 31 * result + Arrays.hashCode(attributeNames);
+			result = 31 * result + Arrays.hashCode(attributeTypes);
+			return result;
+		}
+	}
+}
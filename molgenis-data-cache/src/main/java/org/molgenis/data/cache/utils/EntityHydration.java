@@ -1,7 +1,10 @@
 package org.molgenis.data.cache.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.molgenis.data.Entity;
 import org.molgenis.data.EntityManager;
+import org.molgenis.data.cache.utils.DehydratedEntitySchema.Signature;
 import org.molgenis.data.meta.AttributeType;
 import org.molgenis.data.meta.IllegalAttributeTypeException;
 import org.molgenis.data.meta.model.Attribute;
@@ -13,11 +16,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
-import java.util.Map;
 
 import static com.google.common.collect.Lists.newArrayList;
-import static com.google.common.collect.Maps.newHashMap;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.molgenis.data.EntityManager.CreationMode.NO_POPULATE;
 import static org.molgenis.data.support.EntityTypeUtils.isMultipleReferenceType;
 import static org.molgenis.data.support.EntityTypeUtils.isSingleReferenceType;
@@ -30,10 +32,16 @@ public class EntityHydration
 {
 	private static final Logger LOG = LoggerFactory.getLogger(EntityHydration.class);
 	private final EntityManager entityManager;
+	/**
+	 * maps entity type id and stored attributes to the schema, schemas of entity type versions that are no longer
+	 * used expire
+	 */
+	private final Cache<Signature, DehydratedEntitySchema> schemas;
 
 	public EntityHydration(EntityManager entityManager)
 	{
 		this.entityManager = requireNonNull(entityManager);
+		this.schemas = Caffeine.newBuilder().expireAfterAccess(10, MINUTES).build();
 	}
 
 	/**
@@ -41,71 +49,76 @@ public class EntityHydration
 	 * if there are attributes present with an expression
 	 *
 	 * @param entityType       metadata of the entity to rehydrate
-	 * @param dehydratedEntity map with key value pairs representing this entity
+	 * @param dehydratedEntity the values representing this entity
 	 * @return hydrated entity
 	 */
 	@SuppressWarnings("unchecked")
-	public Entity hydrate(Map<String, Object> dehydratedEntity, EntityType entityType)
+	public Entity hydrate(DehydratedEntity dehydratedEntity, EntityType entityType)
 	{
 		LOG.trace("Hydrating entity: {} for entity {}", dehydratedEntity, entityType.getId());
 
 		Entity hydratedEntity = entityManager.create(entityType, NO_POPULATE);
 
-		for (Attribute attribute : entityType.getAtomicAttributes())
+		List<Attribute> attributes = DehydratedEntitySchema.getStoredAttributes(entityType);
+		DehydratedEntitySchema schema = getSchema(entityType, attributes);
+		boolean sameSchema = dehydratedEntity.getSchema() == schema;
+		for (int i = 0; i < attributes.size(); ++i)
 		{
-			// Only hydrate the attribute if it is NOT computed.
-			// Computed attributes will be calculated based on the metadata
-			if (attribute.getExpression() == null)
+			Attribute attribute = attributes.get(i);
+			String name = attribute.getName();
+			Object value = sameSchema ? dehydratedEntity.getValue(i) : dehydratedEntity.get(name);
+			if (value != null)
 			{
-				String name = attribute.getName();
-				Object value = dehydratedEntity.get(name);
-				if (value != null)
+				if (isMultipleReferenceType(attribute))
+				{
+					// We can do this cast because during dehydration, mrefs and categorical mrefs are stored as a List of Object
+					value = entityManager.getReferences(attribute.getRefEntity(), (List<Object>) value);
+				}
+				else if (isSingleReferenceType(attribute))
 				{
-					if (isMultipleReferenceType(attribute))
-					{
-						// We can do this cast because during dehydration, mrefs and categorical mrefs are stored as a List of Object
-						value = entityManager.getReferences(attribute.getRefEntity(), (List<Object>) value);
-					}
-					else if (isSingleReferenceType(attribute))
-					{
-						value = entityManager.getReference(attribute.getRefEntity(), value);
-					}
+					value = entityManager.getReference(attribute.getRefEntity(), value);
 				}
-				hydratedEntity.set(name, value);
 			}
+			hydratedEntity.set(name, value);
 		}
 
 		return hydratedEntity;
 	}
 
 	/**
-	 * Creates a Map containing the values required to rebuild this entity.
+	 * Creates a {@link DehydratedEntity} containing the values required to rebuild this entity.
 	 * For references to other entities only stores the ids.
 	 *
 	 * @param entity the {@link Entity} to dehydrate
-	 * @return Map representation of the entity
+	 * @return dehydrated representation of the entity
 	 */
-	public Map<String, Object> dehydrate(Entity entity)
+	public DehydratedEntity dehydrate(Entity entity)
 	{
 		LOG.trace("Dehydrating entity {}", entity);
-		Map<String, Object> dehydratedEntity = newHashMap();
 		EntityType entityType = entity.getEntityType();
+		DehydratedEntitySchema schema = getSchema(entityType, DehydratedEntitySchema.getStoredAttributes(entityType));
+		DehydratedEntity dehydratedEntity = new DehydratedEntity(schema);
 
-		entityType.getAtomicAttributes().forEach(attribute ->
+		for (int i = 0; i < schema.getNrAttributes(); ++i)
 		{
-			// Only dehydrate if the attribute is NOT computed
-			if (!attribute.hasExpression())
-			{
-				String name = attribute.getName();
-				AttributeType type = attribute.getDataType();
-
-				dehydratedEntity.put(name, getValueBasedOnType(entity, name, type));
-			}
-		});
+			String name = schema.getAttributeName(i);
+			dehydratedEntity.setValue(i, getValueBasedOnType(entity, name, schema.getAttributeType(i)));
+		}
 
 		return dehydratedEntity;
 	}
 
+	/**
+	 * Returns the schema of an entity type. Entity type instances with the same id and the same stored attribute names
+	 * and types share a schema.
+	 *
+	 * @param storedAttributes the stored attributes of the entity type
+	 */
+	private DehydratedEntitySchema getSchema(EntityType entityType, List<Attribute> storedAttributes)
+	{
+		return schemas.get(Signature.create(entityType.getId(), storedAttributes), DehydratedEntitySchema::create);
+	}
+
 	private static Object getValueBasedOnType(Entity entity, String name, AttributeType type)
 	{
 		Object value;
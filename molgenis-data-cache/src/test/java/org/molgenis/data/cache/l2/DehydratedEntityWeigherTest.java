@@ -0,0 +1,60 @@
+package org.molgenis.data.cache.l2;
+
+import org.mockito.Mock;
+import org.molgenis.data.cache.utils.DehydratedEntity;
+import org.molgenis.data.cache.utils.DehydratedEntitySchema;
+import org.molgenis.test.AbstractMockitoTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+public class DehydratedEntityWeigherTest extends AbstractMockitoTest
+{
+	@Mock
+	private DehydratedEntity dehydratedEntity;
+	@Mock
+	private DehydratedEntitySchema schema;
+
+	private DehydratedEntityWeigher dehydratedEntityWeigher;
+
+	@BeforeMethod
+	public void setUpBeforeMethod()
+	{
+		dehydratedEntityWeigher = new DehydratedEntityWeigher();
+	}
+
+	@Test
+	public void testWeighEmpty()
+	{
+		assertEquals(dehydratedEntityWeigher.weigh("id", Optional.empty()), 60);
+	}
+
+	@Test
+	public void testWeighGrowsWithStringLength()
+	{
+		when(dehydratedEntity.getSchema()).thenReturn(schema);
+		when(schema.getNrAttributes()).thenReturn(1);
+		when(schema.getNrObjectSlots()).thenReturn(1);
+		when(dehydratedEntity.getValue(0)).thenReturn("a");
+		int shortWeight = dehydratedEntityWeigher.weigh("id", Optional.of(dehydratedEntity));
+		when(dehydratedEntity.getValue(0)).thenReturn("abcdefghijk");
+		int longWeight = dehydratedEntityWeigher.weigh("id", Optional.of(dehydratedEntity));
+		assertEquals(longWeight - shortWeight, 20);
+	}
+
+	@Test
+	public void testWeighPrimitives()
+	{
+		when(dehydratedEntity.getSchema()).thenReturn(schema);
+		when(schema.getNrAttributes()).thenReturn(2);
+		when(schema.getNrPrimitiveSlots()).thenReturn(2);
+		when(schema.isPrimitive(anyInt())).thenReturn(true);
+		// id + optional + entity + three array headers + two primitive values + null mask
+		assertEquals(dehydratedEntityWeigher.weigh(1, Optional.of(dehydratedEntity)), 16 + 16 + 24 + 48 + 16 + 8);
+	}
+}
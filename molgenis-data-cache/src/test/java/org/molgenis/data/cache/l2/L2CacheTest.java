@@ -7,12 +7,14 @@ import org.mockito.Mock;
 import org.mockito.quality.Strictness;
 import org.molgenis.data.*;
 import org.molgenis.data.cache.utils.EntityHydration;
+import org.molgenis.data.event.BootstrappingEvent;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.data.support.DynamicEntity;
 import org.molgenis.data.support.EntityWithComputedAttributes;
 import org.molgenis.data.transaction.TransactionInformation;
 import org.molgenis.data.transaction.TransactionManager;
 import org.molgenis.data.util.EntityUtils;
+import org.molgenis.settings.AppSettings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -35,6 +37,7 @@ import static java.util.stream.Collectors.toMap;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.molgenis.data.EntityManager.CreationMode.NO_POPULATE;
+import static org.molgenis.data.event.BootstrappingEvent.BootstrappingStatus.FINISHED;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
@@ -58,6 +61,8 @@ public class L2CacheTest extends AbstractMolgenisSpringTest
 	private Repository<Entity> repository;
 	@Mock
 	private TransactionInformation transactionInformation;
+	@Mock
+	private AppSettings appSettings;
 	@Captor
 	private ArgumentCaptor<Stream<Object>> idStreamCaptor;
 
@@ -93,7 +98,10 @@ public class L2CacheTest extends AbstractMolgenisSpringTest
 		when(repository.getEntityType()).thenReturn(emd);
 		when(repository.getName()).thenReturn(emd.getId());
 
-		l2Cache = new L2Cache(transactionManager, entityHydration, transactionInformation);
+		when(appSettings.getCacheMaxSizeMb()).thenReturn(1);
+
+		l2Cache = new L2Cache(transactionManager, entityHydration, transactionInformation, appSettings);
+		l2Cache.onApplicationEvent(new BootstrappingEvent(FINISHED));
 	}
 
 	@Test
@@ -166,6 +174,38 @@ public class L2CacheTest extends AbstractMolgenisSpringTest
 		verify(repository, times(2)).findOneById("3");
 	}
 
+	@Test
+	public void testAfterRemoteCommitRemovesEntityForDirtyEntity()
+	{
+		Entity entity2 = testEntities.get(2);
+		Entity entity3 = testEntities.get(3);
+		when(repository.findOneById("2")).thenReturn(entity2);
+		when(repository.findOneById("3")).thenReturn(entity3);
+
+		l2Cache.get(repository, "2");
+		l2Cache.get(repository, "3");
+
+		l2Cache.afterRemoteCommit(singleton(EntityKey.create(entity3)), emptySet(), singleton(emd.getId()));
+
+		l2Cache.get(repository, "2");
+		l2Cache.get(repository, "3");
+		verify(repository, times(1)).findOneById("2");
+		verify(repository, times(2)).findOneById("3");
+	}
+
+	@Test
+	public void testRemoteCommitsMissed()
+	{
+		Entity entity2 = testEntities.get(2);
+		when(repository.findOneById("2")).thenReturn(entity2);
+
+		l2Cache.get(repository, "2");
+		l2Cache.remoteCommitsMissed();
+		l2Cache.get(repository, "2");
+
+		verify(repository, times(2)).findOneById("2");
+	}
+
 	@Test
 	public void testGetStringIdCachesLoadedData()
 	{
@@ -190,7 +230,8 @@ public class L2CacheTest extends AbstractMolgenisSpringTest
 	}
 
 	@SuppressWarnings("unchecked")
-	@Test(expectedExceptions = UncheckedExecutionException.class)
+	@Test(expectedExceptions = MolgenisDataException.class,
+			expectedExceptionsMessageRegExp = "Table is missing for entity TestEntity")
 	public void testGetBatchIdLoaderThrowsException()
 	{
 		when(repository.findAll(any(Stream.class))).thenThrow(
@@ -209,6 +250,76 @@ public class L2CacheTest extends AbstractMolgenisSpringTest
 		assertEquals(idStreamCaptor.getValue().collect(Collectors.toList()), newArrayList("0", "1", "2", "3"));
 	}
 
+	@Test
+	public void testGetStatistics()
+	{
+		Entity entity2 = testEntities.get(2);
+		when(repository.findOneById("2")).thenReturn(entity2);
+		l2Cache.get(repository, "2");
+		l2Cache.get(repository, "2");
+
+		List<L2CacheStatistics> statistics = l2Cache.getStatistics();
+		assertEquals(statistics.size(), 1);
+		L2CacheStatistics entityTypeStatistics = statistics.get(0);
+		assertEquals(entityTypeStatistics.getEntityTypeId(), emd.getId());
+		assertEquals(entityTypeStatistics.getCacheStats().hitCount(), 1);
+		assertEquals(entityTypeStatistics.getCacheStats().missCount(), 1);
+		assertEquals(entityTypeStatistics.getMaximumWeight(), 1024 * 1024);
+		assertTrue(entityTypeStatistics.getWeightedSize() > 0);
+	}
+
+	@Test
+	public void testRebalance()
+	{
+		@SuppressWarnings("unchecked")
+		Repository<Entity> otherRepository = mock(Repository.class);
+		EntityType otherEntityType = mock(EntityType.class);
+		when(otherEntityType.getId()).thenReturn("otherEntityType");
+		when(otherRepository.getEntityType()).thenReturn(otherEntityType);
+
+		Entity entity2 = testEntities.get(2);
+		when(repository.findOneById("2")).thenReturn(entity2);
+		for (int i = 0; i < 10; i++)
+		{
+			l2Cache.get(repository, "2");
+		}
+		assertEquals(l2Cache.get(otherRepository, "1"), null);
+
+		l2Cache.rebalance();
+
+		Map<String, Long> maximumWeights = l2Cache.getStatistics()
+												  .stream()
+												  .collect(toMap(L2CacheStatistics::getEntityTypeId,
+														  L2CacheStatistics::getMaximumWeight));
+		assertEquals(maximumWeights.size(), 2);
+		assertTrue(maximumWeights.get(emd.getId()) > maximumWeights.get("otherEntityType"));
+		assertEquals(maximumWeights.get(emd.getId()) + maximumWeights.get("otherEntityType"), 1024 * 1024, 1);
+	}
+
+	@Test
+	public void testRebalanceMaximumSizeFromSettings()
+	{
+		when(repository.findOneById("2")).thenReturn(testEntities.get(2));
+		l2Cache.get(repository, "2");
+
+		when(appSettings.getCacheMaxSizeMb()).thenReturn(2);
+		l2Cache.rebalance();
+
+		assertEquals(l2Cache.getStatistics().get(0).getMaximumWeight(), 2 * 1024 * 1024);
+	}
+
+	@Test
+	public void testRebalanceInvalidMaximumSize()
+	{
+		when(repository.findOneById("2")).thenReturn(testEntities.get(2));
+		l2Cache.get(repository, "2");
+
+		when(appSettings.getCacheMaxSizeMb()).thenReturn(0);
+		l2Cache.rebalance();
+
+		assertEquals(l2Cache.getStatistics().get(0).getMaximumWeight(), 1024 * 1024);
+	}
+
 	@Configuration
 	@Import({ EntityHydration.class, TestHarnessConfig.class })
 	public static class Config
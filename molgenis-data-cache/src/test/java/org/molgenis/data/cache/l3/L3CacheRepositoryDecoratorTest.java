@@ -204,6 +204,38 @@ public class L3CacheRepositoryDecoratorTest extends AbstractMolgenisSpringTest
 		verifyNoMoreInteractions(l3Cache);
 	}
 
+	@Test
+	public void testAdd()
+	{
+		l3CacheRepositoryDecorator.add(entity3);
+		verify(delegateRepository).add(entity3);
+		verify(l3Cache).putWritten(entityType, entity3);
+	}
+
+	@Test
+	public void testUpdate()
+	{
+		l3CacheRepositoryDecorator.update(entity3);
+		verify(delegateRepository).update(entity3);
+		verify(l3Cache).putWritten(entityType, entity3);
+	}
+
+	@Test
+	public void testDelete()
+	{
+		l3CacheRepositoryDecorator.delete(entity3);
+		verify(delegateRepository).delete(entity3);
+		verify(l3Cache).putDeleted(entityType, 3);
+	}
+
+	@Test
+	public void testDeleteById()
+	{
+		l3CacheRepositoryDecorator.deleteById(1);
+		verify(delegateRepository).deleteById(1);
+		verify(l3Cache).putDeleted(entityType, 1);
+	}
+
 	@Configuration
 	public static class Config
 	{
@@ -2,6 +2,7 @@ package org.molgenis.data.cache.l3;
 
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.quality.Strictness;
 import org.molgenis.data.*;
@@ -13,6 +14,7 @@ import org.molgenis.data.support.QueryImpl;
 import org.molgenis.data.transaction.TransactionInformation;
 import org.molgenis.data.transaction.TransactionManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -24,7 +26,9 @@ import java.util.stream.Stream;
 import static org.mockito.Mockito.*;
 import static org.molgenis.data.RepositoryCapability.CACHEABLE;
 import static org.molgenis.data.meta.AttributeType.INT;
+import static org.molgenis.data.meta.AttributeType.XREF;
 import static org.molgenis.data.meta.model.EntityType.AttributeRole.ROLE_ID;
+import static org.molgenis.data.transaction.TransactionManager.TRANSACTION_ID_RESOURCE_NAME;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.fail;
 
@@ -38,9 +42,13 @@ public class L3CacheTest extends AbstractMolgenisSpringTest
 	private Entity entity2;
 	private Entity entity3;
 
+	private static final String TRANSACTION_ID = "ABCDE";
 	private final String repositoryName = "TestRepository";
 	private static final String COUNTRY = "Country";
 	private static final String ID = "ID";
+	private static final String CAPITAL = "Capital";
+
+	private EntityType refEntityType;
 
 	@Mock
 	private Repository<Entity> decoratedRepository;
@@ -69,6 +77,11 @@ public class L3CacheTest extends AbstractMolgenisSpringTest
 		entityType.addAttribute(attributeFactory.create().setDataType(INT).setName(ID), ROLE_ID);
 		entityType.addAttribute(attributeFactory.create().setName(COUNTRY));
 
+		refEntityType = entityTypeFactory.create("City");
+		refEntityType.addAttribute(attributeFactory.create().setName("name"), ROLE_ID);
+		entityType.addAttribute(
+				attributeFactory.create().setName(CAPITAL).setDataType(XREF).setRefEntity(refEntityType));
+
 		entity1 = new DynamicEntity(entityType);
 		entity1.set(ID, 1);
 		entity1.set(COUNTRY, "NL");
@@ -86,7 +99,7 @@ public class L3CacheTest extends AbstractMolgenisSpringTest
 	@BeforeMethod
 	public void beforeMethod()
 	{
-		reset(decoratedRepository);
+		reset(decoratedRepository, transactionInformation);
 
 		when(decoratedRepository.getCapabilities()).thenReturn(Sets.newHashSet(CACHEABLE));
 		when(decoratedRepository.getName()).thenReturn(repositoryName);
@@ -164,7 +177,7 @@ public class L3CacheTest extends AbstractMolgenisSpringTest
 		assertEquals(l3Cache.get(decoratedRepository, query), Arrays.asList(1, 2));
 
 		when(transactionInformation.getDirtyRepositories()).thenReturn(Collections.singleton(repositoryName));
-		l3Cache.afterCommitTransaction("ABCDE");
+		l3Cache.afterCommitTransaction(TRANSACTION_ID);
 
 		when(decoratedRepository.findAll(fetchLessQuery)).thenReturn(Stream.of(entity3, entity2));
 
@@ -189,7 +202,7 @@ public class L3CacheTest extends AbstractMolgenisSpringTest
 		assertEquals(l3Cache.get(decoratedRepository, query), Arrays.asList(1, 2));
 
 		when(transactionInformation.getDirtyRepositories()).thenReturn(Collections.singleton("blah"));
-		l3Cache.afterCommitTransaction("ABCDE");
+		l3Cache.afterCommitTransaction(TRANSACTION_ID);
 
 		assertEquals(l3Cache.get(decoratedRepository, query), Arrays.asList(1, 2));
 		assertEquals(l3Cache.get(decoratedRepository, query), Arrays.asList(1, 2));
@@ -199,4 +212,208 @@ public class L3CacheTest extends AbstractMolgenisSpringTest
 		verify(decoratedRepository, atLeast(0)).getEntityType();
 		verifyNoMoreInteractions(decoratedRepository);
 	}
+
+	@Test
+	public void testAfterCommitTransactionDirtyEntity()
+	{
+		Fetch idAttributeFetch = new Fetch().field(entityType.getIdAttribute().getName());
+		Query<Entity> nlQuery = new QueryImpl<>().eq(COUNTRY, "NL");
+		Query<Entity> gbQuery = new QueryImpl<>().eq(COUNTRY, "GB");
+		Query<Entity> deQuery = new QueryImpl<>().eq(COUNTRY, "DE");
+		when(decoratedRepository.findAll(new QueryImpl<>(nlQuery).fetch(idAttributeFetch))).thenReturn(
+				Stream.of(entity1, entity2));
+		when(decoratedRepository.findAll(new QueryImpl<>(gbQuery).fetch(idAttributeFetch))).thenReturn(
+				Stream.of(entity3)).thenReturn(Stream.empty());
+		when(decoratedRepository.findAll(new QueryImpl<>(deQuery).fetch(idAttributeFetch))).thenReturn(Stream.empty()).thenReturn(Stream.of(entity3));
+
+		assertEquals(l3Cache.get(decoratedRepository, nlQuery), Arrays.asList(1, 2));
+		assertEquals(l3Cache.get(decoratedRepository, gbQuery), Collections.singletonList(3));
+		assertEquals(l3Cache.get(decoratedRepository, deQuery), Collections.emptyList());
+
+		// entity 3 moved from GB to DE
+		Entity updatedEntity3 = new DynamicEntity(entityType);
+		updatedEntity3.set(ID, 3);
+		updatedEntity3.set(COUNTRY, "DE");
+		write(() -> l3Cache.putWritten(entityType, updatedEntity3));
+		when(transactionInformation.getDirtyRepositories()).thenReturn(Collections.singleton(repositoryName));
+		when(transactionInformation.getDirtyEntities()).thenReturn(
+				Collections.singleton(EntityKey.create(repositoryName, 3)));
+		l3Cache.afterCommitTransaction(TRANSACTION_ID);
+		l3Cache.doCleanupAfterCompletion(TRANSACTION_ID);
+
+		assertEquals(l3Cache.get(decoratedRepository, nlQuery), Arrays.asList(1, 2));
+		assertEquals(l3Cache.get(decoratedRepository, gbQuery), Collections.emptyList());
+		assertEquals(l3Cache.get(decoratedRepository, deQuery), Collections.singletonList(3));
+
+		verify(decoratedRepository, times(1)).findAll(new QueryImpl<>(nlQuery).fetch(idAttributeFetch));
+		verify(decoratedRepository, times(2)).findAll(new QueryImpl<>(gbQuery).fetch(idAttributeFetch));
+		verify(decoratedRepository, times(2)).findAll(new QueryImpl<>(deQuery).fetch(idAttributeFetch));
+		verify(decoratedRepository, never()).findAll(ArgumentMatchers.<Stream<Object>>any());
+	}
+
+	@Test
+	public void testAfterCommitTransactionDeletedEntity()
+	{
+		Fetch idAttributeFetch = new Fetch().field(entityType.getIdAttribute().getName());
+		Query<Entity> nlQuery = new QueryImpl<>().eq(COUNTRY, "NL");
+		Query<Entity> gbQuery = new QueryImpl<>().eq(COUNTRY, "GB");
+		when(decoratedRepository.findAll(new QueryImpl<>(nlQuery).fetch(idAttributeFetch))).thenReturn(
+				Stream.of(entity1, entity2));
+		when(decoratedRepository.findAll(new QueryImpl<>(gbQuery).fetch(idAttributeFetch))).thenReturn(
+				Stream.of(entity3)).thenReturn(Stream.empty());
+
+		assertEquals(l3Cache.get(decoratedRepository, nlQuery), Arrays.asList(1, 2));
+		assertEquals(l3Cache.get(decoratedRepository, gbQuery), Collections.singletonList(3));
+
+		write(() -> l3Cache.putDeleted(entityType, 3));
+		when(transactionInformation.getDirtyRepositories()).thenReturn(Collections.singleton(repositoryName));
+		when(transactionInformation.getDirtyEntities()).thenReturn(
+				Collections.singleton(EntityKey.create(repositoryName, 3)));
+		l3Cache.afterCommitTransaction(TRANSACTION_ID);
+		l3Cache.doCleanupAfterCompletion(TRANSACTION_ID);
+
+		assertEquals(l3Cache.get(decoratedRepository, nlQuery), Arrays.asList(1, 2));
+		assertEquals(l3Cache.get(decoratedRepository, gbQuery), Collections.emptyList());
+
+		verify(decoratedRepository, times(1)).findAll(new QueryImpl<>(nlQuery).fetch(idAttributeFetch));
+		verify(decoratedRepository, times(2)).findAll(new QueryImpl<>(gbQuery).fetch(idAttributeFetch));
+	}
+
+	@Test
+	public void testAfterCommitTransactionUnknownDirtyEntity()
+	{
+		Fetch idAttributeFetch = new Fetch().field(entityType.getIdAttribute().getName());
+		Query<Entity> nlQuery = new QueryImpl<>().eq(COUNTRY, "NL");
+		when(decoratedRepository.findAll(new QueryImpl<>(nlQuery).fetch(idAttributeFetch))).thenReturn(
+				Stream.of(entity1, entity2)).thenReturn(Stream.of(entity1));
+		assertEquals(l3Cache.get(decoratedRepository, nlQuery), Arrays.asList(1, 2));
+
+		// entity 2 changed outside of the decorated repository, so its new value is unknown
+		l3Cache.transactionStarted(TRANSACTION_ID);
+		when(transactionInformation.getDirtyRepositories()).thenReturn(Collections.singleton(repositoryName));
+		when(transactionInformation.getDirtyEntities()).thenReturn(
+				Collections.singleton(EntityKey.create(repositoryName, 2)));
+		l3Cache.afterCommitTransaction(TRANSACTION_ID);
+		l3Cache.doCleanupAfterCompletion(TRANSACTION_ID);
+
+		assertEquals(l3Cache.get(decoratedRepository, nlQuery), Collections.singletonList(1));
+		verify(decoratedRepository, times(2)).findAll(new QueryImpl<>(nlQuery).fetch(idAttributeFetch));
+		verify(decoratedRepository, never()).findAll(ArgumentMatchers.<Stream<Object>>any());
+	}
+
+	@Test
+	public void testAfterCommitTransactionDirtyEntityOffset()
+	{
+		Fetch idAttributeFetch = new Fetch().field(entityType.getIdAttribute().getName());
+		Query<Entity> query = new QueryImpl<>().eq(COUNTRY, "NL").offset(1).pageSize(1);
+		when(decoratedRepository.findAll(new QueryImpl<>(query).fetch(idAttributeFetch))).thenReturn(
+				Stream.of(entity2)).thenReturn(Stream.of(entity1));
+		assertEquals(l3Cache.get(decoratedRepository, query), Collections.singletonList(2));
+
+		write(() -> l3Cache.putWritten(entityType, entity3));
+		when(transactionInformation.getDirtyRepositories()).thenReturn(Collections.singleton(repositoryName));
+		when(transactionInformation.getDirtyEntities()).thenReturn(
+				Collections.singleton(EntityKey.create(repositoryName, 3)));
+		l3Cache.afterCommitTransaction(TRANSACTION_ID);
+		l3Cache.doCleanupAfterCompletion(TRANSACTION_ID);
+
+		assertEquals(l3Cache.get(decoratedRepository, query), Collections.singletonList(1));
+	}
+
+	@Test
+	public void testAfterCommitTransactionEntirelyDirtyRepository()
+	{
+		Fetch idAttributeFetch = new Fetch().field(entityType.getIdAttribute().getName());
+		Query<Entity> query = new QueryImpl<>().eq(COUNTRY, "NL");
+		when(decoratedRepository.findAll(new QueryImpl<>(query).fetch(idAttributeFetch))).thenReturn(
+				Stream.of(entity1, entity2)).thenReturn(Stream.of(entity2));
+		assertEquals(l3Cache.get(decoratedRepository, query), Arrays.asList(1, 2));
+
+		when(transactionInformation.getDirtyRepositories()).thenReturn(Collections.singleton(repositoryName));
+		when(transactionInformation.getEntirelyDirtyRepositories()).thenReturn(
+				Collections.singleton(repositoryName));
+		when(transactionInformation.getDirtyEntities()).thenReturn(
+				Collections.singleton(EntityKey.create(repositoryName, 3)));
+		l3Cache.afterCommitTransaction(TRANSACTION_ID);
+
+		assertEquals(l3Cache.get(decoratedRepository, query), Collections.singletonList(2));
+		verify(decoratedRepository, never()).findAll(ArgumentMatchers.<Stream<Object>>any());
+	}
+
+	@Test
+	public void testAfterCommitTransactionDirtyReferencedRepository()
+	{
+		Fetch idAttributeFetch = new Fetch().field(entityType.getIdAttribute().getName());
+		Query<Entity> nestedQuery = new QueryImpl<>().eq(CAPITAL + ".name", "Amsterdam");
+		Query<Entity> query = new QueryImpl<>().eq(COUNTRY, "NL");
+		when(decoratedRepository.findAll(new QueryImpl<>(nestedQuery).fetch(idAttributeFetch))).thenReturn(
+				Stream.of(entity1)).thenReturn(Stream.of(entity2));
+		when(decoratedRepository.findAll(new QueryImpl<>(query).fetch(idAttributeFetch))).thenReturn(
+				Stream.of(entity1, entity2));
+		assertEquals(l3Cache.get(decoratedRepository, nestedQuery), Collections.singletonList(1));
+		assertEquals(l3Cache.get(decoratedRepository, query), Arrays.asList(1, 2));
+
+		when(transactionInformation.getDirtyRepositories()).thenReturn(Collections.singleton(refEntityType.getId()));
+		when(transactionInformation.getDirtyEntities()).thenReturn(
+				Collections.singleton(EntityKey.create(refEntityType.getId(), "Amsterdam")));
+		l3Cache.afterCommitTransaction(TRANSACTION_ID);
+
+		assertEquals(l3Cache.get(decoratedRepository, nestedQuery), Collections.singletonList(2));
+		assertEquals(l3Cache.get(decoratedRepository, query), Arrays.asList(1, 2));
+		verify(decoratedRepository, times(1)).findAll(new QueryImpl<>(query).fetch(idAttributeFetch));
+	}
+
+	@Test
+	public void testAfterRemoteCommitDirtyRepository()
+	{
+		Fetch idAttributeFetch = new Fetch().field(entityType.getIdAttribute().getName());
+		Query<Entity> fetchLessQuery = new QueryImpl<>().eq(COUNTRY, "NL").fetch(idAttributeFetch);
+
+		when(decoratedRepository.findAll(fetchLessQuery)).thenReturn(Stream.of(entity1, entity2));
+
+		Query<Entity> query = new QueryImpl<>().eq(COUNTRY, "NL");
+		assertEquals(l3Cache.get(decoratedRepository, query), Arrays.asList(1, 2));
+
+		l3Cache.afterRemoteCommit(Collections.emptySet(), Collections.emptySet(),
+				Collections.singleton(repositoryName));
+
+		when(decoratedRepository.findAll(fetchLessQuery)).thenReturn(Stream.of(entity3, entity2));
+		assertEquals(l3Cache.get(decoratedRepository, query), Arrays.asList(3, 2));
+		verify(decoratedRepository, times(2)).findAll(fetchLessQuery);
+	}
+
+	@Test
+	public void testRemoteCommitsMissed()
+	{
+		Fetch idAttributeFetch = new Fetch().field(entityType.getIdAttribute().getName());
+		Query<Entity> fetchLessQuery = new QueryImpl<>().eq(COUNTRY, "NL").fetch(idAttributeFetch);
+
+		when(decoratedRepository.findAll(fetchLessQuery)).thenReturn(Stream.of(entity1, entity2));
+
+		Query<Entity> query = new QueryImpl<>().eq(COUNTRY, "NL");
+		assertEquals(l3Cache.get(decoratedRepository, query), Arrays.asList(1, 2));
+
+		l3Cache.remoteCommitsMissed();
+
+		when(decoratedRepository.findAll(fetchLessQuery)).thenReturn(Stream.of(entity3, entity2));
+		assertEquals(l3Cache.get(decoratedRepository, query), Arrays.asList(3, 2));
+		verify(decoratedRepository, times(2)).findAll(fetchLessQuery);
+	}
+
+	/**
+	 * Runs a write action in the transaction with id {@link #TRANSACTION_ID}.
+	 */
+	private void write(Runnable action)
+	{
+		l3Cache.transactionStarted(TRANSACTION_ID);
+		TransactionSynchronizationManager.bindResource(TRANSACTION_ID_RESOURCE_NAME, TRANSACTION_ID);
+		try
+		{
+			action.run();
+		}
+		finally
+		{
+			TransactionSynchronizationManager.unbindResource(TRANSACTION_ID_RESOURCE_NAME);
+		}
+	}
 }
@@ -0,0 +1,106 @@
+package org.molgenis.data.cache.l3;
+
+import org.molgenis.data.AbstractMolgenisSpringTest;
+import org.molgenis.data.Entity;
+import org.molgenis.data.Query;
+import org.molgenis.data.meta.model.AttributeFactory;
+import org.molgenis.data.meta.model.EntityType;
+import org.molgenis.data.meta.model.EntityTypeFactory;
+import org.molgenis.data.support.DynamicEntity;
+import org.molgenis.data.support.QueryImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.time.LocalDate;
+import java.util.Collections;
+
+import static java.util.Arrays.asList;
+import static org.molgenis.data.meta.AttributeType.*;
+import static org.molgenis.data.meta.model.EntityType.AttributeRole.ROLE_ID;
+import static org.testng.Assert.assertEquals;
+
+public class QueryMatcherTest extends AbstractMolgenisSpringTest
+{
+	@Autowired
+	private EntityTypeFactory entityTypeFactory;
+
+	@Autowired
+	private AttributeFactory attributeFactory;
+
+	private EntityType entityType;
+	private EntityType refEntityType;
+	private Entity entity;
+
+	@BeforeClass
+	public void setUpBeforeClass()
+	{
+		refEntityType = entityTypeFactory.create("City");
+		refEntityType.addAttribute(attributeFactory.create().setName("name"), ROLE_ID);
+		Entity capital = new DynamicEntity(refEntityType);
+		capital.set("name", "Amsterdam");
+
+		entityType = entityTypeFactory.create("Country");
+		entityType.addAttribute(attributeFactory.create().setName("id").setDataType(INT), ROLE_ID);
+		entityType.addAttribute(attributeFactory.create().setName("name"));
+		entityType.addAttribute(attributeFactory.create().setName("population").setDataType(LONG));
+		entityType.addAttribute(attributeFactory.create().setName("founded").setDataType(DATE));
+		entityType.addAttribute(attributeFactory.create().setName("capital").setDataType(XREF).setRefEntity(refEntityType));
+		entityType.addAttribute(attributeFactory.create().setName("cities").setDataType(MREF).setRefEntity(refEntityType));
+
+		entity = new DynamicEntity(entityType);
+		entity.set("id", 1);
+		entity.set("name", "Netherlands");
+		entity.set("population", 17000000L);
+		entity.set("founded", LocalDate.of(1581, 7, 26));
+		entity.set("capital", capital);
+		entity.set("cities", Collections.singletonList(capital));
+	}
+
+	@DataProvider(name = "couldMatchProvider")
+	public static Object[][] couldMatchProvider()
+	{
+		return new Object[][] { { new QueryImpl<>(), true }, { new QueryImpl<>().eq("name", "Netherlands"), true },
+				{ new QueryImpl<>().eq("name", "netherlands"), true }, { new QueryImpl<>().eq("name", "Belgium"), false },
+				{ new QueryImpl<>().eq("name", null), false }, { new QueryImpl<>().in("id", asList(2, 3)), false },
+				{ new QueryImpl<>().in("id", asList(1, 3)), true },
+				{ new QueryImpl<>().gt("population", 10000000L), true },
+				{ new QueryImpl<>().lt("population", 10000000), false },
+				{ new QueryImpl<>().rng("founded", LocalDate.of(1500, 1, 1), LocalDate.of(1600, 1, 1)), true },
+				{ new QueryImpl<>().rng("founded", LocalDate.of(1800, 1, 1), LocalDate.of(1900, 1, 1)), false },
+				{ new QueryImpl<>().eq("capital", "Amsterdam"), true },
+				{ new QueryImpl<>().eq("capital", "Rotterdam"), false },
+				{ new QueryImpl<>().eq("cities", "Amsterdam"), true },
+				{ new QueryImpl<>().eq("cities", "Rotterdam"), false },
+				{ new QueryImpl<>().eq("name", "Netherlands").and().eq("id", 2), false },
+				{ new QueryImpl<>().eq("name", "Belgium").or().eq("id", 1), true },
+				{ new QueryImpl<>().eq("name", "Belgium").or().eq("id", 2), false },
+				{ new QueryImpl<>().eq("name", "Belgium").and().eq("id", 2).or().eq("id", 3), true },
+				{ new QueryImpl<>().nest().eq("name", "Belgium").or().eq("id", 2).unnest().and().eq("id", 1), false },
+				{ new QueryImpl<>().not().eq("name", "Netherlands"), true },
+				{ new QueryImpl<>().not().eq("name", "Belgium"), true },
+				{ new QueryImpl<>().like("name", "Belgium"), true }, { new QueryImpl<>().search("Belgium"), true },
+				{ new QueryImpl<>().eq("capital.name", "Rotterdam"), true } };
+	}
+
+	@Test(dataProvider = "couldMatchProvider")
+	public void testCouldMatch(Query<Entity> query, boolean couldMatch)
+	{
+		assertEquals(QueryMatcher.couldMatch(query, entityType, entity), couldMatch);
+	}
+
+	@Test
+	public void testGetReferencedEntityTypeIds()
+	{
+		assertEquals(QueryMatcher.getReferencedEntityTypeIds(new QueryImpl<>().eq("capital.name", "Amsterdam"),
+				entityType), Collections.singleton(refEntityType.getId()));
+	}
+
+	@Test
+	public void testGetReferencedEntityTypeIdsNotNested()
+	{
+		assertEquals(QueryMatcher.getReferencedEntityTypeIds(new QueryImpl<>().eq("capital", "Amsterdam"), entityType),
+				Collections.emptySet());
+	}
+}
@@ -9,7 +9,6 @@ import org.molgenis.test.AbstractMockitoTest;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
-import java.util.Map;
 import java.util.Optional;
 
 import static java.util.Optional.empty;
@@ -23,13 +22,13 @@ public class CombinedEntityCacheTest extends AbstractMockitoTest
 	@Mock
 	private EntityHydration entityHydration;
 	@Mock
-	private Cache<EntityKey, Optional<Map<String, Object>>> cache;
+	private Cache<EntityKey, Optional<DehydratedEntity>> cache;
 	@Mock
 	EntityType entityType;
 	@Mock
 	Entity entity;
 	@Mock
-	Map<String, Object> dehydratedEntity;
+	DehydratedEntity dehydratedEntity;
 
 	@BeforeMethod
 	public void beforeMethod()
@@ -0,0 +1,96 @@
+package org.molgenis.data.cache.utils;
+
+import org.molgenis.data.meta.AttributeType;
+import org.molgenis.data.meta.model.Attribute;
+import org.molgenis.data.meta.model.EntityType;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.molgenis.data.meta.AttributeType.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class DehydratedEntityTest
+{
+	private DehydratedEntitySchema schema;
+
+	@BeforeMethod
+	public void setUpBeforeMethod()
+	{
+		List<Attribute> attributes = newArrayList(createAttribute("id", STRING), createAttribute("bool", BOOL),
+				createAttribute("int", INT), createAttribute("long", LONG), createAttribute("decimal", DECIMAL),
+				createAttribute("mref", MREF));
+		Attribute computedAttribute = createAttribute("computed", INT);
+		when(computedAttribute.hasExpression()).thenReturn(true);
+		attributes.add(computedAttribute);
+
+		EntityType entityType = mock(EntityType.class);
+		when(entityType.getId()).thenReturn("entityType");
+		when(entityType.getAtomicAttributes()).thenReturn(attributes);
+		schema = DehydratedEntitySchema.create(entityType);
+	}
+
+	private static Attribute createAttribute(String name, AttributeType attributeType)
+	{
+		Attribute attribute = mock(Attribute.class);
+		when(attribute.getName()).thenReturn(name);
+		when(attribute.getDataType()).thenReturn(attributeType);
+		return attribute;
+	}
+
+	@Test
+	public void testSchema()
+	{
+		assertEquals(schema.getNrAttributes(), 6);
+		assertEquals(schema.getNrObjectSlots(), 2);
+		assertEquals(schema.getNrPrimitiveSlots(), 4);
+		assertEquals(schema.getAttributeIndex("decimal"), 4);
+		assertEquals(schema.getAttributeIndex("computed"), -1);
+	}
+
+	@Test
+	public void testSetValueGet()
+	{
+		DehydratedEntity dehydratedEntity = new DehydratedEntity(schema);
+		dehydratedEntity.setValue(0, "id0");
+		dehydratedEntity.setValue(1, true);
+		dehydratedEntity.setValue(2, -3);
+		dehydratedEntity.setValue(3, Long.MAX_VALUE);
+		dehydratedEntity.setValue(4, 1.23);
+		dehydratedEntity.setValue(5, newArrayList("ref0", "ref1"));
+
+		assertEquals(dehydratedEntity.get("id"), "id0");
+		assertEquals(dehydratedEntity.get("bool"), true);
+		assertEquals(dehydratedEntity.get("int"), -3);
+		assertEquals(dehydratedEntity.get("long"), Long.MAX_VALUE);
+		assertEquals(dehydratedEntity.get("decimal"), 1.23);
+		assertEquals(dehydratedEntity.get("mref"), newArrayList("ref0", "ref1"));
+		assertNull(dehydratedEntity.get("computed"));
+	}
+
+	@Test
+	public void testSetValueNull()
+	{
+		DehydratedEntity dehydratedEntity = new DehydratedEntity(schema);
+		for (int i = 0; i < schema.getNrAttributes(); ++i)
+		{
+			dehydratedEntity.setValue(i, null);
+			assertNull(dehydratedEntity.getValue(i));
+		}
+	}
+
+	@Test
+	public void testSetValueFalseIsNotNull()
+	{
+		DehydratedEntity dehydratedEntity = new DehydratedEntity(schema);
+		dehydratedEntity.setValue(1, false);
+		dehydratedEntity.setValue(2, null);
+		assertEquals(dehydratedEntity.get("bool"), false);
+		assertNull(dehydratedEntity.get("int"));
+	}
+}
@@ -23,15 +23,19 @@ import java.util.Map;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
-import static java.util.Collections.*;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.molgenis.data.EntityTestHarness.*;
 import static org.molgenis.data.meta.AttributeType.ONE_TO_MANY;
 import static org.molgenis.data.meta.AttributeType.XREF;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 @ContextConfiguration(classes = { TestHarnessConfig.class })
@@ -44,6 +48,7 @@ public class EntityHydrationTest extends AbstractMolgenisSpringTest
 	private Entity hydratedEntity;
 	private Map<String, Object> dehydratedEntity;
 	private EntityHydration entityHydration;
+	private EntityManager entityManager;
 
 	@Captor
 	private ArgumentCaptor<EntityType> entityTypeArgumentCaptor;
@@ -95,7 +100,7 @@ public class EntityHydrationTest extends AbstractMolgenisSpringTest
 	public void setUpBeforeMethod()
 	{
 		// mock entity manager
-		EntityManager entityManager = when(
+		entityManager = when(
 				mock(EntityManager.class).create(entityType, EntityManager.CreationMode.NO_POPULATE)).thenReturn(
 				new EntityWithComputedAttributes(new DynamicEntity(entityType))).getMock();
 		when(entityManager.getReference(entityTypeArgumentCaptor.capture(), eq("0"))).thenReturn(refEntities.get(0));
@@ -107,7 +112,7 @@ public class EntityHydrationTest extends AbstractMolgenisSpringTest
 	@Test
 	public void hydrateTest()
 	{
-		Entity actualHydratedEntity = entityHydration.hydrate(dehydratedEntity, entityType);
+		Entity actualHydratedEntity = entityHydration.hydrate(entityHydration.dehydrate(hydratedEntity), entityType);
 		assertTrue(EntityUtils.equals(actualHydratedEntity, hydratedEntity));
 		// check that it has retrieved references of type TypeTestRef
 		assertTrue(entityTypeArgumentCaptor.getAllValues()
@@ -118,8 +123,25 @@ public class EntityHydrationTest extends AbstractMolgenisSpringTest
 	@Test
 	public void dehydrateTest()
 	{
-		Map<String, Object> actualDehydratedEntity = entityHydration.dehydrate(hydratedEntity);
-		assertEquals(actualDehydratedEntity, dehydratedEntity);
+		DehydratedEntity actualDehydratedEntity = entityHydration.dehydrate(hydratedEntity);
+		assertEquals(actualDehydratedEntity.getSchema().getNrAttributes(), dehydratedEntity.size());
+		dehydratedEntity.forEach(
+				(attributeName, value) -> assertEquals(actualDehydratedEntity.get(attributeName), value, attributeName));
+	}
+
+	@Test
+	public void hydrateOtherEntityTypeInstance()
+	{
+		DehydratedEntity actualDehydratedEntity = entityHydration.dehydrate(hydratedEntity);
+		EntityType otherEntityType = mock(EntityType.class);
+		when(otherEntityType.getId()).thenReturn(entityType.getId());
+		Attribute stringAttr = entityType.getAttribute(ATTR_STRING);
+		when(otherEntityType.getAtomicAttributes()).thenReturn(singleton(stringAttr));
+		Entity entity = mock(Entity.class);
+		when(entityManager.create(otherEntityType, EntityManager.CreationMode.NO_POPULATE)).thenReturn(entity);
+
+		assertSame(entityHydration.hydrate(actualDehydratedEntity, otherEntityType), entity);
+		verify(entity).set(ATTR_STRING, "string1");
 	}
 
 	@Test
@@ -135,13 +157,14 @@ public class EntityHydrationTest extends AbstractMolgenisSpringTest
 		when(oneToManyEntity1.getIdValue()).thenReturn(oneToManyEntity1IdValue);
 		when(entity.getEntities(attrName)).thenReturn(newArrayList(oneToManyEntity0, oneToManyEntity1));
 		EntityType entityType = mock(EntityType.class);
+		when(entityType.getId()).thenReturn("entityTypeId");
 		Attribute oneToManyAttr = mock(Attribute.class);
 		when(oneToManyAttr.getName()).thenReturn(attrName);
 		when(oneToManyAttr.getDataType()).thenReturn(ONE_TO_MANY);
 		when(entityType.getAtomicAttributes()).thenReturn(singleton(oneToManyAttr));
 		when(entity.getEntityType()).thenReturn(entityType);
-		assertEquals(entityHydration.dehydrate(entity),
-				singletonMap(attrName, newArrayList(oneToManyEntity0IdValue, oneToManyEntity1IdValue)));
+		assertEquals(entityHydration.dehydrate(entity).get(attrName),
+				newArrayList(oneToManyEntity0IdValue, oneToManyEntity1IdValue));
 	}
 
 	@Test
@@ -154,11 +177,48 @@ public class EntityHydrationTest extends AbstractMolgenisSpringTest
 		when(manyToOneEntity.getIdValue()).thenReturn(manyToOneEntityIdValue);
 		when(entity.getEntity(attrName)).thenReturn(manyToOneEntity);
 		EntityType entityType = mock(EntityType.class);
+		when(entityType.getId()).thenReturn("entityTypeId");
 		Attribute xrefAttr = mock(Attribute.class);
 		when(xrefAttr.getName()).thenReturn(attrName);
 		when(xrefAttr.getDataType()).thenReturn(XREF);
 		when(entityType.getAtomicAttributes()).thenReturn(singleton(xrefAttr));
 		when(entity.getEntityType()).thenReturn(entityType);
-		assertEquals(entityHydration.dehydrate(entity), singletonMap(attrName, manyToOneEntityIdValue));
+		assertEquals(entityHydration.dehydrate(entity).get(attrName), manyToOneEntityIdValue);
+	}
+
+	@Test
+	public void dehydrateEntityTypeInstancesWithSameAttributesShareSchema()
+	{
+		Attribute xrefAttr = mock(Attribute.class);
+		when(xrefAttr.getName()).thenReturn("attr");
+		when(xrefAttr.getDataType()).thenReturn(XREF);
+		DehydratedEntity dehydratedEntity = entityHydration.dehydrate(createEntity("entityTypeId", xrefAttr));
+		DehydratedEntity otherDehydratedEntity = entityHydration.dehydrate(createEntity("entityTypeId", xrefAttr));
+		assertSame(otherDehydratedEntity.getSchema(), dehydratedEntity.getSchema());
+	}
+
+	@Test
+	public void dehydrateEntityTypeInstancesWithOtherAttributeTypeDoNotShareSchema()
+	{
+		Attribute xrefAttr = mock(Attribute.class);
+		when(xrefAttr.getName()).thenReturn("attr");
+		when(xrefAttr.getDataType()).thenReturn(XREF);
+		Attribute oneToManyAttr = mock(Attribute.class);
+		when(oneToManyAttr.getName()).thenReturn("attr");
+		when(oneToManyAttr.getDataType()).thenReturn(ONE_TO_MANY);
+		DehydratedEntity dehydratedEntity = entityHydration.dehydrate(createEntity("entityTypeId", xrefAttr));
+		DehydratedEntity otherDehydratedEntity = entityHydration.dehydrate(
+				createEntity("entityTypeId", oneToManyAttr));
+		assertNotSame(otherDehydratedEntity.getSchema(), dehydratedEntity.getSchema());
+	}
+
+	private static Entity createEntity(String entityTypeId, Attribute attribute)
+	{
+		EntityType entityType = mock(EntityType.class);
+		when(entityType.getId()).thenReturn(entityTypeId);
+		when(entityType.getAtomicAttributes()).thenReturn(singleton(attribute));
+		Entity entity = mock(Entity.class);
+		when(entity.getEntityType()).thenReturn(entityType);
+		return entity;
 	}
 }
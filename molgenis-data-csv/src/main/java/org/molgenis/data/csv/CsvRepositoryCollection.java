@@ -57,6 +57,16 @@ public class CsvRepositoryCollection extends FileRepositoryCollection
 		// no operation
 	}
 
+	@Override
+	public CsvRepositoryCollection reopen()
+	{
+		CsvRepositoryCollection csvRepositoryCollection = new CsvRepositoryCollection(file, (CellProcessor[]) null);
+		csvRepositoryCollection.cellProcessors = cellProcessors;
+		csvRepositoryCollection.entityTypeFactory = entityTypeFactory;
+		csvRepositoryCollection.attrMetaFactory = attrMetaFactory;
+		return csvRepositoryCollection;
+	}
+
 	@Override
 	public Iterable<String> getEntityTypeIds()
 	{
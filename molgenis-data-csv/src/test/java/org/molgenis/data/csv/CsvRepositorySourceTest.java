@@ -1,9 +1,11 @@
 package org.molgenis.data.csv;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.apache.commons.io.FileUtils;
 import org.molgenis.data.AbstractMolgenisSpringTest;
 import org.molgenis.data.MolgenisInvalidFormatException;
+import org.molgenis.data.file.processor.TrimProcessor;
 import org.molgenis.data.meta.model.AttributeFactory;
 import org.molgenis.data.meta.model.EntityTypeFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,8 +17,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
-import static org.testng.Assert.assertEquals;
-import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.*;
 
 public class CsvRepositorySourceTest extends AbstractMolgenisSpringTest
 {
@@ -42,6 +43,22 @@ public class CsvRepositorySourceTest extends AbstractMolgenisSpringTest
 
 	}
 
+	@Test
+	public void reopen() throws IOException
+	{
+		InputStream in = getClass().getResourceAsStream("/testdata.csv");
+		File csvFile = new File(FileUtils.getTempDirectory(), "testdata.csv");
+		FileCopyUtils.copy(in, new FileOutputStream(csvFile));
+
+		CsvRepositoryCollection repo = new CsvRepositoryCollection(csvFile, new TrimProcessor());
+		repo.setEntityTypeFactory(entityTypeFactory);
+		repo.setAttributeFactory(attrMetaFactory);
+		CsvRepositoryCollection reopenedRepo = repo.reopen();
+		assertNotSame(reopenedRepo, repo);
+		assertEquals(Lists.newArrayList(reopenedRepo.getRepository("testdata").iterator()).size(),
+				Lists.newArrayList(repo.getRepository("testdata").iterator()).size());
+	}
+
 	@Test
 	public void getRepositoriesZip() throws IOException, MolgenisInvalidFormatException
 	{
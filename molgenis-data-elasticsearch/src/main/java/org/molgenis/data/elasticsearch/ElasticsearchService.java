@@ -13,22 +13,40 @@ import org.molgenis.data.Repository;
 import org.molgenis.data.aggregation.AggregateQuery;
 import org.molgenis.data.aggregation.AggregateResult;
 import org.molgenis.data.elasticsearch.client.ClientFacade;
+import org.molgenis.data.elasticsearch.client.DocumentActionProcessor;
 import org.molgenis.data.elasticsearch.client.model.SearchHit;
-import org.molgenis.data.elasticsearch.client.model.SearchHits;
 import org.molgenis.data.elasticsearch.generator.ContentGenerators;
 import org.molgenis.data.elasticsearch.generator.model.*;
 import org.molgenis.data.index.IndexService;
 import org.molgenis.data.index.SearchService;
+import org.molgenis.data.index.exception.IndexException;
 import org.molgenis.data.meta.AttributeType;
 import org.molgenis.data.meta.IllegalAttributeTypeException;
 import org.molgenis.data.meta.model.EntityType;
+import org.molgenis.jobs.Progress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
+import static java.text.MessageFormat.format;
+import static java.util.Collections.emptyList;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.molgenis.data.support.EntityTypeUtils.createFetchForReindexing;
 
 /**
@@ -37,27 +55,54 @@ import static org.molgenis.data.support.EntityTypeUtils.createFetchForReindexing
 @Component
 public class ElasticsearchService implements SearchService, IndexService
 {
+	private static final Logger LOG = LoggerFactory.getLogger(ElasticsearchService.class);
+
 	private static final int BATCH_SIZE = 1000;
+	private static final int PROGRESS_INTERVAL_BATCHES = 10;
+	private static final String NO_REFRESH_INTERVAL = "-1";
 	public static final int MAX_BATCH_SIZE = 10000;
 
 	private final ClientFacade clientFacade;
 	private final ContentGenerators contentGenerators;
 	private final DataService dataService;
-
-	public ElasticsearchService(ClientFacade clientFacade, ContentGenerators contentGenerators, DataService dataService)
+	private final int reindexThreads;
+	/**
+	 * workers that create documents during index rebuilds, shared by concurrent rebuilds
+	 */
+	private final ExecutorService reindexExecutorService;
+
+	public ElasticsearchService(ClientFacade clientFacade, ContentGenerators contentGenerators, DataService dataService,
+			@Value("${elasticsearch.reindex.threads:4}") int reindexThreads)
 	{
 		this.clientFacade = requireNonNull(clientFacade);
 		this.contentGenerators = requireNonNull(contentGenerators);
 		this.dataService = requireNonNull(dataService);
+		if (reindexThreads <= 0)
+		{
+			throw new IllegalArgumentException("Property 'elasticsearch.reindex.threads' must be greater than 0");
+		}
+		this.reindexThreads = reindexThreads;
+		this.reindexExecutorService = new DelegatingSecurityContextExecutorService(
+				newFixedThreadPool(reindexThreads));
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		reindexExecutorService.shutdownNow();
 	}
 
+	/**
+	 * Creates a versioned index and an alias, named after the entity type, that refers to it.
+	 */
 	@Override
 	public void createIndex(EntityType entityType)
 	{
-		Index index = contentGenerators.createIndex(entityType);
-		IndexSettings indexSettings = IndexSettings.create();
+		Index alias = contentGenerators.createIndex(entityType);
+		Index index = alias.createVersion(System.currentTimeMillis());
 		Mapping mapping = contentGenerators.createMapping(entityType);
-		clientFacade.createIndex(index, indexSettings, Stream.of(mapping));
+		clientFacade.createIndex(index, IndexSettings.create(), Stream.of(mapping));
+		clientFacade.updateAlias(alias, index, emptyList());
 	}
 
 	@Override
@@ -70,23 +115,184 @@ public class ElasticsearchService implements SearchService, IndexService
 	@Override
 	public void deleteIndex(EntityType entityType)
 	{
-		Index index = contentGenerators.createIndex(entityType);
-		clientFacade.deleteIndex(index);
+		Index alias = contentGenerators.createIndex(entityType);
+		List<Index> indexes = clientFacade.getAliasedIndexes(alias);
+		if (indexes.isEmpty())
+		{
+			// index created before indexes were versioned
+			clientFacade.deleteIndex(alias);
+		}
+		else
+		{
+			clientFacade.deleteIndexes(indexes);
+		}
 	}
 
 	@Override
 	public void rebuildIndex(Repository<? extends Entity> repository)
+	{
+		rebuildIndex(repository, null);
+	}
+
+	/**
+	 * Rebuilds the index of a repository without interrupting searches. A new version of the index is created and
+	 * filled next to the current version, the alias of the entity type is switched to the new version when it is
+	 * complete and the previous version is deleted.
+	 */
+	@Override
+	public void rebuildIndex(Repository<? extends Entity> repository, @Nullable Progress progress)
+	{
+		EntityType entityType = repository.getEntityType();
+		Index alias = contentGenerators.createIndex(entityType);
+		deleteUnusedIndexes(alias);
+
+		Index index = alias.createVersion(System.currentTimeMillis());
+		IndexSettings bulkLoadIndexSettings = IndexSettings.builder().setRefreshInterval(NO_REFRESH_INTERVAL).build();
+		Mapping mapping = contentGenerators.createMapping(entityType);
+		clientFacade.createIndex(index, bulkLoadIndexSettings, Stream.of(mapping));
+		try
+		{
+			indexAll(repository, index, progress);
+			clientFacade.updateIndexSettings(index, IndexSettings.create());
+			clientFacade.refreshIndex(index);
+		}
+		catch (RuntimeException e)
+		{
+			deleteIndexQuietly(index);
+			throw e;
+		}
+
+		List<Index> previousIndexes = clientFacade.getAliasedIndexes(alias);
+		if (previousIndexes.isEmpty() && clientFacade.indexesExist(alias))
+		{
+			// an index created before indexes were versioned has the name of the alias and cannot be replaced
+			// atomically
+			clientFacade.deleteIndex(alias);
+		}
+		clientFacade.updateAlias(alias, index, previousIndexes);
+		previousIndexes.forEach(this::deleteIndexQuietly);
+	}
+
+	/**
+	 * Deletes versions of an index that no alias refers to, e.g. left behind by a failed rebuild.
+	 */
+	private void deleteUnusedIndexes(Index alias)
+	{
+		List<Index> aliasedIndexes = clientFacade.getAliasedIndexes(alias);
+		clientFacade.getIndexVersions(alias)
+					.stream()
+					.filter(index -> !aliasedIndexes.contains(index))
+					.forEach(this::deleteIndexQuietly);
+	}
+
+	private void deleteIndexQuietly(Index index)
+	{
+		try
+		{
+			clientFacade.deleteIndex(index);
+		}
+		catch (RuntimeException e)
+		{
+			LOG.warn("Error deleting index '{}'", index.getName(), e);
+		}
+	}
+
+	/**
+	 * Indexes all entities of a repository. Entities are read in batches by the calling thread, while the shared pool
+	 * of workers creates the documents and adds them to a bulk processor that sends bulk requests concurrently. The
+	 * reindexing fetch makes the calling thread resolve all references that end up in the documents, so the workers
+	 * do not access the database outside of the transaction of the calling thread.
+	 */
+	private void indexAll(Repository<? extends Entity> repository, Index index, @Nullable Progress progress)
 	{
 		EntityType entityType = repository.getEntityType();
+		long total = progress != null ? repository.count() : 0L;
+		AtomicLong count = new AtomicLong(0L);
+		AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		int maxBatchesInProgress = 2 * reindexThreads;
+		Semaphore batchesInProgress = new Semaphore(maxBatchesInProgress);
+		try (DocumentActionProcessor documentActionProcessor = clientFacade.createDocumentActionProcessor())
+		{
+			AtomicLong nrBatches = new AtomicLong(0L);
+			try
+			{
+				repository.forEachBatched(createFetchForReindexing(entityType), entities ->
+				{
+					acquire(batchesInProgress, 1);
+					List<Entity> batch = new ArrayList<>(entities);
+					try
+					{
+						reindexExecutorService.execute(() -> indexBatch(index, batch, documentActionProcessor, count,
+								failure, batchesInProgress));
+					}
+					catch (RejectedExecutionException e)
+					{
+						batchesInProgress.release();
+						throw new IndexException("Index rebuild rejected, the service is shutting down");
+					}
+					throwIfFailed(failure);
+					if (progress != null && nrBatches.incrementAndGet() % PROGRESS_INTERVAL_BATCHES == 0)
+					{
+						progress.status(
+								format("Indexed {0} of {1} {2} entities", count.get(), total, entityType.getId()));
+					}
+				}, BATCH_SIZE);
+			}
+			finally
+			{
+				// wait for the workers to finish the submitted batches before closing the processor
+				batchesInProgress.acquireUninterruptibly(maxBatchesInProgress);
+			}
+			throwIfFailed(failure);
+		}
+
+		if (progress != null)
+		{
+			progress.status(format("Indexed {0} {1} entities", count.get(), entityType.getId()));
+		}
+	}
+
+	private void indexBatch(Index index, List<Entity> batch, DocumentActionProcessor documentActionProcessor,
+			AtomicLong count, AtomicReference<RuntimeException> failure, Semaphore batchesInProgress)
+	{
+		try
+		{
+			if (failure.get() == null)
+			{
+				batch.forEach(entity -> documentActionProcessor.add(toDocumentAction(index, entity)));
+				count.addAndGet(batch.size());
+			}
+		}
+		catch (RuntimeException e)
+		{
+			failure.compareAndSet(null, e);
+		}
+		finally
+		{
+			batchesInProgress.release();
+		}
+	}
 
-		if (hasIndex(entityType))
+	private static void acquire(Semaphore semaphore, int permits)
+	{
+		try
 		{
-			deleteIndex(entityType);
+			semaphore.acquire(permits);
 		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IndexException("Interrupted while rebuilding index");
+		}
+	}
 
-		createIndex(entityType);
-		repository.forEachBatched(createFetchForReindexing(entityType),
-				entities -> index(entityType, entities.stream()), BATCH_SIZE);
+	private static void throwIfFailed(AtomicReference<RuntimeException> failure)
+	{
+		RuntimeException e = failure.get();
+		if (e != null)
+		{
+			throw e;
+		}
 	}
 
 	@Override
@@ -110,12 +316,15 @@ public class ElasticsearchService implements SearchService, IndexService
 		return clientFacade.getCount(queryBuilder, index);
 	}
 
+	/**
+	 * Searches the ids of the entities that match a query. Results that fit in a single batch are retrieved with one
+	 * from/size request. Unpaged queries and pages beyond the first batch are retrieved lazily in batches while the
+	 * stream is consumed.
+	 */
 	@Override
 	public Stream<Object> search(EntityType entityType, Query<Entity> q)
 	{
-		int from = q.getOffset();
-
-		return search(entityType, q, from, q.getPageSize());
+		return search(entityType, q, q.getOffset(), q.getPageSize());
 	}
 
 	private Stream<Object> search(EntityType entityType, Query<Entity> q, int offset, int pageSize)
@@ -123,31 +332,35 @@ public class ElasticsearchService implements SearchService, IndexService
 		QueryBuilder query = contentGenerators.createQuery(q, entityType);
 		Sort sort = q.getSort() != null ? contentGenerators.createSorts(q.getSort(), entityType) : null;
 		Index index = contentGenerators.createIndex(entityType);
-		Stream<SearchHit> searchHits = Stream.empty();
 
-		boolean done = false;
-		int currentOffset;
-		int i = 0;
-		while (!done)
+		Stream<SearchHit> searchHits;
+		if (pageSize != 0 && offset + pageSize <= MAX_BATCH_SIZE)
 		{
-			int batchSize = pageSize < MAX_BATCH_SIZE && pageSize != 0 ? pageSize : MAX_BATCH_SIZE;
-			currentOffset = offset + (i * MAX_BATCH_SIZE);
-
-			SearchHits currentSearchHits = clientFacade.search(query, currentOffset, batchSize, sort, index);
-			searchHits = Streams.concat(searchHits, currentSearchHits.getHits().stream());
-
-			if (currentSearchHits.getHits().size() < MAX_BATCH_SIZE)
+			searchHits = clientFacade.search(query, offset, pageSize, sort, index).getHits().stream();
+		}
+		else
+		{
+			int batchSize = pageSize != 0 ? Math.min(offset + pageSize, MAX_BATCH_SIZE) : MAX_BATCH_SIZE;
+			searchHits = searchAfter(query, sort, index, batchSize).skip(offset);
+			if (pageSize != 0)
 			{
-				done = true;
+				searchHits = searchHits.limit(pageSize);
 			}
-
-			if (pageSize != 0) pageSize -= MAX_BATCH_SIZE;
-			i++;
 		}
-
 		return toEntityIds(entityType, searchHits.map(SearchHit::getId));
 	}
 
+	/**
+	 * Returns a stream of all hits of a query that retrieves the next batch of hits when the current batch has been
+	 * consumed. The first batch is retrieved immediately, so that an unknown index is reported by this method.
+	 */
+	private Stream<SearchHit> searchAfter(QueryBuilder query, @Nullable Sort sort, Index index, int batchSize)
+	{
+		SearchHitBatchIterator searchHitBatchIterator = new SearchHitBatchIterator(query, sort, index, batchSize);
+		searchHitBatchIterator.hasNext();
+		return Streams.stream(searchHitBatchIterator).flatMap(List::stream);
+	}
+
 	private static Stream<Object> toEntityIds(EntityType entityType, Stream<String> documentIdStream)
 	{
 		return documentIdStream.map(documentId -> ElasticsearchService.toEntityId(entityType, documentId));
@@ -253,4 +466,55 @@ public class ElasticsearchService implements SearchService, IndexService
 		Iterators.partition(entityIds.iterator(), BATCH_SIZE)
 				 .forEachRemaining(batchEntityIds -> deleteAll(entityType, batchEntityIds.stream()));
 	}
+
+	/**
+	 * Iterates over the hits of a query in batches. Each batch continues after the sort values of the last hit of the
+	 * previous batch.
+	 */
+	private class SearchHitBatchIterator implements Iterator<List<SearchHit>>
+	{
+		private final QueryBuilder query;
+		private final Sort sort;
+		private final Index index;
+		private final int batchSize;
+
+		private List<Object> searchAfter;
+		private List<SearchHit> nextBatch;
+		private boolean lastBatchRetrieved;
+
+		SearchHitBatchIterator(QueryBuilder query, Sort sort, Index index, int batchSize)
+		{
+			this.query = query;
+			this.sort = sort;
+			this.index = index;
+			this.batchSize = batchSize;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			if (nextBatch == null && !lastBatchRetrieved)
+			{
+				nextBatch = clientFacade.searchAfter(query, searchAfter, batchSize, sort, index).getHits();
+				lastBatchRetrieved = nextBatch.size() < batchSize;
+				if (!nextBatch.isEmpty())
+				{
+					searchAfter = nextBatch.get(nextBatch.size() - 1).getSortValues();
+				}
+			}
+			return nextBatch != null && !nextBatch.isEmpty();
+		}
+
+		@Override
+		public List<SearchHit> next()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			List<SearchHit> batch = nextBatch;
+			nextBatch = null;
+			return batch;
+		}
+	}
 }
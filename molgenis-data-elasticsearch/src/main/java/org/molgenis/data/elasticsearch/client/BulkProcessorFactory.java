@@ -4,19 +4,64 @@ import org.elasticsearch.action.bulk.BulkProcessor;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.function.Consumer;
+
 /**
- * Creates Elasticsearch bulk processors that log bulk updates.
+ * Creates Elasticsearch bulk processors that log bulk updates and report failed bulk requests.
  */
 class BulkProcessorFactory
 {
 	private static final Logger LOG = LoggerFactory.getLogger(BulkProcessorFactory.class);
 
-	BulkProcessor create(Client client)
+	static final int DEFAULT_CONCURRENT_REQUESTS = 2;
+	static final int DEFAULT_BULK_ACTIONS = 1000;
+	static final int DEFAULT_BULK_SIZE_MB = 5;
+	static final int DEFAULT_FLUSH_INTERVAL_SECONDS = 0;
+
+	private final int concurrentRequests;
+	private final int bulkActions;
+	private final int bulkSizeMb;
+	private final int flushIntervalSeconds;
+
+	BulkProcessorFactory()
+	{
+		this(DEFAULT_CONCURRENT_REQUESTS, DEFAULT_BULK_ACTIONS, DEFAULT_BULK_SIZE_MB, DEFAULT_FLUSH_INTERVAL_SECONDS);
+	}
+
+	/**
+	 * @param concurrentRequests   number of bulk requests that can be executed while new actions are being added
+	 * @param bulkActions          number of actions after which a bulk request is executed
+	 * @param bulkSizeMb           size of the actions in megabytes after which a bulk request is executed
+	 * @param flushIntervalSeconds interval after which a bulk request is executed regardless of its number of
+	 *                             actions or size, 0 to disable
+	 */
+	BulkProcessorFactory(int concurrentRequests, int bulkActions, int bulkSizeMb, int flushIntervalSeconds)
 	{
-		return BulkProcessor.builder(client, new BulkProcessor.Listener()
+		if (concurrentRequests < 0 || bulkActions <= 0 || bulkSizeMb <= 0 || flushIntervalSeconds < 0)
+		{
+			throw new IllegalArgumentException(String.format(
+					"Invalid bulk processor settings: concurrentRequests=%d, bulkActions=%d, bulkSizeMb=%d, flushIntervalSeconds=%d",
+					concurrentRequests, bulkActions, bulkSizeMb, flushIntervalSeconds));
+		}
+		this.concurrentRequests = concurrentRequests;
+		this.bulkActions = bulkActions;
+		this.bulkSizeMb = bulkSizeMb;
+		this.flushIntervalSeconds = flushIntervalSeconds;
+	}
+
+	/**
+	 * @param failureHandler receives a message for each bulk request that failed or contains failed actions, is
+	 *                       called from the threads that execute the bulk requests
+	 */
+	BulkProcessor create(Client client, Consumer<String> failureHandler)
+	{
+		BulkProcessor.Builder builder = BulkProcessor.builder(client, new BulkProcessor.Listener()
 		{
 			@Override
 			public void beforeBulk(long executionId, BulkRequest request)
@@ -29,7 +74,9 @@ class BulkProcessorFactory
 			{
 				if (response.hasFailures())
 				{
-					LOG.error("Error executing bulk: {}", response.buildFailureMessage());
+					String failureMessage = response.buildFailureMessage();
+					LOG.error("Error executing bulk: {}", failureMessage);
+					failureHandler.accept(failureMessage);
 				}
 				LOG.trace("Executed bulk composed of {} actions", request.numberOfActions());
 			}
@@ -38,7 +85,16 @@ class BulkProcessorFactory
 			public void afterBulk(long executionId, BulkRequest request, Throwable failure)
 			{
 				LOG.warn("Error executing bulk", failure);
+				failureHandler.accept(failure.toString());
 			}
-		}).build();
+		})
+													 .setConcurrentRequests(concurrentRequests)
+													 .setBulkActions(bulkActions)
+													 .setBulkSize(new ByteSizeValue(bulkSizeMb, ByteSizeUnit.MB));
+		if (flushIntervalSeconds > 0)
+		{
+			builder.setFlushInterval(TimeValue.timeValueSeconds(flushIntervalSeconds));
+		}
+		return builder.build();
 	}
 }
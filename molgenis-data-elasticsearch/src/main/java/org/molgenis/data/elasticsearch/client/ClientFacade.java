@@ -4,17 +4,23 @@ import org.apache.lucene.search.Explanation;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ResourceAlreadyExistsException;
 import org.elasticsearch.ResourceNotFoundException;
-import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.ShardOperationFailedException;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesResponse;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesResponse;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequestBuilder;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexResponse;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequestBuilder;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
+import org.elasticsearch.action.admin.indices.get.GetIndexRequestBuilder;
+import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequestBuilder;
 import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
-import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequestBuilder;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsResponse;
 import org.elasticsearch.action.delete.DeleteRequestBuilder;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.explain.ExplainRequestBuilder;
@@ -26,13 +32,14 @@ import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.ShardSearchFailure;
 import org.elasticsearch.action.support.replication.ReplicationResponse;
 import org.elasticsearch.client.Client;
-import org.elasticsearch.client.Requests;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.mapper.UidFieldMapper;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.Aggregations;
 import org.elasticsearch.search.sort.SortBuilder;
-import org.molgenis.data.MolgenisDataException;
+import org.elasticsearch.search.sort.SortBuilders;
 import org.molgenis.data.MolgenisQueryException;
 import org.molgenis.data.elasticsearch.client.model.SearchHit;
 import org.molgenis.data.elasticsearch.client.model.SearchHits;
@@ -40,25 +47,25 @@ import org.molgenis.data.elasticsearch.generator.model.*;
 import org.molgenis.data.index.exception.IndexAlreadyExistsException;
 import org.molgenis.data.index.exception.IndexException;
 import org.molgenis.data.index.exception.UnknownIndexException;
-import org.molgenis.util.UnexpectedEnumException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import static java.lang.String.format;
+import static java.util.Arrays.asList;
 import static java.util.Arrays.stream;
 import static java.util.Collections.singletonList;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.*;
-import static org.elasticsearch.action.DocWriteRequest.OpType.INDEX;
 import static org.molgenis.data.elasticsearch.ElasticsearchService.MAX_BATCH_SIZE;
 
 /**
@@ -79,12 +86,17 @@ public class ClientFacade implements Closeable
 	private final BulkProcessorFactory bulkProcessorFactory;
 
 	public ClientFacade(Client client)
+	{
+		this(client, new BulkProcessorFactory());
+	}
+
+	ClientFacade(Client client, BulkProcessorFactory bulkProcessorFactory)
 	{
 		this.client = requireNonNull(client);
 		this.settingsBuilder = new SettingsContentBuilder();
 		this.mappingSourceBuilder = new MappingContentBuilder();
 		this.sortContentBuilder = new SortContentBuilder();
-		this.bulkProcessorFactory = new BulkProcessorFactory();
+		this.bulkProcessorFactory = requireNonNull(bulkProcessorFactory);
 	}
 
 	public void createIndex(Index index, IndexSettings indexSettings, Stream<Mapping> mappingStream)
@@ -184,7 +196,7 @@ public class ClientFacade implements Closeable
 		deleteIndexes(singletonList(index));
 	}
 
-	private void deleteIndexes(List<Index> indexes)
+	public void deleteIndexes(List<Index> indexes)
 	{
 		if (LOG.isTraceEnabled())
 		{
@@ -220,11 +232,171 @@ public class ClientFacade implements Closeable
 		}
 	}
 
+	/**
+	 * Returns the indexes that an alias refers to.
+	 *
+	 * @return indexes, empty if the alias does not exist
+	 */
+	public List<Index> getAliasedIndexes(Index alias)
+	{
+		if (LOG.isTraceEnabled())
+		{
+			LOG.trace("Retrieving indexes for alias '{}' ...", alias.getName());
+		}
+
+		GetAliasesRequestBuilder getAliasesRequest = client.admin().indices().prepareGetAliases(alias.getName());
+
+		GetAliasesResponse getAliasesResponse;
+		try
+		{
+			getAliasesResponse = getAliasesRequest.get();
+		}
+		catch (ElasticsearchException e)
+		{
+			LOG.error("", e);
+			throw new IndexException(format("Error retrieving indexes for alias '%s'.", alias.getName()));
+		}
+
+		List<Index> indexes = new ArrayList<>();
+		getAliasesResponse.getAliases().forEach(entry ->
+		{
+			if (entry.value != null && !entry.value.isEmpty())
+			{
+				indexes.add(Index.create(entry.key));
+			}
+		});
+		if (LOG.isDebugEnabled())
+		{
+			LOG.debug("Retrieved indexes '{}' for alias '{}'.", toString(indexes), alias.getName());
+		}
+		return indexes;
+	}
+
+	/**
+	 * Returns all versioned indexes of an alias, including the ones that the alias does not refer to.
+	 */
+	public List<Index> getIndexVersions(Index alias)
+	{
+		String indexWildcard = alias.getVersionWildcard();
+		if (LOG.isTraceEnabled())
+		{
+			LOG.trace("Retrieving indexes '{}' ...", indexWildcard);
+		}
+
+		GetIndexRequestBuilder getIndexRequest = client.admin().indices().prepareGetIndex().addIndices(indexWildcard);
+
+		GetIndexResponse getIndexResponse;
+		try
+		{
+			getIndexResponse = getIndexRequest.get();
+		}
+		catch (ElasticsearchException e)
+		{
+			LOG.error("", e);
+			throw new IndexException(format("Error retrieving indexes '%s'.", indexWildcard));
+		}
+
+		List<Index> indexes = stream(getIndexResponse.getIndices()).map(Index::create).collect(toList());
+		if (LOG.isDebugEnabled())
+		{
+			LOG.debug("Retrieved indexes '{}'.", toString(indexes));
+		}
+		return indexes;
+	}
+
+	/**
+	 * Atomically lets an alias refer to the given index instead of the previous indexes.
+	 */
+	public void updateAlias(Index alias, Index index, List<Index> previousIndexes)
+	{
+		if (LOG.isTraceEnabled())
+		{
+			LOG.trace("Updating alias '{}' to index '{}' ...", alias.getName(), index.getName());
+		}
+
+		IndicesAliasesRequestBuilder indicesAliasesRequest = client.admin().indices().prepareAliases();
+		indicesAliasesRequest.addAlias(index.getName(), alias.getName());
+		previousIndexes.forEach(
+				previousIndex -> indicesAliasesRequest.removeAlias(previousIndex.getName(), alias.getName()));
+
+		IndicesAliasesResponse indicesAliasesResponse;
+		try
+		{
+			indicesAliasesResponse = indicesAliasesRequest.get();
+		}
+		catch (ElasticsearchException e)
+		{
+			LOG.error("", e);
+			throw new IndexException(
+					format("Error updating alias '%s' to index '%s'.", alias.getName(), index.getName()));
+		}
+
+		if (!indicesAliasesResponse.isAcknowledged())
+		{
+			throw new IndexException(
+					format("Error updating alias '%s' to index '%s'.", alias.getName(), index.getName()));
+		}
+		if (LOG.isDebugEnabled())
+		{
+			LOG.debug("Updated alias '{}' to index '{}'.", alias.getName(), index.getName());
+		}
+	}
+
+	/**
+	 * Updates the dynamic settings (number of replicas and refresh interval) of an index.
+	 */
+	public void updateIndexSettings(Index index, IndexSettings indexSettings)
+	{
+		if (LOG.isTraceEnabled())
+		{
+			LOG.trace("Updating settings of index '{}' ...", index.getName());
+		}
+
+		Settings settings = Settings.builder()
+									.put("index.number_of_replicas", indexSettings.getNumberOfReplicas())
+									.put("index.refresh_interval", indexSettings.getRefreshInterval())
+									.build();
+		UpdateSettingsRequestBuilder updateSettingsRequest = client.admin()
+																   .indices()
+																   .prepareUpdateSettings(index.getName())
+																   .setSettings(settings);
+
+		UpdateSettingsResponse updateSettingsResponse;
+		try
+		{
+			updateSettingsResponse = updateSettingsRequest.get();
+		}
+		catch (ResourceNotFoundException e)
+		{
+			LOG.debug("", e);
+			throw new UnknownIndexException(index.getName());
+		}
+		catch (ElasticsearchException e)
+		{
+			LOG.error("", e);
+			throw new IndexException(format("Error updating settings of index '%s'.", index.getName()));
+		}
+
+		if (!updateSettingsResponse.isAcknowledged())
+		{
+			throw new IndexException(format("Error updating settings of index '%s'.", index.getName()));
+		}
+		if (LOG.isDebugEnabled())
+		{
+			LOG.debug("Updated settings of index '{}'.", index.getName());
+		}
+	}
+
 	public void refreshIndexes()
 	{
 		refreshIndexes(singletonList(Index.create("_all")));
 	}
 
+	public void refreshIndex(Index index)
+	{
+		refreshIndexes(singletonList(index));
+	}
+
 	private void refreshIndexes(List<Index> indexes)
 	{
 		if (LOG.isTraceEnabled())
@@ -349,7 +521,26 @@ public class ClientFacade implements Closeable
 		return search(query, from, size, sort, singletonList(index));
 	}
 
+	/**
+	 * Searches the docs that follow the given sort values. Docs are sorted by the given sort, or by score if no sort is
+	 * given, followed by their uid. The sort values of the last hit therefore identify the position from which the
+	 * next batch is retrieved, without the cost and the result window limit of deep from/size paging.
+	 *
+	 * @param searchAfter sort values of the last hit of the previous batch or null to retrieve the first batch
+	 */
+	public SearchHits searchAfter(QueryBuilder query, @Nullable List<Object> searchAfter, int size, @Nullable Sort sort,
+			Index index)
+	{
+		return search(query, null, searchAfter, size, sort, singletonList(index));
+	}
+
 	private SearchHits search(QueryBuilder query, int from, int size, Sort sort, List<Index> indexes)
+	{
+		return search(query, from, null, size, sort, indexes);
+	}
+
+	private SearchHits search(QueryBuilder query, Integer from, List<Object> searchAfter, int size, Sort sort,
+			List<Index> indexes)
 	{
 		if (size > 10000)
 		{
@@ -360,7 +551,12 @@ public class ClientFacade implements Closeable
 
 		if (LOG.isTraceEnabled())
 		{
-			if (sort != null)
+			if (from == null)
+			{
+				LOG.trace("Searching {} docs after {} in index(es) '{}' with query '{}' sorted by '{}' ...", size,
+						searchAfter, toString(indexes), query, sort);
+			}
+			else if (sort != null)
 			{
 				LOG.trace("Searching docs [{}-{}] in index(es) '{}' with query '{}' sorted by '{}' ...", from,
 						from + size, toString(indexes), query, sort);
@@ -372,7 +568,15 @@ public class ClientFacade implements Closeable
 			}
 		}
 
-		SearchRequestBuilder searchRequest = createSearchRequest(query, from, size, sort, null, indexes);
+		SearchRequestBuilder searchRequest;
+		if (from != null)
+		{
+			searchRequest = createSearchRequest(query, from, size, sort, null, indexes);
+		}
+		else
+		{
+			searchRequest = createSearchAfterRequest(query, searchAfter, size, sort, indexes);
+		}
 
 		SearchResponse searchResponse;
 		try
@@ -451,14 +655,40 @@ public class ClientFacade implements Closeable
 		return searchRequest;
 	}
 
+	private SearchRequestBuilder createSearchAfterRequest(QueryBuilder query, List<Object> searchAfter, int size,
+			Sort sort, List<Index> indexes)
+	{
+		SearchRequestBuilder searchRequest = createSearchRequest(query, null, size, sort, null, indexes);
+		if (sort == null)
+		{
+			searchRequest.addSort(SortBuilders.scoreSort());
+		}
+		searchRequest.addSort(SortBuilders.fieldSort(UidFieldMapper.NAME));
+		if (searchAfter != null)
+		{
+			searchRequest.searchAfter(searchAfter.toArray());
+		}
+		return searchRequest;
+	}
+
 	private SearchHits createSearchResponse(SearchResponse searchResponse)
 	{
 		org.elasticsearch.search.SearchHits searchHits = searchResponse.getHits();
-		List<SearchHit> searchHitList = stream(searchHits.getHits()).map(
-				hit -> SearchHit.create(hit.getId(), hit.getIndex())).collect(toList());
+		List<SearchHit> searchHitList = stream(searchHits.getHits()).map(this::createSearchHit).collect(toList());
 		return SearchHits.create(searchHits.getTotalHits(), searchHitList);
 	}
 
+	private SearchHit createSearchHit(org.elasticsearch.search.SearchHit hit)
+	{
+		SearchHit.Builder searchHit = SearchHit.builder().setId(hit.getId()).setIndex(hit.getIndex());
+		Object[] sortValues = hit.getSortValues();
+		if (sortValues.length > 0)
+		{
+			searchHit.setSortValues(asList(sortValues));
+		}
+		return searchHit.build();
+	}
+
 	public Aggregations aggregate(List<AggregationBuilder> aggregations, QueryBuilder query, Index index)
 	{
 		return aggregate(aggregations, query, singletonList(index));
@@ -532,8 +762,8 @@ public class ClientFacade implements Closeable
 		}
 
 		String indexName = searchHit.getIndex();
-		//FIXME: ClientFacade shouldn't assume that typename equals typename
-		ExplainRequestBuilder explainRequestBuilder = client.prepareExplain(indexName, indexName, searchHit.getId())
+		ExplainRequestBuilder explainRequestBuilder = client.prepareExplain(indexName, Index.getTypeName(indexName),
+				searchHit.getId())
 															.setQuery(query);
 		ExplainResponse explainResponse;
 		try
@@ -569,7 +799,7 @@ public class ClientFacade implements Closeable
 		XContentBuilder source = document.getContent();
 		IndexRequestBuilder indexRequest = client.prepareIndex()
 												 .setIndex(indexName)
-												 .setType(indexName)
+												 .setType(index.getTypeName())
 												 .setId(documentId)
 												 .setSource(source);
 
@@ -615,7 +845,7 @@ public class ClientFacade implements Closeable
 		String documentId = document.getId();
 		DeleteRequestBuilder deleteRequest = client.prepareDelete()
 												   .setIndex(indexName)
-												   .setType(indexName)
+												   .setType(index.getTypeName())
 												   .setId(documentId);
 
 		DeleteResponse deleteResponse;
@@ -646,66 +876,19 @@ public class ClientFacade implements Closeable
 	public void processDocumentActions(Stream<DocumentAction> documentActions)
 	{
 		LOG.trace("Processing document actions ...");
-		BulkProcessor bulkProcessor = bulkProcessorFactory.create(client);
-		try
+		try (DocumentActionProcessor documentActionProcessor = createDocumentActionProcessor())
 		{
-			documentActions.forEachOrdered(documentAction ->
-			{
-				DocWriteRequest docWriteRequest = toDocWriteRequest(documentAction);
-				bulkProcessor.add(docWriteRequest);
-			});
-		}
-		finally
-		{
-			waitForCompletion(bulkProcessor);
-			LOG.debug("Processed document actions.");
+			documentActions.forEachOrdered(documentActionProcessor::add);
 		}
+		LOG.debug("Processed document actions.");
 	}
 
-	private DocWriteRequest toDocWriteRequest(DocumentAction documentAction)
+	/**
+	 * Creates a processor that sends document actions in bulk. The caller is responsible for closing the processor.
+	 */
+	public DocumentActionProcessor createDocumentActionProcessor()
 	{
-		String indexName = documentAction.getIndex().getName();
-		String documentId = documentAction.getDocument().getId();
-
-		DocWriteRequest docWriteRequest;
-		switch (documentAction.getOperation())
-		{
-			case INDEX:
-				XContentBuilder source = documentAction.getDocument().getContent();
-				if (source == null)
-				{
-					throw new IndexException(format("Document action is missing document source '%s'", documentAction));
-				}
-				docWriteRequest = Requests.indexRequest(indexName)
-										  .type(indexName)
-										  .id(documentId)
-										  .source(source)
-										  .opType(INDEX);
-				break;
-			case DELETE:
-				docWriteRequest = Requests.deleteRequest(indexName).type(indexName).id(documentId);
-				break;
-			default:
-				throw new UnexpectedEnumException(documentAction.getOperation());
-		}
-		return docWriteRequest;
-	}
-
-	private void waitForCompletion(BulkProcessor bulkProcessor)
-	{
-		try
-		{
-			boolean isCompleted = bulkProcessor.awaitClose(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-			if (!isCompleted)
-			{
-				throw new MolgenisDataException("Failed to complete bulk request within the given time");
-			}
-		}
-		catch (InterruptedException e)
-		{
-			Thread.currentThread().interrupt();
-			throw new RuntimeException(e);
-		}
+		return new DocumentActionProcessor(bulkProcessorFactory, client);
 	}
 
 	private String[] toIndexNames(List<Index> indexes)
@@ -0,0 +1,92 @@
+package org.molgenis.data.elasticsearch.client;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.Requests;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.molgenis.data.MolgenisDataException;
+import org.molgenis.data.elasticsearch.generator.model.DocumentAction;
+import org.molgenis.data.index.exception.IndexException;
+import org.molgenis.util.UnexpectedEnumException;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static org.elasticsearch.action.DocWriteRequest.OpType.INDEX;
+
+/**
+ * Sends {@link DocumentAction}s to Elasticsearch in bulk requests. Document actions can be added concurrently from
+ * multiple threads, closing the processor waits for all bulk requests to complete and fails if any of them failed.
+ */
+public class DocumentActionProcessor implements AutoCloseable
+{
+	private final Queue<String> bulkFailures = new ConcurrentLinkedQueue<>();
+	private final BulkProcessor bulkProcessor;
+
+	DocumentActionProcessor(BulkProcessorFactory bulkProcessorFactory, Client client)
+	{
+		this.bulkProcessor = bulkProcessorFactory.create(client, bulkFailures::add);
+	}
+
+	public void add(DocumentAction documentAction)
+	{
+		bulkProcessor.add(toDocWriteRequest(documentAction));
+	}
+
+	private static DocWriteRequest toDocWriteRequest(DocumentAction documentAction)
+	{
+		String indexName = documentAction.getIndex().getName();
+		String typeName = documentAction.getIndex().getTypeName();
+		String documentId = documentAction.getDocument().getId();
+
+		DocWriteRequest docWriteRequest;
+		switch (documentAction.getOperation())
+		{
+			case INDEX:
+				XContentBuilder source = documentAction.getDocument().getContent();
+				if (source == null)
+				{
+					throw new IndexException(format("Document action is missing document source '%s'", documentAction));
+				}
+				docWriteRequest = Requests.indexRequest(indexName)
+										  .type(typeName)
+										  .id(documentId)
+										  .source(source)
+										  .opType(INDEX);
+				break;
+			case DELETE:
+				docWriteRequest = Requests.deleteRequest(indexName).type(typeName).id(documentId);
+				break;
+			default:
+				throw new UnexpectedEnumException(documentAction.getOperation());
+		}
+		return docWriteRequest;
+	}
+
+	@Override
+	public void close()
+	{
+		try
+		{
+			boolean isCompleted = bulkProcessor.awaitClose(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			if (!isCompleted)
+			{
+				throw new MolgenisDataException("Failed to complete bulk request within the given time");
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+
+		if (!bulkFailures.isEmpty())
+		{
+			throw new IndexException(
+					format("%d bulk request(s) failed, first failure: %s", bulkFailures.size(), bulkFailures.peek()));
+		}
+	}
+}
@@ -14,6 +14,7 @@ import java.util.List;
 
 import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
+import static org.molgenis.data.elasticsearch.client.BulkProcessorFactory.*;
 
 /**
  * Spring config for Elasticsearch server. Use this in your own app by importing this in your spring config:
@@ -32,6 +33,18 @@ public class ElasticsearchConfig
 	@Value("${elasticsearch.transport.addresses:127.0.0.1:9300}")
 	private List<String> transportAddresses;
 
+	@Value("${elasticsearch.bulk.concurrent.requests:" + DEFAULT_CONCURRENT_REQUESTS + "}")
+	private int bulkConcurrentRequests;
+
+	@Value("${elasticsearch.bulk.actions:" + DEFAULT_BULK_ACTIONS + "}")
+	private int bulkActions;
+
+	@Value("${elasticsearch.bulk.size.mb:" + DEFAULT_BULK_SIZE_MB + "}")
+	private int bulkSizeMb;
+
+	@Value("${elasticsearch.bulk.flush.interval.seconds:" + DEFAULT_FLUSH_INTERVAL_SECONDS + "}")
+	private int bulkFlushIntervalSeconds;
+
 	final RetryTemplate retryTemplate;
 
 	@Autowired
@@ -43,7 +56,9 @@ public class ElasticsearchConfig
 	@Bean(destroyMethod = "close")
 	public ClientFacade elasticsearchClientFacade() throws InterruptedException
 	{
-		return new ClientFacade(clientFactory().createClient());
+		BulkProcessorFactory bulkProcessorFactory = new BulkProcessorFactory(bulkConcurrentRequests, bulkActions,
+				bulkSizeMb, bulkFlushIntervalSeconds);
+		return new ClientFacade(clientFactory().createClient(), bulkProcessorFactory);
 	}
 
 	@Bean
@@ -2,6 +2,9 @@ package org.molgenis.data.elasticsearch.client.model;
 
 import com.google.auto.value.AutoValue;
 
+import javax.annotation.Nullable;
+import java.util.List;
+
 @AutoValue
 @SuppressWarnings("squid:S1610") // Abstract classes without fields should be converted to interfaces
 public abstract class SearchHit
@@ -10,6 +13,12 @@ public abstract class SearchHit
 
 	public abstract String getIndex();
 
+	/**
+	 * @return values by which the hit was sorted or null if the hit was retrieved with from/size paging
+	 */
+	@Nullable
+	public abstract List<Object> getSortValues();
+
 	public static SearchHit create(String newId, String newIndex)
 	{
 		return builder().setId(newId).setIndex(newIndex).build();
@@ -27,6 +36,8 @@ public abstract class SearchHit
 
 		public abstract Builder setIndex(String newIndex);
 
+		public abstract Builder setSortValues(List<Object> newSortValues);
+
 		public abstract SearchHit build();
 	}
 }
@@ -157,6 +157,10 @@ public class QueryGenerator
 			case OR:
 			case NOT:
 				throw new MolgenisQueryException(format("Unexpected query operator [%s]", queryOperator.toString()));
+			case PERMITTED:
+				// access control lists are not part of the index
+				throw new MolgenisQueryException(
+						format("Query operator [%s] not supported by Elasticsearch", queryOperator.toString()));
 			default:
 				throw new UnexpectedEnumException(queryOperator);
 		}
@@ -597,6 +601,7 @@ public class QueryGenerator
 			case NESTED:
 			case NOT:
 			case OR:
+			case PERMITTED:
 			case RANGE:
 			case SEARCH:
 			case SHOULD:
@@ -2,14 +2,56 @@ package org.molgenis.data.elasticsearch.generator.model;
 
 import com.google.auto.value.AutoValue;
 
+/**
+ * Elasticsearch index or alias. The index of an entity type is a versioned index that is accessed through an alias,
+ * the name of the versioned index is the name of the alias followed by a version.
+ */
 @AutoValue
 @SuppressWarnings("squid:S1610") // Abstract classes without fields should be converted to interfaces
 public abstract class Index
 {
+	/**
+	 * Generated index names only contain alphanumeric characters and underscores
+	 */
+	private static final char VERSION_SEPARATOR = '-';
+
 	public abstract String getName();
 
 	public static Index create(String name)
 	{
 		return new AutoValue_Index(name);
 	}
+
+	/**
+	 * Creates a versioned index that can be referred to by this alias.
+	 */
+	public Index createVersion(long version)
+	{
+		return create(getName() + VERSION_SEPARATOR + version);
+	}
+
+	/**
+	 * @return wildcard expression that matches all versioned indexes of this alias
+	 */
+	public String getVersionWildcard()
+	{
+		return getName() + VERSION_SEPARATOR + '*';
+	}
+
+	/**
+	 * @return document type name, the same for an alias and the versioned indexes it refers to
+	 */
+	public String getTypeName()
+	{
+		return getTypeName(getName());
+	}
+
+	/**
+	 * @return document type name for the given index or alias name
+	 */
+	public static String getTypeName(String indexName)
+	{
+		int index = indexName.indexOf(VERSION_SEPARATOR);
+		return index != -1 ? indexName.substring(0, index) : indexName;
+	}
 }
@@ -8,6 +8,7 @@ public abstract class IndexSettings
 {
 	private static final int DEFAULT_NUMBER_OF_SHARDS = 1;
 	private static final int DEFAULT_NUMBER_OF_REPLICAS = 0;
+	private static final String DEFAULT_REFRESH_INTERVAL = "1s";
 
 	/**
 	 * The number of primary shards that an index should have.
@@ -19,6 +20,11 @@ public abstract class IndexSettings
 	 */
 	public abstract int getNumberOfReplicas();
 
+	/**
+	 * How often to make recent changes visible to search, "-1" to disable.
+	 */
+	public abstract String getRefreshInterval();
+
 	public static IndexSettings create()
 	{
 		return builder().build();
@@ -32,7 +38,8 @@ public abstract class IndexSettings
 	public static Builder builder()
 	{
 		return new AutoValue_IndexSettings.Builder().setNumberOfShards(DEFAULT_NUMBER_OF_SHARDS)
-													.setNumberOfReplicas(DEFAULT_NUMBER_OF_REPLICAS);
+													.setNumberOfReplicas(DEFAULT_NUMBER_OF_REPLICAS)
+													.setRefreshInterval(DEFAULT_REFRESH_INTERVAL);
 	}
 
 	@AutoValue.Builder
@@ -42,6 +49,8 @@ public abstract class IndexSettings
 
 		public abstract Builder setNumberOfReplicas(int newNumberOfReplicas);
 
+		public abstract Builder setRefreshInterval(String newRefreshInterval);
+
 		public abstract IndexSettings build();
 	}
 }
@@ -1,22 +1,47 @@
 package org.molgenis.data.elasticsearch;
 
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.quality.Strictness;
 import org.molgenis.data.DataService;
 import org.molgenis.data.Entity;
+import org.molgenis.data.Fetch;
+import org.molgenis.data.Repository;
 import org.molgenis.data.elasticsearch.client.ClientFacade;
+import org.molgenis.data.elasticsearch.client.DocumentActionProcessor;
 import org.molgenis.data.elasticsearch.client.model.SearchHit;
 import org.molgenis.data.elasticsearch.client.model.SearchHits;
 import org.molgenis.data.elasticsearch.generator.ContentGenerators;
+import org.molgenis.data.elasticsearch.generator.model.Document;
+import org.molgenis.data.elasticsearch.generator.model.DocumentAction;
+import org.molgenis.data.elasticsearch.generator.model.Index;
+import org.molgenis.data.elasticsearch.generator.model.IndexSettings;
+import org.molgenis.data.index.exception.IndexException;
+import org.molgenis.data.meta.model.Attribute;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.data.support.QueryImpl;
+import org.molgenis.jobs.Progress;
 import org.molgenis.test.AbstractMockitoTest;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
 import static org.mockito.Mockito.*;
 import static org.molgenis.data.elasticsearch.ElasticsearchService.MAX_BATCH_SIZE;
+import static org.molgenis.data.elasticsearch.generator.model.DocumentAction.Operation.INDEX;
+import static org.molgenis.data.meta.AttributeType.STRING;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 public class ElasticsearchServiceTest extends AbstractMockitoTest
 {
@@ -34,6 +59,9 @@ public class ElasticsearchServiceTest extends AbstractMockitoTest
 	@Mock
 	private EntityType entityType;
 
+	@Mock
+	private Attribute idAttribute;
+
 	public ElasticsearchServiceTest()
 	{
 		super(Strictness.WARN);
@@ -42,7 +70,13 @@ public class ElasticsearchServiceTest extends AbstractMockitoTest
 	@BeforeMethod
 	public void setUpBeforeMethod()
 	{
-		elasticsearchService = new ElasticsearchService(clientFacade, contentGenerators, dataService);
+		elasticsearchService = new ElasticsearchService(clientFacade, contentGenerators, dataService, 2);
+	}
+
+	@AfterMethod
+	public void shutdownAfterMethod()
+	{
+		elasticsearchService.shutdown();
 	}
 
 	@Test
@@ -52,23 +86,23 @@ public class ElasticsearchServiceTest extends AbstractMockitoTest
 		QueryImpl<Entity> query = mock(QueryImpl.class);
 		when(query.getPageSize()).thenReturn(0);
 		when(query.getOffset()).thenReturn(0);
+		when(entityType.getIdAttribute()).thenReturn(idAttribute);
+		when(idAttribute.getDataType()).thenReturn(STRING);
 
-		SearchHits searchHitsBatch = mock(SearchHits.class);
-		when(searchHitsBatch.getHits()).thenReturn(asList(new SearchHit[10000]));
-
-		SearchHits finalSearchHitsBatch = mock(SearchHits.class);
-		when(finalSearchHitsBatch.getHits()).thenReturn(asList(new SearchHit[5000]));
+		when(clientFacade.searchAfter(any(), isNull(), eq(MAX_BATCH_SIZE), any(), any())).thenReturn(
+				createSearchHits(0, MAX_BATCH_SIZE));
+		when(clientFacade.searchAfter(any(), eq(singletonList(MAX_BATCH_SIZE - 1)), eq(MAX_BATCH_SIZE), any(),
+				any())).thenReturn(createSearchHits(MAX_BATCH_SIZE, MAX_BATCH_SIZE));
+		when(clientFacade.searchAfter(any(), eq(singletonList(2 * MAX_BATCH_SIZE - 1)), eq(MAX_BATCH_SIZE), any(),
+				any())).thenReturn(createSearchHits(2 * MAX_BATCH_SIZE, 5000));
 
-		when(clientFacade.search(any(), eq(0), eq(10000), any(), any())).thenReturn(searchHitsBatch);
-		when(clientFacade.search(any(), eq(10000), anyInt(), any(), any())).thenReturn(searchHitsBatch);
-		when(clientFacade.search(any(), eq(20000), anyInt(), any(), any())).thenReturn(finalSearchHitsBatch);
+		Stream<Object> entityIds = elasticsearchService.search(entityType, query);
 
-		elasticsearchService.search(entityType, query);
-
-		verify(clientFacade, times(1)).search(any(), eq(0), eq(MAX_BATCH_SIZE), any(), any());
-		verify(clientFacade, times(1)).search(any(), eq(10000), eq(MAX_BATCH_SIZE), any(), any());
-		verify(clientFacade, times(1)).search(any(), eq(20000), eq(MAX_BATCH_SIZE), any(), any());
-		verifyNoMoreInteractions(clientFacade);
+		// only the first batch is retrieved before the stream is consumed
+		verify(clientFacade, times(1)).searchAfter(any(), any(), anyInt(), any(), any());
+		assertEquals(entityIds.count(), 2 * MAX_BATCH_SIZE + 5000L);
+		verify(clientFacade, times(3)).searchAfter(any(), any(), eq(MAX_BATCH_SIZE), any(), any());
+		verify(clientFacade, never()).search(any(), anyInt(), anyInt(), any(), any());
 	}
 
 	@Test
@@ -97,20 +131,242 @@ public class ElasticsearchServiceTest extends AbstractMockitoTest
 		QueryImpl<Entity> query = mock(QueryImpl.class);
 		when(query.getPageSize()).thenReturn(10001);
 		when(query.getOffset()).thenReturn(5000);
+		when(entityType.getIdAttribute()).thenReturn(idAttribute);
+		when(idAttribute.getDataType()).thenReturn(STRING);
 
-		SearchHits searchHitsBatch = mock(SearchHits.class);
-		when(searchHitsBatch.getHits()).thenReturn(asList(new SearchHit[10000]));
+		when(clientFacade.searchAfter(any(), isNull(), eq(MAX_BATCH_SIZE), any(), any())).thenReturn(
+				createSearchHits(0, MAX_BATCH_SIZE));
+		when(clientFacade.searchAfter(any(), eq(singletonList(MAX_BATCH_SIZE - 1)), eq(MAX_BATCH_SIZE), any(),
+				any())).thenReturn(createSearchHits(MAX_BATCH_SIZE, MAX_BATCH_SIZE));
 
-		SearchHits finalSearchHitsBatch = mock(SearchHits.class);
-		when(finalSearchHitsBatch.getHits()).thenReturn(asList(new SearchHit[1]));
+		List<Object> entityIds = elasticsearchService.search(entityType, query).collect(toList());
 
-		when(clientFacade.search(any(), eq(5000), eq(MAX_BATCH_SIZE), any(), any())).thenReturn(searchHitsBatch);
-		when(clientFacade.search(any(), eq(15000), eq(1), any(), any())).thenReturn(finalSearchHitsBatch);
+		assertEquals(entityIds.size(), 10001);
+		assertEquals(entityIds.get(0), "5000");
+		assertEquals(entityIds.get(10000), "15000");
+		verify(clientFacade, times(2)).searchAfter(any(), any(), eq(MAX_BATCH_SIZE), any(), any());
+		verify(clientFacade, never()).search(any(), anyInt(), anyInt(), any(), any());
+	}
 
-		elasticsearchService.search(entityType, query);
+	/**
+	 * Creates search hits with consecutive ids that are also their sort values.
+	 */
+	private static SearchHits createSearchHits(int firstId, int size)
+	{
+		List<SearchHit> hits = IntStream.range(firstId, firstId + size)
+										.mapToObj(id -> SearchHit.builder()
+																 .setId(String.valueOf(id))
+																 .setIndex("index")
+																 .setSortValues(singletonList(id))
+																 .build())
+										.collect(toList());
+		return SearchHits.create(0, hits);
+	}
 
-		verify(clientFacade, times(1)).search(any(), eq(5000), eq(MAX_BATCH_SIZE), any(), any());
-		verify(clientFacade, times(1)).search(any(), eq(15000), eq(1), any(), any());
-		verifyNoMoreInteractions(clientFacade);
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testElasticsearchServiceInvalidReindexThreads()
+	{
+		new ElasticsearchService(clientFacade, contentGenerators, dataService, 0);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRebuildIndex()
+	{
+		Repository<Entity> repository = mock(Repository.class);
+		when(repository.getEntityType()).thenReturn(entityType);
+		when(repository.count()).thenReturn(3L);
+		when(entityType.getId()).thenReturn("entityTypeId");
+		Entity entity0 = mock(Entity.class);
+		Entity entity1 = mock(Entity.class);
+		Entity entity2 = mock(Entity.class);
+		doAnswer(invocation ->
+		{
+			Consumer<List<Entity>> consumer = invocation.getArgument(1);
+			consumer.accept(asList(entity0, entity1));
+			consumer.accept(singletonList(entity2));
+			return null;
+		}).when(repository).forEachBatched(any(Fetch.class), any(Consumer.class), eq(1000));
+
+		Index alias = Index.create("index");
+		when(contentGenerators.createIndex(entityType)).thenReturn(alias);
+		Index previousIndex = Index.create("index-1");
+		Index unusedIndex = Index.create("index-2");
+		when(clientFacade.getAliasedIndexes(alias)).thenReturn(singletonList(previousIndex));
+		when(clientFacade.getIndexVersions(alias)).thenReturn(asList(previousIndex, unusedIndex));
+		Document document = Document.create("id", null);
+		when(contentGenerators.createDocument(any(Entity.class))).thenReturn(document);
+		DocumentActionProcessor documentActionProcessor = mock(DocumentActionProcessor.class);
+		when(clientFacade.createDocumentActionProcessor()).thenReturn(documentActionProcessor);
+		Progress progress = mock(Progress.class);
+
+		elasticsearchService.rebuildIndex(repository, progress);
+
+		ArgumentCaptor<Index> indexCaptor = ArgumentCaptor.forClass(Index.class);
+		ArgumentCaptor<IndexSettings> indexSettingsCaptor = ArgumentCaptor.forClass(IndexSettings.class);
+		verify(clientFacade).createIndex(indexCaptor.capture(), indexSettingsCaptor.capture(), any(Stream.class));
+		Index index = indexCaptor.getValue();
+		assertTrue(index.getName().startsWith("index-"));
+		assertEquals(index.getTypeName(), "index");
+		assertEquals(indexSettingsCaptor.getValue().getRefreshInterval(), "-1");
+
+		InOrder inOrder = inOrder(clientFacade, documentActionProcessor);
+		inOrder.verify(clientFacade).deleteIndex(unusedIndex);
+		inOrder.verify(documentActionProcessor, times(3)).add(DocumentAction.create(index, document, INDEX));
+		inOrder.verify(documentActionProcessor).close();
+		inOrder.verify(clientFacade).updateIndexSettings(index, IndexSettings.create());
+		inOrder.verify(clientFacade).refreshIndex(index);
+		inOrder.verify(clientFacade).updateAlias(alias, index, singletonList(previousIndex));
+		inOrder.verify(clientFacade).deleteIndex(previousIndex);
+		verify(clientFacade, never()).deleteIndex(alias);
+		verify(progress).status("Indexed 3 entityTypeId entities");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRebuildIndexUnversionedIndex()
+	{
+		Repository<Entity> repository = mock(Repository.class);
+		when(repository.getEntityType()).thenReturn(entityType);
+		Index alias = Index.create("index");
+		when(contentGenerators.createIndex(entityType)).thenReturn(alias);
+		when(clientFacade.indexesExist(alias)).thenReturn(true);
+		when(clientFacade.createDocumentActionProcessor()).thenReturn(mock(DocumentActionProcessor.class));
+
+		elasticsearchService.rebuildIndex(repository);
+
+		InOrder inOrder = inOrder(clientFacade);
+		inOrder.verify(clientFacade).deleteIndex(alias);
+		inOrder.verify(clientFacade).updateAlias(eq(alias), any(Index.class), eq(emptyList()));
+	}
+
+	@Test(expectedExceptions = IndexException.class)
+	@SuppressWarnings("unchecked")
+	public void testRebuildIndexDocumentCreationFails()
+	{
+		Repository<Entity> repository = mock(Repository.class);
+		when(repository.getEntityType()).thenReturn(entityType);
+		Entity entity = mock(Entity.class);
+		doAnswer(invocation ->
+		{
+			Consumer<List<Entity>> consumer = invocation.getArgument(1);
+			consumer.accept(singletonList(entity));
+			return null;
+		}).when(repository).forEachBatched(any(Fetch.class), any(Consumer.class), eq(1000));
+		when(contentGenerators.createIndex(entityType)).thenReturn(Index.create("index"));
+		when(contentGenerators.createDocument(entity)).thenThrow(new IndexException("error"));
+		when(clientFacade.createDocumentActionProcessor()).thenReturn(mock(DocumentActionProcessor.class));
+
+		try
+		{
+			elasticsearchService.rebuildIndex(repository);
+		}
+		finally
+		{
+			ArgumentCaptor<Index> indexCaptor = ArgumentCaptor.forClass(Index.class);
+			verify(clientFacade).createIndex(indexCaptor.capture(), any(IndexSettings.class), any(Stream.class));
+			verify(clientFacade).deleteIndex(indexCaptor.getValue());
+			verify(clientFacade, never()).updateAlias(any(), any(), any());
+		}
+	}
+
+	@Test(expectedExceptions = IndexException.class)
+	@SuppressWarnings("unchecked")
+	public void testRebuildIndexBulkFails()
+	{
+		Repository<Entity> repository = mock(Repository.class);
+		when(repository.getEntityType()).thenReturn(entityType);
+		Entity entity = mock(Entity.class);
+		doAnswer(invocation ->
+		{
+			Consumer<List<Entity>> consumer = invocation.getArgument(1);
+			consumer.accept(singletonList(entity));
+			return null;
+		}).when(repository).forEachBatched(any(Fetch.class), any(Consumer.class), eq(1000));
+		when(contentGenerators.createIndex(entityType)).thenReturn(Index.create("index"));
+		when(contentGenerators.createDocument(entity)).thenReturn(Document.create("id", null));
+		DocumentActionProcessor documentActionProcessor = mock(DocumentActionProcessor.class);
+		doThrow(new IndexException("1 bulk request(s) failed")).when(documentActionProcessor).close();
+		when(clientFacade.createDocumentActionProcessor()).thenReturn(documentActionProcessor);
+
+		try
+		{
+			elasticsearchService.rebuildIndex(repository);
+		}
+		finally
+		{
+			ArgumentCaptor<Index> indexCaptor = ArgumentCaptor.forClass(Index.class);
+			verify(clientFacade).createIndex(indexCaptor.capture(), any(IndexSettings.class), any(Stream.class));
+			verify(clientFacade).deleteIndex(indexCaptor.getValue());
+			verify(clientFacade, never()).updateIndexSettings(any(), any());
+			verify(clientFacade, never()).updateAlias(any(), any(), any());
+		}
+	}
+
+	@Test(expectedExceptions = IndexException.class)
+	@SuppressWarnings("unchecked")
+	public void testRebuildIndexAfterShutdown()
+	{
+		Repository<Entity> repository = mock(Repository.class);
+		when(repository.getEntityType()).thenReturn(entityType);
+		Entity entity = mock(Entity.class);
+		doAnswer(invocation ->
+		{
+			Consumer<List<Entity>> consumer = invocation.getArgument(1);
+			consumer.accept(singletonList(entity));
+			return null;
+		}).when(repository).forEachBatched(any(Fetch.class), any(Consumer.class), eq(1000));
+		when(contentGenerators.createIndex(entityType)).thenReturn(Index.create("index"));
+		DocumentActionProcessor documentActionProcessor = mock(DocumentActionProcessor.class);
+		when(clientFacade.createDocumentActionProcessor()).thenReturn(documentActionProcessor);
+		elasticsearchService.shutdown();
+
+		try
+		{
+			elasticsearchService.rebuildIndex(repository);
+		}
+		finally
+		{
+			verify(documentActionProcessor, never()).add(any(DocumentAction.class));
+			verify(documentActionProcessor).close();
+			verify(clientFacade, never()).updateAlias(any(), any(), any());
+		}
+	}
+
+	@Test
+	public void testCreateIndex()
+	{
+		Index alias = Index.create("index");
+		when(contentGenerators.createIndex(entityType)).thenReturn(alias);
+
+		elasticsearchService.createIndex(entityType);
+
+		ArgumentCaptor<Index> indexCaptor = ArgumentCaptor.forClass(Index.class);
+		verify(clientFacade).createIndex(indexCaptor.capture(), eq(IndexSettings.create()), any());
+		verify(clientFacade).updateAlias(alias, indexCaptor.getValue(), emptyList());
+	}
+
+	@Test
+	public void testDeleteIndex()
+	{
+		Index alias = Index.create("index");
+		when(contentGenerators.createIndex(entityType)).thenReturn(alias);
+		List<Index> indexes = singletonList(Index.create("index-1"));
+		when(clientFacade.getAliasedIndexes(alias)).thenReturn(indexes);
+
+		elasticsearchService.deleteIndex(entityType);
+
+		verify(clientFacade).deleteIndexes(indexes);
+	}
+
+	@Test
+	public void testDeleteIndexUnversionedIndex()
+	{
+		Index alias = Index.create("index");
+		when(contentGenerators.createIndex(entityType)).thenReturn(alias);
+
+		elasticsearchService.deleteIndex(entityType);
+
+		verify(clientFacade).deleteIndex(alias);
 	}
-}
\ No newline at end of file
+}
@@ -7,13 +7,18 @@ import com.google.common.collect.ImmutableList;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ResourceAlreadyExistsException;
 import org.elasticsearch.ResourceNotFoundException;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesResponse;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequestBuilder;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequestBuilder;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexResponse;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequestBuilder;
+import org.elasticsearch.action.admin.indices.get.GetIndexRequestBuilder;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequestBuilder;
 import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequestBuilder;
 import org.elasticsearch.action.delete.DeleteRequestBuilder;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.explain.ExplainRequestBuilder;
@@ -35,6 +40,7 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
 import org.mockito.Mock;
 import org.molgenis.data.elasticsearch.client.model.SearchHit;
 import org.molgenis.data.elasticsearch.generator.model.*;
@@ -48,6 +54,7 @@ import java.util.stream.Stream;
 
 import static ch.qos.logback.classic.Level.*;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -81,6 +88,21 @@ public class ClientFacadeTest
 	@Mock
 	private DeleteIndexResponse deleteIndexResponse;
 
+	@Mock
+	private GetAliasesRequestBuilder getAliasesRequestBuilder;
+
+	@Mock
+	private GetIndexRequestBuilder getIndexRequestBuilder;
+
+	@Mock
+	private IndicesAliasesRequestBuilder indicesAliasesRequestBuilder;
+
+	@Mock
+	private IndicesAliasesResponse indicesAliasesResponse;
+
+	@Mock
+	private UpdateSettingsRequestBuilder updateSettingsRequestBuilder;
+
 	@Mock
 	private RefreshRequestBuilder refreshRequestBuilder;
 
@@ -167,7 +189,9 @@ public class ClientFacadeTest
 	public void setUp() throws Exception
 	{
 		reset(client, adminClient, indicesAdminClient, createIndexRequestBuilder, createIndexResponse,
-				indicesExistsRequestBuilder, deleteIndexRequestBuilder, deleteIndexResponse, refreshRequestBuilder,
+				indicesExistsRequestBuilder, deleteIndexRequestBuilder, deleteIndexResponse, getAliasesRequestBuilder,
+				getIndexRequestBuilder, indicesAliasesRequestBuilder, indicesAliasesResponse,
+				updateSettingsRequestBuilder, refreshRequestBuilder,
 				refreshResponse, searchRequestBuilder, searchResponse, queryBuilder, aggregationBuilder,
 				explainRequestBuilder, explainResponse, indexRequestBuilder, indexResponse, shardInfo,
 				deleteRequestBuilder, deleteResponse, document, xContentBuilder, shardInfo, mockAppender);
@@ -280,6 +304,45 @@ public class ClientFacadeTest
 		clientFacade.deleteIndex(index);
 	}
 
+	@Test(expectedExceptions = IndexException.class, expectedExceptionsMessageRegExp = "Error retrieving indexes for alias 'index'\\.")
+	public void testGetAliasedIndexesThrowsException()
+	{
+		when(indicesAdminClient.prepareGetAliases("index")).thenReturn(getAliasesRequestBuilder);
+		when(getAliasesRequestBuilder.get()).thenThrow(new ElasticsearchException("exception"));
+
+		clientFacade.getAliasedIndexes(Index.create("index"));
+	}
+
+	@Test(expectedExceptions = IndexException.class, expectedExceptionsMessageRegExp = "Error retrieving indexes 'index-\\*'\\.")
+	public void testGetIndexVersionsThrowsException()
+	{
+		when(indicesAdminClient.prepareGetIndex()).thenReturn(getIndexRequestBuilder);
+		when(getIndexRequestBuilder.addIndices("index-*")).thenReturn(getIndexRequestBuilder);
+		when(getIndexRequestBuilder.get()).thenThrow(new ElasticsearchException("exception"));
+
+		clientFacade.getIndexVersions(Index.create("index"));
+	}
+
+	@Test(expectedExceptions = IndexException.class, expectedExceptionsMessageRegExp = "Error updating alias 'index' to index 'index-2'\\.")
+	public void testUpdateAliasNotAcknowledged()
+	{
+		when(indicesAdminClient.prepareAliases()).thenReturn(indicesAliasesRequestBuilder);
+		when(indicesAliasesRequestBuilder.get()).thenReturn(indicesAliasesResponse);
+		when(indicesAliasesResponse.isAcknowledged()).thenReturn(false);
+
+		clientFacade.updateAlias(Index.create("index"), Index.create("index-2"), singletonList(Index.create("index-1")));
+	}
+
+	@Test(expectedExceptions = UnknownIndexException.class, expectedExceptionsMessageRegExp = "Index 'index-1' not found\\.")
+	public void testUpdateIndexSettingsIndexNotFound()
+	{
+		when(indicesAdminClient.prepareUpdateSettings("index-1")).thenReturn(updateSettingsRequestBuilder);
+		when(updateSettingsRequestBuilder.setSettings(any(Settings.class))).thenReturn(updateSettingsRequestBuilder);
+		when(updateSettingsRequestBuilder.get()).thenThrow(new ResourceNotFoundException("exception"));
+
+		clientFacade.updateIndexSettings(Index.create("index-1"), IndexSettings.create());
+	}
+
 	@Test(expectedExceptions = IndexException.class, expectedExceptionsMessageRegExp = "Error refreshing index\\(es\\) '_all'\\.")
 	public void testRefreshIndicesThrowsException()
 	{
@@ -409,6 +472,27 @@ public class ClientFacadeTest
 		clientFacade.search(queryBuilder, 0, 100, ImmutableList.of(index));
 	}
 
+	@Test(expectedExceptions = IndexException.class, expectedExceptionsMessageRegExp = "Error searching docs in index\\(es\\) 'index' with query 'a == b'\\.")
+	public void testSearchAfterThrowsException()
+	{
+		Index index = Index.create("index");
+
+		when(client.prepareSearch("index")).thenReturn(searchRequestBuilder);
+		when(searchRequestBuilder.get()).thenThrow(new ElasticsearchException("Exception"));
+		when(queryBuilder.toString()).thenReturn("a == b");
+
+		try
+		{
+			clientFacade.searchAfter(queryBuilder, singletonList("type#id"), 100, null, index);
+		}
+		finally
+		{
+			verify(searchRequestBuilder).addSort(SortBuilders.scoreSort());
+			verify(searchRequestBuilder).addSort(SortBuilders.fieldSort("_uid"));
+			verify(searchRequestBuilder).searchAfter(new Object[] { "type#id" });
+		}
+	}
+
 	@Test(expectedExceptions = IndexException.class, expectedExceptionsMessageRegExp = "Error aggregating docs in index\\(es\\) 'index'\\.")
 	public void testAggregateThrowsException()
 	{
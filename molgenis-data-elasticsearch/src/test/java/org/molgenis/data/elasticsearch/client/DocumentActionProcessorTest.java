@@ -0,0 +1,60 @@
+package org.molgenis.data.elasticsearch.client;
+
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.client.Client;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.molgenis.data.index.exception.IndexException;
+import org.molgenis.test.AbstractMockitoTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DocumentActionProcessorTest extends AbstractMockitoTest
+{
+	@Mock
+	private BulkProcessorFactory bulkProcessorFactory;
+
+	@Mock
+	private Client client;
+
+	@Mock
+	private BulkProcessor bulkProcessor;
+
+	private DocumentActionProcessor documentActionProcessor;
+	private Consumer<String> failureHandler;
+
+	@BeforeMethod
+	@SuppressWarnings("unchecked")
+	public void setUpBeforeMethod()
+	{
+		ArgumentCaptor<Consumer<String>> failureHandlerCaptor = ArgumentCaptor.forClass(Consumer.class);
+		when(bulkProcessorFactory.create(any(Client.class), failureHandlerCaptor.capture())).thenReturn(bulkProcessor);
+		documentActionProcessor = new DocumentActionProcessor(bulkProcessorFactory, client);
+		failureHandler = failureHandlerCaptor.getValue();
+	}
+
+	@Test
+	public void testClose() throws InterruptedException
+	{
+		when(bulkProcessor.awaitClose(anyLong(), any(TimeUnit.class))).thenReturn(true);
+		documentActionProcessor.close();
+		verify(bulkProcessor).awaitClose(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	@Test(expectedExceptions = IndexException.class, expectedExceptionsMessageRegExp = "2 bulk request\\(s\\) failed, first failure: failure0")
+	public void testCloseBulkFailed() throws InterruptedException
+	{
+		when(bulkProcessor.awaitClose(anyLong(), any(TimeUnit.class))).thenReturn(true);
+		failureHandler.accept("failure0");
+		failureHandler.accept("failure1");
+		documentActionProcessor.close();
+	}
+}
@@ -3,6 +3,7 @@ package org.molgenis.data.excel;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.molgenis.data.Entity;
+import org.molgenis.data.file.processor.AbstractCellProcessor;
 import org.molgenis.data.file.processor.CellProcessor;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.data.support.DynamicEntity;
@@ -20,6 +21,7 @@ public class ExcelEntity extends DynamicEntity
 {
 	private static final long serialVersionUID = 8928375571009145452L;
 	private final transient Row row;
+	private final transient Map<Integer, String> cellValues;
 	private final Map<String, Integer> colNamesMap;
 	private final List<CellProcessor> cellProcessors;
 
@@ -34,6 +36,24 @@ public class ExcelEntity extends DynamicEntity
 		if (colNamesMap == null) throw new IllegalArgumentException("column names map is null");
 
 		this.row = row;
+		this.cellValues = null;
+		this.colNamesMap = colNamesMap;
+		this.cellProcessors = cellProcessors;
+	}
+
+	/**
+	 * Creates an entity for a row that was read by column index, blank cells have a <tt>null</tt> value.
+	 */
+	public ExcelEntity(Map<Integer, String> cellValues, Map<String, Integer> colNamesMap,
+			List<CellProcessor> cellProcessors, EntityType entityType)
+	{
+		super(entityType);
+
+		if (cellValues == null) throw new IllegalArgumentException("cell values is null");
+		if (colNamesMap == null) throw new IllegalArgumentException("column names map is null");
+
+		this.row = null;
+		this.cellValues = cellValues;
 		this.colNamesMap = colNamesMap;
 		this.cellProcessors = cellProcessors;
 	}
@@ -61,15 +81,7 @@ public class ExcelEntity extends DynamicEntity
 			Integer col = colNamesMap.get(attributeName);
 			if (col != null)
 			{
-				Cell cell = row.getCell(col);
-				if (cell != null)
-				{
-					value = ExcelUtils.toValue(cell, cellProcessors);
-				}
-				else
-				{
-					value = null;
-				}
+				value = getCellValue(col);
 			}
 			else
 			{
@@ -81,6 +93,22 @@ public class ExcelEntity extends DynamicEntity
 		return value;
 	}
 
+	private String getCellValue(int col)
+	{
+		String value;
+		if (row != null)
+		{
+			Cell cell = row.getCell(col);
+			value = cell != null ? ExcelUtils.toValue(cell, cellProcessors) : null;
+		}
+		else
+		{
+			value = cellValues.containsKey(col) ? AbstractCellProcessor.processCell(cellValues.get(col), false,
+					cellProcessors) : null;
+		}
+		return value;
+	}
+
 	@Override
 	public void set(String attributeName, Object value)
 	{
@@ -2,10 +2,12 @@ package org.molgenis.data.excel;
 
 import com.google.common.collect.Lists;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.molgenis.data.Entity;
+import org.molgenis.data.MolgenisDataException;
 import org.molgenis.data.MolgenisInvalidFormatException;
 import org.molgenis.data.Repository;
 import org.molgenis.data.file.processor.CellProcessor;
@@ -18,22 +20,42 @@ import org.molgenis.data.meta.model.EntityTypeFactory;
 import org.molgenis.data.support.AbstractWritable.AttributeWriteMode;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import javax.annotation.Nullable;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
 /**
  * Read an excel file and iterate through the sheets.
  * <p>
- * A sheet is exposed as a {@link org.molgenis.data.Repository} with the sheetname as the Repository name
+ * A sheet is exposed as a {@link org.molgenis.data.Repository} with the sheetname as the Repository name. Sheets of
+ * .xlsx files are read as a stream of rows by a {@link XlsxRepository}, sheets of .xls files are loaded in memory and
+ * read by an {@link ExcelRepository}. Sheets can only be written to collections of .xls files, writing to a
+ * collection of a .xlsx file throws a {@link MolgenisDataException}.
  */
 public class ExcelRepositoryCollection extends FileRepositoryCollection
 {
 	private static final String REPOSITORY_COLLECTION_NAME = "EXCEL";
 
 	private final String name;
+	/**
+	 * workbook loaded in memory, null for .xlsx files
+	 */
 	private final Workbook workbook;
+	/**
+	 * streaming workbook, null for .xls files
+	 */
+	private final XlsxWorkbook xlsxWorkbook;
+	/**
+	 * temporary copy of a .xlsx stream, deleted when the collection is closed, null if the collection was not created
+	 * from a .xlsx stream or was reopened
+	 */
+	private final Path spooledFile;
 
 	private EntityTypeFactory entityTypeFactory;
 	private AttributeFactory attributeFactory;
@@ -46,7 +68,22 @@ public class ExcelRepositoryCollection extends FileRepositoryCollection
 	public ExcelRepositoryCollection(File file, CellProcessor... cellProcessors)
 			throws IOException, MolgenisInvalidFormatException
 	{
-		this(file.getName(), new FileInputStream(file), cellProcessors);
+		super(ExcelFileExtensions.getExcel(), cellProcessors);
+		this.name = file.getName();
+		if (ExcelUtils.isOoxmlFile(file))
+		{
+			this.workbook = null;
+			this.xlsxWorkbook = XlsxWorkbook.open(file);
+		}
+		else
+		{
+			try (InputStream in = new FileInputStream(file))
+			{
+				this.workbook = createWorkbook(in);
+			}
+			this.xlsxWorkbook = null;
+		}
+		this.spooledFile = null;
 	}
 
 	public ExcelRepositoryCollection(String name, InputStream in, CellProcessor... cellProcessors)
@@ -54,9 +91,65 @@ public class ExcelRepositoryCollection extends FileRepositoryCollection
 	{
 		super(ExcelFileExtensions.getExcel(), cellProcessors);
 		this.name = name;
+		InputStream magicIn = FileMagic.prepareToCheckMagic(in);
+		if (FileMagic.valueOf(magicIn) == FileMagic.OOXML)
+		{
+			this.workbook = null;
+			this.spooledFile = spool(magicIn);
+			try
+			{
+				this.xlsxWorkbook = XlsxWorkbook.open(spooledFile.toFile());
+			}
+			catch (IOException | MolgenisInvalidFormatException | RuntimeException e)
+			{
+				Files.deleteIfExists(spooledFile);
+				throw e;
+			}
+		}
+		else
+		{
+			this.workbook = createWorkbook(magicIn);
+			this.xlsxWorkbook = null;
+			this.spooledFile = null;
+		}
+	}
+
+	private ExcelRepositoryCollection(ExcelRepositoryCollection collection, XlsxWorkbook xlsxWorkbook)
+	{
+		super(collection.getFileNameExtensions());
+		this.cellProcessors = collection.cellProcessors;
+		this.name = collection.name;
+		this.workbook = null;
+		this.xlsxWorkbook = xlsxWorkbook;
+		this.spooledFile = null;
+		this.entityTypeFactory = collection.entityTypeFactory;
+		this.attributeFactory = collection.attributeFactory;
+	}
+
+	/**
+	 * Copies the stream to a temporary file, so that the parts of the zip package are read from the file instead of
+	 * being kept in memory.
+	 */
+	private static Path spool(InputStream in) throws IOException
+	{
+		Path tempFile = Files.createTempFile("molgenis-", ".xlsx");
+		try
+		{
+			Files.copy(in, tempFile, REPLACE_EXISTING);
+		}
+		catch (IOException e)
+		{
+			Files.deleteIfExists(tempFile);
+			throw e;
+		}
+		return tempFile;
+	}
+
+	private static Workbook createWorkbook(InputStream in) throws IOException, MolgenisInvalidFormatException
+	{
 		try
 		{
-			workbook = WorkbookFactory.create(in);
+			return WorkbookFactory.create(in);
 		}
 		catch (InvalidFormatException e)
 		{
@@ -70,6 +163,53 @@ public class ExcelRepositoryCollection extends FileRepositoryCollection
 		// no operation
 	}
 
+	/**
+	 * Closes the workbook and deletes the temporary copy of a .xlsx stream.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			if (xlsxWorkbook != null)
+			{
+				xlsxWorkbook.close();
+			}
+			else
+			{
+				workbook.close();
+			}
+		}
+		finally
+		{
+			if (spooledFile != null)
+			{
+				Files.deleteIfExists(spooledFile);
+			}
+		}
+	}
+
+	/**
+	 * Reopens the workbook of a .xlsx file. The workbook of a .xls file is loaded in memory and is not reopened.
+	 */
+	@Nullable
+	@Override
+	public ExcelRepositoryCollection reopen()
+	{
+		if (xlsxWorkbook == null)
+		{
+			return null;
+		}
+		try
+		{
+			return new ExcelRepositoryCollection(this, xlsxWorkbook.reopen());
+		}
+		catch (MolgenisInvalidFormatException e)
+		{
+			throw new MolgenisDataException(e);
+		}
+	}
+
 	@Override
 	public Iterable<String> getEntityTypeIds()
 	{
@@ -87,6 +227,11 @@ public class ExcelRepositoryCollection extends FileRepositoryCollection
 	@Override
 	public Repository<Entity> getRepository(String name)
 	{
+		if (xlsxWorkbook != null)
+		{
+			return xlsxWorkbook.hasSheet(name) ? createXlsxRepository(name) : null;
+		}
+
 		Sheet poiSheet = workbook.getSheet(name);
 		if (poiSheet == null)
 		{
@@ -96,18 +241,28 @@ public class ExcelRepositoryCollection extends FileRepositoryCollection
 		return new ExcelRepository(name, poiSheet, entityTypeFactory, attributeFactory, cellProcessors);
 	}
 
+	private XlsxRepository createXlsxRepository(String sheetName)
+	{
+		return new XlsxRepository(xlsxWorkbook, sheetName, entityTypeFactory, attributeFactory, cellProcessors);
+	}
+
 	public int getNumberOfSheets()
 	{
-		return workbook.getNumberOfSheets();
+		return xlsxWorkbook != null ? xlsxWorkbook.getSheetNames().size() : workbook.getNumberOfSheets();
 	}
 
 	public String getSheetName(int i)
 	{
-		return workbook.getSheetName(i);
+		return xlsxWorkbook != null ? xlsxWorkbook.getSheetNames().get(i) : workbook.getSheetName(i);
 	}
 
-	public ExcelRepository getSheet(int i)
+	public Repository<Entity> getSheet(int i)
 	{
+		if (xlsxWorkbook != null)
+		{
+			return createXlsxRepository(getSheetName(i));
+		}
+
 		Sheet poiSheet = workbook.getSheetAt(i);
 		if (poiSheet == null)
 		{
@@ -120,6 +275,7 @@ public class ExcelRepositoryCollection extends FileRepositoryCollection
 	public ExcelSheetWriter createWritable(String entityTypeId, List<Attribute> attributes,
 			AttributeWriteMode attributeWriteMode)
 	{
+		requireWorkbook();
 		Sheet sheet = workbook.createSheet(entityTypeId);
 		return new ExcelSheetWriter(sheet, attributes, attributeWriteMode, cellProcessors);
 	}
@@ -137,9 +293,18 @@ public class ExcelRepositoryCollection extends FileRepositoryCollection
 
 	public void save(OutputStream out) throws IOException
 	{
+		requireWorkbook();
 		workbook.write(out);
 	}
 
+	private void requireWorkbook()
+	{
+		if (workbook == null)
+		{
+			throw new MolgenisDataException("Writing to a streamed .xlsx file is not supported");
+		}
+	}
+
 	@Override
 	public String getName()
 	{
@@ -1,8 +1,13 @@
 package org.molgenis.data.excel;
 
 import org.apache.commons.io.FilenameUtils;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.util.LocaleUtil;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
 import org.molgenis.data.MolgenisDataException;
 import org.molgenis.data.file.processor.AbstractCellProcessor;
 import org.molgenis.data.file.processor.CellProcessor;
@@ -12,8 +17,11 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
 import static java.time.ZoneOffset.UTC;
@@ -61,13 +69,7 @@ public class ExcelUtils
 				}
 				else
 				{
-					// excel stores integer values as double values
-					// read an integer if the double value equals the
-					// integer value
-					double x = cell.getNumericCellValue();
-					if (x == Math.rint(x) && !Double.isNaN(x) && !Double.isInfinite(x))
-						value = String.valueOf((long) x);
-					else value = String.valueOf(x);
+					value = toNumericValue(cell.getNumericCellValue());
 				}
 				break;
 			case BOOLEAN:
@@ -94,29 +96,11 @@ public class ExcelUtils
 					case NUMERIC:
 						if (DateUtil.isCellDateFormatted(cell))
 						{
-							try
-							{
-								// Excel dates are LocalDateTime, stored without timezone.
-								// Interpret them as UTC to prevent ambiguous DST overlaps which happen in other timezones.
-								LocaleUtil.setUserTimeZone(LocaleUtil.TIMEZONE_UTC);
-								Date javaDate = DateUtil.getJavaDate(cellValue.getNumberValue(), false);
-								value = formatUTCDateAsLocalDateTime(javaDate);
-
-							}
-							finally
-							{
-								LocaleUtil.resetUserTimeZone();
-							}
+							value = toDateValue(cellValue.getNumberValue(), false);
 						}
 						else
 						{
-							// excel stores integer values as double values
-							// read an integer if the double value equals the
-							// integer value
-							double x = cellValue.getNumberValue();
-							if (x == Math.rint(x) && !Double.isNaN(x) && !Double.isInfinite(x))
-								value = String.valueOf((long) x);
-							else value = String.valueOf(x);
+							value = toNumericValue(cellValue.getNumberValue());
 						}
 						break;
 					case STRING:
@@ -136,6 +120,39 @@ public class ExcelUtils
 		return AbstractCellProcessor.processCell(value, false, cellProcessors);
 	}
 
+	// Gets a numeric cell value as String
+	static String toNumericValue(double numericValue)
+	{
+		// excel stores integer values as double values
+		// read an integer if the double value equals the
+		// integer value
+		if (numericValue == Math.rint(numericValue) && !Double.isNaN(numericValue) && !Double.isInfinite(numericValue))
+		{
+			return String.valueOf((long) numericValue);
+		}
+		else
+		{
+			return String.valueOf(numericValue);
+		}
+	}
+
+	// Gets a date formatted numeric cell value as String
+	static String toDateValue(double numericValue, boolean use1904windowing)
+	{
+		try
+		{
+			// Excel dates are LocalDateTime, stored without timezone.
+			// Interpret them as UTC to prevent ambiguous DST overlaps which happen in other timezones.
+			LocaleUtil.setUserTimeZone(LocaleUtil.TIMEZONE_UTC);
+			Date javaDate = DateUtil.getJavaDate(numericValue, use1904windowing);
+			return formatUTCDateAsLocalDateTime(javaDate);
+		}
+		finally
+		{
+			LocaleUtil.resetUserTimeZone();
+		}
+	}
+
 	public static void renameSheet(String newSheetname, File file, int index)
 	{
 		try (FileInputStream fis = new FileInputStream(file); Workbook workbook = WorkbookFactory.create(fis))
@@ -154,9 +171,16 @@ public class ExcelUtils
 	public static int getNumberOfSheets(File file)
 	{
 		if (!isExcelFile(file.getName())) return -1;
-		try (FileInputStream fis = new FileInputStream(file); Workbook workbook = WorkbookFactory.create(fis))
+		try
 		{
-			return workbook.getNumberOfSheets();
+			if (isOoxmlFile(file))
+			{
+				return getNumberOfXlsxSheets(file);
+			}
+			try (FileInputStream fis = new FileInputStream(file); Workbook workbook = WorkbookFactory.create(fis))
+			{
+				return workbook.getNumberOfSheets();
+			}
 		}
 		catch (Exception e)
 		{
@@ -164,6 +188,34 @@ public class ExcelUtils
 		}
 	}
 
+	static boolean isOoxmlFile(File file) throws IOException
+	{
+		try (InputStream in = FileMagic.prepareToCheckMagic(new FileInputStream(file)))
+		{
+			return FileMagic.valueOf(in) == FileMagic.OOXML;
+		}
+	}
+
+	// Counts the sheets of a .xlsx file without loading the sheets in memory
+	private static int getNumberOfXlsxSheets(File file) throws IOException, OpenXML4JException
+	{
+		OPCPackage opcPackage = OPCPackage.open(file, PackageAccess.READ);
+		try
+		{
+			int numberOfSheets = 0;
+			for (Iterator<InputStream> it = new XSSFReader(opcPackage).getSheetsData(); it.hasNext(); )
+			{
+				it.next().close();
+				numberOfSheets++;
+			}
+			return numberOfSheets;
+		}
+		finally
+		{
+			opcPackage.revert();
+		}
+	}
+
 	public static boolean isExcelFile(String filename)
 	{
 		String extension = FilenameUtils.getExtension(filename);
@@ -3,7 +3,7 @@ package org.molgenis.data.excel;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.molgenis.data.MolgenisDataException;
 import org.molgenis.data.WritableFactory;
 import org.molgenis.data.file.processor.CellProcessor;
@@ -19,10 +19,14 @@ import java.util.stream.Collectors;
 import static java.util.Objects.requireNonNull;
 
 /**
- * Creates new Excel sheets
+ * Creates new Excel sheets. XLSX sheets are written in streaming mode: only the last {@link #ROW_ACCESS_WINDOW_SIZE}
+ * rows are kept in memory, older rows are flushed to a temporary file, so large sheets can be written in constant
+ * memory.
  */
 public class ExcelWriter implements WritableFactory
 {
+	static final int ROW_ACCESS_WINDOW_SIZE = 100;
+
 	private final Workbook workbook;
 	private final OutputStream os;
 	private final AttributeFactory attrMetaFactory;
@@ -42,7 +46,8 @@ public class ExcelWriter implements WritableFactory
 	{
 		this.os = requireNonNull(os);
 		this.attrMetaFactory = requireNonNull(attrMetaFactory);
-		this.workbook = requireNonNull(format) == FileFormat.XLS ? new HSSFWorkbook() : new XSSFWorkbook();
+		this.workbook = requireNonNull(format) == FileFormat.XLS ? new HSSFWorkbook() : new SXSSFWorkbook(
+				ROW_ACCESS_WINDOW_SIZE);
 	}
 
 	public ExcelWriter(File file, AttributeFactory attrMetaFactory) throws FileNotFoundException
@@ -80,6 +85,14 @@ public class ExcelWriter implements WritableFactory
 		{
 			throw new MolgenisDataException("Exception writing to excel file", e);
 		}
+		finally
+		{
+			if (workbook instanceof SXSSFWorkbook)
+			{
+				// delete temporary files backing the flushed rows
+				((SXSSFWorkbook) workbook).dispose();
+			}
+		}
 		os.close();
 	}
 
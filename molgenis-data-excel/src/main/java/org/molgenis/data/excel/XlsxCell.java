@@ -0,0 +1,128 @@
+package org.molgenis.data.excel;
+
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.molgenis.data.MolgenisDataException;
+
+import java.util.Date;
+
+import static java.util.Objects.requireNonNull;
+import static org.apache.poi.ss.usermodel.CellType.*;
+import static org.apache.poi.util.LocaleUtil.TIMEZONE_UTC;
+
+/**
+ * Cell of a {@link XlsxWorkbook} sheet as it is stored in the sheet XML. Formula cells have the value that was computed
+ * when the workbook was saved.
+ */
+public class XlsxCell
+{
+	private final XlsxWorkbook workbook;
+	private final String type;
+	private final String styleIndex;
+	private final String value;
+	private final String formula;
+
+	/**
+	 * @param type       cell type, <tt>null</tt> for numeric cells
+	 * @param styleIndex cell style index, <tt>null</tt> for the default style
+	 * @param value      cell value, <tt>null</tt> for blank cells
+	 * @param formula    cell formula, <tt>null</tt> for cells without a formula
+	 */
+	XlsxCell(XlsxWorkbook workbook, String type, String styleIndex, String value, String formula)
+	{
+		this.workbook = requireNonNull(workbook);
+		this.type = type;
+		this.styleIndex = styleIndex;
+		this.value = value;
+		this.formula = formula;
+	}
+
+	/**
+	 * @return {@link CellType#FORMULA} for formula cells, otherwise the type of the value
+	 */
+	public CellType getCellType()
+	{
+		return formula != null ? FORMULA : getValueType();
+	}
+
+	/**
+	 * @return type of the value, for formula cells the type of the computed value
+	 */
+	public CellType getValueType()
+	{
+		switch (type != null ? type : "n")
+		{
+			case "s":
+			case "inlineStr":
+			case "str":
+				return STRING;
+			case "b":
+				return BOOLEAN;
+			case "e":
+				return ERROR;
+			case "n":
+				return value != null && !value.isEmpty() ? NUMERIC : BLANK;
+			default:
+				throw new MolgenisDataException("unsupported cell type: " + type);
+		}
+	}
+
+	/**
+	 * @return value as stored in the sheet, <tt>null</tt> for blank cells
+	 */
+	public String getValue()
+	{
+		return value;
+	}
+
+	/**
+	 * @return formula, <tt>null</tt> for cells without a formula
+	 */
+	public String getFormula()
+	{
+		return formula;
+	}
+
+	/**
+	 * @return string value, shared strings are looked up in the workbook
+	 */
+	public String getStringValue()
+	{
+		if (value == null)
+		{
+			return null;
+		}
+		return "s".equals(type) ? workbook.getSharedString(Integer.parseInt(value)) : value;
+	}
+
+	public boolean getBooleanValue()
+	{
+		return "1".equals(value) || "true".equals(value);
+	}
+
+	public double getNumericValue()
+	{
+		return Double.parseDouble(value);
+	}
+
+	/**
+	 * @return whether the numeric value of this cell is a date according to the format of the cell style
+	 */
+	public boolean isDateFormatted()
+	{
+		return workbook.isDateFormatted(styleIndex, getNumericValue());
+	}
+
+	/**
+	 * @return numeric value as a date that is interpreted as UTC, because Excel dates are stored without timezone
+	 */
+	public Date getDateValue()
+	{
+		return DateUtil.getJavaDate(getNumericValue(), workbook.isDate1904(), TIMEZONE_UTC);
+	}
+
+	String getStyleIndex()
+	{
+		return styleIndex;
+	}
+}
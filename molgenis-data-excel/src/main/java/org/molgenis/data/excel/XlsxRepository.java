@@ -0,0 +1,162 @@
+package org.molgenis.data.excel;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import org.apache.commons.lang3.StringUtils;
+import org.molgenis.data.Entity;
+import org.molgenis.data.MolgenisDataException;
+import org.molgenis.data.RepositoryCapability;
+import org.molgenis.data.file.processor.AbstractCellProcessor;
+import org.molgenis.data.file.processor.CellProcessor;
+import org.molgenis.data.meta.model.AttributeFactory;
+import org.molgenis.data.meta.model.EntityType;
+import org.molgenis.data.meta.model.EntityTypeFactory;
+import org.molgenis.data.support.AbstractRepository;
+
+import java.util.*;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static org.molgenis.data.meta.AttributeType.STRING;
+
+/**
+ * Streaming XLSX sheet {@link org.molgenis.data.Repository} implementation
+ * <p>
+ * Rows are read from the sheet while iterating, so the sheet is never loaded in memory. It is assumed that the first
+ * row of the sheet is the header row.
+ * <p>
+ * All attributes will be of the string type. The cell values are converted to string in the same way as in
+ * {@link ExcelRepository}, formula cells have the value that was computed when the workbook was saved. Sheets with
+ * merged regions are not supported and fail before the first row is read.
+ */
+public class XlsxRepository extends AbstractRepository
+{
+	private final XlsxWorkbook workbook;
+	private final String sheetName;
+	private final EntityTypeFactory entityTypeFactory;
+	private final AttributeFactory attrMetaFactory;
+
+	/**
+	 * process cells after reading
+	 */
+	private List<CellProcessor> cellProcessors;
+	/**
+	 * column names index
+	 */
+	private Map<String, Integer> colNamesMap;
+	private EntityType entityType;
+
+	XlsxRepository(XlsxWorkbook workbook, String sheetName, EntityTypeFactory entityTypeFactory,
+			AttributeFactory attrMetaFactory, List<CellProcessor> cellProcessors)
+	{
+		this.workbook = requireNonNull(workbook);
+		this.sheetName = requireNonNull(sheetName);
+		this.entityTypeFactory = requireNonNull(entityTypeFactory);
+		this.attrMetaFactory = requireNonNull(attrMetaFactory);
+		this.cellProcessors = cellProcessors;
+	}
+
+	@Override
+	public Iterator<Entity> iterator()
+	{
+		XlsxSheetReader<String> rows = workbook.readSheet(sheetName);
+		if (!rows.hasNext()) return Collections.emptyIterator();
+
+		// create column header index once and reuse
+		Map<Integer, String> headerRow = rows.next();
+		if (colNamesMap == null)
+		{
+			colNamesMap = toColNamesMap(headerRow);
+		}
+		EntityType entityType = getEntityType();
+
+		// iterator skips empty lines.
+		Iterator<Entity> entities = Iterators.transform(rows,
+				row -> new ExcelEntity(row, colNamesMap, cellProcessors, entityType));
+		return Iterators.filter(entities, XlsxRepository::hasValue);
+	}
+
+	/**
+	 * @return whether there is any column containing a value
+	 */
+	private static boolean hasValue(Entity entity)
+	{
+		for (String name : entity.getAttributeNames())
+		{
+			if (StringUtils.isNotEmpty(entity.getString(name)))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void addCellProcessor(CellProcessor cellProcessor)
+	{
+		if (cellProcessors == null) cellProcessors = new ArrayList<>();
+		cellProcessors.add(cellProcessor);
+	}
+
+	public EntityType getEntityType()
+	{
+		if (entityType == null)
+		{
+			EntityType entityType = entityTypeFactory.create(sheetName).setLabel(sheetName);
+
+			if (colNamesMap == null)
+			{
+				try (XlsxSheetReader<String> rows = workbook.readSheet(sheetName))
+				{
+					if (rows.hasNext())
+					{
+						// First row contains the headers
+						colNamesMap = toColNamesMap(rows.next());
+					}
+				}
+			}
+
+			if (colNamesMap != null)
+			{
+				for (String colName : colNamesMap.keySet())
+				{
+					entityType.addAttribute(attrMetaFactory.create().setName(colName).setDataType(STRING));
+				}
+			}
+			this.entityType = entityType;
+		}
+
+		return entityType;
+	}
+
+	private Map<String, Integer> toColNamesMap(Map<Integer, String> headerRow)
+	{
+		Map<String, Integer> columnIdx = new LinkedHashMap<>();
+		int i = 0;
+		for (String value : headerRow.values())
+		{
+			String header = AbstractCellProcessor.processCell(value, true, cellProcessors);
+			if (header != null)
+			{
+				if (columnIdx.containsKey(header))
+				{
+					throw new MolgenisDataException(
+							format("Duplicate column header '%s' in sheet '%s' not allowed", header, sheetName));
+				}
+				columnIdx.put(header, i++);
+			}
+		}
+		return columnIdx;
+	}
+
+	@Override
+	public Set<RepositoryCapability> getCapabilities()
+	{
+		return Collections.emptySet();
+	}
+
+	@Override
+	public long count()
+	{
+		return Iterables.size(this);
+	}
+}
@@ -0,0 +1,196 @@
+package org.molgenis.data.excel;
+
+import com.google.common.collect.AbstractIterator;
+import org.apache.poi.ss.util.CellReference;
+import org.molgenis.data.MolgenisDataException;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static javax.xml.stream.XMLStreamConstants.*;
+
+/**
+ * Reads the rows of a XLSX sheet one by one from the sheet XML. A row maps the column indices of the cells in the row
+ * to the mapped cells. The sheet is closed when the last row has been read.
+ *
+ * @param <T> type of the mapped cells
+ */
+public class XlsxSheetReader<T> extends AbstractIterator<Map<Integer, T>> implements Closeable
+{
+	private final XlsxWorkbook workbook;
+	private final String sheetName;
+	private final InputStream inputStream;
+	private final Function<XlsxCell, T> cellMapper;
+	private final XMLStreamReader reader;
+
+	XlsxSheetReader(XlsxWorkbook workbook, String sheetName, InputStream inputStream, Function<XlsxCell, T> cellMapper)
+	{
+		this.workbook = requireNonNull(workbook);
+		this.sheetName = requireNonNull(sheetName);
+		this.inputStream = requireNonNull(inputStream);
+		this.cellMapper = requireNonNull(cellMapper);
+		try
+		{
+			this.reader = XlsxWorkbook.createXmlInputFactory().createXMLStreamReader(inputStream);
+		}
+		catch (XMLStreamException e)
+		{
+			close();
+			throw new MolgenisDataException(e);
+		}
+	}
+
+	@Override
+	protected Map<Integer, T> computeNext()
+	{
+		try
+		{
+			while (reader.hasNext())
+			{
+				if (reader.next() == START_ELEMENT)
+				{
+					if (reader.getLocalName().equals("row"))
+					{
+						return readRow();
+					}
+				}
+			}
+		}
+		catch (XMLStreamException e)
+		{
+			close();
+			throw new MolgenisDataException(e);
+		}
+		catch (RuntimeException e)
+		{
+			close();
+			throw e;
+		}
+		close();
+		return endOfData();
+	}
+
+	private Map<Integer, T> readRow() throws XMLStreamException
+	{
+		Map<Integer, T> row = new LinkedHashMap<>();
+		int columnIndex = -1;
+		while (reader.hasNext())
+		{
+			int event = reader.next();
+			if (event == START_ELEMENT && reader.getLocalName().equals("c"))
+			{
+				String cellReference = reader.getAttributeValue(null, "r");
+				columnIndex = cellReference != null ? new CellReference(cellReference).getCol() : columnIndex + 1;
+				row.put(columnIndex, readCell());
+			}
+			else if (event == END_ELEMENT && reader.getLocalName().equals("row"))
+			{
+				return row;
+			}
+		}
+		throw new MolgenisDataException(format("Sheet [%s] ends in the middle of a row", sheetName));
+	}
+
+	/**
+	 * Reads the value of a cell: the text of the value element or of the text elements of an inline string, excluding
+	 * phonetic runs. The value of a formula cell is the result that was stored with the formula.
+	 */
+	private T readCell() throws XMLStreamException
+	{
+		String type = reader.getAttributeValue(null, "t");
+		String styleIndex = reader.getAttributeValue(null, "s");
+
+		StringBuilder value = null;
+		StringBuilder formula = null;
+		boolean inFormula = false;
+		boolean inValue = false;
+		boolean inPhoneticRun = false;
+		while (reader.hasNext())
+		{
+			switch (reader.next())
+			{
+				case START_ELEMENT:
+					String startLocalName = reader.getLocalName();
+					if (startLocalName.equals("f"))
+					{
+						inFormula = true;
+						formula = new StringBuilder();
+					}
+					else if (startLocalName.equals("rPh"))
+					{
+						inPhoneticRun = true;
+					}
+					else if (startLocalName.equals("v") || (startLocalName.equals("t") && !inPhoneticRun))
+					{
+						inValue = true;
+						if (value == null)
+						{
+							value = new StringBuilder();
+						}
+					}
+					break;
+				case CHARACTERS:
+				case CDATA:
+				case SPACE:
+					if (inValue)
+					{
+						value.append(reader.getText());
+					}
+					else if (inFormula)
+					{
+						formula.append(reader.getText());
+					}
+					break;
+				case END_ELEMENT:
+					String endLocalName = reader.getLocalName();
+					if (endLocalName.equals("c"))
+					{
+						return cellMapper.apply(
+								new XlsxCell(workbook, type, styleIndex, value != null ? value.toString() : null,
+										formula != null ? formula.toString() : null));
+					}
+					else if (endLocalName.equals("f"))
+					{
+						inFormula = false;
+					}
+					else if (endLocalName.equals("rPh"))
+					{
+						inPhoneticRun = false;
+					}
+					else if (endLocalName.equals("v") || endLocalName.equals("t"))
+					{
+						inValue = false;
+					}
+					break;
+				default:
+					break;
+			}
+		}
+		throw new MolgenisDataException(format("Sheet [%s] ends in the middle of a cell", sheetName));
+	}
+
+	@Override
+	public void close()
+	{
+		try
+		{
+			if (reader != null)
+			{
+				reader.close();
+			}
+			inputStream.close();
+		}
+		catch (XMLStreamException | IOException e)
+		{
+			throw new MolgenisDataException(e);
+		}
+	}
+}
@@ -0,0 +1,349 @@
+package org.molgenis.data.excel;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackagePartName;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.molgenis.data.MolgenisDataException;
+import org.molgenis.data.MolgenisInvalidFormatException;
+import org.xml.sax.SAXException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * XLSX workbook of which the sheets are read as a stream of rows instead of being loaded in memory. Only the shared
+ * strings, cell styles and sheet names of the workbook are kept in memory.
+ * <p>
+ * Sheets with merged regions can not be read as repository rows. The merged regions are stored after the rows of a
+ * sheet, so the first time such a sheet is read it is scanned for merged regions before its rows are returned. Other
+ * readers map the cells of a sheet with their own cell mapper.
+ * <p>
+ * The workbook keeps the package open until it is closed. A workbook can be reopened to read its sheets from multiple
+ * threads, each thread reads from its own package.
+ */
+public class XlsxWorkbook implements Closeable
+{
+	private static final String BOOLEAN_FORMAT = "\"TRUE\";\"TRUE\";\"FALSE\"";
+	private static final Pattern BOOLEAN_FORMULA = Pattern.compile("(?i)(TRUE|FALSE)(\\(\\))?");
+
+	private final File file;
+	private final OPCPackage opcPackage;
+	private final ReadOnlySharedStringsTable sharedStrings;
+	private final StylesTable styles;
+	private final boolean date1904;
+	private final Map<String, PackagePartName> sheetPartNames;
+	private final Map<String, Boolean> sheetsWithMergedRegions;
+
+	/**
+	 * Opens the workbook of a .xlsx file for reading.
+	 */
+	public static XlsxWorkbook open(File file) throws IOException, MolgenisInvalidFormatException
+	{
+		OPCPackage opcPackage = openPackage(file);
+		try
+		{
+			return new XlsxWorkbook(file, opcPackage);
+		}
+		catch (IOException | MolgenisInvalidFormatException | RuntimeException e)
+		{
+			opcPackage.revert();
+			throw e;
+		}
+	}
+
+	private static OPCPackage openPackage(File file) throws MolgenisInvalidFormatException
+	{
+		try
+		{
+			return OPCPackage.open(file, PackageAccess.READ);
+		}
+		catch (InvalidFormatException e)
+		{
+			throw new MolgenisInvalidFormatException(e.getMessage());
+		}
+	}
+
+	private XlsxWorkbook(File file, OPCPackage opcPackage) throws IOException, MolgenisInvalidFormatException
+	{
+		this.file = requireNonNull(file);
+		this.opcPackage = requireNonNull(opcPackage);
+		this.sheetsWithMergedRegions = new ConcurrentHashMap<>();
+		try
+		{
+			XSSFReader xssfReader = new XSSFReader(opcPackage);
+			this.sharedStrings = new ReadOnlySharedStringsTable(opcPackage);
+			this.styles = xssfReader.getStylesTable();
+			try (InputStream workbookData = xssfReader.getWorkbookData())
+			{
+				this.date1904 = isDate1904(workbookData);
+			}
+
+			this.sheetPartNames = new LinkedHashMap<>();
+			XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+			while (it.hasNext())
+			{
+				//noinspection EmptyTryBlock
+				try (InputStream ignored = it.next())
+				{
+					sheetPartNames.put(it.getSheetName(), it.getSheetPart().getPartName());
+				}
+			}
+		}
+		catch (OpenXML4JException | SAXException | XMLStreamException e)
+		{
+			throw new MolgenisInvalidFormatException(e.getMessage());
+		}
+	}
+
+	private XlsxWorkbook(XlsxWorkbook workbook, OPCPackage opcPackage)
+	{
+		this.file = workbook.file;
+		this.opcPackage = requireNonNull(opcPackage);
+		this.sharedStrings = workbook.sharedStrings;
+		this.styles = workbook.styles;
+		this.date1904 = workbook.date1904;
+		this.sheetPartNames = workbook.sheetPartNames;
+		this.sheetsWithMergedRegions = workbook.sheetsWithMergedRegions;
+	}
+
+	/**
+	 * Opens the package of this workbook again. The returned workbook shares the shared strings, cell styles and sheet
+	 * names of this workbook, so its sheets are read without parsing the workbook again.
+	 */
+	XlsxWorkbook reopen() throws MolgenisInvalidFormatException
+	{
+		return new XlsxWorkbook(this, openPackage(file));
+	}
+
+	/**
+	 * Closes the package without saving it.
+	 */
+	@Override
+	public void close()
+	{
+		opcPackage.revert();
+	}
+
+	/**
+	 * @return sheet names in workbook order
+	 */
+	public List<String> getSheetNames()
+	{
+		return new ArrayList<>(sheetPartNames.keySet());
+	}
+
+	boolean hasSheet(String sheetName)
+	{
+		return sheetPartNames.containsKey(sheetName);
+	}
+
+	/**
+	 * Returns the rows of a sheet with the cell values as String, the rows are read from the sheet while iterating.
+	 *
+	 * @throws MolgenisDataException if the sheet contains merged regions
+	 */
+	XlsxSheetReader<String> readSheet(String sheetName)
+	{
+		PackagePart sheetPart = getSheetPart(sheetName);
+		if (sheetsWithMergedRegions.computeIfAbsent(sheetName, name -> hasMergedRegions(sheetPart)))
+		{
+			throw new MolgenisDataException(
+					format("Sheet [%s] contains merged regions which is not supported", sheetName));
+		}
+		return readSheet(sheetName, this::toValue);
+	}
+
+	/**
+	 * Returns the rows of a sheet, the rows are read from the sheet while iterating.
+	 *
+	 * @param cellMapper maps each cell of a row to the value that is returned for the cell
+	 */
+	public <T> XlsxSheetReader<T> readSheet(String sheetName, Function<XlsxCell, T> cellMapper)
+	{
+		PackagePart sheetPart = getSheetPart(sheetName);
+		try
+		{
+			return new XlsxSheetReader<>(this, sheetName, sheetPart.getInputStream(), cellMapper);
+		}
+		catch (IOException e)
+		{
+			throw new MolgenisDataException(e);
+		}
+	}
+
+	private PackagePart getSheetPart(String sheetName)
+	{
+		PackagePartName sheetPartName = sheetPartNames.get(sheetName);
+		if (sheetPartName == null)
+		{
+			throw new MolgenisDataException("Unknown sheet [" + sheetName + "]");
+		}
+		return opcPackage.getPart(sheetPartName);
+	}
+
+	private static boolean hasMergedRegions(PackagePart sheetPart)
+	{
+		try (InputStream inputStream = sheetPart.getInputStream())
+		{
+			XMLStreamReader reader = createXmlInputFactory().createXMLStreamReader(inputStream);
+			try
+			{
+				while (reader.hasNext())
+				{
+					if (reader.next() == START_ELEMENT && reader.getLocalName().equals("mergeCell"))
+					{
+						return true;
+					}
+				}
+				return false;
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+		catch (IOException | XMLStreamException e)
+		{
+			throw new MolgenisDataException(e);
+		}
+	}
+
+	/**
+	 * Gets a cell value as String in the same way as {@link ExcelUtils#toValue} gets the value of a cell of a workbook
+	 * that was loaded in memory. Formula cells have the value that was computed when the workbook was saved.
+	 */
+	private String toValue(XlsxCell cell)
+	{
+		if (cell.getValue() == null)
+		{
+			return null;
+		}
+
+		switch (cell.getValueType())
+		{
+			case STRING:
+				return cell.getStringValue();
+			case BOOLEAN:
+				return String.valueOf(cell.getBooleanValue());
+			case NUMERIC:
+				double numericValue = cell.getNumericValue();
+				String formula = cell.getFormula();
+				if (formula != null && (isBooleanFormula(formula) || isBooleanFormatted(cell.getStyleIndex())))
+				{
+					return String.valueOf(numericValue != 0);
+				}
+				if (cell.isDateFormatted())
+				{
+					return ExcelUtils.toDateValue(numericValue, date1904);
+				}
+				return ExcelUtils.toNumericValue(numericValue);
+			case BLANK:
+				return null;
+			case ERROR:
+				throw new MolgenisDataException("unsupported cell type: ERROR");
+			default:
+				throw new MolgenisDataException("unsupported cell type: " + cell.getValueType());
+		}
+	}
+
+	String getSharedString(int index)
+	{
+		return sharedStrings.getEntryAt(index);
+	}
+
+	boolean isDate1904()
+	{
+		return date1904;
+	}
+
+	boolean isDateFormatted(String styleIndex, double numericValue)
+	{
+		if (!DateUtil.isValidExcelDate(numericValue))
+		{
+			return false;
+		}
+		XSSFCellStyle style = getStyle(styleIndex);
+		return style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+	}
+
+	/**
+	 * Some spreadsheet applications store boolean formula results as numbers instead of as booleans, these are
+	 * recognized by the formula or by a boolean format.
+	 */
+	private static boolean isBooleanFormula(String formula)
+	{
+		return BOOLEAN_FORMULA.matcher(formula.trim()).matches();
+	}
+
+	private boolean isBooleanFormatted(String styleIndex)
+	{
+		XSSFCellStyle style = getStyle(styleIndex);
+		return style != null && BOOLEAN_FORMAT.equals(style.getDataFormatString());
+	}
+
+	private XSSFCellStyle getStyle(String styleIndex)
+	{
+		return styles != null ? styles.getStyleAt(styleIndex != null ? Integer.parseInt(styleIndex) : 0) : null;
+	}
+
+	private static boolean isDate1904(InputStream workbookData) throws XMLStreamException
+	{
+		XMLStreamReader reader = createXmlInputFactory().createXMLStreamReader(workbookData);
+		try
+		{
+			while (reader.hasNext())
+			{
+				if (reader.next() == START_ELEMENT)
+				{
+					String localName = reader.getLocalName();
+					if (localName.equals("workbookPr"))
+					{
+						String date1904 = reader.getAttributeValue(null, "date1904");
+						return "1".equals(date1904) || "true".equals(date1904);
+					}
+					else if (localName.equals("sheets"))
+					{
+						return false;
+					}
+				}
+			}
+			return false;
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	static XMLInputFactory createXmlInputFactory()
+	{
+		XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return xmlInputFactory;
+	}
+}
@@ -18,6 +18,7 @@ import java.util.List;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 
 public class ExcelRepositorySourceTest extends AbstractMolgenisSpringTest
 {
@@ -51,6 +52,12 @@ public class ExcelRepositorySourceTest extends AbstractMolgenisSpringTest
 		assertEquals(excelRepositoryCollection.getNumberOfSheets(), 3);
 	}
 
+	@Test
+	public void reopen()
+	{
+		assertNull(excelRepositoryCollection.reopen());
+	}
+
 	@Test
 	public void getRepositories()
 	{
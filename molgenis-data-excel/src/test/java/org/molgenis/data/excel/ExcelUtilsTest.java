@@ -71,6 +71,13 @@ public class ExcelUtilsTest
 		assertEquals(ExcelUtils.getNumberOfSheets(file), 3);
 	}
 
+	@Test
+	public void getNumberOfSheetsTestXLSX()
+	{
+		File file = ResourceUtils.getFile(getClass(), "/test.xlsx");
+		assertEquals(ExcelUtils.getNumberOfSheets(file), 1);
+	}
+
 	@Test
 	public void getNumberOfSheetsTestCSV()
 	{
@@ -0,0 +1,285 @@
+package org.molgenis.data.excel;
+
+import com.google.common.collect.Sets;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.mockito.quality.Strictness;
+import org.molgenis.data.AbstractMolgenisSpringTest;
+import org.molgenis.data.Entity;
+import org.molgenis.data.MolgenisDataException;
+import org.molgenis.data.Repository;
+import org.molgenis.data.file.processor.CellProcessor;
+import org.molgenis.data.meta.model.Attribute;
+import org.molgenis.data.meta.model.AttributeFactory;
+import org.molgenis.data.meta.model.EntityTypeFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.apache.poi.ss.usermodel.DateUtil.getExcelDate;
+import static org.apache.poi.util.LocaleUtil.TIMEZONE_UTC;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+import static java.util.stream.StreamSupport.stream;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+public class XlsxRepositoryTest extends AbstractMolgenisSpringTest
+{
+	@Autowired
+	private EntityTypeFactory entityTypeFactory;
+
+	@Autowired
+	private AttributeFactory attrMetaFactory;
+
+	private File file;
+
+	public XlsxRepositoryTest()
+	{
+		super(Strictness.WARN);
+	}
+
+	@BeforeMethod
+	public void setUpBeforeMethod() throws IOException
+	{
+		file = File.createTempFile("XlsxRepositoryTest", ".xlsx");
+		try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = new FileOutputStream(file))
+		{
+			XSSFCellStyle dateStyle = workbook.createCellStyle();
+			dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+
+			XSSFSheet sheet = workbook.createSheet("test");
+			XSSFRow headerRow = sheet.createRow(0);
+			headerRow.createCell(0).setCellValue("string");
+			headerRow.createCell(1).setCellValue("long");
+			headerRow.createCell(2).setCellValue("double");
+			headerRow.createCell(3).setCellValue("bool");
+			headerRow.createCell(4).setCellValue("date");
+			headerRow.createCell(5).setCellValue("formula");
+			headerRow.createCell(6).setCellValue("blank");
+
+			XSSFRow row1 = sheet.createRow(1);
+			row1.createCell(0).setCellValue("val1");
+			row1.createCell(1).setCellValue(12342151234L);
+			row1.createCell(2).setCellValue(1.2);
+			row1.createCell(3).setCellValue(true);
+			row1.createCell(4).setCellValue(createDate(2017, Calendar.MARCH, 14));
+			row1.getCell(4).setCellStyle(dateStyle);
+			row1.createCell(5).setCellFormula("C2*2");
+			row1.createCell(6).setCellStyle(dateStyle);
+
+			// empty row is skipped
+			sheet.createRow(2).createCell(0).setCellValue("");
+
+			XSSFRow row3 = sheet.createRow(3);
+			row3.createCell(0).setCellValue("val3");
+			row3.createCell(5).setCellFormula("A4&\"X\"");
+
+			XSSFSheet mergedCellsSheet = workbook.createSheet("test_mergedcells");
+			mergedCellsSheet.createRow(0).createCell(0).setCellValue("col1");
+			mergedCellsSheet.createRow(1).createCell(0).setCellValue("val1");
+			mergedCellsSheet.addMergedRegion(new CellRangeAddress(1, 1, 0, 1));
+
+			workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+			workbook.write(out);
+		}
+	}
+
+	@AfterMethod
+	public void tearDownAfterMethod()
+	{
+		//noinspection ResultOfMethodCallIgnored
+		file.delete();
+	}
+
+	@Test
+	public void testGetRepositoryIsStreaming() throws Exception
+	{
+		assertTrue(createRepositoryCollection().getRepository("test") instanceof XlsxRepository);
+	}
+
+	@Test
+	public void testGetEntityType() throws Exception
+	{
+		Repository<Entity> repository = createRepositoryCollection().getRepository("test");
+		List<String> attributeNames = stream(repository.getEntityType().getAtomicAttributes().spliterator(),
+				false).map(Attribute::getName).collect(toList());
+		assertEquals(attributeNames, newArrayList("string", "long", "double", "bool", "date", "formula", "blank"));
+		assertEquals(repository.getName(), "test");
+	}
+
+	@Test
+	public void testIterator() throws Exception
+	{
+		Iterator<Entity> it = createRepositoryCollection().getRepository("test").iterator();
+		assertTrue(it.hasNext());
+		Entity entity1 = it.next();
+		assertEquals(entity1.get("string"), "val1");
+		assertEquals(entity1.get("long"), "12342151234");
+		assertEquals(entity1.get("double"), "1.2");
+		assertEquals(entity1.get("bool"), "true");
+		assertEquals(entity1.get("date"), "2017-03-14T00:00");
+		assertEquals(entity1.get("formula"), "2.4");
+		assertNull(entity1.get("blank"));
+
+		assertTrue(it.hasNext());
+		Entity entity2 = it.next();
+		assertEquals(entity2.get("string"), "val3");
+		assertNull(entity2.get("long"));
+		assertEquals(entity2.get("formula"), "val3X");
+		assertFalse(it.hasNext());
+	}
+
+	@Test
+	public void testIteratorSameAsExcelRepository() throws Exception
+	{
+		Repository<Entity> xlsxRepository = createRepositoryCollection().getRepository("test");
+		try (InputStream in = new FileInputStream(file); Workbook workbook = WorkbookFactory.create(in))
+		{
+			ExcelRepository excelRepository = new ExcelRepository(file.getName(), workbook.getSheet("test"),
+					entityTypeFactory, attrMetaFactory);
+			assertEquals(toValueMaps(xlsxRepository), toValueMaps(excelRepository));
+		}
+	}
+
+	@Test
+	public void testAddCellProcessor() throws Exception
+	{
+		XlsxRepository repository = new XlsxRepository(XlsxWorkbook.open(file),
+				"test", entityTypeFactory, attrMetaFactory, null);
+		CellProcessor processor = mock(CellProcessor.class);
+		when(processor.processHeader()).thenReturn(true);
+		when(processor.processData()).thenReturn(true);
+		when(processor.process("string")).thenReturn("STRING");
+		when(processor.process("val1")).thenReturn("VAL1");
+		repository.addCellProcessor(processor);
+
+		Entity entity = repository.iterator().next();
+		assertEquals(entity.get("STRING"), "VAL1");
+		verify(processor).process("val1");
+	}
+
+	@Test(expectedExceptions = MolgenisDataException.class, expectedExceptionsMessageRegExp = "Sheet \\[test_mergedcells\\] contains merged regions which is not supported")
+	public void testIteratorMergedCells() throws Exception
+	{
+		createRepositoryCollection().getRepository("test_mergedcells").iterator();
+	}
+
+	@Test
+	public void testIteratorFromInputStream() throws Exception
+	{
+		ExcelRepositoryCollection repositoryCollection;
+		try (InputStream in = new FileInputStream(file))
+		{
+			repositoryCollection = new ExcelRepositoryCollection(file.getName(), in);
+		}
+		repositoryCollection.setEntityTypeFactory(entityTypeFactory);
+		repositoryCollection.setAttributeFactory(attrMetaFactory);
+
+		Repository<Entity> repository = repositoryCollection.getRepository("test");
+		assertTrue(repository instanceof XlsxRepository);
+		assertEquals(toValueMaps(repository), toValueMaps(createRepositoryCollection().getRepository("test")));
+	}
+
+	@Test
+	public void testCloseDeletesSpooledFile() throws Exception
+	{
+		Set<Path> tempFiles = getSpooledFiles();
+		ExcelRepositoryCollection repositoryCollection;
+		try (InputStream in = new FileInputStream(file))
+		{
+			repositoryCollection = new ExcelRepositoryCollection(file.getName(), in);
+		}
+		assertEquals(Sets.difference(getSpooledFiles(), tempFiles).size(), 1);
+
+		repositoryCollection.close();
+		assertEquals(Sets.difference(getSpooledFiles(), tempFiles).size(), 0);
+	}
+
+	private static Set<Path> getSpooledFiles() throws IOException
+	{
+		try (Stream<Path> files = Files.list(Paths.get(System.getProperty("java.io.tmpdir"))))
+		{
+			return files.filter(path -> path.getFileName().toString().matches("molgenis-.*\\.xlsx")).collect(toSet());
+		}
+	}
+
+	@Test
+	public void testReopen() throws Exception
+	{
+		ExcelRepositoryCollection repositoryCollection = createRepositoryCollection();
+		Iterator<Entity> it = repositoryCollection.getRepository("test").iterator();
+		it.next();
+
+		ExcelRepositoryCollection reopenedRepositoryCollection = repositoryCollection.reopen();
+		assertNotNull(reopenedRepositoryCollection);
+		try
+		{
+			assertEquals(toValueMaps(reopenedRepositoryCollection.getRepository("test")),
+					toValueMaps(repositoryCollection.getRepository("test")));
+		}
+		finally
+		{
+			reopenedRepositoryCollection.close();
+		}
+		assertTrue(it.hasNext());
+		assertEquals(it.next().getString("string"), "val3");
+		repositoryCollection.close();
+	}
+
+	@Test(expectedExceptions = MolgenisDataException.class, expectedExceptionsMessageRegExp = "Writing to a streamed \\.xlsx file is not supported")
+	public void testSave() throws Exception
+	{
+		createRepositoryCollection().save(new ByteArrayOutputStream());
+	}
+
+	@Test
+	public void testCount() throws Exception
+	{
+		assertEquals(createRepositoryCollection().getRepository("test").count(), 2L);
+	}
+
+	private ExcelRepositoryCollection createRepositoryCollection() throws Exception
+	{
+		ExcelRepositoryCollection repositoryCollection = new ExcelRepositoryCollection(file);
+		repositoryCollection.setEntityTypeFactory(entityTypeFactory);
+		repositoryCollection.setAttributeFactory(attrMetaFactory);
+		return repositoryCollection;
+	}
+
+	private static List<Map<String, String>> toValueMaps(Repository<Entity> repository)
+	{
+		return stream(repository.spliterator(), false).map(entity -> stream(entity.getAttributeNames().spliterator(),
+				false).collect(toMap(identity(), attr -> String.valueOf(entity.get(attr))))).collect(toList());
+	}
+
+	private static double createDate(int year, int month, int day)
+	{
+		Calendar calendar = Calendar.getInstance(TIMEZONE_UTC);
+		calendar.clear();
+		calendar.set(year, month, day);
+		return getExcelDate(calendar, false);
+	}
+}
@@ -4,12 +4,14 @@ import com.google.common.collect.Lists;
 import org.molgenis.data.file.processor.CellProcessor;
 import org.molgenis.data.support.AbstractRepositoryCollection;
 
+import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
-public abstract class FileRepositoryCollection extends AbstractRepositoryCollection
+public abstract class FileRepositoryCollection extends AbstractRepositoryCollection implements Closeable
 {
 	/**
 	 * process cells after reading
@@ -33,6 +35,27 @@ public abstract class FileRepositoryCollection extends AbstractRepositoryCollect
 	 */
 	public abstract void init() throws IOException;
 
+	/**
+	 * Releases the file resources of this collection. The repositories of the collection can not be read afterwards.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		// no operation
+	}
+
+	/**
+	 * Opens another instance of this collection on the same file, so that the repositories of both collections can be
+	 * read at the same time by different threads. The caller closes the returned collection.
+	 *
+	 * @return other instance of this collection or <tt>null</tt> if this collection can not be reopened
+	 */
+	@Nullable
+	public FileRepositoryCollection reopen() throws IOException
+	{
+		return null;
+	}
+
 	public Set<String> getFileNameExtensions()
 	{
 		return fileNameExtensions;
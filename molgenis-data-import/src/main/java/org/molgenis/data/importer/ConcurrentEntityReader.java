@@ -0,0 +1,163 @@
+package org.molgenis.data.importer;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import org.molgenis.data.Entity;
+import org.molgenis.data.MolgenisDataException;
+import org.molgenis.data.meta.model.EntityType;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+import static java.util.stream.StreamSupport.stream;
+
+/**
+ * Reads the entities of multiple entity types concurrently. The entities of each entity type are read from the
+ * {@link DataProvider} by a worker thread and handed over in batches through a bounded queue, so the calling thread
+ * can persist the entities of one entity type in its transaction while the entities of other entity types are read.
+ * <p>
+ * Workers pick up entity types in the order in which they were submitted and block when their queue is full, so
+ * entities must be retrieved in the same order. The workers are shared by all imports: the entity type that is being
+ * retrieved was submitted before the other entity types of its import, so it is always picked up.
+ */
+class ConcurrentEntityReader implements AutoCloseable
+{
+	static final int BATCH_SIZE = 1000;
+	private static final int MAX_QUEUED_BATCHES = 2;
+
+	/**
+	 * Marks the end of the entities of an entity type, compared by identity
+	 */
+	private static final List<Entity> END_OF_ENTITIES = new ArrayList<>(0);
+
+	private final DataProvider dataProvider;
+	private final ExecutorService executorService;
+	private final Map<String, EntityQueue> entityQueues = new HashMap<>();
+	private final List<Future<?>> futures = new ArrayList<>();
+
+	ConcurrentEntityReader(DataProvider dataProvider, ExecutorService executorService)
+	{
+		this.dataProvider = requireNonNull(dataProvider);
+		this.executorService = requireNonNull(executorService);
+	}
+
+	/**
+	 * Starts reading the entities of the given entity type.
+	 */
+	void read(EntityType entityType)
+	{
+		EntityQueue entityQueue = new EntityQueue();
+		if (entityQueues.putIfAbsent(entityType.getId(), entityQueue) != null)
+		{
+			throw new IllegalStateException(format("Entities of [%s] are already being read", entityType.getId()));
+		}
+		try
+		{
+			futures.add(executorService.submit(() -> entityQueue.fill(entityType)));
+		}
+		catch (RejectedExecutionException e)
+		{
+			throw new MolgenisDataException("Import rejected, the data persister is shutting down", e);
+		}
+	}
+
+	/**
+	 * Returns the entities of an entity type of which reading was started. The stream throws the exception that
+	 * occurred while reading, if any.
+	 */
+	Stream<Entity> getEntities(EntityType entityType)
+	{
+		EntityQueue entityQueue = entityQueues.remove(entityType.getId());
+		if (entityQueue == null)
+		{
+			throw new IllegalStateException(format("Entities of [%s] are not being read", entityType.getId()));
+		}
+		return stream(spliteratorUnknownSize(entityQueue.drain(), ORDERED), false).flatMap(List::stream);
+	}
+
+	/**
+	 * Stops reading the entities that were not retrieved.
+	 */
+	@Override
+	public void close()
+	{
+		futures.forEach(future -> future.cancel(true));
+	}
+
+	private class EntityQueue
+	{
+		private final BlockingQueue<List<Entity>> batches = new ArrayBlockingQueue<>(MAX_QUEUED_BATCHES);
+		private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+		private void fill(EntityType entityType)
+		{
+			try (Stream<Entity> entities = dataProvider.getEntities(entityType))
+			{
+				Iterator<List<Entity>> it = Iterators.partition(entities.iterator(), BATCH_SIZE);
+				while (it.hasNext())
+				{
+					batches.put(it.next());
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (RuntimeException e)
+			{
+				failure.set(e);
+			}
+
+			try
+			{
+				batches.put(END_OF_ENTITIES);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private Iterator<List<Entity>> drain()
+		{
+			return new AbstractIterator<List<Entity>>()
+			{
+				@Override
+				protected List<Entity> computeNext()
+				{
+					List<Entity> batch = take();
+					if (batch == END_OF_ENTITIES)
+					{
+						RuntimeException e = failure.get();
+						if (e != null)
+						{
+							throw e;
+						}
+						return endOfData();
+					}
+					return batch;
+				}
+			};
+		}
+
+		private List<Entity> take()
+		{
+			try
+			{
+				return batches.take();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new MolgenisDataException("Interrupted while reading entities");
+			}
+		}
+	}
+}
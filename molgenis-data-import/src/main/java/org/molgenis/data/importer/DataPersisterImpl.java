@@ -9,29 +9,41 @@ import org.molgenis.data.meta.MetaDataServiceImpl.EntityTypeWithoutMappedByAttri
 import org.molgenis.data.meta.model.Attribute;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.util.UnexpectedEnumException;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PreDestroy;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.toList;
 import static org.molgenis.data.meta.model.EntityTypeMetadata.ENTITY_TYPE_META_DATA;
 import static org.molgenis.data.meta.model.EntityTypeMetadata.ID;
 import static org.molgenis.util.stream.MapCollectors.toLinkedMap;
 
+/**
+ * Persists entity types and their entities level by level in dependency order. The entity types in a level do not
+ * depend on each other, so their entities are read concurrently while they are persisted one after another in one
+ * transaction.
+ */
 @Component
 public class DataPersisterImpl implements DataPersister
 {
+	private static final int NR_READER_THREADS = Runtime.getRuntime().availableProcessors();
+
 	private final MetaDataService metaDataService;
 	private final DataService dataService;
 	private final EntityTypeDependencyResolver entityTypeDependencyResolver;
+	private final ExecutorService readerExecutorService;
 
 	DataPersisterImpl(MetaDataService metaDataService, DataService dataService,
 			EntityTypeDependencyResolver entityTypeDependencyResolver)
@@ -39,17 +51,30 @@ public class DataPersisterImpl implements DataPersister
 		this.metaDataService = requireNonNull(metaDataService);
 		this.dataService = requireNonNull(dataService);
 		this.entityTypeDependencyResolver = requireNonNull(entityTypeDependencyResolver);
+		this.readerExecutorService = new DelegatingSecurityContextExecutorService(
+				newFixedThreadPool(NR_READER_THREADS));
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		readerExecutorService.shutdownNow();
 	}
 
 	@Transactional
 	@Override
 	public PersistResult persist(DataProvider dataProvider, MetadataMode metadataMode, DataMode dataMode)
 	{
-		List<EntityType> sortedEntityTypes = getTopologicalSortedEntityTypes(dataProvider.getEntityTypes());
+		List<List<EntityType>> entityTypeLevels = getEntityTypeLevels(dataProvider.getEntityTypes());
+		List<EntityType> sortedEntityTypes = entityTypeLevels.stream().flatMap(List::stream).collect(toList());
 
 		preProcessEntityTypes(sortedEntityTypes, metadataMode);
-		PersistResult persistResult = persistFirstPass(dataProvider, metadataMode, dataMode, sortedEntityTypes);
-		persistSecondPass(dataProvider, sortedEntityTypes);
+		PersistResult persistResult;
+		try (ConcurrentEntityReader entityReader = new ConcurrentEntityReader(dataProvider, readerExecutorService))
+		{
+			persistResult = persistFirstPass(dataProvider, entityReader, metadataMode, dataMode, entityTypeLevels);
+		}
+		persistSecondPass(sortedEntityTypes);
 
 		return persistResult;
 	}
@@ -71,14 +96,22 @@ public class DataPersisterImpl implements DataPersister
 		}
 	}
 
-	private PersistResult persistFirstPass(DataProvider dataProvider, MetadataMode metadataMode, DataMode dataMode,
-			List<EntityType> topologicalSortedEntityTypes)
+	private PersistResult persistFirstPass(DataProvider dataProvider, ConcurrentEntityReader entityReader,
+			MetadataMode metadataMode, DataMode dataMode, List<List<EntityType>> entityTypeLevels)
 	{
 		ImmutableMap.Builder<String, Long> persistResultBuilder = ImmutableMap.builder();
-		topologicalSortedEntityTypes.forEach(entityType ->
+		entityTypeLevels.forEach(entityTypes ->
 		{
-			EntityType persistedEntityType = persistEntityTypeFirstPass(entityType, metadataMode);
-			if (dataProvider.hasEntities(entityType))
+			// persist the metadata of the level before its entities are read
+			Map<String, EntityType> persistedEntityTypes = entityTypes.stream()
+																	  .collect(toLinkedMap(EntityType::getId,
+																			  entityType -> persistEntityTypeFirstPass(
+																					  entityType, metadataMode)));
+
+			List<EntityType> entityTypesWithEntities = entityTypes.stream()
+																  .filter(dataProvider::hasEntities)
+																  .collect(toList());
+			entityTypesWithEntities.forEach(entityType ->
 			{
 				if (entityType.isAbstract())
 				{
@@ -86,25 +119,29 @@ public class DataPersisterImpl implements DataPersister
 							format("Abstract entity type '%s' with id '%s' cannot contain entities",
 									entityType.getLabel(), entityType.getId()));
 				}
-				Stream<Entity> entities = dataProvider.getEntities(entityType);
-				long nrPersistedEntities = persistEntitiesFirstPass(persistedEntityType, entities, dataMode);
+			});
+			entityTypesWithEntities.forEach(entityReader::read);
+
+			entityTypesWithEntities.forEach(entityType ->
+			{
+				Stream<Entity> entities = entityReader.getEntities(entityType);
+				long nrPersistedEntities = persistEntitiesFirstPass(persistedEntityTypes.get(entityType.getId()),
+						entities, dataMode);
 				persistResultBuilder.put(entityType.getId(), nrPersistedEntities);
-			}
+			});
 		});
 		return PersistResult.create(persistResultBuilder.build());
 	}
 
-	private void persistSecondPass(DataProvider dataProvider, List<EntityType> topologicalSortedEntityTypes)
+	/**
+	 * Adds the mappedBy attributes to the entity types that were persisted without them in the first pass. The entities
+	 * are not persisted again: mappedBy attribute values are derived from the attributes that they are mapped by and
+	 * are not read from the data provider. References to entities that did not exist when the referencing entity was
+	 * persisted are checked when the transaction is committed.
+	 */
+	private void persistSecondPass(List<EntityType> topologicalSortedEntityTypes)
 	{
-		topologicalSortedEntityTypes.forEach(entityType ->
-		{
-			EntityType persistedEntityType = persistEntityTypeSecondPass(entityType);
-			if (dataProvider.hasEntities(entityType))
-			{
-				Stream<Entity> entities = dataProvider.getEntities(entityType);
-				persistEntitiesSecondPass(persistedEntityType, entities);
-			}
-		});
+		topologicalSortedEntityTypes.forEach(this::persistEntityTypeSecondPass);
 	}
 
 	private void preProcessUpdatedEntityTypes(List<EntityType> entityTypes)
@@ -182,15 +219,6 @@ public class DataPersisterImpl implements DataPersister
 		Iterators.partition(entities.iterator(), 1000).forEachRemaining(repository::upsertBatch);
 	}
 
-	private void persistEntitiesSecondPass(EntityType entityType, Stream<Entity> entities)
-	{
-		if (entityType.hasMappedByAttributes())
-		{
-			String entityTypeId = entityType.getId();
-			dataService.update(entityTypeId, entities);
-		}
-	}
-
 	private EntityType persistEntityTypeFirstPass(EntityType entityType, MetadataMode metadataMode)
 	{
 		EntityType persistedEntityType;
@@ -272,17 +300,16 @@ public class DataPersisterImpl implements DataPersister
 		return persistableEntityType;
 	}
 
-	private EntityType persistEntityTypeSecondPass(EntityType entityType)
+	private void persistEntityTypeSecondPass(EntityType entityType)
 	{
 		if (entityType.hasMappedByAttributes())
 		{
 			metaDataService.updateEntityType(entityType);
 		}
-		return entityType;
 	}
 
-	private List<EntityType> getTopologicalSortedEntityTypes(Stream<EntityType> entityTypeStream)
+	private List<List<EntityType>> getEntityTypeLevels(Stream<EntityType> entityTypeStream)
 	{
-		return entityTypeDependencyResolver.resolve(entityTypeStream.collect(toList()));
+		return entityTypeDependencyResolver.resolveLevels(entityTypeStream.collect(toList()));
 	}
 }
@@ -23,7 +23,8 @@ public interface DataProvider
 	boolean hasEntities(EntityType entityType);
 
 	/**
-	 * Returns data for the given metadata.
+	 * Returns data for the given metadata. Is called concurrently for different metadata, the entities of each stream
+	 * are read by one thread.
 	 */
 	Stream<Entity> getEntities(EntityType entityType);
 }
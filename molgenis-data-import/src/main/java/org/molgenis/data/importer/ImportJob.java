@@ -9,6 +9,8 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import javax.servlet.http.HttpSession;
+import java.io.Closeable;
+import java.io.IOException;
 
 public class ImportJob implements Runnable
 {
@@ -71,6 +73,25 @@ public class ImportJob implements Runnable
 			LOG.info("Import failed.", e);
 			importRunService.failImportRun(importRunId, e.getLocalizedMessage());
 		}
+		finally
+		{
+			closeSource();
+		}
+	}
+
+	private void closeSource()
+	{
+		if (source instanceof Closeable)
+		{
+			try
+			{
+				((Closeable) source).close();
+			}
+			catch (IOException e)
+			{
+				LOG.warn("Failed to close import source", e);
+			}
+		}
 	}
 
 	@Override
@@ -1,7 +1,9 @@
 package org.molgenis.data.importer.emx;
 
+import com.google.common.collect.AbstractIterator;
 import org.apache.commons.lang3.StringUtils;
 import org.molgenis.data.*;
+import org.molgenis.data.file.support.FileRepositoryCollection;
 import org.molgenis.data.importer.DataProvider;
 import org.molgenis.data.meta.AttributeType;
 import org.molgenis.data.meta.IllegalAttributeTypeException;
@@ -9,13 +11,18 @@ import org.molgenis.data.meta.model.Attribute;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.util.UnexpectedEnumException;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
+import static com.google.common.collect.Maps.newHashMapWithExpectedSize;
 import static java.util.Collections.emptyList;
 import static java.util.Objects.requireNonNull;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.StreamSupport.stream;
 import static org.molgenis.data.EntityManager.CreationMode.POPULATE;
 import static org.molgenis.data.meta.model.Package.PACKAGE_SEPARATOR;
@@ -40,7 +47,13 @@ class EmxDataProvider implements DataProvider
 	@Override
 	public boolean hasEntities(EntityType entityType)
 	{
-		if (job.getSource().hasRepository(entityType))
+		RepositoryCollection source = job.getSource();
+		boolean hasRepository;
+		synchronized (source)
+		{
+			hasRepository = source.hasRepository(entityType);
+		}
+		if (hasRepository)
 		{
 			return true;
 		}
@@ -51,26 +64,123 @@ class EmxDataProvider implements DataProvider
 		}
 	}
 
+	/**
+	 * Returns the entities of an entity type. Entities of multiple entity types are read concurrently, but repository
+	 * collections are not thread-safe. A file source is therefore reopened for each entity type, the reopened source
+	 * is closed with the returned stream. Sources that can not be reopened are only accessed while holding their lock.
+	 */
 	@Override
 	public Stream<Entity> getEntities(EntityType entityType)
 	{
-		Repository<Entity> repository = job.getSource().getRepository(entityType);
+		RepositoryCollection source = job.getSource();
+		FileRepositoryCollection reopenedSource = reopen(source);
+		if (reopenedSource != null)
+		{
+			try
+			{
+				Repository<Entity> repository = getRepository(reopenedSource, entityType);
+				return stream(repository.spliterator(), false).map(emxEntity -> toEntity(entityType, emxEntity))
+																.onClose(() -> close(reopenedSource));
+			}
+			catch (RuntimeException e)
+			{
+				close(reopenedSource);
+				throw e;
+			}
+		}
+		return getEntitiesSynchronized(source, entityType);
+	}
+
+	private static FileRepositoryCollection reopen(RepositoryCollection source)
+	{
+		if (!(source instanceof FileRepositoryCollection))
+		{
+			return null;
+		}
+		try
+		{
+			return ((FileRepositoryCollection) source).reopen();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void close(FileRepositoryCollection source)
+	{
+		try
+		{
+			source.close();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the entities of an entity type from a shared source: the values of each source entity are copied with
+	 * the lock of the source held and are converted to an entity without it.
+	 */
+	private Stream<Entity> getEntitiesSynchronized(RepositoryCollection source, EntityType entityType)
+	{
+		Iterator<Entity> sourceEntities;
+		synchronized (source)
+		{
+			sourceEntities = getRepository(source, entityType).iterator();
+		}
+
+		List<String> attributeNames = getImportedAttributes(entityType).map(Attribute::getName).collect(toList());
+		Iterator<Map<String, Object>> sourceValues = new AbstractIterator<Map<String, Object>>()
+		{
+			@Override
+			protected Map<String, Object> computeNext()
+			{
+				synchronized (source)
+				{
+					return sourceEntities.hasNext() ? copyValues(sourceEntities.next(), attributeNames) : endOfData();
+				}
+			}
+		};
+		return stream(spliteratorUnknownSize(sourceValues, ORDERED), false).map(
+				values -> toEntity(entityType, values::get));
+	}
+
+	private Repository<Entity> getRepository(RepositoryCollection source, EntityType entityType)
+	{
+		Repository<Entity> repository = source.getRepository(entityType);
 		if (repository == null)
 		{
 			Optional<String> packageId = job.getPackageId();
 			if (packageId.isPresent() && entityType.getId().startsWith(packageId.get() + PACKAGE_SEPARATOR))
 			{
-				repository = job.getSource()
-								.getRepository(entityType.getId()
-														 .substring(packageId.get().length()
-																 + PACKAGE_SEPARATOR.length()));
+				repository = source.getRepository(entityType.getId()
+															.substring(packageId.get().length()
+																	+ PACKAGE_SEPARATOR.length()));
 			}
 		}
 		if (repository == null)
 		{
 			throw new UnknownRepositoryException(entityType.getId());
 		}
-		return stream(repository.spliterator(), false).map(sourceEntity -> toEntity(entityType, sourceEntity));
+		return repository;
+	}
+
+	/**
+	 * Returns the attributes of which the values are imported
+	 */
+	private static Stream<Attribute> getImportedAttributes(EntityType entityType)
+	{
+		return stream(entityType.getAtomicAttributes().spliterator(), false).filter(
+				attr -> attr.getExpression() == null && !attr.isMappedBy());
+	}
+
+	private static Map<String, Object> copyValues(Entity emxEntity, List<String> attributeNames)
+	{
+		Map<String, Object> values = newHashMapWithExpectedSize(attributeNames.size());
+		attributeNames.forEach(attributeName -> values.put(attributeName, emxEntity.get(attributeName)));
+		return values;
 	}
 
 	/**
@@ -81,6 +191,18 @@ class EmxDataProvider implements DataProvider
 	 * @return MOLGENIS entity
 	 */
 	private Entity toEntity(EntityType entityType, Entity emxEntity)
+	{
+		return toEntity(entityType, emxEntity::get);
+	}
+
+	/**
+	 * Create an entity from the values of an EMX entity
+	 *
+	 * @param entityType entity meta data
+	 * @param emxValues  function that returns the EMX value of an attribute
+	 * @return MOLGENIS entity
+	 */
+	private Entity toEntity(EntityType entityType, Function<String, Object> emxValues)
 	{
 		Entity entity = entityManager.create(entityType, POPULATE);
 		for (Attribute attr : entityType.getAtomicAttributes())
@@ -88,7 +210,7 @@ class EmxDataProvider implements DataProvider
 			if (attr.getExpression() == null && !attr.isMappedBy())
 			{
 				String attrName = attr.getName();
-				Object emxValue = emxEntity.get(attrName);
+				Object emxValue = emxValues.apply(attrName);
 
 				AttributeType attrType = attr.getDataType();
 				switch (attrType)
@@ -0,0 +1,100 @@
+package org.molgenis.data.importer;
+
+import org.mockito.Mock;
+import org.molgenis.data.Entity;
+import org.molgenis.data.MolgenisDataException;
+import org.molgenis.data.meta.model.EntityType;
+import org.molgenis.test.AbstractMockitoTest;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.stream.Collectors.toList;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+public class ConcurrentEntityReaderTest extends AbstractMockitoTest
+{
+	@Mock
+	private DataProvider dataProvider;
+	@Mock
+	private EntityType entityType0;
+	@Mock
+	private EntityType entityType1;
+
+	private ExecutorService executorService;
+
+	@BeforeClass
+	public void setUpBeforeClass()
+	{
+		executorService = newFixedThreadPool(2);
+	}
+
+	@AfterClass
+	public void tearDownAfterClass()
+	{
+		executorService.shutdownNow();
+	}
+
+	@Test
+	public void testGetEntities()
+	{
+		when(entityType0.getId()).thenReturn("entityType0");
+		when(entityType1.getId()).thenReturn("entityType1");
+		List<Entity> entities0 = createEntities(5 * ConcurrentEntityReader.BATCH_SIZE + 1);
+		List<Entity> entities1 = createEntities(3);
+		when(dataProvider.getEntities(entityType0)).thenReturn(entities0.stream());
+		doReturn(entities1.stream()).when(dataProvider).getEntities(entityType1);
+
+		try (ConcurrentEntityReader entityReader = new ConcurrentEntityReader(dataProvider, executorService))
+		{
+			entityReader.read(entityType0);
+			entityReader.read(entityType1);
+			assertEquals(entityReader.getEntities(entityType0).collect(toList()), entities0);
+			assertEquals(entityReader.getEntities(entityType1).collect(toList()), entities1);
+		}
+	}
+
+	@Test(expectedExceptions = MolgenisDataException.class, expectedExceptionsMessageRegExp = "invalid value")
+	public void testGetEntitiesReadFailure()
+	{
+		when(entityType0.getId()).thenReturn("entityType0");
+		Stream<Entity> entities = Stream.concat(createEntities(ConcurrentEntityReader.BATCH_SIZE).stream(),
+				Stream.generate(() ->
+				{
+					throw new MolgenisDataException("invalid value");
+				}));
+		when(dataProvider.getEntities(entityType0)).thenReturn(entities);
+
+		try (ConcurrentEntityReader entityReader = new ConcurrentEntityReader(dataProvider, executorService))
+		{
+			entityReader.read(entityType0);
+			entityReader.getEntities(entityType0).forEach(entity ->
+			{
+			});
+		}
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "Entities of \\[entityType0\\] are not being read")
+	public void testGetEntitiesNotRead()
+	{
+		when(entityType0.getId()).thenReturn("entityType0");
+		try (ConcurrentEntityReader entityReader = new ConcurrentEntityReader(dataProvider, executorService))
+		{
+			entityReader.getEntities(entityType0);
+		}
+	}
+
+	private static List<Entity> createEntities(int nrEntities)
+	{
+		return IntStream.range(0, nrEntities).mapToObj(i -> mock(Entity.class)).collect(toList());
+	}
+}
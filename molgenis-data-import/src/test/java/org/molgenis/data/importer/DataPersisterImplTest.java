@@ -17,12 +17,14 @@ import org.molgenis.data.meta.MetaDataServiceImpl;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.data.meta.model.EntityTypeMetadata;
 import org.molgenis.test.AbstractMockitoTest;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.stream.Stream;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 import static org.mockito.Mockito.*;
 import static org.molgenis.data.meta.model.EntityTypeMetadata.ENTITY_TYPE_META_DATA;
@@ -84,8 +86,8 @@ public class DataPersisterImplTest extends AbstractMockitoTest
 
 		when(dataProvider.hasEntities(entityType2)).thenReturn(false);
 
-		when(entityTypeDependencyResolver.resolve(asList(entityType0, entityType1, entityType2))).thenReturn(
-				asList(entityType2, entityType1, entityType0));
+		when(entityTypeDependencyResolver.resolveLevels(asList(entityType0, entityType1, entityType2))).thenReturn(
+				asList(singletonList(entityType2), singletonList(entityType1), singletonList(entityType0)));
 
 		doAnswer(invocation ->
 		{
@@ -122,6 +124,12 @@ public class DataPersisterImplTest extends AbstractMockitoTest
 	}
 
 	@SuppressWarnings("unchecked")
+	@AfterMethod
+	public void shutdownAfterMethod()
+	{
+		dataPersisterImpl.shutdown();
+	}
+
 	@Test
 	public void testPersistMetaNoneDataAdd()
 	{
@@ -138,6 +146,29 @@ public class DataPersisterImplTest extends AbstractMockitoTest
 		verifyNoMoreInteractions(metaDataService, dataService);
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testPersistMetaAddDataAddEntityTypeLevel()
+	{
+		when(entityTypeDependencyResolver.resolveLevels(asList(entityType0, entityType1, entityType2))).thenReturn(
+				asList(singletonList(entityType2), asList(entityType1, entityType0)));
+
+		PersistResult persistResult = dataPersisterImpl.persist(dataProvider, MetadataMode.ADD, DataMode.ADD);
+		assertEquals(persistResult,
+				PersistResult.create(ImmutableMap.of(entityType0.getId(), 2L, entityType1.getId(), 3L)));
+
+		InOrder inOrder = inOrder(metaDataService, dataService);
+		inOrder.verify(metaDataService).addEntityType(entityType2);
+		inOrder.verify(metaDataService).addEntityType(entityType1);
+		inOrder.verify(metaDataService).addEntityType(entityType0);
+		// stream consumed, cannot verify content
+		inOrder.verify(dataService).add(eq(entityType1.getId()), any(Stream.class));
+		// stream consumed, cannot verify content
+		inOrder.verify(dataService).add(eq(entityType0.getId()), any(Stream.class));
+
+		verifyNoMoreInteractions(metaDataService, dataService);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test(expectedExceptions = MolgenisDataException.class, expectedExceptionsMessageRegExp = "Abstract entity type 'Entity type #0' with id 'entityTypeId0' cannot contain entities")
 	public void testPersistMetaNoneDataAddAbstractEntityType()
@@ -224,8 +255,8 @@ public class DataPersisterImplTest extends AbstractMockitoTest
 		// stream consumed, cannot verify content
 		inOrder.verify(dataService).add(eq(entityType0.getId()), any(Stream.class));
 		inOrder.verify(metaDataService).updateEntityType(entityType0);
-		inOrder.verify(dataService).update(eq(entityType0.getId()), any(Stream.class));
 		verifyNoMoreInteractions(metaDataService, dataService);
+		verify(dataProvider).getEntities(entityType0);
 	}
 
 	@SuppressWarnings("unchecked")
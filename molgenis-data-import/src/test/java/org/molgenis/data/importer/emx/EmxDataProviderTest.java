@@ -5,18 +5,32 @@ import com.google.common.collect.ImmutableList;
 import org.mockito.Mock;
 import org.mockito.quality.Strictness;
 import org.molgenis.data.*;
+import org.molgenis.data.file.support.FileRepositoryCollection;
 import org.molgenis.data.importer.ParsedMetaData;
+import org.molgenis.data.meta.model.Attribute;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.test.AbstractMockitoTest;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.stream.Collectors.toList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.molgenis.data.EntityManager.CreationMode.POPULATE;
+import static org.molgenis.data.meta.AttributeType.STRING;
 import static org.testng.Assert.*;
 
 public class EmxDataProviderTest extends AbstractMockitoTest
@@ -111,12 +125,54 @@ public class EmxDataProviderTest extends AbstractMockitoTest
 		RepositoryCollection repositoryCollection = mock(RepositoryCollection.class);
 		@SuppressWarnings("unchecked")
 		Repository<Entity> repository = mock(Repository.class);
-		when(repository.spliterator()).thenReturn(Collections.<Entity>emptyList().spliterator());
+		when(repository.iterator()).thenReturn(Collections.<Entity>emptyList().iterator());
 		when(repositoryCollection.getRepository(entityType)).thenReturn(repository);
 		when(emxImportJob.getSource()).thenReturn(repositoryCollection);
 		assertEquals(emxDataProvider.getEntities(entityType).collect(toList()), emptyList());
 	}
 
+	@Test
+	public void testGetEntitiesReopensFileSource() throws Exception
+	{
+		EntityType entityType = mock(EntityType.class);
+		FileRepositoryCollection repositoryCollection = mock(FileRepositoryCollection.class);
+		FileRepositoryCollection reopenedRepositoryCollection = mock(FileRepositoryCollection.class);
+		when(repositoryCollection.reopen()).thenReturn(reopenedRepositoryCollection);
+		@SuppressWarnings("unchecked")
+		Repository<Entity> repository = mock(Repository.class);
+		when(repository.spliterator()).thenReturn(Collections.<Entity>emptyList().spliterator());
+		when(reopenedRepositoryCollection.getRepository(entityType)).thenReturn(repository);
+		when(emxImportJob.getSource()).thenReturn(repositoryCollection);
+
+		try (Stream<Entity> entities = emxDataProvider.getEntities(entityType))
+		{
+			assertEquals(entities.collect(toList()), emptyList());
+			verify(reopenedRepositoryCollection, never()).close();
+		}
+		verify(reopenedRepositoryCollection).close();
+		verify(repositoryCollection, never()).getRepository(entityType);
+	}
+
+	@Test(expectedExceptions = UnknownRepositoryException.class)
+	public void testGetEntitiesReopenedFileSourceUnknownRepository() throws Exception
+	{
+		String entityTypeId = "EntityTypeId";
+		EntityType entityType = when(mock(EntityType.class).getId()).thenReturn(entityTypeId).getMock();
+		FileRepositoryCollection repositoryCollection = mock(FileRepositoryCollection.class);
+		FileRepositoryCollection reopenedRepositoryCollection = mock(FileRepositoryCollection.class);
+		when(repositoryCollection.reopen()).thenReturn(reopenedRepositoryCollection);
+		when(emxImportJob.getSource()).thenReturn(repositoryCollection);
+
+		try
+		{
+			emxDataProvider.getEntities(entityType);
+		}
+		finally
+		{
+			verify(reopenedRepositoryCollection).close();
+		}
+	}
+
 	@Test
 	public void testGetEntitiesAlternativeEntityTypeId() throws Exception
 	{
@@ -126,7 +182,7 @@ public class EmxDataProviderTest extends AbstractMockitoTest
 		RepositoryCollection repositoryCollection = mock(RepositoryCollection.class);
 		@SuppressWarnings("unchecked")
 		Repository<Entity> repository = mock(Repository.class);
-		when(repository.spliterator()).thenReturn(Collections.<Entity>emptyList().spliterator());
+		when(repository.iterator()).thenReturn(Collections.<Entity>emptyList().iterator());
 		when(repositoryCollection.getRepository("EntityTypeId")).thenReturn(repository);
 		when(emxImportJob.getPackageId()).thenReturn(Optional.of("base"));
 		when(emxImportJob.getSource()).thenReturn(repositoryCollection);
@@ -159,4 +215,84 @@ public class EmxDataProviderTest extends AbstractMockitoTest
 		when(emxImportJob.getSource()).thenReturn(repositoryCollection);
 		assertEquals(emxDataProvider.getEntities(entityType).collect(toList()), emptyList());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testGetEntitiesConcurrently() throws Exception
+	{
+		AtomicBoolean sourceInUse = new AtomicBoolean();
+		Attribute attribute = when(mock(Attribute.class).getName()).thenReturn("attr").getMock();
+		when(attribute.getDataType()).thenReturn(STRING);
+		EntityType entityType0 = when(mock(EntityType.class).getAtomicAttributes()).thenReturn(
+				singletonList(attribute)).getMock();
+		EntityType entityType1 = when(mock(EntityType.class).getAtomicAttributes()).thenReturn(
+				singletonList(attribute)).getMock();
+		when(entityManager.create(any(EntityType.class), eq(POPULATE))).thenAnswer(invocation -> mock(Entity.class));
+
+		RepositoryCollection repositoryCollection = mock(RepositoryCollection.class);
+		@SuppressWarnings("unchecked")
+		Repository<Entity> repository0 = mock(Repository.class);
+		when(repository0.iterator()).thenReturn(createSourceEntities(1000, sourceInUse));
+		when(repositoryCollection.getRepository(entityType0)).thenReturn(repository0);
+		@SuppressWarnings("unchecked")
+		Repository<Entity> repository1 = mock(Repository.class);
+		when(repository1.iterator()).thenReturn(createSourceEntities(1000, sourceInUse));
+		when(repositoryCollection.getRepository(entityType1)).thenReturn(repository1);
+		when(emxImportJob.getSource()).thenReturn(repositoryCollection);
+
+		ExecutorService executorService = newFixedThreadPool(2);
+		try
+		{
+			Future<Long> count0 = executorService.submit(() -> emxDataProvider.getEntities(entityType0).count());
+			Future<Long> count1 = executorService.submit(() -> emxDataProvider.getEntities(entityType1).count());
+			assertEquals(count0.get().longValue(), 1000L);
+			assertEquals(count1.get().longValue(), 1000L);
+		}
+		finally
+		{
+			executorService.shutdownNow();
+		}
+	}
+
+	/**
+	 * Creates source entities that fail when the source is accessed by multiple threads at the same time
+	 */
+	private static Iterator<Entity> createSourceEntities(int nrEntities, AtomicBoolean sourceInUse)
+	{
+		return new Iterator<Entity>()
+		{
+			private int index = 0;
+
+			@Override
+			public boolean hasNext()
+			{
+				return accessSource(sourceInUse, () -> index < nrEntities);
+			}
+
+			@Override
+			public Entity next()
+			{
+				String value = accessSource(sourceInUse, () -> "value" + index++);
+				Entity sourceEntity = mock(Entity.class);
+				when(sourceEntity.get("attr")).thenAnswer(invocation -> accessSource(sourceInUse, () -> value));
+				return sourceEntity;
+			}
+		};
+	}
+
+	private static <T> T accessSource(AtomicBoolean sourceInUse, Supplier<T> supplier)
+	{
+		if (!sourceInUse.compareAndSet(false, true))
+		{
+			throw new IllegalStateException("Source accessed concurrently");
+		}
+		try
+		{
+			Thread.yield();
+			return supplier.get();
+		}
+		finally
+		{
+			sourceInUse.set(false);
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package org.molgenis.data.index;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import org.molgenis.data.DataService;
 import org.molgenis.data.EntityKey;
@@ -21,15 +19,14 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 import static com.google.common.collect.Lists.newArrayList;
-import static com.google.common.collect.Multimaps.synchronizedSetMultimap;
 import static com.google.common.collect.Streams.mapWithIndex;
 import static java.util.Collections.emptyList;
-import static java.util.Collections.emptySet;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
@@ -53,8 +50,9 @@ public class IndexActionRegisterServiceImpl implements TransactionInformation, I
 	private static final Logger LOG = LoggerFactory.getLogger(IndexActionRegisterServiceImpl.class);
 	private static final int LOG_EVERY = 1000;
 	private static final int ENTITY_FETCH_PAGE_SIZE = 1000;
+	private static final TransactionChanges NO_CHANGES = new TransactionChanges();
 
-	private final SetMultimap<String, Impact> changesPerTransaction = synchronizedSetMultimap(HashMultimap.create());
+	private final Map<String, TransactionChanges> changesPerTransaction = new ConcurrentHashMap<>();
 
 	private final DataService dataService;
 	private final IndexActionFactory indexActionFactory;
@@ -83,7 +81,7 @@ public class IndexActionRegisterServiceImpl implements TransactionInformation, I
 
 	@Transactional
 	@Override
-	public synchronized void register(EntityType entityType, Object entityId)
+	public void register(EntityType entityType, Object entityId)
 	{
 		String transactionId = (String) TransactionSynchronizationManager.getResource(TRANSACTION_ID_RESOURCE_NAME);
 		if (transactionId != null)
@@ -91,10 +89,12 @@ public class IndexActionRegisterServiceImpl implements TransactionInformation, I
 			Impact impact = createSingleEntityImpact(entityType.getId(), entityId);
 			LOG.debug("register({})", impact);
 
-			final boolean newlyRegistered = changesPerTransaction.put(transactionId, impact);
+			TransactionChanges changes = changesPerTransaction.computeIfAbsent(transactionId,
+					id -> new TransactionChanges());
+			final boolean newlyRegistered = changes.add(impact);
 			if (newlyRegistered && LOG.isWarnEnabled())
 			{
-				final int size = changesPerTransaction.get(transactionId).size();
+				final int size = changes.size();
 				if (size >= LOG_EVERY && size % LOG_EVERY == 0)
 				{
 					LOG.warn(
@@ -114,7 +114,7 @@ public class IndexActionRegisterServiceImpl implements TransactionInformation, I
 	@RunAsSystem
 	public void storeIndexActions(String transactionId)
 	{
-		Set<Impact> changes = getChangesForCurrentTransaction();
+		Set<Impact> changes = getChangesForCurrentTransaction().getImpacts();
 		if (changes.isEmpty())
 		{
 			return;
@@ -195,16 +195,26 @@ public class IndexActionRegisterServiceImpl implements TransactionInformation, I
 	public boolean forgetIndexActions(String transactionId)
 	{
 		LOG.debug("Forget index actions for transaction {}", transactionId);
-		return !changesPerTransaction.removeAll(transactionId)
-									 .stream()
-									 .map(Impact::getEntityTypeId)
-									 .allMatch(excludedEntities::contains);
+		TransactionChanges changes = changesPerTransaction.remove(transactionId);
+		if (changes == null)
+		{
+			return false;
+		}
+		try
+		{
+			return !excludedEntities.containsAll(changes.getDirtyRepositories());
+		}
+		finally
+		{
+			changes.close();
+		}
 	}
 
-	private Set<Impact> getChangesForCurrentTransaction()
+	private TransactionChanges getChangesForCurrentTransaction()
 	{
 		String transactionId = (String) TransactionSynchronizationManager.getResource(TRANSACTION_ID_RESOURCE_NAME);
-		return Optional.of(changesPerTransaction.get(transactionId)).orElse(emptySet());
+		TransactionChanges changes = transactionId != null ? changesPerTransaction.get(transactionId) : null;
+		return changes != null ? changes : NO_CHANGES;
 	}
 
 	/* TransactionInformation implementation */
@@ -212,48 +222,36 @@ public class IndexActionRegisterServiceImpl implements TransactionInformation, I
 	@Override
 	public boolean isEntityDirty(EntityKey entityKey)
 	{
-		return getChangesForCurrentTransaction().stream()
-												.filter(Impact::isSingleEntity)
-												.map(Impact::toEntityKey)
-												.anyMatch(entityKey::equals);
+		return getChangesForCurrentTransaction().isEntityDirty(entityKey);
 	}
 
 	@Override
 	public boolean isEntireRepositoryDirty(EntityType entityType)
 	{
-		return getChangesForCurrentTransaction().stream()
-												.filter(Impact::isWholeRepository)
-												.map(Impact::getEntityTypeId)
-												.anyMatch(entityType.getId()::equals);
+		return getChangesForCurrentTransaction().isEntireRepositoryDirty(entityType.getId());
 	}
 
 	@Override
 	public boolean isRepositoryCompletelyClean(EntityType entityType)
 	{
-		return !getDirtyRepositories().contains(entityType.getId());
+		return !getChangesForCurrentTransaction().isRepositoryDirty(entityType.getId());
 	}
 
 	@Override
 	public Set<EntityKey> getDirtyEntities()
 	{
-		return getChangesForCurrentTransaction().stream()
-												.filter(Impact::isSingleEntity)
-												.map(Impact::toEntityKey)
-												.collect(toSet());
+		return getChangesForCurrentTransaction().getDirtyEntities();
 	}
 
 	@Override
 	public Set<String> getEntirelyDirtyRepositories()
 	{
-		return getChangesForCurrentTransaction().stream()
-												.filter(Impact::isWholeRepository)
-												.map(Impact::getEntityTypeId)
-												.collect(toSet());
+		return getChangesForCurrentTransaction().getEntirelyDirtyRepositories();
 	}
 
 	@Override
 	public Set<String> getDirtyRepositories()
 	{
-		return getChangesForCurrentTransaction().stream().map(Impact::getEntityTypeId).collect(toSet());
+		return getChangesForCurrentTransaction().getDirtyRepositories();
 	}
 }
@@ -12,6 +12,7 @@ import org.molgenis.jobs.JobFactory;
 import org.molgenis.jobs.model.JobExecutionMetaData;
 import org.molgenis.jobs.model.JobPackage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
@@ -48,6 +49,9 @@ public class IndexConfig
 	@Autowired
 	private JobExecutor jobExecutor;
 
+	@Value("${index.job.threads:4}")
+	private int indexJobThreads;
+
 	@PostConstruct
 	public void register()
 	{
@@ -66,7 +70,7 @@ public class IndexConfig
 	@Bean
 	public IndexJobScheduler indexJobScheduler()
 	{
-		return new IndexJobSchedulerImpl(dataService, indexJobExecutionFactory, jobExecutor);
+		return new IndexJobSchedulerImpl(dataService, indexJobExecutionFactory, jobExecutor, indexJobThreads);
 	}
 
 	@Bean
@@ -83,7 +87,7 @@ public class IndexConfig
 			@Override
 			public Job<Void> createJob(IndexJobExecution jobExecution)
 			{
-				return progress -> indexJobService().executeJob(progress, jobExecution.getIndexActionJobID());
+				return progress -> indexJobService().executeJob(progress, jobExecution.getIndexActionJobIDs());
 			}
 		};
 	}
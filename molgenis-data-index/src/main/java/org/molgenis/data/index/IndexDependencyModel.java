@@ -6,6 +6,7 @@ import org.molgenis.data.meta.model.Attribute;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.data.util.GenericDependencyResolver;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -15,7 +16,9 @@ import java.util.stream.Stream;
 import static com.google.common.collect.Maps.uniqueIndex;
 import static java.util.Collections.emptySet;
 import static java.util.stream.StreamSupport.stream;
+import static org.molgenis.data.meta.model.AttributeMetadata.NAME;
 import static org.molgenis.data.meta.model.AttributeMetadata.REF_ENTITY_TYPE;
+import static org.molgenis.data.meta.model.AttributeMetadata.TYPE;
 import static org.molgenis.data.meta.model.EntityTypeMetadata.*;
 
 /**
@@ -34,8 +37,10 @@ class IndexDependencyModel
 													  .field(IS_ABSTRACT)
 													  .field(INDEXING_DEPTH)
 													  .field(EXTENDS, new Fetch().field(ID))
-													  .field(ATTRIBUTES, new Fetch().field(REF_ENTITY_TYPE,
-															  new Fetch().field(ID)));
+													  .field(ATTRIBUTES, new Fetch().field(NAME)
+																					.field(TYPE)
+																					.field(REF_ENTITY_TYPE,
+																							new Fetch().field(ID)));
 
 	/**
 	 * Creates an IndexDependencyModel for a list of EntityTypes.
@@ -116,7 +121,55 @@ class IndexDependencyModel
 
 	Stream<String> getEntityTypesDependentOn(String entityTypeId)
 	{
-		return genericDependencyResolver.getAllDependants(entityTypeId, id -> entityTypes.get(id).getIndexingDepth(),
+		return genericDependencyResolver.getAllDependants(entityTypeId, this::getIndexingDepth,
 				this::getReferencingEntities).stream();
 	}
+
+	/**
+	 * Returns the non-abstract entity types that have an attribute, possibly inherited, that references an entity
+	 * type.
+	 *
+	 * @param entityTypeId the ID of the referenced entity type
+	 * @return Set of IDs of the referencing entity types
+	 */
+	Set<String> getEntityTypesReferencing(String entityTypeId)
+	{
+		return getReferencingEntities(entityTypeId);
+	}
+
+	/**
+	 * Returns the attributes, including inherited attributes, of an entity type that reference another entity type.
+	 *
+	 * @param entityTypeId           the ID of the referencing entity type
+	 * @param referencedEntityTypeId the ID of the referenced entity type
+	 * @return List of attributes that reference the referenced entity type
+	 */
+	List<Attribute> getReferencingAttributes(String entityTypeId, String referencedEntityTypeId)
+	{
+		List<Attribute> result = new ArrayList<>();
+		for (EntityType entityType = entityTypes.get(entityTypeId); entityType != null; entityType =
+				entityType.getExtends() != null ? entityTypes.get(entityType.getExtends().getId()) : null)
+		{
+			stream(entityType.getOwnAtomicAttributes().spliterator(), false).filter(
+					attribute -> attribute.getRefEntity() != null && referencedEntityTypeId.equals(
+							attribute.getRefEntity().getId())).forEach(result::add);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the indexing depth of an entity type, the depth up to which referenced entities are indexed
+	 */
+	int getIndexingDepth(String entityTypeId)
+	{
+		return entityTypes.get(entityTypeId).getIndexingDepth();
+	}
+
+	/**
+	 * @return the highest indexing depth of all entity types in this model
+	 */
+	int getMaxIndexingDepth()
+	{
+		return entityTypes.values().stream().mapToInt(EntityType::getIndexingDepth).max().orElse(0);
+	}
 }
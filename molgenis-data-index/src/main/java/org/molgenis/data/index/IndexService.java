@@ -3,6 +3,7 @@ package org.molgenis.data.index;
 import org.molgenis.data.Entity;
 import org.molgenis.data.Repository;
 import org.molgenis.data.meta.model.EntityType;
+import org.molgenis.jobs.Progress;
 
 import java.util.stream.Stream;
 
@@ -16,6 +17,11 @@ public interface IndexService
 
 	void rebuildIndex(Repository<? extends Entity> repository);
 
+	/**
+	 * Rebuilds the index of a repository and reports the number of indexed entities to the given {@link Progress}.
+	 */
+	void rebuildIndex(Repository<? extends Entity> repository, Progress progress);
+
 	void refreshIndex();
 
 	void index(EntityType entityType, Entity entity);
@@ -1,24 +1,28 @@
 package org.molgenis.data.index;
 
+import com.google.common.collect.Streams;
 import org.molgenis.data.*;
 import org.molgenis.data.QueryRule.Operator;
 import org.molgenis.data.aggregation.AggregateQuery;
 import org.molgenis.data.aggregation.AggregateResult;
 import org.molgenis.data.index.exception.UnknownIndexException;
 import org.molgenis.data.index.job.IndexJobScheduler;
+import org.molgenis.data.meta.model.Attribute;
+import org.molgenis.data.support.QueryImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
-import java.util.EnumSet;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import static com.google.common.collect.Iterators.partition;
 import static java.lang.String.format;
 import static java.util.Collections.unmodifiableSet;
 import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.molgenis.data.QueryRule.Operator.*;
 import static org.molgenis.data.QueryUtils.*;
 import static org.molgenis.data.RepositoryCapability.AGGREGATEABLE;
 import static org.molgenis.data.RepositoryCapability.QUERYABLE;
@@ -26,12 +30,18 @@ import static org.molgenis.data.RepositoryCapability.QUERYABLE;
 /**
  * Decorator for indexed repositories. Sends all queries with operators that are not supported by the decorated
  * repository to the index.
+ * <p>
+ * The index does not contain access control lists. Queries with {@link Operator#PERMITTED} query rules are therefore
+ * sent to the decorated repository if it supports them and the other rules of the query. Otherwise the PERMITTED query
+ * rules are applied by the decorated repository to the entity ids found in the index.
  */
 class IndexedRepositoryDecorator extends AbstractRepositoryDecorator<Entity>
 {
 	private static final Logger LOG = LoggerFactory.getLogger(IndexedRepositoryDecorator.class);
 	private static final String INDEX_REPOSITORY = "Index Repository";
 	private static final String DECORATED_REPOSITORY = "Decorated Repository";
+	private static final int PERMITTED_BATCH_SIZE = 1000;
+	static final int MAX_PERMITTED_IDS = 10000;
 
 	private final SearchService searchService;
 	private final IndexJobScheduler indexJobScheduler;
@@ -65,7 +75,15 @@ class IndexedRepositoryDecorator extends AbstractRepositoryDecorator<Entity>
 		{
 			LOG.debug("public Entity findOne({}) entityTypeId: [{}] repository: [{}]", q, getEntityType().getId(),
 					INDEX_REPOSITORY);
-			Object entityId = tryTwice(() -> searchService.searchOne(getEntityType(), q));
+			Object entityId;
+			if (containsOperator(q, PERMITTED))
+			{
+				entityId = searchPermitted(q).findFirst().orElse(null);
+			}
+			else
+			{
+				entityId = tryTwice(() -> searchService.searchOne(getEntityType(), q));
+			}
 			return entityId != null ? delegate().findOneById(entityId, q.getFetch()) : null;
 		}
 
@@ -84,7 +102,15 @@ class IndexedRepositoryDecorator extends AbstractRepositoryDecorator<Entity>
 		{
 			LOG.debug("public Entity findAll({}) entityTypeId: [{}] repository: [{}]", q, getEntityType().getId(),
 					INDEX_REPOSITORY);
-			Stream<Object> entityIds = tryTwice(() -> searchService.search(getEntityType(), q));
+			Stream<Object> entityIds;
+			if (containsOperator(q, PERMITTED))
+			{
+				entityIds = searchPermitted(q);
+			}
+			else
+			{
+				entityIds = tryTwice(() -> searchService.search(getEntityType(), q));
+			}
 			return delegate().findAll(entityIds, q.getFetch());
 		}
 	}
@@ -103,10 +129,18 @@ class IndexedRepositoryDecorator extends AbstractRepositoryDecorator<Entity>
 		return unmodifiableSet(capabilities);
 	}
 
+	/**
+	 * Returns all operators, except for {@link Operator#PERMITTED} if the decorated repository cannot apply it.
+	 */
 	@Override
 	public Set<Operator> getQueryOperators()
 	{
-		return EnumSet.allOf(Operator.class);
+		Set<Operator> operators = EnumSet.allOf(Operator.class);
+		if (!delegate().getQueryOperators().contains(PERMITTED))
+		{
+			operators.remove(PERMITTED);
+		}
+		return operators;
 	}
 
 	@Override
@@ -123,14 +157,34 @@ class IndexedRepositoryDecorator extends AbstractRepositoryDecorator<Entity>
 		{
 			LOG.debug("public long count({}) entityTypeId: [{}] repository: [{}]", q, getEntityType().getId(),
 					INDEX_REPOSITORY);
+			if (containsOperator(q, PERMITTED))
+			{
+				return countPermitted(q);
+			}
 			return tryTwice(() -> searchService.count(getEntityType(), q));
 		}
 	}
 
+	/**
+	 * Aggregates in the decorated repository if it can, so that the result reflects the latest writes and does not
+	 * depend on the index being up to date. Aggregates that the decorated repository cannot handle are sent to the
+	 * index.
+	 */
 	@Override
 	public AggregateResult aggregate(AggregateQuery aggregateQuery)
 	{
-		return tryTwice(() -> searchService.aggregate(getEntityType(), aggregateQuery));
+		if (aggregateSupported(aggregateQuery))
+		{
+			LOG.debug("public AggregateResult aggregate({}) entityTypeId: [{}] repository: [{}]", aggregateQuery,
+					getEntityType().getId(), DECORATED_REPOSITORY);
+			return delegate().aggregate(aggregateQuery);
+		}
+		else
+		{
+			LOG.debug("public AggregateResult aggregate({}) entityTypeId: [{}] repository: [{}]", aggregateQuery,
+					getEntityType().getId(), INDEX_REPOSITORY);
+			return tryTwice(() -> searchService.aggregate(getEntityType(), aggregateQuery));
+		}
 	}
 
 	/**
@@ -164,6 +218,179 @@ class IndexedRepositoryDecorator extends AbstractRepositoryDecorator<Entity>
 		}
 	}
 
+	/**
+	 * Searches the entity ids that match a query with {@link Operator#PERMITTED} query rules. If the rules are part of
+	 * the top-level conjunction of the query, the index is searched without them and the decorated repository filters
+	 * the found entity ids on permission in batches, retaining their order. Otherwise the rules are replaced by the ids
+	 * of the permitted entities before searching the index, which is limited to {@link #MAX_PERMITTED_IDS} ids.
+	 */
+	private Stream<Object> searchPermitted(Query<Entity> q)
+	{
+		List<QueryRule> permittedRules = new ArrayList<>();
+		List<QueryRule> searchRules = new ArrayList<>();
+		if (!splitPermittedRules(q.getRules(), permittedRules, searchRules))
+		{
+			Query<Entity> searchQuery = toPermittedIdsQuery(q);
+			return tryTwice(() -> searchService.search(getEntityType(), searchQuery));
+		}
+
+		QueryImpl<Entity> searchQuery = new QueryImpl<>(searchRules);
+		searchQuery.setSort(q.getSort());
+		Stream<Object> entityIds = tryTwice(() -> searchService.search(getEntityType(), searchQuery));
+
+		Stream<Object> permittedEntityIds = Streams.stream(partition(entityIds.iterator(), PERMITTED_BATCH_SIZE))
+												   .flatMap(batch -> filterPermitted(batch, permittedRules));
+		if (q.getOffset() > 0)
+		{
+			permittedEntityIds = permittedEntityIds.skip(q.getOffset());
+		}
+		if (q.getPageSize() > 0)
+		{
+			permittedEntityIds = permittedEntityIds.limit(q.getPageSize());
+		}
+		return permittedEntityIds;
+	}
+
+	/**
+	 * Counts the entities that match a query with {@link Operator#PERMITTED} query rules. If the rules are part of the
+	 * top-level conjunction of the query, the decorated repository counts the permitted entities among the entity ids
+	 * found in the index in batches. Otherwise the rules are replaced by the ids of the permitted entities before
+	 * counting in the index, which is limited to {@link #MAX_PERMITTED_IDS} ids.
+	 */
+	private long countPermitted(Query<Entity> q)
+	{
+		List<QueryRule> permittedRules = new ArrayList<>();
+		List<QueryRule> searchRules = new ArrayList<>();
+		if (!splitPermittedRules(q.getRules(), permittedRules, searchRules))
+		{
+			Query<Entity> countQuery = toPermittedIdsQuery(q);
+			return tryTwice(() -> searchService.count(getEntityType(), countQuery));
+		}
+
+		Stream<Object> entityIds = tryTwice(
+				() -> searchService.search(getEntityType(), new QueryImpl<>(searchRules)));
+		return Streams.stream(partition(entityIds.iterator(), PERMITTED_BATCH_SIZE))
+					  .mapToLong(batch -> delegate().count(createPermittedQuery(batch, permittedRules)))
+					  .sum();
+	}
+
+	/**
+	 * Splits the rules of the top-level conjunction of a query in {@link Operator#PERMITTED} query rules and other
+	 * query rules.
+	 *
+	 * @return false if the query contains PERMITTED query rules that are not part of the top-level conjunction, e.g.
+	 * in a disjunction, negation or nested query rule
+	 */
+	private static boolean splitPermittedRules(List<QueryRule> rules, List<QueryRule> permittedRules,
+			List<QueryRule> searchRules)
+	{
+		Operator previousOperator = null;
+		for (QueryRule rule : rules)
+		{
+			switch (rule.getOperator())
+			{
+				case PERMITTED:
+					if (previousOperator == NOT)
+					{
+						return false;
+					}
+					permittedRules.add(rule);
+					break;
+				case OR:
+					return false;
+				case AND:
+					// rejoined below
+					break;
+				default:
+					if (containsAnyOperator(rule.getNestedRules(), EnumSet.of(PERMITTED)))
+					{
+						return false;
+					}
+					if (!searchRules.isEmpty() && searchRules.get(searchRules.size() - 1).getOperator() != NOT)
+					{
+						searchRules.add(new QueryRule(AND));
+					}
+					searchRules.add(rule);
+					break;
+			}
+			previousOperator = rule.getOperator();
+		}
+		return true;
+	}
+
+	private Stream<Object> filterPermitted(List<Object> entityIds, List<QueryRule> permittedRules)
+	{
+		Query<Entity> query = createPermittedQuery(entityIds, permittedRules);
+		query.setFetch(new Fetch().field(getEntityType().getIdAttribute().getName()));
+		Set<Object> permittedEntityIds = delegate().findAll(query).map(Entity::getIdValue).collect(toSet());
+		return entityIds.stream().filter(permittedEntityIds::contains);
+	}
+
+	private Query<Entity> createPermittedQuery(List<Object> entityIds, List<QueryRule> permittedRules)
+	{
+		List<QueryRule> rules = new ArrayList<>();
+		rules.add(new QueryRule(getEntityType().getIdAttribute().getName(), IN, entityIds));
+		permittedRules.forEach(permittedRule ->
+		{
+			rules.add(new QueryRule(AND));
+			rules.add(permittedRule);
+		});
+		return new QueryImpl<>(rules);
+	}
+
+	/**
+	 * Returns a copy of a query in which each {@link Operator#PERMITTED} query rule is replaced by a rule that matches
+	 * the ids of the entities that the decorated repository finds for it.
+	 *
+	 * @throws MolgenisDataException if a PERMITTED query rule matches more than {@link #MAX_PERMITTED_IDS} entities
+	 */
+	private Query<Entity> toPermittedIdsQuery(Query<Entity> q)
+	{
+		QueryImpl<Entity> permittedIdsQuery = new QueryImpl<>(toPermittedIdsRules(q.getRules()));
+		permittedIdsQuery.setSort(q.getSort());
+		permittedIdsQuery.offset(q.getOffset());
+		permittedIdsQuery.pageSize(q.getPageSize());
+		return permittedIdsQuery;
+	}
+
+	private List<QueryRule> toPermittedIdsRules(List<QueryRule> rules)
+	{
+		String idAttributeName = getEntityType().getIdAttribute().getName();
+		List<QueryRule> permittedIdsRules = new ArrayList<>(rules.size());
+		for (QueryRule rule : rules)
+		{
+			if (rule.getOperator() == PERMITTED)
+			{
+				QueryImpl<Entity> permittedQuery = new QueryImpl<>(rule);
+				permittedQuery.setFetch(new Fetch().field(idAttributeName));
+				permittedQuery.pageSize(MAX_PERMITTED_IDS + 1);
+				List<Object> permittedEntityIds = delegate().findAll(permittedQuery)
+															.map(Entity::getIdValue)
+															.collect(toList());
+				if (permittedEntityIds.size() > MAX_PERMITTED_IDS)
+				{
+					throw new MolgenisDataException(format(
+							"Error executing query, permission rules that are not part of the top-level conjunction match more than %d entities of entity type '%s' with id '%s'",
+							MAX_PERMITTED_IDS, getEntityType().getLabel(), getEntityType().getId()));
+				}
+				permittedIdsRules.add(new QueryRule(idAttributeName, IN, permittedEntityIds));
+			}
+			else if (containsAnyOperator(rule.getNestedRules(), EnumSet.of(PERMITTED)))
+			{
+				QueryRule permittedIdsRule = new QueryRule(toPermittedIdsRules(rule.getNestedRules()));
+				permittedIdsRule.setOperator(rule.getOperator());
+				permittedIdsRule.setField(rule.getField());
+				permittedIdsRule.setValue(rule.getValue());
+				permittedIdsRules.add(permittedIdsRule);
+			}
+			else
+			{
+				permittedIdsRules.add(rule);
+			}
+		}
+		return permittedIdsRules;
+	}
+
 	/**
 	 * Checks if the underlying repository can handle this query. Queries with unsupported operators, queries that use
 	 * attributes with computed values or queries with nested query rule field are delegated to the index.
@@ -174,6 +401,25 @@ class IndexedRepositoryDecorator extends AbstractRepositoryDecorator<Entity>
 				&& !containsNestedQueryRuleField(q);
 	}
 
+	/**
+	 * Checks if the underlying repository can handle this aggregate query. Aggregates of attributes with computed values
+	 * and aggregates with queries that are not supported by the underlying repository are delegated to the index.
+	 */
+	private boolean aggregateSupported(AggregateQuery aggregateQuery)
+	{
+		if (!delegate().getCapabilities().contains(AGGREGATEABLE))
+		{
+			return false;
+		}
+		Query<Entity> q = aggregateQuery.getQuery();
+		if (q != null && !querySupported(q))
+		{
+			return false;
+		}
+		return Stream.of(aggregateQuery.getAttributeX(), aggregateQuery.getAttributeY(),
+				aggregateQuery.getAttributeDistinct()).filter(Objects::nonNull).noneMatch(Attribute::hasExpression);
+	}
+
 	private void waitForIndexToBeStable()
 	{
 		try
@@ -1,27 +1,60 @@
 package org.molgenis.data.index;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+import org.molgenis.data.DataService;
+import org.molgenis.data.Entity;
+import org.molgenis.data.Fetch;
+import org.molgenis.data.Query;
+import org.molgenis.data.meta.model.Attribute;
+import org.molgenis.data.support.QueryImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
-import static com.google.common.collect.Sets.union;
+import static com.google.common.collect.Lists.partition;
+import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.partitioningBy;
+import static org.molgenis.data.meta.AttributeType.ONE_TO_MANY;
 
 /**
  * Determines the impact of changes.
+ * <p>
+ * Changes to entire repositories impact the entire repositories of all entity types that depend on them. Changes to
+ * single entities impact the single entities that reference them, directly or indirectly up to the indexing depth of
+ * the referencing entity type. These are looked up with queries on the referencing attributes. The entire repository
+ * of a referencing entity type is impacted instead if a large fraction of its entities is impacted or if the
+ * referencing entities cannot be determined.
  */
 @Component
 public class IndexingStrategy
 {
 	private static final Logger LOG = LoggerFactory.getLogger(IndexingStrategy.class);
 
+	/**
+	 * Number of referenced entity ids per query and the number of impacted entities below which the entities are
+	 * always indexed one by one
+	 */
+	static final int BATCH_SIZE = 1000;
+
+	/**
+	 * Fraction of the entities of an entity type above which the entire repository is reindexed instead of the
+	 * impacted entities
+	 */
+	static final double MAX_IMPACTED_FRACTION = 0.2;
+
+	private final DataService dataService;
+
+	IndexingStrategy(DataService dataService)
+	{
+		this.dataService = requireNonNull(dataService);
+	}
+
 	/**
 	 * Determines which {@link Impact}s follow from a set of changes.
 	 *
@@ -33,11 +66,25 @@ public class IndexingStrategy
 	{
 		Stopwatch sw = Stopwatch.createStarted();
 		Map<Boolean, List<Impact>> split = changes.stream().collect(partitioningBy(Impact::isWholeRepository));
-		ImmutableSet<String> allEntityTypeIds = changes.stream().map(Impact::getEntityTypeId).collect(toImmutableSet());
-		Set<String> dependentEntities = allEntityTypeIds.stream()
-														.flatMap(dependencyModel::getEntityTypesDependentOn)
-														.collect(toImmutableSet());
-		Set<Impact> result = collectResult(split.get(false), split.get(true), dependentEntities);
+		ImmutableSet<String> wholeRepoEntityTypeIds = split.get(true)
+														   .stream()
+														   .map(Impact::getEntityTypeId)
+														   .collect(toImmutableSet());
+		Set<String> dependentEntityTypeIds = new HashSet<>();
+		wholeRepoEntityTypeIds.stream()
+							  .flatMap(dependencyModel::getEntityTypesDependentOn)
+							  .forEach(dependentEntityTypeIds::add);
+
+		SetMultimap<String, Object> changedEntityIds = HashMultimap.create();
+		split.get(false)
+			 .stream()
+			 .filter(impact -> !wholeRepoEntityTypeIds.contains(impact.getEntityTypeId()))
+			 .forEach(impact -> changedEntityIds.put(impact.getEntityTypeId(), impact.getId()));
+		SetMultimap<String, Object> dependentEntityIds = determineDependentEntities(changedEntityIds,
+				dependencyModel, dependentEntityTypeIds);
+
+		Set<Impact> result = collectResult(split.get(false), split.get(true), dependentEntityTypeIds,
+				dependentEntityIds);
 		if (LOG.isDebugEnabled())
 		{
 			LOG.debug("Determined {} necessary actions in {}", result.size(), sw);
@@ -45,19 +92,122 @@ public class IndexingStrategy
 		return result;
 	}
 
+	/**
+	 * Determines the entities that reference changed entities, generation by generation. An entity at generation n
+	 * references an entity at generation n - 1 and is impacted if the indexing depth of its entity type exceeds n.
+	 *
+	 * @param changedEntityIds       ids of changed entities per entity type
+	 * @param dependencyModel        {@link IndexDependencyModel} to determine which entities depend on which entities
+	 * @param dependentEntityTypeIds ids of entity types of which the entire repository is impacted, entity types for
+	 *                               which the impacted entities cannot be determined are added
+	 * @return ids of impacted entities per entity type
+	 */
+	private SetMultimap<String, Object> determineDependentEntities(SetMultimap<String, Object> changedEntityIds,
+			IndexDependencyModel dependencyModel, Set<String> dependentEntityTypeIds)
+	{
+		SetMultimap<String, Object> result = HashMultimap.create();
+		SetMultimap<String, Object> visited = HashMultimap.create(changedEntityIds);
+		SetMultimap<String, Object> generation = changedEntityIds;
+		int maxIndexingDepth = dependencyModel.getMaxIndexingDepth();
+		for (int depth = 0; !generation.isEmpty() && depth < maxIndexingDepth; depth++)
+		{
+			SetMultimap<String, Object> nextGeneration = HashMultimap.create();
+			for (String entityTypeId : generation.keySet())
+			{
+				Set<Object> entityIds = generation.get(entityTypeId);
+				for (String referencingEntityTypeId : dependencyModel.getEntityTypesReferencing(entityTypeId))
+				{
+					if (dependentEntityTypeIds.contains(referencingEntityTypeId))
+					{
+						continue;
+					}
+
+					Optional<Set<Object>> referencingEntityIds = findReferencingEntityIds(dependencyModel,
+							referencingEntityTypeId, entityTypeId, entityIds);
+					if (referencingEntityIds.isPresent())
+					{
+						referencingEntityIds.get()
+											.stream()
+											.filter(id -> visited.put(referencingEntityTypeId, id))
+											.forEach(id -> nextGeneration.put(referencingEntityTypeId, id));
+					}
+					else
+					{
+						LOG.debug("Impacted entities of [{}] not determined, impacts entire repository",
+								referencingEntityTypeId);
+						dependentEntityTypeIds.add(referencingEntityTypeId);
+						dependencyModel.getEntityTypesDependentOn(referencingEntityTypeId)
+									   .forEach(dependentEntityTypeIds::add);
+					}
+				}
+			}
+
+			for (String entityTypeId : nextGeneration.keySet())
+			{
+				if (dependencyModel.getIndexingDepth(entityTypeId) > depth)
+				{
+					result.putAll(entityTypeId, nextGeneration.get(entityTypeId));
+				}
+			}
+			generation = nextGeneration;
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the ids of the entities of an entity type that reference given entities.
+	 *
+	 * @return the ids of the referencing entities or empty if the entire repository of the referencing entity type
+	 * should be reindexed
+	 */
+	private Optional<Set<Object>> findReferencingEntityIds(IndexDependencyModel dependencyModel,
+			String entityTypeId, String referencedEntityTypeId, Set<Object> referencedEntityIds)
+	{
+		List<Attribute> attributes = dependencyModel.getReferencingAttributes(entityTypeId, referencedEntityTypeId);
+		// entities that referenced the changed entities before the change cannot be determined
+		if (attributes.isEmpty() || attributes.stream().anyMatch(attribute -> attribute.getDataType() == ONE_TO_MANY))
+		{
+			return Optional.empty();
+		}
+
+		Fetch idFetch = new Fetch().field(dataService.getEntityType(entityTypeId).getIdAttribute().getName());
+		Set<Object> result = new HashSet<>();
+		for (List<Object> batch : partition(new ArrayList<>(referencedEntityIds), BATCH_SIZE))
+		{
+			Query<Entity> query = new QueryImpl<>();
+			for (Attribute attribute : attributes)
+			{
+				if (!query.getRules().isEmpty())
+				{
+					query.or();
+				}
+				query.in(attribute.getName(), batch);
+			}
+			query.fetch(idFetch);
+			dataService.findAll(entityTypeId, query).map(Entity::getIdValue).forEach(result::add);
+		}
+
+		if (result.size() >= BATCH_SIZE && result.size() > MAX_IMPACTED_FRACTION * dataService.count(entityTypeId))
+		{
+			return Optional.empty();
+		}
+		return Optional.of(result);
+	}
+
 	/**
 	 * Combines the results.
 	 *
 	 * @param singleEntityChanges {@link Impact}s for changes made to specific Entity instances
 	 * @param wholeRepoActions    {@link Impact}s for changes made to entire repositories
 	 * @param dependentEntityIds  {@link Impact}s for entitytypes that are dependent on one or more of the changes
+	 * @param dependentEntities   ids of entities that are dependent on one or more of the changes per entity type
 	 * @return Set with the {@link Impact}s
 	 */
 	private Set<Impact> collectResult(List<Impact> singleEntityChanges, List<Impact> wholeRepoActions,
-			Set<String> dependentEntityIds)
+			Set<String> dependentEntityIds, SetMultimap<String, Object> dependentEntities)
 	{
-		Set<String> wholeRepoIds = union(
-				wholeRepoActions.stream().map(Impact::getEntityTypeId).collect(toImmutableSet()), dependentEntityIds);
+		Set<String> wholeRepoIds = new HashSet<>(dependentEntityIds);
+		wholeRepoActions.stream().map(Impact::getEntityTypeId).forEach(wholeRepoIds::add);
 
 		ImmutableSet.Builder<Impact> result = ImmutableSet.builder();
 		result.addAll(wholeRepoActions);
@@ -65,6 +215,11 @@ public class IndexingStrategy
 		singleEntityChanges.stream()
 						   .filter(action -> !wholeRepoIds.contains(action.getEntityTypeId()))
 						   .forEach(result::add);
+		dependentEntities.entries()
+						 .stream()
+						 .filter(entry -> !wholeRepoIds.contains(entry.getKey()))
+						 .map(entry -> Impact.createSingleEntityImpact(entry.getKey(), entry.getValue()))
+						 .forEach(result::add);
 		return result.build();
 	}
 }
@@ -16,6 +16,10 @@ public interface SearchService
 
 	Object searchOne(EntityType entityType, Query<Entity> q);
 
+	/**
+	 * Returns the ids of the entities that match the query. Ids of large or unpaged results are retrieved from the
+	 * index in batches while the stream is consumed.
+	 */
 	Stream<Object> search(EntityType entityType, Query<Entity> q);
 
 	AggregateResult aggregate(EntityType entityType, AggregateQuery aggregateQuery);
@@ -0,0 +1,125 @@
+package org.molgenis.data.index;
+
+import com.google.common.collect.ImmutableSet;
+import org.molgenis.data.EntityKey;
+import org.molgenis.util.HugeSet;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.molgenis.data.index.Impact.createSingleEntityImpact;
+import static org.molgenis.data.index.Impact.createWholeRepositoryImpact;
+
+/**
+ * Changes registered in one transaction: the ids of changed entities per entity type and the entity types of which
+ * the entire repository changed. Entity ids are stored in a hash set per entity type, so checking whether an entity is
+ * dirty does not depend on the number of changes. Ids of transactions that change huge numbers of entities are stored
+ * off-heap in a {@link HugeSet}.
+ * <p>
+ * Changes of different transactions are registered independently, changes of one transaction are thread-safe.
+ */
+class TransactionChanges implements Closeable
+{
+	private final Map<String, HugeSet<Object>> entityIdsPerEntityType = new HashMap<>();
+	private final Set<String> entirelyDirtyEntityTypeIds = new LinkedHashSet<>();
+	private int size;
+
+	/**
+	 * @return whether the change was not registered before
+	 */
+	synchronized boolean add(Impact impact)
+	{
+		boolean added;
+		if (impact.isWholeRepository())
+		{
+			added = entirelyDirtyEntityTypeIds.add(impact.getEntityTypeId());
+		}
+		else
+		{
+			added = entityIdsPerEntityType.computeIfAbsent(impact.getEntityTypeId(), id -> new HugeSet<>())
+										  .add(impact.getId());
+		}
+		if (added)
+		{
+			size++;
+		}
+		return added;
+	}
+
+	/**
+	 * @return number of registered changes
+	 */
+	synchronized int size()
+	{
+		return size;
+	}
+
+	synchronized boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	synchronized boolean isEntityDirty(EntityKey entityKey)
+	{
+		HugeSet<Object> entityIds = entityIdsPerEntityType.get(entityKey.getEntityTypeId());
+		return entityIds != null && entityIds.contains(entityKey.getId());
+	}
+
+	synchronized boolean isEntireRepositoryDirty(String entityTypeId)
+	{
+		return entirelyDirtyEntityTypeIds.contains(entityTypeId);
+	}
+
+	synchronized boolean isRepositoryDirty(String entityTypeId)
+	{
+		return entirelyDirtyEntityTypeIds.contains(entityTypeId) || entityIdsPerEntityType.containsKey(entityTypeId);
+	}
+
+	synchronized Set<EntityKey> getDirtyEntities()
+	{
+		ImmutableSet.Builder<EntityKey> result = ImmutableSet.builder();
+		entityIdsPerEntityType.forEach(
+				(entityTypeId, entityIds) -> entityIds.forEach(id -> result.add(EntityKey.create(entityTypeId, id))));
+		return result.build();
+	}
+
+	synchronized Set<String> getEntirelyDirtyRepositories()
+	{
+		return ImmutableSet.copyOf(entirelyDirtyEntityTypeIds);
+	}
+
+	synchronized Set<String> getDirtyRepositories()
+	{
+		return ImmutableSet.<String>builder()
+				.addAll(entirelyDirtyEntityTypeIds)
+				.addAll(entityIdsPerEntityType.keySet())
+				.build();
+	}
+
+	/**
+	 * @return the registered changes as {@link Impact}s
+	 */
+	synchronized Set<Impact> getImpacts()
+	{
+		ImmutableSet.Builder<Impact> result = ImmutableSet.builder();
+		entirelyDirtyEntityTypeIds.forEach(entityTypeId -> result.add(createWholeRepositoryImpact(entityTypeId)));
+		entityIdsPerEntityType.forEach((entityTypeId, entityIds) -> entityIds.forEach(
+				id -> result.add(createSingleEntityImpact(entityTypeId, id))));
+		return result.build();
+	}
+
+	/**
+	 * Releases the off-heap storage of the registered changes
+	 */
+	@Override
+	public synchronized void close()
+	{
+		entityIdsPerEntityType.values().forEach(HugeSet::close);
+		entityIdsPerEntityType.clear();
+		entirelyDirtyEntityTypeIds.clear();
+		size = 0;
+	}
+}
@@ -4,11 +4,21 @@ import org.molgenis.data.Entity;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.jobs.model.JobExecution;
 
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+
 /**
  * This entity is used to keep track of the status of the execution of a reindex job.
  */
 public class IndexJobExecution extends JobExecution
 {
+	/**
+	 * IDs of all IndexActionJobs indexed by this job execution. Not persisted, since a job is created from its
+	 * execution at submission time and never resumed.
+	 */
+	private List<String> indexActionJobIDs;
+
 	public IndexJobExecution(Entity entity)
 	{
 		super(entity);
@@ -36,6 +46,24 @@ public class IndexJobExecution extends JobExecution
 		set(IndexJobExecutionMeta.INDEX_ACTION_JOB_ID, id);
 	}
 
+	/**
+	 * @return IDs of the IndexActionJobs of which the IndexActions are combined by this job execution
+	 */
+	public List<String> getIndexActionJobIDs()
+	{
+		return indexActionJobIDs != null ? indexActionJobIDs : singletonList(getIndexActionJobID());
+	}
+
+	/**
+	 * Sets the IDs of the IndexActionJobs of which the IndexActions are combined by this job execution. The first ID
+	 * is stored as the IndexActionJob ID.
+	 */
+	public void setIndexActionJobIDs(List<String> ids)
+	{
+		setIndexActionJobID(ids.get(0));
+		this.indexActionJobIDs = ids;
+	}
+
 	private void setDefaultValues()
 	{
 		setType("Index");
@@ -13,7 +13,8 @@ import org.springframework.scheduling.annotation.Scheduled;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.stream.Stream;
@@ -28,6 +29,15 @@ import static org.molgenis.jobs.model.JobExecutionMetaData.END_DATE;
 import static org.molgenis.jobs.model.JobExecutionMetaData.STATUS;
 import static org.molgenis.security.core.runas.RunAsSystemAspect.runAsSystem;
 
+/**
+ * Schedules index jobs on a pool of threads. Index jobs of transactions that change the same entity types are executed
+ * in the order of the transactions, so that each index is written by a single job at a time. Index jobs of unrelated
+ * entity types are executed in parallel. Entity types that depend on each other are part of the same index jobs,
+ * since the IndexActions of a transaction include the entity types that depend on the changed entity types.
+ * <p>
+ * A transaction of which the entity types are all included in an index job that is waiting for its predecessors is
+ * added to that index job, so that its IndexActions are combined with the IndexActions of the other transactions.
+ */
 public class IndexJobSchedulerImpl implements IndexJobScheduler
 {
 	private static final Logger LOG = LoggerFactory.getLogger(IndexJobSchedulerImpl.class);
@@ -35,16 +45,25 @@ public class IndexJobSchedulerImpl implements IndexJobScheduler
 	private final DataService dataService;
 	private final IndexJobExecutionFactory indexJobExecutionFactory;
 	// the executor for the index jobs.
-	private ExecutorService executorService = Executors.newSingleThreadExecutor();
+	private final ExecutorService executorService;
 	private final JobExecutor jobExecutor;
 	private final IndexStatus indexStatus = new IndexStatus();
+	/**
+	 * The most recently scheduled index job for each entity type
+	 */
+	private final Map<String, QueuedIndexJob> lastIndexJobs = new HashMap<>();
 
 	public IndexJobSchedulerImpl(DataService dataService, IndexJobExecutionFactory indexJobExecutionFactory,
-			JobExecutor jobExecutor)
+			JobExecutor jobExecutor, int indexJobThreads)
 	{
 		this.dataService = requireNonNull(dataService);
 		this.indexJobExecutionFactory = requireNonNull(indexJobExecutionFactory);
 		this.jobExecutor = requireNonNull(jobExecutor);
+		if (indexJobThreads <= 0)
+		{
+			throw new IllegalArgumentException("Number of index job threads must be larger than 0");
+		}
+		this.executorService = Executors.newFixedThreadPool(indexJobThreads);
 	}
 
 	@Override
@@ -62,12 +81,7 @@ public class IndexJobSchedulerImpl implements IndexJobScheduler
 			Map<String, Long> numberOfActionsPerEntity = indexActions.collect(
 					groupingBy(indexAction -> indexAction.getString(ENTITY_TYPE_ID), counting()));
 			indexStatus.addActionCounts(numberOfActionsPerEntity);
-
-			IndexJobExecution indexJobExecution = indexJobExecutionFactory.create();
-			indexJobExecution.setUser("admin");
-			indexJobExecution.setIndexActionJobID(transactionId);
-			jobExecutor.submit(indexJobExecution, executorService)
-					   .whenComplete((a, b) -> indexStatus.removeActionCounts(numberOfActionsPerEntity));
+			scheduleIndexJob(transactionId, numberOfActionsPerEntity);
 		}
 		else
 		{
@@ -75,6 +89,77 @@ public class IndexJobSchedulerImpl implements IndexJobScheduler
 		}
 	}
 
+	private synchronized void scheduleIndexJob(String transactionId, Map<String, Long> numberOfActionsPerEntity)
+	{
+		Set<String> entityTypeIds = numberOfActionsPerEntity.keySet();
+		QueuedIndexJob queuedIndexJob = getQueuedIndexJob(entityTypeIds);
+		if (queuedIndexJob != null)
+		{
+			LOG.debug("Adding transaction [{}] to queued index job.", transactionId);
+			queuedIndexJob.add(transactionId, numberOfActionsPerEntity);
+			return;
+		}
+
+		QueuedIndexJob indexJob = new QueuedIndexJob(entityTypeIds);
+		indexJob.add(transactionId, numberOfActionsPerEntity);
+		CompletableFuture<?>[] predecessors = entityTypeIds.stream()
+														   .map(lastIndexJobs::get)
+														   .filter(Objects::nonNull)
+														   .distinct()
+														   .map(QueuedIndexJob::getFuture)
+														   .toArray(CompletableFuture[]::new);
+		entityTypeIds.forEach(entityTypeId -> lastIndexJobs.put(entityTypeId, indexJob));
+
+		// a failing predecessor does not prevent this job from running
+		CompletableFuture<Void> future = CompletableFuture.allOf(predecessors)
+														  .handle((result, throwable) -> null)
+														  .thenCompose(result -> submit(indexJob));
+		indexJob.setFuture(future);
+		future.whenComplete((result, throwable) -> indexJobCompleted(indexJob));
+	}
+
+	/**
+	 * Returns the index job that has not started yet and is the last index job for all of the given entity types.
+	 */
+	private QueuedIndexJob getQueuedIndexJob(Set<String> entityTypeIds)
+	{
+		QueuedIndexJob queuedIndexJob = null;
+		for (String entityTypeId : entityTypeIds)
+		{
+			QueuedIndexJob lastIndexJob = lastIndexJobs.get(entityTypeId);
+			if (lastIndexJob == null || lastIndexJob.isStarted() || (queuedIndexJob != null
+					&& queuedIndexJob != lastIndexJob))
+			{
+				return null;
+			}
+			queuedIndexJob = lastIndexJob;
+		}
+		return queuedIndexJob;
+	}
+
+	private CompletableFuture<Void> submit(QueuedIndexJob indexJob)
+	{
+		List<String> transactionIds;
+		synchronized (this)
+		{
+			transactionIds = indexJob.start();
+		}
+
+		IndexJobExecution indexJobExecution = indexJobExecutionFactory.create();
+		indexJobExecution.setUser("admin");
+		indexJobExecution.setIndexActionJobIDs(transactionIds);
+		return jobExecutor.submit(indexJobExecution, executorService);
+	}
+
+	private void indexJobCompleted(QueuedIndexJob indexJob)
+	{
+		synchronized (this)
+		{
+			lastIndexJobs.values().removeIf(lastIndexJob -> lastIndexJob == indexJob);
+		}
+		indexStatus.removeActionCounts(indexJob.getNumberOfActionsPerEntity());
+	}
+
 	@Override
 	@RunAsSystem
 	public void waitForAllIndicesStable() throws InterruptedException
@@ -119,4 +204,57 @@ public class IndexJobSchedulerImpl implements IndexJobScheduler
 		});
 	}
 
+	/**
+	 * Index job that combines the IndexActions of one or more transactions.
+	 */
+	private static class QueuedIndexJob
+	{
+		private final Set<String> entityTypeIds;
+		private final List<String> transactionIds = new ArrayList<>();
+		private final Map<String, Long> numberOfActionsPerEntity = new HashMap<>();
+		private CompletableFuture<Void> future;
+		private boolean started;
+
+		QueuedIndexJob(Set<String> entityTypeIds)
+		{
+			this.entityTypeIds = new HashSet<>(entityTypeIds);
+		}
+
+		void add(String transactionId, Map<String, Long> numberOfActionsPerEntity)
+		{
+			if (!entityTypeIds.containsAll(numberOfActionsPerEntity.keySet()))
+			{
+				throw new IllegalArgumentException("Transaction changes entity types that are not part of this job");
+			}
+			transactionIds.add(transactionId);
+			numberOfActionsPerEntity.forEach((entityTypeId, count) -> this.numberOfActionsPerEntity.merge(entityTypeId,
+					count, Long::sum));
+		}
+
+		List<String> start()
+		{
+			started = true;
+			return new ArrayList<>(transactionIds);
+		}
+
+		boolean isStarted()
+		{
+			return started;
+		}
+
+		CompletableFuture<Void> getFuture()
+		{
+			return future;
+		}
+
+		void setFuture(CompletableFuture<Void> future)
+		{
+			this.future = future;
+		}
+
+		Map<String, Long> getNumberOfActionsPerEntity()
+		{
+			return numberOfActionsPerEntity;
+		}
+	}
 }
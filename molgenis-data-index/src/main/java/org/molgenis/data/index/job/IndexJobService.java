@@ -5,6 +5,7 @@ import org.molgenis.data.index.IndexService;
 import org.molgenis.data.index.meta.IndexAction;
 import org.molgenis.data.index.meta.IndexActionGroup;
 import org.molgenis.data.index.meta.IndexActionMetaData;
+import org.molgenis.data.meta.model.Attribute;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.data.meta.model.EntityTypeFactory;
 import org.molgenis.data.support.QueryImpl;
@@ -13,11 +14,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.*;
 
+import static com.google.common.collect.Lists.partition;
 import static java.text.MessageFormat.format;
+import static java.util.Collections.singletonList;
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.*;
 import static org.molgenis.data.QueryRule.Operator.EQUALS;
 import static org.molgenis.data.index.meta.IndexActionGroupMetaData.INDEX_ACTION_GROUP;
 import static org.molgenis.data.index.meta.IndexActionMetaData.*;
@@ -31,6 +34,8 @@ public class IndexJobService
 {
 	private static final Logger LOG = LoggerFactory.getLogger(IndexJobService.class);
 
+	private static final int BATCH_SIZE = 1000;
+
 	private final DataService dataService;
 	private final IndexService indexService;
 	private final EntityTypeFactory entityTypeFactory;
@@ -43,20 +48,37 @@ public class IndexJobService
 	}
 
 	public Void executeJob(Progress progress, String transactionId)
+	{
+		return executeJob(progress, singletonList(transactionId));
+	}
+
+	/**
+	 * Executes the IndexActions of one or more transactions. The IndexActions are combined per entity type, so that
+	 * each index is rebuilt or updated at most once.
+	 *
+	 * @param progress       {@link Progress} instance to log progress information to
+	 * @param transactionIds IDs of the IndexActionGroups
+	 */
+	public Void executeJob(Progress progress, List<String> transactionIds)
 	{
 		requireNonNull(progress);
-		IndexActionGroup indexActionGroup = dataService.findOneById(INDEX_ACTION_GROUP, transactionId,
-				IndexActionGroup.class);
-		if (indexActionGroup != null && indexActionGroup.getCount() > 0)
+		String transactionIdsString = String.join(", ", transactionIds);
+		int count = transactionIds.stream()
+								  .map(transactionId -> dataService.findOneById(INDEX_ACTION_GROUP, transactionId,
+										  IndexActionGroup.class))
+								  .filter(Objects::nonNull)
+								  .mapToInt(IndexActionGroup::getCount)
+								  .sum();
+		if (count > 0)
 		{
-			progress.setProgressMax(indexActionGroup.getCount());
-			progress.status(format("Start indexing for transaction id: [{0}]", transactionId));
-			performIndexActions(progress, transactionId);
-			progress.status(format("Finished indexing for transaction id: [{0}]", transactionId));
+			progress.setProgressMax(count);
+			progress.status(format("Start indexing for transaction id: [{0}]", transactionIdsString));
+			performIndexActions(progress, transactionIds);
+			progress.status(format("Finished indexing for transaction id: [{0}]", transactionIdsString));
 		}
 		else
 		{
-			progress.status(format("No index actions found for transaction id: [{0}]", transactionId));
+			progress.status(format("No index actions found for transaction id: [{0}]", transactionIdsString));
 		}
 		return null;
 	}
@@ -66,25 +88,47 @@ public class IndexJobService
 	 *
 	 * @param progress {@link Progress} instance to log progress information to
 	 */
-	private void performIndexActions(Progress progress, String transactionId)
+	private void performIndexActions(Progress progress, List<String> transactionIds)
 	{
-		List<IndexAction> indexActions = dataService.findAll(INDEX_ACTION, createQueryGetAllIndexActions(transactionId),
-				IndexAction.class).collect(toList());
+		List<IndexAction> indexActions = transactionIds.stream()
+													   .flatMap(transactionId -> dataService.findAll(INDEX_ACTION,
+															   createQueryGetAllIndexActions(transactionId),
+															   IndexAction.class))
+													   .collect(toList());
+		Map<String, List<IndexAction>> indexActionsPerEntityType = indexActions.stream()
+																			   .collect(groupingBy(
+																					   IndexAction::getEntityTypeId,
+																					   LinkedHashMap::new, toList()));
 		try
 		{
-			boolean success = true;
+			updateIndexActionStatus(indexActions, IndexActionMetaData.IndexStatus.STARTED);
+
+			List<IndexAction> failedIndexActions = new ArrayList<>();
 			int count = 0;
-			for (IndexAction indexAction : indexActions)
+			for (Map.Entry<String, List<IndexAction>> entry : indexActionsPerEntityType.entrySet())
 			{
-				success &= performAction(progress, count++, indexAction);
+				List<IndexAction> entityTypeIndexActions = entry.getValue();
+				boolean success = performActions(progress, count, entry.getKey(), entityTypeIndexActions);
+				entityTypeIndexActions.forEach(indexAction -> indexAction.setIndexStatus(
+						success ? IndexActionMetaData.IndexStatus.FINISHED : IndexActionMetaData.IndexStatus.FAILED));
+				if (!success)
+				{
+					failedIndexActions.addAll(entityTypeIndexActions);
+				}
+				count += entityTypeIndexActions.size();
 			}
-			if (success)
+			if (failedIndexActions.isEmpty())
 			{
 				progress.progress(count, "Executed all index actions, cleaning up the actions...");
 				dataService.delete(INDEX_ACTION, indexActions.stream());
-				dataService.deleteById(INDEX_ACTION_GROUP, transactionId);
+				transactionIds.forEach(transactionId -> dataService.deleteById(INDEX_ACTION_GROUP, transactionId));
 				progress.progress(count, "Cleaned up the actions.");
 			}
+			else
+			{
+				// keep the actions for inspection
+				dataService.update(INDEX_ACTION, indexActions.stream());
+			}
 		}
 		catch (Exception ex)
 		{
@@ -100,39 +144,48 @@ public class IndexJobService
 	}
 
 	/**
-	 * Performs a single IndexAction
+	 * Performs the IndexActions of a single entity type. If any of the actions concerns the whole repository, the
+	 * index is rebuilt once, otherwise all changed entities are indexed in bulk.
 	 *
 	 * @param progress      {@link Progress} to report progress to
-	 * @param progressCount the progress count for this IndexAction
-	 * @param indexAction   Entity of type IndexActionMetaData
+	 * @param progressCount the progress count for the first IndexAction
+	 * @param entityTypeId  the id of the entity type of the IndexActions
+	 * @param indexActions  IndexActions of the entity type
 	 * @return boolean indicating success or failure
 	 */
-	private boolean performAction(Progress progress, int progressCount, IndexAction indexAction)
+	private boolean performActions(Progress progress, int progressCount, String entityTypeId,
+			List<IndexAction> indexActions)
 	{
-		requireNonNull(indexAction);
-		String entityTypeId = indexAction.getEntityTypeId();
-		updateIndexActionStatus(indexAction, IndexActionMetaData.IndexStatus.STARTED);
 		EntityType entityType = dataService.getEntityType(entityTypeId);
 		try
 		{
 			if (entityType != null)
 			{
-				if (indexAction.getEntityId() != null)
+				if (indexActions.stream().anyMatch(IndexAction::isWholeRepository))
 				{
-					progress.progress(progressCount,
-							format("Indexing {0}.{1}", entityType.getId(), indexAction.getEntityId()));
-					rebuildIndexOneEntity(entityTypeId, indexAction.getEntityId());
+					progress.progress(progressCount, format("Indexing {0}", entityType.getId()));
+					final Repository<Entity> repository = dataService.getRepository(entityType.getId());
+					indexService.rebuildIndex(repository, progress);
 				}
 				else
 				{
-					progress.progress(progressCount, format("Indexing {0}", entityType.getId()));
-					final Repository<Entity> repository = dataService.getRepository(entityType.getId());
-					indexService.rebuildIndex(repository);
+					List<String> entityIds = indexActions.stream().map(IndexAction::getEntityId).distinct().collect(
+							toList());
+					if (entityIds.size() == 1)
+					{
+						progress.progress(progressCount, format("Indexing {0}.{1}", entityType.getId(), entityIds.get(0)));
+					}
+					else
+					{
+						progress.progress(progressCount,
+								format("Indexing {0} entities of {1}", entityIds.size(), entityType.getId()));
+					}
+					rebuildIndexEntities(entityType, entityIds);
 				}
 			}
 			else
 			{
-				entityType = getEntityType(indexAction);
+				entityType = entityTypeFactory.create(entityTypeId);
 				if (indexService.hasIndex(entityType))
 				{
 					progress.progress(progressCount, format("Dropping entityType with id: {0}", entityType.getId()));
@@ -141,73 +194,71 @@ public class IndexJobService
 				else
 				{
 					// Index Job is finished, here we concluded that we don't have enough info to continue the index job
-					progress.progress(progressCount,
-							format("Skip index entity {0}.{1}", entityType.getId(), indexAction.getEntityId()));
+					progress.progress(progressCount, format("Skip index entity {0}", entityType.getId()));
 				}
 			}
-			updateIndexActionStatus(indexAction, IndexActionMetaData.IndexStatus.FINISHED);
 			return true;
 		}
 		catch (Exception ex)
 		{
 			LOG.error("Index job failed", ex);
-			updateIndexActionStatus(indexAction, IndexActionMetaData.IndexStatus.FAILED);
 			return false;
 		}
 	}
 
 	/**
-	 * Updates the {@link IndexStatus} of a IndexAction and stores the change.
+	 * Updates the {@link IndexStatus} of IndexActions and stores the changes.
 	 *
-	 * @param indexAction the IndexAction of which the status is updated
-	 * @param status      the new {@link IndexStatus}
+	 * @param indexActions the IndexActions of which the status is updated
+	 * @param status       the new {@link IndexStatus}
 	 */
-	private void updateIndexActionStatus(IndexAction indexAction, IndexActionMetaData.IndexStatus status)
+	private void updateIndexActionStatus(List<IndexAction> indexActions, IndexActionMetaData.IndexStatus status)
 	{
-		indexAction.setIndexStatus(status);
-		dataService.update(INDEX_ACTION, indexAction);
+		indexActions.forEach(indexAction -> indexAction.setIndexStatus(status));
+		dataService.update(INDEX_ACTION, indexActions.stream());
 	}
 
 	/**
-	 * Indexes one single entity instance.
+	 * Indexes entity instances of an entity type in batches. Entities that no longer exist are removed from the index.
 	 *
-	 * @param entityTypeId    the id of the entity's repository
-	 * @param untypedEntityId the identifier of the entity to update
+	 * @param entityType        the entity type of the entities to update
+	 * @param untypedEntityIds  the identifiers of the entities to update
 	 */
-	private void rebuildIndexOneEntity(String entityTypeId, String untypedEntityId)
+	private void rebuildIndexEntities(EntityType entityType, List<String> untypedEntityIds)
 	{
-		LOG.trace("Indexing [{}].[{}]... ", entityTypeId, untypedEntityId);
+		String entityTypeId = entityType.getId();
+		LOG.trace("Indexing [{}] entities of [{}]... ", untypedEntityIds.size(), entityTypeId);
 
-		// convert entity id string to typed entity id
-		EntityType entityType = dataService.getEntityType(entityTypeId);
-		if (null != entityType)
+		boolean indexEntityExists = indexService.hasIndex(entityType);
+		if (!indexEntityExists)
 		{
-			Object entityId = getTypedValue(untypedEntityId, entityType.getIdAttribute());
-			String entityFullName = entityType.getId();
+			LOG.debug("Create mapping of repository [{}] because it was not exist yet", entityTypeId);
+			indexService.createIndex(entityType);
+		}
 
-			Entity actualEntity = dataService.findOneById(entityFullName, entityId);
+		Attribute idAttribute = entityType.getIdAttribute();
+		for (List<String> batch : partition(untypedEntityIds, BATCH_SIZE))
+		{
+			// convert entity id strings to typed entity ids
+			List<Object> entityIds = batch.stream()
+										  .map(untypedEntityId -> getTypedValue(untypedEntityId, idAttribute))
+										  .collect(toList());
+			List<Entity> entities = dataService.findAll(entityTypeId, entityIds.stream()).collect(toList());
 
-			if (null == actualEntity)
+			Set<Object> existingEntityIds = entities.stream().map(Entity::getIdValue).collect(toSet());
+			List<Object> deletedEntityIds = entityIds.stream()
+													 .filter(entityId -> !existingEntityIds.contains(entityId))
+													 .collect(toList());
+			if (!deletedEntityIds.isEmpty())
 			{
-				// Delete
-				LOG.debug("Index delete [{}].[{}].", entityFullName, entityId);
-				indexService.deleteById(entityType, entityId);
-				return;
+				LOG.debug("Index delete [{}] entities of [{}].", deletedEntityIds.size(), entityTypeId);
+				indexService.deleteAll(entityType, deletedEntityIds.stream());
 			}
-
-			boolean indexEntityExists = indexService.hasIndex(entityType);
-			if (!indexEntityExists)
+			if (!entities.isEmpty())
 			{
-				LOG.debug("Create mapping of repository [{}] because it was not exist yet", entityTypeId);
-				indexService.createIndex(entityType);
+				LOG.debug("Index [{}] entities of [{}].", entities.size(), entityTypeId);
+				indexService.index(entityType, entities.stream());
 			}
-
-			LOG.debug("Index [{}].[{}].", entityTypeId, entityId);
-			indexService.index(actualEntity.getEntityType(), actualEntity);
-		}
-		else
-		{
-			throw new MolgenisDataException("Unknown EntityType for entityTypeId: " + entityTypeId);
 		}
 	}
 
@@ -221,9 +272,4 @@ public class IndexJobService
 		q.setSort(new Sort(ACTION_ORDER));
 		return q;
 	}
-
-	private EntityType getEntityType(IndexAction indexAction)
-	{
-		return entityTypeFactory.create(indexAction.getEntityTypeId());
-	}
 }
\ No newline at end of file
@@ -125,6 +125,23 @@ public class IndexDependencyModelTest
 		assertEquals(dependencies, ImmutableSet.of());
 	}
 
+	@Test
+	public void testGetReferencingAttributesInherited()
+	{
+		List<EntityType> entityTypes = ImmutableList.of(entity0, entity1, entity2);
+
+		addReferences(entity0, ImmutableList.of(entity2));
+		addReferences(entity1, ImmutableList.of(entity2, entity0));
+		when(entity0.getExtends()).thenReturn(entity1);
+		when(entity1.isAbstract()).thenReturn(true);
+
+		IndexDependencyModel dependencyModel = new IndexDependencyModel(entityTypes);
+		assertEquals(dependencyModel.getEntityTypesReferencing("2"), ImmutableSet.of("0"));
+		List<Attribute> attributes = dependencyModel.getReferencingAttributes("0", "2");
+		assertEquals(attributes.size(), 2);
+		attributes.forEach(attribute -> assertEquals(attribute.getRefEntity(), entity2));
+	}
+
 	private void addReferences(EntityType referringEntity, List<EntityType> refEntities)
 	{
 		ImmutableList.Builder<Attribute> attributes = ImmutableList.builder();
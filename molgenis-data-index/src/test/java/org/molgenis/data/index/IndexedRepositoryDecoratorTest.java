@@ -1,5 +1,7 @@
 package org.molgenis.data.index;
 
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.molgenis.data.*;
 import org.molgenis.data.QueryRule.Operator;
 import org.molgenis.data.aggregation.AggregateQuery;
@@ -9,6 +11,7 @@ import org.molgenis.data.index.job.IndexJobScheduler;
 import org.molgenis.data.meta.model.Attribute;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.data.support.AggregateQueryImpl;
+import org.molgenis.data.support.QueryImpl;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -22,10 +25,14 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
 import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
 import static org.mockito.Mockito.*;
 import static org.molgenis.data.QueryRule.Operator.*;
 import static org.molgenis.data.RepositoryCapability.*;
+import static org.molgenis.data.index.IndexedRepositoryDecorator.MAX_PERMITTED_IDS;
 import static org.testng.Assert.assertEquals;
 
 public class IndexedRepositoryDecoratorTest
@@ -126,6 +133,43 @@ public class IndexedRepositoryDecoratorTest
 		verify(searchService).aggregate(repositoryEntityType, aggregateQuery);
 	}
 
+	@Test
+	public void aggregateDecoratedRepository()
+	{
+		when(delegateRepository.getCapabilities()).thenReturn(EnumSet.of(QUERYABLE, AGGREGATEABLE));
+		Attribute xAttr = mock(Attribute.class);
+		AggregateQuery aggregateQuery = new AggregateQueryImpl().attrX(xAttr).query(query);
+		AggregateResult aggregateResult = mock(AggregateResult.class);
+		when(delegateRepository.aggregate(aggregateQuery)).thenReturn(aggregateResult);
+
+		assertEquals(indexedRepositoryDecorator.aggregate(aggregateQuery), aggregateResult);
+		verifyZeroInteractions(searchService);
+	}
+
+	@Test
+	public void aggregateDecoratedRepositoryUnsupportedQuery()
+	{
+		when(delegateRepository.getCapabilities()).thenReturn(EnumSet.of(QUERYABLE, AGGREGATEABLE));
+		Attribute xAttr = mock(Attribute.class);
+		AggregateQuery aggregateQuery = new AggregateQueryImpl().attrX(xAttr).query(unsupportedQuery);
+
+		indexedRepositoryDecorator.aggregate(aggregateQuery);
+		verify(searchService).aggregate(repositoryEntityType, aggregateQuery);
+		verify(delegateRepository, never()).aggregate(aggregateQuery);
+	}
+
+	@Test
+	public void aggregateDecoratedRepositoryComputedAttribute()
+	{
+		when(delegateRepository.getCapabilities()).thenReturn(EnumSet.of(QUERYABLE, AGGREGATEABLE));
+		Attribute xAttr = when(mock(Attribute.class).hasExpression()).thenReturn(true).getMock();
+		AggregateQuery aggregateQuery = new AggregateQueryImpl().attrX(xAttr).query(query);
+
+		indexedRepositoryDecorator.aggregate(aggregateQuery);
+		verify(searchService).aggregate(repositoryEntityType, aggregateQuery);
+		verify(delegateRepository, never()).aggregate(aggregateQuery);
+	}
+
 	@Test
 	public void aggregateUnknownIndexExceptionRecoverable()
 	{
@@ -371,12 +415,12 @@ public class IndexedRepositoryDecoratorTest
 	@Test
 	public void findAllUnknownIndexExceptionRecoverable()
 	{
-		Stream<Object> entityStream = mock(Stream.class);
+		Stream<Object> entityStream = Stream.empty();
 		when(searchService.search(repositoryEntityType, unsupportedQuery)).thenThrow(new UnknownIndexException("msg"))
 																		  .thenReturn(entityStream);
 		indexedRepositoryDecorator.findAll(unsupportedQuery);
 		verify(searchService, times(2)).search(repositoryEntityType, unsupportedQuery);
-		verify(delegateRepository).findAll(any(Stream.class), isNull());
+		verify(delegateRepository).findAll(ArgumentMatchers.<Stream<Object>>any(), isNull());
 	}
 
 	@Test(expectedExceptions = MolgenisDataException.class, expectedExceptionsMessageRegExp = "Error executing query, index for entity type 'My entity type' with id 'entity' does not exist")
@@ -414,9 +458,161 @@ public class IndexedRepositoryDecoratorTest
 	@Test
 	public void getQueryOperators()
 	{
+		assertEquals(indexedRepositoryDecorator.getQueryOperators(), EnumSet.complementOf(EnumSet.of(PERMITTED)));
+	}
+
+	@Test
+	public void getQueryOperatorsPermitted()
+	{
+		when(delegateRepository.getQueryOperators()).thenReturn(EnumSet.of(IN, AND, PERMITTED));
 		assertEquals(indexedRepositoryDecorator.getQueryOperators(), EnumSet.allOf(Operator.class));
 	}
 
+	@Test
+	public void findAllQueryPermitted()
+	{
+		when(delegateRepository.getQueryOperators()).thenReturn(EnumSet.of(IN, EQUALS, AND, PERMITTED));
+		indexedRepositoryDecorator = new IndexedRepositoryDecorator(delegateRepository, searchService,
+				mock(IndexJobScheduler.class));
+
+		QueryRule permittedRule = new QueryRule(PERMITTED,
+				RowLevelSecurityFilter.create("entity-entity", "user", emptySet(), 2));
+		Query<Entity> q = new QueryImpl<>(
+				newArrayList(new QueryRule(idAttrName, EQUALS, "0"), new QueryRule(AND), permittedRule));
+		Attribute idAttr = repositoryEntityType.getIdAttribute();
+		when(repositoryEntityType.getAttribute(idAttrName)).thenReturn(idAttr);
+		Entity entity = mock(Entity.class);
+		when(delegateRepository.findAll(q)).thenReturn(Stream.of(entity));
+
+		assertEquals(indexedRepositoryDecorator.findAll(q).collect(toList()), singletonList(entity));
+		verifyZeroInteractions(searchService);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void findAllQueryUnsupportedPermitted()
+	{
+		when(delegateRepository.getQueryOperators()).thenReturn(EnumSet.of(IN, AND, PERMITTED));
+		indexedRepositoryDecorator = new IndexedRepositoryDecorator(delegateRepository, searchService,
+				mock(IndexJobScheduler.class));
+
+		QueryRule permittedRule = new QueryRule(PERMITTED,
+				RowLevelSecurityFilter.create("entity-entity", "user", emptySet(), 2));
+		Query<Entity> q = new QueryImpl<>(
+				newArrayList(new QueryRule(SEARCH, "abc"), new QueryRule(AND), permittedRule)).pageSize(1).offset(1);
+		when(searchService.search(repositoryEntityType, new QueryImpl<>(new QueryRule(SEARCH, "abc")))).thenReturn(
+				Stream.of("0", "1", "2"));
+
+		Query<Entity> permittedQuery = new QueryImpl<>(
+				newArrayList(new QueryRule(idAttrName, IN, asList("0", "1", "2")), new QueryRule(AND), permittedRule));
+		Entity entity0 = when(mock(Entity.class).getIdValue()).thenReturn("0").getMock();
+		Entity entity2 = when(mock(Entity.class).getIdValue()).thenReturn("2").getMock();
+		when(delegateRepository.findAll(permittedQuery)).thenReturn(Stream.of(entity2, entity0));
+
+		indexedRepositoryDecorator.findAll(q);
+		ArgumentCaptor<Stream<Object>> idsCaptor = ArgumentCaptor.forClass(Stream.class);
+		verify(delegateRepository).findAll(idsCaptor.capture(), isNull());
+		assertEquals(idsCaptor.getValue().collect(toList()), singletonList("2"));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void findAllQueryUnsupportedPermittedOr()
+	{
+		when(delegateRepository.getQueryOperators()).thenReturn(EnumSet.of(IN, AND, OR, PERMITTED));
+		indexedRepositoryDecorator = new IndexedRepositoryDecorator(delegateRepository, searchService,
+				mock(IndexJobScheduler.class));
+
+		QueryRule permittedRule = new QueryRule(PERMITTED,
+				RowLevelSecurityFilter.create("entity-entity", "user", emptySet(), 2));
+		Query<Entity> q = new QueryImpl<>(newArrayList(new QueryRule(SEARCH, "abc"), new QueryRule(OR),
+				new QueryRule(newArrayList(new QueryRule(idAttrName, EQUALS, "3"), new QueryRule(AND),
+						permittedRule)))).pageSize(2);
+		Entity entity0 = when(mock(Entity.class).getIdValue()).thenReturn("0").getMock();
+		Entity entity2 = when(mock(Entity.class).getIdValue()).thenReturn("2").getMock();
+		when(delegateRepository.findAll(
+				new QueryImpl<>(permittedRule).fetch(new Fetch().field(idAttrName)).pageSize(MAX_PERMITTED_IDS + 1)))
+				.thenReturn(Stream.of(entity0, entity2));
+		Query<Entity> searchQuery = new QueryImpl<>(newArrayList(new QueryRule(SEARCH, "abc"), new QueryRule(OR),
+				new QueryRule(newArrayList(new QueryRule(idAttrName, EQUALS, "3"), new QueryRule(AND),
+						new QueryRule(idAttrName, IN, asList("0", "2")))))).pageSize(2);
+		when(searchService.search(repositoryEntityType, searchQuery)).thenReturn(Stream.of("1", "2"));
+
+		indexedRepositoryDecorator.findAll(q);
+		ArgumentCaptor<Stream<Object>> idsCaptor = ArgumentCaptor.forClass(Stream.class);
+		verify(delegateRepository).findAll(idsCaptor.capture(), isNull());
+		assertEquals(idsCaptor.getValue().collect(toList()), asList("1", "2"));
+	}
+
+	@Test(expectedExceptions = MolgenisDataException.class, expectedExceptionsMessageRegExp = "Error executing query, permission rules that are not part of the top-level conjunction match more than 10000 entities of entity type 'My entity type' with id 'entity'")
+	public void findAllQueryUnsupportedPermittedOrTooManyPermitted()
+	{
+		when(delegateRepository.getQueryOperators()).thenReturn(EnumSet.of(IN, AND, OR, PERMITTED));
+		indexedRepositoryDecorator = new IndexedRepositoryDecorator(delegateRepository, searchService,
+				mock(IndexJobScheduler.class));
+
+		QueryRule permittedRule = new QueryRule(PERMITTED,
+				RowLevelSecurityFilter.create("entity-entity", "user", emptySet(), 2));
+		Query<Entity> q = new QueryImpl<>(newArrayList(new QueryRule(SEARCH, "abc"), new QueryRule(OR), permittedRule));
+		Entity entity = when(mock(Entity.class).getIdValue()).thenReturn("0").getMock();
+		when(delegateRepository.findAll(
+				new QueryImpl<>(permittedRule).fetch(new Fetch().field(idAttrName)).pageSize(MAX_PERMITTED_IDS + 1)))
+				.thenReturn(Stream.generate(() -> entity).limit(MAX_PERMITTED_IDS + 1L));
+
+		try
+		{
+			indexedRepositoryDecorator.findAll(q);
+		}
+		finally
+		{
+			verifyZeroInteractions(searchService);
+		}
+	}
+
+	@Test
+	public void countQueryUnsupportedPermitted()
+	{
+		when(delegateRepository.getQueryOperators()).thenReturn(EnumSet.of(IN, AND, PERMITTED));
+		indexedRepositoryDecorator = new IndexedRepositoryDecorator(delegateRepository, searchService,
+				mock(IndexJobScheduler.class));
+
+		QueryRule permittedRule = new QueryRule(PERMITTED,
+				RowLevelSecurityFilter.create("entity-entity", "user", emptySet(), 2));
+		Query<Entity> q = new QueryImpl<>(
+				newArrayList(new QueryRule(SEARCH, "abc"), new QueryRule(AND), permittedRule));
+		when(searchService.search(repositoryEntityType, new QueryImpl<>(new QueryRule(SEARCH, "abc")))).thenReturn(
+				Stream.of("0", "1", "2"));
+		Query<Entity> permittedQuery = new QueryImpl<>(
+				newArrayList(new QueryRule(idAttrName, IN, asList("0", "1", "2")), new QueryRule(AND), permittedRule));
+		when(delegateRepository.count(permittedQuery)).thenReturn(2L);
+
+		assertEquals(indexedRepositoryDecorator.count(q), 2L);
+		verify(delegateRepository, never()).findAll(ArgumentMatchers.<Query<Entity>>any());
+	}
+
+	@Test
+	public void countQueryUnsupportedPermittedNot()
+	{
+		when(delegateRepository.getQueryOperators()).thenReturn(EnumSet.of(IN, AND, NOT, PERMITTED));
+		indexedRepositoryDecorator = new IndexedRepositoryDecorator(delegateRepository, searchService,
+				mock(IndexJobScheduler.class));
+
+		QueryRule permittedRule = new QueryRule(PERMITTED,
+				RowLevelSecurityFilter.create("entity-entity", "user", emptySet(), 2));
+		Query<Entity> q = new QueryImpl<>(
+				newArrayList(new QueryRule(SEARCH, "abc"), new QueryRule(AND), new QueryRule(NOT), permittedRule));
+		Entity entity0 = when(mock(Entity.class).getIdValue()).thenReturn("0").getMock();
+		when(delegateRepository.findAll(
+				new QueryImpl<>(permittedRule).fetch(new Fetch().field(idAttrName)).pageSize(MAX_PERMITTED_IDS + 1)))
+				.thenReturn(Stream.of(entity0));
+		Query<Entity> countQuery = new QueryImpl<>(
+				newArrayList(new QueryRule(SEARCH, "abc"), new QueryRule(AND), new QueryRule(NOT),
+						new QueryRule(idAttrName, IN, singletonList("0"))));
+		when(searchService.count(repositoryEntityType, countQuery)).thenReturn(5L);
+
+		assertEquals(indexedRepositoryDecorator.count(q), 5L);
+	}
+
 	@Test
 	public void query()
 	{
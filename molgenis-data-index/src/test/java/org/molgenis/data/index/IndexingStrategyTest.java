@@ -2,6 +2,14 @@ package org.molgenis.data.index;
 
 import com.google.common.collect.ImmutableSet;
 import org.mockito.Mock;
+import org.molgenis.data.DataService;
+import org.molgenis.data.Entity;
+import org.molgenis.data.Fetch;
+import org.molgenis.data.Query;
+import org.molgenis.data.meta.AttributeType;
+import org.molgenis.data.meta.model.Attribute;
+import org.molgenis.data.meta.model.EntityType;
+import org.molgenis.data.support.QueryImpl;
 import org.molgenis.data.index.config.IndexTestConfig;
 import org.springframework.test.context.ContextConfiguration;
 import org.testng.annotations.BeforeClass;
@@ -9,15 +17,16 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.Set;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-import static java.util.Collections.emptySet;
-import static java.util.Collections.singleton;
-import static org.mockito.Mockito.reset;
-import static org.mockito.Mockito.when;
+import static java.util.Arrays.asList;
+import static java.util.Collections.*;
+import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.molgenis.data.index.Impact.createSingleEntityImpact;
 import static org.molgenis.data.index.Impact.createWholeRepositoryImpact;
+import static org.molgenis.data.meta.AttributeType.*;
 import static org.testng.Assert.assertEquals;
 
 @ContextConfiguration(classes = { IndexTestConfig.class })
@@ -25,6 +34,8 @@ public class IndexingStrategyTest
 {
 	@Mock
 	private IndexDependencyModel dependencyModel;
+	@Mock
+	private DataService dataService;
 
 	IndexingStrategy indexingStrategy;
 
@@ -32,13 +43,13 @@ public class IndexingStrategyTest
 	private void beforeClass()
 	{
 		initMocks(this);
-		indexingStrategy = new IndexingStrategy();
+		indexingStrategy = new IndexingStrategy(dataService);
 	}
 
 	@BeforeMethod
 	private void beforeMethod()
 	{
-		reset(dependencyModel);
+		reset(dependencyModel, dataService);
 	}
 
 	@Test
@@ -48,16 +59,118 @@ public class IndexingStrategyTest
 	}
 
 	@Test
-	public void testDetermineImpact()
+	public void testDetermineImpactSingleEntityChange()
 	{
-		Impact indexAction = createSingleEntityImpact("A", "id");
-		Set<Impact> registeredIndexActions = singleton(indexAction);
-		when(dependencyModel.getEntityTypesDependentOn("A")).thenReturn(Stream.of("A", "B", "C"));
-		Set<Impact> actual = indexingStrategy.determineImpact(registeredIndexActions, dependencyModel);
-		assertEquals(actual, ImmutableSet.of(createWholeRepositoryImpact("A"), createWholeRepositoryImpact("B"),
+		Impact change = createSingleEntityImpact("A", "id");
+		when(dependencyModel.getMaxIndexingDepth()).thenReturn(1);
+		when(dependencyModel.getEntityTypesReferencing("A")).thenReturn(singleton("B"));
+		when(dependencyModel.getIndexingDepth("B")).thenReturn(1);
+		Attribute refAttr = createAttribute("refA", XREF);
+		when(dependencyModel.getReferencingAttributes("B", "A")).thenReturn(singletonList(refAttr));
+		mockEntityType("B");
+		Query<Entity> query = new QueryImpl<>().in("refA", singletonList("id")).fetch(new Fetch().field("idB"));
+		Entity b1 = createEntity("b1");
+		Entity b2 = createEntity("b2");
+		when(dataService.findAll("B", query)).thenReturn(Stream.of(b1, b2));
+
+		Set<Impact> actual = indexingStrategy.determineImpact(singleton(change), dependencyModel);
+		assertEquals(actual, ImmutableSet.of(createSingleEntityImpact("A", "id"), createSingleEntityImpact("B", "b1"),
+				createSingleEntityImpact("B", "b2")));
+	}
+
+	@Test
+	public void testDetermineImpactSingleEntityChangeMultipleAttributes()
+	{
+		Impact change = createSingleEntityImpact("A", "id");
+		when(dependencyModel.getMaxIndexingDepth()).thenReturn(1);
+		when(dependencyModel.getEntityTypesReferencing("A")).thenReturn(singleton("B"));
+		when(dependencyModel.getIndexingDepth("B")).thenReturn(1);
+		Attribute refAttr = createAttribute("refA", XREF);
+		Attribute mrefAttr = createAttribute("mrefA", MREF);
+		when(dependencyModel.getReferencingAttributes("B", "A")).thenReturn(asList(refAttr, mrefAttr));
+		mockEntityType("B");
+		Query<Entity> query = new QueryImpl<>().in("refA", singletonList("id"))
+											   .or()
+											   .in("mrefA", singletonList("id"))
+											   .fetch(new Fetch().field("idB"));
+		Entity b1 = createEntity("b1");
+		when(dataService.findAll("B", query)).thenReturn(Stream.of(b1));
+
+		Set<Impact> actual = indexingStrategy.determineImpact(singleton(change), dependencyModel);
+		assertEquals(actual, ImmutableSet.of(createSingleEntityImpact("A", "id"), createSingleEntityImpact("B", "b1")));
+	}
+
+	@Test
+	public void testDetermineImpactSingleEntityChangeIndirectReferences()
+	{
+		Impact change = createSingleEntityImpact("A", "id");
+		when(dependencyModel.getMaxIndexingDepth()).thenReturn(2);
+		when(dependencyModel.getEntityTypesReferencing("A")).thenReturn(singleton("B"));
+		when(dependencyModel.getEntityTypesReferencing("B")).thenReturn(ImmutableSet.of("C", "D"));
+		when(dependencyModel.getIndexingDepth("B")).thenReturn(1);
+		when(dependencyModel.getIndexingDepth("C")).thenReturn(2);
+		when(dependencyModel.getIndexingDepth("D")).thenReturn(1);
+		Attribute refAttrB = createAttribute("refA", XREF);
+		when(dependencyModel.getReferencingAttributes("B", "A")).thenReturn(singletonList(refAttrB));
+		Attribute refAttrC = createAttribute("refB", XREF);
+		when(dependencyModel.getReferencingAttributes("C", "B")).thenReturn(singletonList(refAttrC));
+		Attribute refAttrD = createAttribute("refB", XREF);
+		when(dependencyModel.getReferencingAttributes("D", "B")).thenReturn(singletonList(refAttrD));
+		mockEntityType("B");
+		mockEntityType("C");
+		mockEntityType("D");
+		Entity b1 = createEntity("b1");
+		Entity c1 = createEntity("c1");
+		Entity d1 = createEntity("d1");
+		when(dataService.findAll("B",
+				new QueryImpl<>().in("refA", singletonList("id")).fetch(new Fetch().field("idB")))).thenReturn(
+				Stream.of(b1));
+		when(dataService.findAll("C",
+				new QueryImpl<>().in("refB", singletonList("b1")).fetch(new Fetch().field("idC")))).thenReturn(
+				Stream.of(c1));
+		when(dataService.findAll("D",
+				new QueryImpl<>().in("refB", singletonList("b1")).fetch(new Fetch().field("idD")))).thenReturn(
+				Stream.of(d1));
+
+		Set<Impact> actual = indexingStrategy.determineImpact(singleton(change), dependencyModel);
+		assertEquals(actual, ImmutableSet.of(createSingleEntityImpact("A", "id"), createSingleEntityImpact("B", "b1"),
+				createSingleEntityImpact("C", "c1")));
+	}
+
+	@Test
+	public void testDetermineImpactSingleEntityChangeLargeFraction()
+	{
+		Impact change = createSingleEntityImpact("A", "id");
+		when(dependencyModel.getMaxIndexingDepth()).thenReturn(1);
+		when(dependencyModel.getEntityTypesReferencing("A")).thenReturn(singleton("B"));
+		when(dependencyModel.getEntityTypesDependentOn("B")).thenReturn(Stream.of("C"));
+		Attribute refAttr = createAttribute("refA", XREF);
+		when(dependencyModel.getReferencingAttributes("B", "A")).thenReturn(singletonList(refAttr));
+		mockEntityType("B");
+		Query<Entity> query = new QueryImpl<>().in("refA", singletonList("id")).fetch(new Fetch().field("idB"));
+		when(dataService.findAll("B", query)).thenReturn(
+				IntStream.range(0, IndexingStrategy.BATCH_SIZE).mapToObj(i -> createEntity("b" + i)));
+		when(dataService.count("B")).thenReturn(2000L);
+
+		Set<Impact> actual = indexingStrategy.determineImpact(singleton(change), dependencyModel);
+		assertEquals(actual, ImmutableSet.of(createSingleEntityImpact("A", "id"), createWholeRepositoryImpact("B"),
 				createWholeRepositoryImpact("C")));
 	}
 
+	@Test
+	public void testDetermineImpactSingleEntityChangeOneToMany()
+	{
+		Impact change = createSingleEntityImpact("A", "id");
+		when(dependencyModel.getMaxIndexingDepth()).thenReturn(1);
+		when(dependencyModel.getEntityTypesReferencing("A")).thenReturn(singleton("B"));
+		when(dependencyModel.getEntityTypesDependentOn("B")).thenReturn(Stream.empty());
+		Attribute oneToManyAttr = createAttribute("oneToManyA", ONE_TO_MANY);
+		when(dependencyModel.getReferencingAttributes("B", "A")).thenReturn(singletonList(oneToManyAttr));
+
+		Set<Impact> actual = indexingStrategy.determineImpact(singleton(change), dependencyModel);
+		assertEquals(actual, ImmutableSet.of(createSingleEntityImpact("A", "id"), createWholeRepositoryImpact("B")));
+	}
+
 	@Test
 	public void testDetermineImpact2()
 	{
@@ -77,9 +190,30 @@ public class IndexingStrategyTest
 		Impact change = createSingleEntityImpact("A", "6");
 		Set<Impact> registeredIndexActions = ImmutableSet.of(change);
 
-		when(dependencyModel.getEntityTypesDependentOn("A")).thenReturn(Stream.empty());
-
 		Set<Impact> actual = indexingStrategy.determineImpact(registeredIndexActions, dependencyModel);
 		assertEquals(actual, ImmutableSet.of(createSingleEntityImpact("A", "6")));
 	}
+
+	private void mockEntityType(String entityTypeId)
+	{
+		EntityType entityType = mock(EntityType.class);
+		Attribute idAttribute = createAttribute("id" + entityTypeId, STRING);
+		when(entityType.getIdAttribute()).thenReturn(idAttribute);
+		when(dataService.getEntityType(entityTypeId)).thenReturn(entityType);
+	}
+
+	private static Attribute createAttribute(String name, AttributeType type)
+	{
+		Attribute attribute = mock(Attribute.class);
+		when(attribute.getName()).thenReturn(name);
+		when(attribute.getDataType()).thenReturn(type);
+		return attribute;
+	}
+
+	private static Entity createEntity(Object id)
+	{
+		Entity entity = mock(Entity.class);
+		when(entity.getIdValue()).thenReturn(id);
+		return entity;
+	}
 }
@@ -0,0 +1,79 @@
+package org.molgenis.data.index;
+
+import com.google.common.collect.ImmutableSet;
+import org.molgenis.data.EntityKey;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.stream.IntStream;
+
+import static org.molgenis.data.index.Impact.createSingleEntityImpact;
+import static org.molgenis.data.index.Impact.createWholeRepositoryImpact;
+import static org.testng.Assert.*;
+
+public class TransactionChangesTest
+{
+	private TransactionChanges transactionChanges;
+
+	@BeforeMethod
+	public void beforeMethod()
+	{
+		transactionChanges = new TransactionChanges();
+	}
+
+	@AfterMethod
+	public void afterMethod()
+	{
+		transactionChanges.close();
+	}
+
+	@Test
+	public void testAdd()
+	{
+		assertTrue(transactionChanges.add(createSingleEntityImpact("A", "id0")));
+		assertFalse(transactionChanges.add(createSingleEntityImpact("A", "id0")));
+		assertTrue(transactionChanges.add(createWholeRepositoryImpact("B")));
+		assertFalse(transactionChanges.add(createWholeRepositoryImpact("B")));
+		assertEquals(transactionChanges.size(), 2);
+		assertEquals(transactionChanges.getImpacts(),
+				ImmutableSet.of(createSingleEntityImpact("A", "id0"), createWholeRepositoryImpact("B")));
+	}
+
+	@Test
+	public void testDirty()
+	{
+		transactionChanges.add(createSingleEntityImpact("A", "id0"));
+		transactionChanges.add(createWholeRepositoryImpact("B"));
+
+		assertTrue(transactionChanges.isEntityDirty(EntityKey.create("A", "id0")));
+		assertFalse(transactionChanges.isEntityDirty(EntityKey.create("A", "id1")));
+		assertFalse(transactionChanges.isEntireRepositoryDirty("A"));
+		assertTrue(transactionChanges.isEntireRepositoryDirty("B"));
+		assertTrue(transactionChanges.isRepositoryDirty("A"));
+		assertFalse(transactionChanges.isRepositoryDirty("C"));
+		assertEquals(transactionChanges.getDirtyEntities(), ImmutableSet.of(EntityKey.create("A", "id0")));
+		assertEquals(transactionChanges.getEntirelyDirtyRepositories(), ImmutableSet.of("B"));
+		assertEquals(transactionChanges.getDirtyRepositories(), ImmutableSet.of("A", "B"));
+	}
+
+	@Test
+	public void testManyChanges()
+	{
+		int nrChanges = 25000;
+		IntStream.range(0, nrChanges).forEach(i -> transactionChanges.add(createSingleEntityImpact("A", i)));
+		assertEquals(transactionChanges.size(), nrChanges);
+		assertTrue(transactionChanges.isEntityDirty(EntityKey.create("A", nrChanges - 1)));
+		assertFalse(transactionChanges.isEntityDirty(EntityKey.create("A", nrChanges)));
+		assertEquals(transactionChanges.getDirtyEntities().size(), nrChanges);
+	}
+
+	@Test
+	public void testClose()
+	{
+		transactionChanges.add(createSingleEntityImpact("A", "id0"));
+		transactionChanges.close();
+		assertTrue(transactionChanges.isEmpty());
+		assertFalse(transactionChanges.isRepositoryDirty("A"));
+	}
+}
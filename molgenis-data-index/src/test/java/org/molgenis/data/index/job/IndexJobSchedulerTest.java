@@ -8,6 +8,7 @@ import org.molgenis.data.index.IndexActionRegisterServiceImpl;
 import org.molgenis.data.index.IndexConfig;
 import org.molgenis.data.index.IndexService;
 import org.molgenis.data.index.config.IndexTestConfig;
+import org.molgenis.data.index.meta.IndexActionGroup;
 import org.molgenis.data.support.QueryImpl;
 import org.molgenis.data.transaction.TransactionListener;
 import org.molgenis.data.transaction.TransactionManager;
@@ -24,14 +25,26 @@ import org.testng.annotations.Test;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Stream.of;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.molgenis.data.index.job.IndexJobExecutionMeta.INDEX_JOB_EXECUTION;
 import static org.molgenis.data.index.meta.IndexActionGroupMetaData.INDEX_ACTION_GROUP;
+import static org.molgenis.data.index.meta.IndexActionMetaData.ENTITY_TYPE_ID;
+import static org.molgenis.data.index.meta.IndexActionMetaData.INDEX_ACTION;
 import static org.molgenis.data.util.MolgenisDateFormat.parseInstant;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
@@ -116,6 +129,91 @@ public class IndexJobSchedulerTest extends AbstractMolgenisSpringTest
 		assertEquals(Duration.between(parseInstant(queryMatcher.group(1)), Instant.now()).toMinutes(), 5);
 	}
 
+	@Test
+	public void testScheduleIndexJobCombinesQueuedTransactions()
+	{
+		IndexJobExecution indexJobExecution1 = mock(IndexJobExecution.class);
+		IndexJobExecution indexJobExecution2 = mock(IndexJobExecution.class);
+		IndexJobExecutionFactory indexJobExecutionFactory = mock(IndexJobExecutionFactory.class);
+		when(indexJobExecutionFactory.create()).thenReturn(indexJobExecution1, indexJobExecution2);
+		IndexJobScheduler indexJobScheduler = new IndexJobSchedulerImpl(dataService, indexJobExecutionFactory,
+				jobExecutor, 2);
+
+		mockIndexActionGroups(of("transaction1", "entityTypeA"), of("transaction2", "entityTypeA", "entityTypeB"),
+				of("transaction3", "entityTypeB"), of("transaction4", "entityTypeA"));
+		CompletableFuture<Void> indexJob1 = new CompletableFuture<>();
+		CompletableFuture<Void> indexJob2 = completedFuture(null);
+		when(jobExecutor.submit(any(IndexJobExecution.class), any(ExecutorService.class))).thenReturn(indexJob1)
+																						   .thenReturn(indexJob2);
+
+		indexJobScheduler.scheduleIndexJob("transaction1");
+		indexJobScheduler.scheduleIndexJob("transaction2");
+		indexJobScheduler.scheduleIndexJob("transaction3");
+		indexJobScheduler.scheduleIndexJob("transaction4");
+
+		verify(jobExecutor).submit(eq(indexJobExecution1), any(ExecutorService.class));
+		verify(indexJobExecution1).setIndexActionJobIDs(singletonList("transaction1"));
+		verifyZeroInteractions(indexJobExecution2);
+
+		indexJob1.complete(null);
+
+		verify(jobExecutor).submit(eq(indexJobExecution2), any(ExecutorService.class));
+		verify(indexJobExecution2).setIndexActionJobIDs(asList("transaction2", "transaction3", "transaction4"));
+	}
+
+	@Test
+	public void testScheduleIndexJobIndependentEntityTypes()
+	{
+		IndexJobExecutionFactory indexJobExecutionFactory = mock(IndexJobExecutionFactory.class);
+		when(indexJobExecutionFactory.create()).thenAnswer(invocation -> mock(IndexJobExecution.class));
+		IndexJobScheduler indexJobScheduler = new IndexJobSchedulerImpl(dataService, indexJobExecutionFactory,
+				jobExecutor, 2);
+
+		mockIndexActionGroups(of("transaction1", "entityTypeA"), of("transaction2", "entityTypeB"));
+		when(jobExecutor.submit(any(IndexJobExecution.class), any(ExecutorService.class))).thenReturn(
+				new CompletableFuture<>());
+
+		indexJobScheduler.scheduleIndexJob("transaction1");
+		indexJobScheduler.scheduleIndexJob("transaction2");
+
+		verify(jobExecutor, times(2)).submit(any(IndexJobExecution.class), any(ExecutorService.class));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testIndexJobSchedulerImplInvalidThreads()
+	{
+		new IndexJobSchedulerImpl(dataService, mock(IndexJobExecutionFactory.class), jobExecutor, 0);
+	}
+
+	/**
+	 * Mocks IndexActionGroups, each described by its transaction id followed by the ids of the changed entity types.
+	 */
+	@SafeVarargs
+	@SuppressWarnings("unchecked")
+	private final void mockIndexActionGroups(Stream<String>... indexActionGroups)
+	{
+		Map<Object, List<String>> entityTypeIdsPerGroup = new HashMap<>();
+		for (Stream<String> indexActionGroupStream : indexActionGroups)
+		{
+			List<String> values = indexActionGroupStream.collect(toList());
+			IndexActionGroup indexActionGroup = mock(IndexActionGroup.class);
+			when(indexActionGroup.getIdValue()).thenReturn(values.get(0));
+			when(dataService.findOneById(INDEX_ACTION_GROUP, values.get(0), IndexActionGroup.class)).thenReturn(
+					indexActionGroup);
+			entityTypeIdsPerGroup.put(values.get(0), values.subList(1, values.size()));
+		}
+		doAnswer(invocation ->
+		{
+			Query<Entity> query = invocation.getArgument(1);
+			return entityTypeIdsPerGroup.get(query.getRules().get(0).getValue()).stream().map(entityTypeId ->
+			{
+				Entity indexAction = mock(Entity.class);
+				when(indexAction.getString(ENTITY_TYPE_ID)).thenReturn(entityTypeId);
+				return indexAction;
+			});
+		}).when(dataService).findAll(eq(INDEX_ACTION), any(Query.class));
+	}
+
 	@Configuration
 	@Import({ IndexConfig.class, IndexActionRegisterServiceImpl.class })
 	public static class Config
@@ -24,6 +24,8 @@ import org.testng.annotations.Test;
 import java.util.stream.Stream;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Stream.empty;
 import static java.util.stream.Stream.of;
@@ -34,9 +36,9 @@ import static org.molgenis.data.index.meta.IndexActionMetaData.INDEX_ACTION;
 import static org.molgenis.data.index.meta.IndexActionMetaData.IndexStatus.FAILED;
 import static org.molgenis.data.index.meta.IndexActionMetaData.IndexStatus.FINISHED;
 import static org.testng.Assert.assertEquals;
-import static org.testng.Assert.assertSame;
 
 @ContextConfiguration(classes = { IndexJobServiceTest.Config.class })
+@SuppressWarnings("unchecked")
 public class IndexJobServiceTest extends AbstractMolgenisSpringTest
 {
 	@Captor
@@ -86,8 +88,10 @@ public class IndexJobServiceTest extends AbstractMolgenisSpringTest
 		testEntityType = harness.createDynamicRefEntityType();
 		when(mds.getEntityType("TypeTestRefDynamic")).thenReturn(testEntityType);
 		toIndexEntity = harness.createTestRefEntities(testEntityType, 1).get(0);
+		toIndexEntity.setIdValue("entityId");
 		when(dataService.getEntityType("TypeTestRefDynamic")).thenReturn(testEntityType);
-		when(dataService.findOneById("TypeTestRefDynamic", "entityId")).thenReturn(toIndexEntity);
+		when(dataService.findAll(eq("TypeTestRefDynamic"), any(Stream.class))).thenAnswer(
+				invocation -> Stream.of(toIndexEntity));
 		when(dataService.getEntityType("entityType")).thenReturn(testEntityType);
 	}
 
@@ -131,7 +135,7 @@ public class IndexJobServiceTest extends AbstractMolgenisSpringTest
 	@Test
 	public void rebuildIndexDeleteSingleEntityTest()
 	{
-		when(dataService.findOneById("TypeTestRefDynamic", "entityId")).thenReturn(null);
+		when(dataService.findAll(eq("TypeTestRefDynamic"), any(Stream.class))).thenReturn(Stream.empty());
 
 		IndexAction indexAction = indexActionFactory.create()
 													.setIndexActionGroup(indexActionGroup)
@@ -147,7 +151,9 @@ public class IndexJobServiceTest extends AbstractMolgenisSpringTest
 		indexJobService.executeJob(progress, transactionId);
 		assertEquals(indexAction.getIndexStatus(), FINISHED);
 
-		verify(indexService).deleteById(testEntityType, "entityId");
+		ArgumentCaptor<Stream<Object>> entityIdsCaptor = ArgumentCaptor.forClass(Stream.class);
+		verify(indexService).deleteAll(eq(testEntityType), entityIdsCaptor.capture());
+		assertEquals(entityIdsCaptor.getValue().collect(toList()), singletonList("entityId"));
 
 		// verify progress messages
 		verify(progress).status("Start indexing for transaction id: [aabbcc]");
@@ -158,7 +164,7 @@ public class IndexJobServiceTest extends AbstractMolgenisSpringTest
 		verify(progress).status("Refresh index done");
 		verify(progress).status("Finished indexing for transaction id: [aabbcc]");
 		verify(indexService).refreshIndex();
-		verify(dataService, times(2)).update(INDEX_ACTION, indexAction);
+		verify(dataService).update(eq(INDEX_ACTION), any(Stream.class));
 	}
 
 	@Test
@@ -177,7 +183,8 @@ public class IndexJobServiceTest extends AbstractMolgenisSpringTest
 		indexJobService.executeJob(progress, transactionId);
 		assertEquals(indexAction.getIndexStatus(), FINISHED);
 
-		verify(this.indexService).index(testEntityType, toIndexEntity);
+		verify(indexService).index(eq(testEntityType), streamCaptor.capture());
+		assertEquals(streamCaptor.getValue().collect(toList()), singletonList(toIndexEntity));
 
 		verify(progress).status("Start indexing for transaction id: [aabbcc]");
 		verify(progress).setProgressMax(1);
@@ -187,7 +194,7 @@ public class IndexJobServiceTest extends AbstractMolgenisSpringTest
 		verify(progress).status("Refresh index done");
 		verify(progress).status("Finished indexing for transaction id: [aabbcc]");
 
-		verify(dataService, times(2)).update(INDEX_ACTION, indexAction);
+		verify(dataService).update(eq(INDEX_ACTION), any(Stream.class));
 	}
 
 	@Test
@@ -208,7 +215,7 @@ public class IndexJobServiceTest extends AbstractMolgenisSpringTest
 
 		indexJobService.executeJob(progress, transactionId);
 		assertEquals(indexAction.getIndexStatus(), FINISHED);
-		verify(this.indexService).rebuildIndex(this.dataService.getRepository("any"));
+		verify(this.indexService).rebuildIndex(this.dataService.getRepository("any"), progress);
 		verify(progress).status("Start indexing for transaction id: [aabbcc]");
 		verify(progress).setProgressMax(1);
 		verify(progress).progress(0, "Indexing TypeTestRefDynamic");
@@ -217,7 +224,7 @@ public class IndexJobServiceTest extends AbstractMolgenisSpringTest
 		verify(progress).status("Refresh index done");
 		verify(progress).status("Finished indexing for transaction id: [aabbcc]");
 
-		verify(dataService, times(2)).update(INDEX_ACTION, indexAction);
+		verify(dataService).update(eq(INDEX_ACTION), any(Stream.class));
 
 		// make sure both the actions and the action job got deleted
 		verify(dataService).delete(eq(INDEX_ACTION), streamCaptor.capture());
@@ -241,7 +248,7 @@ public class IndexJobServiceTest extends AbstractMolgenisSpringTest
 
 		indexJobService.executeJob(progress, transactionId);
 		assertEquals(indexAction.getIndexStatus(), FINISHED);
-		verify(this.indexService).rebuildIndex(this.dataService.getRepository("any"));
+		verify(this.indexService).rebuildIndex(this.dataService.getRepository("any"), progress);
 		verify(progress).status("Start indexing for transaction id: [aabbcc]");
 		verify(progress).setProgressMax(1);
 		verify(progress).progress(0, "Indexing TypeTestRefDynamic");
@@ -250,7 +257,7 @@ public class IndexJobServiceTest extends AbstractMolgenisSpringTest
 		verify(progress).status("Refresh index done");
 		verify(progress).status("Finished indexing for transaction id: [aabbcc]");
 
-		verify(dataService, times(2)).update(INDEX_ACTION, indexAction);
+		verify(dataService).update(eq(INDEX_ACTION), any(Stream.class));
 
 		// make sure both the actions and the action job got deleted
 		verify(dataService).delete(eq(INDEX_ACTION), streamCaptor.capture());
@@ -298,7 +305,7 @@ public class IndexJobServiceTest extends AbstractMolgenisSpringTest
 		verify(progress).status("Refresh index done");
 		verify(progress).status("Finished indexing for transaction id: [aabbcc]");
 
-		verify(dataService, times(2)).update(INDEX_ACTION, indexAction);
+		verify(dataService).update(eq(INDEX_ACTION), any(Stream.class));
 	}
 
 	@Test
@@ -329,31 +336,71 @@ public class IndexJobServiceTest extends AbstractMolgenisSpringTest
 		indexActionGroup.setCount(3);
 
 		MolgenisDataException mde = new MolgenisDataException("Random unrecoverable exception");
-		doThrow(mde).when(indexService).deleteById(testEntityType, "entityId2");
+		doThrow(mde).when(indexService).deleteAll(eq(testEntityType), any(Stream.class));
 
 		when(dataService.hasRepository("TypeTestRefDynamic")).thenReturn(true);
 
-		try
-		{
-			indexJobService.executeJob(progress, transactionId);
-		}
-		catch (Exception expected)
-		{
-			assertSame(expected, mde);
-		}
-
-		verify(indexService).deleteById(testEntityType, "entityId1");
-		verify(indexService).deleteById(testEntityType, "entityId2");
-		verify(indexService).deleteById(testEntityType, "entityId3");
+		indexJobService.executeJob(progress, transactionId);
 
+		verify(indexService).deleteAll(eq(testEntityType), any(Stream.class));
 		verify(indexService).refreshIndex();
+		verify(progress).progress(0, "Indexing 3 entities of TypeTestRefDynamic");
 
 		// Make sure the action status got updated and that the actionJob didn't get deleted
-		assertEquals(indexAction1.getIndexStatus(), FINISHED);
+		assertEquals(indexAction1.getIndexStatus(), FAILED);
 		assertEquals(indexAction2.getIndexStatus(), FAILED);
-		verify(dataService, atLeast(1)).update(INDEX_ACTION, indexAction1);
-		verify(dataService, atLeast(1)).update(INDEX_ACTION, indexAction2);
-		verify(dataService, never()).delete(INDEX_ACTION_GROUP, indexActionGroup);
+		assertEquals(indexAction3.getIndexStatus(), FAILED);
+		verify(dataService, times(2)).update(eq(INDEX_ACTION), any(Stream.class));
+		verify(dataService, never()).delete(eq(INDEX_ACTION), any(Stream.class));
+		verify(dataService, never()).deleteById(INDEX_ACTION_GROUP, transactionId);
+	}
+
+	@Test
+	public void rebuildIndexCombinesIndexActionsOfMultipleTransactions()
+	{
+		String otherTransactionId = "ddeeff";
+		IndexActionGroup otherIndexActionGroup = indexActionGroupFactory.create(otherTransactionId).setCount(2);
+		when(dataService.findOneById(INDEX_ACTION_GROUP, otherTransactionId, IndexActionGroup.class)).thenReturn(
+				otherIndexActionGroup);
+		indexActionGroup.setCount(1);
+
+		IndexAction indexAction1 = indexActionFactory.create()
+													 .setIndexActionGroup(indexActionGroup)
+													 .setEntityTypeId("entityType")
+													 .setEntityId("entityId")
+													 .setActionOrder(0)
+													 .setIndexStatus(IndexActionMetaData.IndexStatus.PENDING);
+		IndexAction indexAction2 = indexActionFactory.create()
+													 .setIndexActionGroup(otherIndexActionGroup)
+													 .setEntityTypeId("entityType")
+													 .setEntityId(null)
+													 .setActionOrder(0)
+													 .setIndexStatus(IndexActionMetaData.IndexStatus.PENDING);
+		IndexAction indexAction3 = indexActionFactory.create()
+													 .setIndexActionGroup(otherIndexActionGroup)
+													 .setEntityTypeId("entityType")
+													 .setEntityId("entityId")
+													 .setActionOrder(1)
+													 .setIndexStatus(IndexActionMetaData.IndexStatus.PENDING);
+		mockGetAllIndexActions(of(indexAction1));
+		when(dataService.findAll(INDEX_ACTION, IndexJobService.createQueryGetAllIndexActions(otherTransactionId),
+				IndexAction.class)).thenReturn(of(indexAction2, indexAction3));
+
+		indexJobService.executeJob(progress, asList(transactionId, otherTransactionId));
+
+		verify(indexService).rebuildIndex(dataService.getRepository("TypeTestRefDynamic"), progress);
+		verify(indexService, never()).index(any(EntityType.class), any(Stream.class));
+		verify(indexService).refreshIndex();
+		verify(progress).setProgressMax(3);
+		verify(progress).status("Start indexing for transaction id: [aabbcc, ddeeff]");
+		verify(progress).progress(0, "Indexing TypeTestRefDynamic");
+		verify(progress).progress(3, "Executed all index actions, cleaning up the actions...");
+
+		verify(dataService).update(eq(INDEX_ACTION), any(Stream.class));
+		verify(dataService).delete(eq(INDEX_ACTION), streamCaptor.capture());
+		assertEquals(streamCaptor.getValue().collect(toList()), asList(indexAction1, indexAction2, indexAction3));
+		verify(dataService).deleteById(INDEX_ACTION_GROUP, transactionId);
+		verify(dataService).deleteById(INDEX_ACTION_GROUP, otherTransactionId);
 	}
 
 	@Configuration
@@ -0,0 +1,152 @@
+package org.molgenis.data.postgresql;
+
+import org.molgenis.data.Entity;
+import org.molgenis.data.aggregation.AggregateResult;
+import org.molgenis.data.meta.model.Attribute;
+import org.molgenis.data.meta.model.EntityType;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
+import static org.molgenis.data.support.EntityTypeUtils.isReferenceType;
+
+/**
+ * Creates an {@link AggregateResult} from the result set of the SQL produced by
+ * {@link PostgreSqlQueryGenerator#getSqlAggregate}. The labels and their order are the same as the labels of an
+ * aggregate result created by the index: nillable attributes always have a <tt>null</tt> label, labels are ordered by
+ * their string value with <tt>null</tt> last and labels of reference attributes are the referenced entities.
+ */
+class PostgreSqlAggregateResultExtractor implements ResultSetExtractor<AggregateResult>
+{
+	private static final Comparator<Object> LABEL_COMPARATOR = Comparator.nullsLast(
+			Comparator.comparing(Object::toString));
+
+	private final PostgreSqlEntityFactory postgreSqlEntityFactory;
+	private final Attribute attrX;
+	private final Attribute attrY;
+
+	PostgreSqlAggregateResultExtractor(PostgreSqlEntityFactory postgreSqlEntityFactory, Attribute attrX,
+			Attribute attrY)
+	{
+		this.postgreSqlEntityFactory = requireNonNull(postgreSqlEntityFactory);
+		this.attrX = requireNonNull(attrX);
+		this.attrY = attrY;
+	}
+
+	@Override
+	public AggregateResult extractData(ResultSet resultSet) throws SQLException
+	{
+		Set<Object> xLabelSet = new HashSet<>();
+		Set<Object> yLabelSet = new HashSet<>();
+		Map<List<Object>, Long> counts = new HashMap<>();
+		while (resultSet.next())
+		{
+			Object xLabel = getLabel(resultSet, 1, attrX);
+			Object yLabel = attrY != null ? getLabel(resultSet, 2, attrY) : null;
+			long count = resultSet.getLong(attrY != null ? 3 : 2);
+
+			xLabelSet.add(xLabel);
+			yLabelSet.add(yLabel);
+			counts.put(Arrays.asList(xLabel, yLabel), count);
+		}
+		if (attrX.isNillable())
+		{
+			xLabelSet.add(null);
+		}
+		if (attrY != null && attrY.isNillable())
+		{
+			yLabelSet.add(null);
+		}
+
+		List<Object> xLabels = new ArrayList<>(xLabelSet);
+		xLabels.sort(LABEL_COMPARATOR);
+		List<Object> yLabels = attrY != null ? new ArrayList<>(yLabelSet) : new ArrayList<>();
+		yLabels.sort(LABEL_COMPARATOR);
+
+		List<List<Long>> matrix = new ArrayList<>(xLabels.size());
+		for (Object xLabel : xLabels)
+		{
+			List<Long> yValues = new ArrayList<>();
+			if (attrY != null)
+			{
+				for (Object yLabel : yLabels)
+				{
+					yValues.add(counts.getOrDefault(Arrays.asList(xLabel, yLabel), 0L));
+				}
+			}
+			else
+			{
+				yValues.add(counts.getOrDefault(Arrays.asList(xLabel, null), 0L));
+			}
+			matrix.add(yValues);
+		}
+
+		if (isReferenceType(attrX))
+		{
+			convertIdLabelsToEntities(xLabels, attrX.getRefEntity());
+		}
+		if (attrY != null && isReferenceType(attrY))
+		{
+			convertIdLabelsToEntities(yLabels, attrY.getRefEntity());
+		}
+		return new AggregateResult(matrix, xLabels, yLabels);
+	}
+
+	/**
+	 * Returns the label for a result set value: numbers are returned as long or double, booleans as one or zero and
+	 * other values as strings.
+	 */
+	private static Object getLabel(ResultSet resultSet, int columnIndex, Attribute attr) throws SQLException
+	{
+		Attribute valueAttr = isReferenceType(attr) ? attr.getRefEntity().getIdAttribute() : attr;
+		Object label;
+		switch (valueAttr.getDataType())
+		{
+			case BOOL:
+				boolean boolValue = resultSet.getBoolean(columnIndex);
+				label = resultSet.wasNull() ? null : (boolValue ? 1L : 0L);
+				break;
+			case INT:
+			case LONG:
+				long longValue = resultSet.getLong(columnIndex);
+				label = resultSet.wasNull() ? null : longValue;
+				break;
+			case DECIMAL:
+				double doubleValue = resultSet.getDouble(columnIndex);
+				label = resultSet.wasNull() ? null : doubleValue;
+				break;
+			case DATE:
+				LocalDate localDate = resultSet.getObject(columnIndex, LocalDate.class);
+				label = localDate != null ? localDate.toString() : null;
+				break;
+			case DATE_TIME:
+				OffsetDateTime offsetDateTime = resultSet.getObject(columnIndex, OffsetDateTime.class);
+				label = offsetDateTime != null ? offsetDateTime.toInstant().toString() : null;
+				break;
+			default:
+				label = resultSet.getString(columnIndex);
+				break;
+		}
+		return label;
+	}
+
+	private void convertIdLabelsToEntities(List<Object> idLabels, EntityType refEntityType)
+	{
+		List<Object> ids = new ArrayList<>(idLabels.size());
+		idLabels.stream().filter(Objects::nonNull).forEach(ids::add);
+
+		Iterator<Entity> references = postgreSqlEntityFactory.getReferences(refEntityType, ids).iterator();
+		for (int i = 0; i < idLabels.size(); ++i)
+		{
+			if (idLabels.get(i) != null) // missing value label
+			{
+				idLabels.set(i, references.next());
+			}
+		}
+	}
+}
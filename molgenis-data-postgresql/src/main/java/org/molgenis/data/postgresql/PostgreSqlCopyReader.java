@@ -0,0 +1,119 @@
+package org.molgenis.data.postgresql;
+
+import java.io.Reader;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Encodes rows of PostgreSQL values in the CSV format of the PostgreSQL COPY command. Rows are encoded on demand
+ * while the reader is being read, so the rows of a COPY are never held in memory as text.
+ * <p>
+ * Null values are written as unquoted empty values and all other text values are quoted, so null and empty strings
+ * can be distinguished.
+ *
+ * @see PostgreSqlQueryGenerator#getSqlCopy(org.molgenis.data.meta.model.EntityType)
+ */
+class PostgreSqlCopyReader extends Reader
+{
+	private static final char DELIMITER = ',';
+	private static final char QUOTE = '"';
+	private static final char NEWLINE = '\n';
+	private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(
+			"uuuu-MM-dd HH:mm:ss.SSSSSSxxx");
+
+	private final Iterator<List<Object>> rows;
+	private final StringBuilder buffer;
+	private int bufferIndex;
+
+	/**
+	 * @param rows PostgreSQL values of each row, in the order of the columns of the COPY command
+	 */
+	PostgreSqlCopyReader(Iterator<List<Object>> rows)
+	{
+		this.rows = requireNonNull(rows);
+		this.buffer = new StringBuilder();
+	}
+
+	@Override
+	public int read(char[] chars, int offset, int length)
+	{
+		if (length == 0)
+		{
+			return 0;
+		}
+		if (bufferIndex == buffer.length())
+		{
+			if (!rows.hasNext())
+			{
+				return -1;
+			}
+			buffer.setLength(0);
+			bufferIndex = 0;
+			appendRow(buffer, rows.next());
+		}
+
+		int nrChars = Math.min(length, buffer.length() - bufferIndex);
+		buffer.getChars(bufferIndex, bufferIndex + nrChars, chars, offset);
+		bufferIndex += nrChars;
+		return nrChars;
+	}
+
+	@Override
+	public void close()
+	{
+		// noop
+	}
+
+	static void appendRow(StringBuilder stringBuilder, List<Object> values)
+	{
+		for (int i = 0; i < values.size(); ++i)
+		{
+			if (i > 0)
+			{
+				stringBuilder.append(DELIMITER);
+			}
+			appendValue(stringBuilder, values.get(i));
+		}
+		stringBuilder.append(NEWLINE);
+	}
+
+	private static void appendValue(StringBuilder stringBuilder, Object value)
+	{
+		if (value == null)
+		{
+			return;
+		}
+
+		if (value instanceof Number || value instanceof Boolean)
+		{
+			stringBuilder.append(value);
+		}
+		else if (value instanceof OffsetDateTime)
+		{
+			DATE_TIME_FORMATTER.formatTo((OffsetDateTime) value, stringBuilder);
+		}
+		else
+		{
+			appendQuoted(stringBuilder, value.toString());
+		}
+	}
+
+	private static void appendQuoted(StringBuilder stringBuilder, String value)
+	{
+		stringBuilder.append(QUOTE);
+		for (int i = 0; i < value.length(); ++i)
+		{
+			char c = value.charAt(i);
+			if (c == QUOTE)
+			{
+				stringBuilder.append(QUOTE);
+			}
+			stringBuilder.append(c);
+		}
+		stringBuilder.append(QUOTE);
+	}
+}
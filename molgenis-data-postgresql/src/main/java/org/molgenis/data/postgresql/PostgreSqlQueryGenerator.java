@@ -4,6 +4,7 @@ import com.google.common.collect.Lists;
 import org.apache.commons.lang3.StringUtils;
 import org.molgenis.data.*;
 import org.molgenis.data.QueryRule.Operator;
+import org.molgenis.data.aggregation.AggregateQuery;
 import org.molgenis.data.meta.AttributeType;
 import org.molgenis.data.meta.IllegalAttributeTypeException;
 import org.molgenis.data.meta.model.Attribute;
@@ -50,6 +51,10 @@ class PostgreSqlQueryGenerator
 
 	static final String ERR_CODE_READONLY_VIOLATION = "23506";
 
+	private static final String AGGREGATE_X = "aggregate_x";
+	private static final String AGGREGATE_Y = "aggregate_y";
+	private static final String AGGREGATE_DISTINCT = "aggregate_distinct";
+
 	private PostgreSqlQueryGenerator()
 	{
 
@@ -395,6 +400,32 @@ class PostgreSqlQueryGenerator
 				entityType.getIdAttribute()) + ',' + getColumnName(attr) + ") VALUES (?,?,?)";
 	}
 
+	/**
+	 * Returns the COPY statement that bulk inserts rows in the entity table. The columns are in the same order as
+	 * the columns of {@link #getSqlInsert(EntityType)}.
+	 *
+	 * @see PostgreSqlCopyReader
+	 */
+	static String getSqlCopy(EntityType entityType)
+	{
+		String columns = getTableAttributes(entityType).map(PostgreSqlNameGenerator::getColumnName)
+													   .collect(joining(", "));
+		return "COPY " + getTableName(entityType) + " (" + columns + ") FROM STDIN WITH (FORMAT csv)";
+	}
+
+	/**
+	 * Returns the COPY statement that bulk inserts rows in the junction table of the given attribute. The columns are
+	 * in the same order as the columns of {@link #getSqlInsertJunction(EntityType, Attribute)}.
+	 *
+	 * @see PostgreSqlCopyReader
+	 */
+	static String getSqlCopyJunction(EntityType entityType, Attribute attr)
+	{
+		String junctionTableName = getJunctionTableName(entityType, attr);
+		return "COPY " + junctionTableName + " (" + getJunctionTableOrderColumnName() + ',' + getColumnName(
+				entityType.getIdAttribute()) + ',' + getColumnName(attr) + ") FROM STDIN WITH (FORMAT csv)";
+	}
+
 	static String getSqlDeleteAll(EntityType entityType)
 	{
 		return "DELETE FROM " + getTableName(entityType);
@@ -638,6 +669,100 @@ class PostgreSqlQueryGenerator
 		return sqlBuilder.toString();
 	}
 
+	/**
+	 * Produces SQL to count the entities that match the query of an aggregate query, grouped by the values of the
+	 * x-attribute and the y-attribute if specified. Counts the distinct values of the distinct attribute instead of
+	 * the entities if specified. The first result set column contains the x-attribute values, followed by the
+	 * y-attribute values if specified and the count.
+	 *
+	 * @param aggregateQuery aggregate query
+	 * @param parameters     prepared statement parameters
+	 * @return SQL string
+	 */
+	static String getSqlAggregate(EntityType entityType, AggregateQuery aggregateQuery, List<Object> parameters)
+	{
+		Attribute attrX = aggregateQuery.getAttributeX();
+		Attribute attrY = aggregateQuery.getAttributeY();
+		Attribute attrDistinct = aggregateQuery.getAttributeDistinct();
+		Query<Entity> q = aggregateQuery.getQuery() != null ? aggregateQuery.getQuery() : new QueryImpl<>();
+
+		StringBuilder select = new StringBuilder("SELECT ").append(getSqlAggregateColumn(attrX, AGGREGATE_X));
+		StringBuilder group = new StringBuilder(" GROUP BY 1");
+		if (attrY != null)
+		{
+			select.append(", ").append(getSqlAggregateColumn(attrY, AGGREGATE_Y));
+			group.append(", 2");
+		}
+
+		// count distinct entities in case a filter or aggregate attribute joins a table with multiple rows per entity
+		if (attrDistinct != null)
+		{
+			select.append(", COUNT(DISTINCT ").append(getSqlAggregateColumn(attrDistinct, AGGREGATE_DISTINCT));
+			select.append(')');
+		}
+		else if (isDistinctSelectRequired(entityType, q) || isPersistedInOtherTable(attrX) || (attrY != null
+				&& isPersistedInOtherTable(attrY)))
+		{
+			select.append(", COUNT(DISTINCT this.").append(getColumnName(entityType.getIdAttribute())).append(')');
+		}
+		else
+		{
+			select.append(", COUNT(*)");
+		}
+
+		StringBuilder from = new StringBuilder(getSqlFrom(entityType, q));
+		from.append(getSqlAggregateJoin(entityType, attrX, AGGREGATE_X));
+		if (attrY != null)
+		{
+			from.append(getSqlAggregateJoin(entityType, attrY, AGGREGATE_Y));
+		}
+		if (attrDistinct != null)
+		{
+			from.append(getSqlAggregateJoin(entityType, attrDistinct, AGGREGATE_DISTINCT));
+		}
+
+		StringBuilder result = select.append(from);
+		if (q.getRules() != null && !q.getRules().isEmpty())
+		{
+			result.append(" WHERE ").append(getSqlWhere(entityType, q, parameters, new AtomicInteger()));
+		}
+		return result.append(group).toString();
+	}
+
+	/**
+	 * Returns the column with the values of an aggregate attribute, for attributes persisted in another table this is
+	 * the column with the referenced entity ids in the table joined by {@link #getSqlAggregateJoin}.
+	 */
+	private static String getSqlAggregateColumn(Attribute attr, String alias)
+	{
+		if (!isPersistedInOtherTable(attr))
+		{
+			return "this." + getColumnName(attr);
+		}
+		if (attr.getDataType() == ONE_TO_MANY && attr.isMappedBy())
+		{
+			return alias + '.' + getColumnName(attr.getRefEntity().getIdAttribute());
+		}
+		return alias + '.' + getColumnName(attr);
+	}
+
+	private static String getSqlAggregateJoin(EntityType entityType, Attribute attr, String alias)
+	{
+		if (!isPersistedInOtherTable(attr))
+		{
+			return "";
+		}
+
+		String idColumnName = getColumnName(entityType.getIdAttribute());
+		if (attr.getDataType() == ONE_TO_MANY && attr.isMappedBy())
+		{
+			return " LEFT JOIN " + getTableName(attr.getRefEntity()) + " AS " + alias + " ON (this." + idColumnName
+					+ " = " + alias + '.' + getColumnName(attr.getMappedBy()) + ')';
+		}
+		return " LEFT JOIN " + getJunctionTableName(entityType, attr) + " AS " + alias + " ON (this." + idColumnName
+				+ " = " + alias + '.' + idColumnName + ')';
+	}
+
 	private static String getSqlColumn(EntityType entityType, Attribute attr, ColumnMode columnMode)
 	{
 		StringBuilder sqlBuilder = new StringBuilder(getColumnName(attr)).append(' ');
@@ -1061,6 +1186,24 @@ class PostgreSqlQueryGenerator
 
 					parameters.add(PostgreSqlUtils.getPostgreSqlQueryValue(r.getValue(), attr));
 
+					if (result.length() > 0 && !result.toString().endsWith(" OR ") && !result.toString()
+																							 .endsWith(" AND ")
+							&& !result.toString().endsWith(" NOT "))
+					{
+						result.append(" AND ");
+					}
+					result.append(predicate);
+					break;
+				case PERMITTED:
+					Object filter = r.getValue();
+					if (!(filter instanceof RowLevelSecurityFilter))
+					{
+						throw new MolgenisDataException(format("PERMITTED value is of type [%s] instead of [%s]",
+								filter != null ? filter.getClass().getSimpleName() : null,
+								RowLevelSecurityFilter.class.getSimpleName()));
+					}
+					predicate.append(getSqlPermitted(entityType, (RowLevelSecurityFilter) filter, parameters));
+
 					if (result.length() > 0 && !result.toString().endsWith(" OR ") && !result.toString()
 																							 .endsWith(" AND ")
 							&& !result.toString().endsWith(" NOT "))
@@ -1085,6 +1228,52 @@ class PostgreSqlQueryGenerator
 		return result.toString().trim();
 	}
 
+	/**
+	 * Returns a predicate that holds for the rows on which one of the security identities of the filter was granted
+	 * a permission that overlaps with the filter mask. Reads the access control entries from the tables of the
+	 * Spring Security ACL schema, so that rows can be filtered in the database instead of one by one in Java.
+	 * <p>
+	 * Only granting entries of the access control list of a row are considered. The predicate therefore only agrees
+	 * with the permission evaluation of a single entity if no access control list of the entity type denies
+	 * permissions or inherits entries from a parent; callers check this before adding the query rule.
+	 */
+	private static String getSqlPermitted(EntityType entityType, RowLevelSecurityFilter filter,
+			List<Object> parameters)
+	{
+		if (filter.getPrincipal() == null && filter.getAuthorities().isEmpty())
+		{
+			return "FALSE";
+		}
+		parameters.add(filter.getAclClass());
+		parameters.add(filter.getMask());
+
+		StringBuilder sidPredicate = new StringBuilder();
+		if (filter.getPrincipal() != null)
+		{
+			sidPredicate.append("acl_sid.principal AND acl_sid.sid = ?");
+			parameters.add(filter.getPrincipal());
+		}
+		if (!filter.getAuthorities().isEmpty())
+		{
+			if (sidPredicate.length() > 0)
+			{
+				sidPredicate.append(" OR ");
+			}
+			sidPredicate.append("NOT acl_sid.principal AND acl_sid.sid IN (")
+						.append(filter.getAuthorities().stream().map(authority -> "?").collect(joining(",")))
+						.append(')');
+			parameters.addAll(filter.getAuthorities());
+		}
+
+		return "EXISTS (SELECT 1 FROM acl_object_identity"
+				+ " JOIN acl_class ON acl_object_identity.object_id_class = acl_class.id"
+				+ " JOIN acl_entry ON acl_entry.acl_object_identity = acl_object_identity.id"
+				+ " JOIN acl_sid ON acl_entry.sid = acl_sid.id"
+				+ " WHERE acl_class.class = ? AND acl_object_identity.object_id_identity = this." + getColumnName(
+				entityType.getIdAttribute()) + "::varchar AND acl_entry.granting AND (acl_entry.mask & ?) <> 0 AND ("
+				+ sidPredicate + "))";
+	}
+
 	/**
 	 * Package-private for testability
 	 */
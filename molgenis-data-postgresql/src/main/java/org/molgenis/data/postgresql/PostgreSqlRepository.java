@@ -5,8 +5,12 @@ import com.google.common.collect.*;
 import org.molgenis.data.Entity;
 import org.molgenis.data.Fetch;
 import org.molgenis.data.Query;
+import org.molgenis.data.QueryRule;
 import org.molgenis.data.QueryRule.Operator;
 import org.molgenis.data.RepositoryCapability;
+import org.molgenis.data.Sort;
+import org.molgenis.data.aggregation.AggregateQuery;
+import org.molgenis.data.aggregation.AggregateResult;
 import org.molgenis.data.meta.AttributeType;
 import org.molgenis.data.meta.model.Attribute;
 import org.molgenis.data.meta.model.EntityType;
@@ -16,11 +20,15 @@ import org.molgenis.data.support.QueryImpl;
 import org.molgenis.data.validation.ConstraintViolation;
 import org.molgenis.data.validation.MolgenisValidationException;
 import org.molgenis.util.UnexpectedEnumException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.*;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -33,6 +41,7 @@ import static com.google.common.base.Stopwatch.createStarted;
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
 import static java.lang.String.format;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.unmodifiableSet;
 import static java.util.Objects.requireNonNull;
@@ -55,6 +64,7 @@ import static org.molgenis.data.support.EntityTypeUtils.isMultipleReferenceType;
  * <li>Attributes with expression are not persisted</li>
  * <li>Cross-backend attribute references are supported</li>
  * <li>Query operators DIS_MAX, FUZZY_MATCH, FUZZY_MATCH_NGRAM, SEARCH, SHOULD are not supported</li>
+ * <li>Aggregates are computed with GROUP BY queries</li>
  * </ul>
  */
 class PostgreSqlRepository extends AbstractRepository
@@ -69,14 +79,15 @@ class PostgreSqlRepository extends AbstractRepository
 	 * Repository capabilities
 	 */
 	private static final Set<RepositoryCapability> REPO_CAPABILITIES = unmodifiableSet(
-			EnumSet.of(WRITABLE, MANAGABLE, QUERYABLE, VALIDATE_REFERENCE_CONSTRAINT, VALIDATE_UNIQUE_CONSTRAINT,
-					VALIDATE_NOTNULL_CONSTRAINT, VALIDATE_READONLY_CONSTRAINT, CACHEABLE));
+			EnumSet.of(WRITABLE, MANAGABLE, QUERYABLE, AGGREGATEABLE, VALIDATE_REFERENCE_CONSTRAINT,
+					VALIDATE_UNIQUE_CONSTRAINT, VALIDATE_NOTNULL_CONSTRAINT, VALIDATE_READONLY_CONSTRAINT, CACHEABLE));
 
 	/**
 	 * Supported query operators
 	 */
 	private static final Set<Operator> QUERY_OPERATORS = unmodifiableSet(
-			EnumSet.of(EQUALS, IN, LESS, LESS_EQUAL, GREATER, GREATER_EQUAL, RANGE, LIKE, NOT, AND, OR, NESTED));
+			EnumSet.of(EQUALS, IN, LESS, LESS_EQUAL, GREATER, GREATER_EQUAL, RANGE, LIKE, NOT, AND, OR, NESTED,
+					PERMITTED));
 
 	private final PostgreSqlEntityFactory postgreSqlEntityFactory;
 	private final JdbcTemplate jdbcTemplate;
@@ -95,8 +106,7 @@ class PostgreSqlRepository extends AbstractRepository
 	@Override
 	public Iterator<Entity> iterator()
 	{
-		Query<Entity> q = new QueryImpl<>();
-		return findAllBatching(q).iterator();
+		return findAll(new QueryImpl<>()).iterator();
 	}
 
 	@Override
@@ -137,9 +147,80 @@ class PostgreSqlRepository extends AbstractRepository
 	@Override
 	public Stream<Entity> findAll(Query<Entity> q)
 	{
+		Operator idKeysetOperator = getIdKeysetOperator(q);
+		if (idKeysetOperator != null)
+		{
+			return Streams.stream(new IdKeysetBatchIterator(q, idKeysetOperator)).flatMap(List::stream);
+		}
 		return stream(findAllBatching(q).spliterator(), false);
 	}
 
+	/**
+	 * Returns the operator that selects the entities after the last entity of a batch if the query result is ordered
+	 * by entity id only, so that the result can be retrieved using keyset pagination.
+	 *
+	 * @return {@link Operator#GREATER} or {@link Operator#LESS} depending on the sort direction of the id attribute,
+	 * null if the query result is not ordered by entity id only
+	 */
+	private Operator getIdKeysetOperator(Query<Entity> q)
+	{
+		String idAttrName = entityType.getIdAttribute().getName();
+		if (q.getFetch() != null && !q.getFetch().hasField(idAttrName))
+		{
+			return null;
+		}
+
+		Sort sort = q.getSort();
+		if (sort == null)
+		{
+			return GREATER;
+		}
+		Iterator<Sort.Order> orders = sort.iterator();
+		if (!orders.hasNext())
+		{
+			return GREATER;
+		}
+		Sort.Order order = orders.next();
+		if (orders.hasNext() || !order.getAttr().equals(idAttrName))
+		{
+			return null;
+		}
+		return order.getDirection() == Sort.Direction.DESC ? LESS : GREATER;
+	}
+
+	@Override
+	public AggregateResult aggregate(AggregateQuery aggregateQuery)
+	{
+		Attribute attrX = aggregateQuery.getAttributeX();
+		Attribute attrY = aggregateQuery.getAttributeY();
+		if (attrX == null)
+		{
+			throw new IllegalArgumentException("Aggregation requires at least one aggregatable attribute");
+		}
+		if (!attrX.isAggregatable())
+		{
+			throw new IllegalArgumentException("Attribute is not aggregatable [" + attrX.getName() + "]");
+		}
+		if (attrY != null && !attrY.isAggregatable())
+		{
+			throw new IllegalArgumentException("Attribute is not aggregatable [" + attrY.getName() + "]");
+		}
+
+		List<Object> parameters = Lists.newArrayList();
+		String sql = getSqlAggregate(entityType, aggregateQuery, parameters);
+
+		if (LOG.isDebugEnabled())
+		{
+			LOG.debug("Aggregating [{}] rows for query [{}]", getName(), aggregateQuery);
+			if (LOG.isTraceEnabled())
+			{
+				LOG.trace("SQL: {}, parameters: {}", sql, parameters);
+			}
+		}
+		return jdbcTemplate.query(sql, parameters.toArray(new Object[parameters.size()]),
+				new PostgreSqlAggregateResultExtractor(postgreSqlEntityFactory, attrX, attrY));
+	}
+
 	@Override
 	public Entity findOne(Query<Entity> q)
 	{
@@ -405,22 +486,114 @@ class PostgreSqlRepository extends AbstractRepository
 			@Override
 			protected List<Entity> getBatch(Query<Entity> batchQuery)
 			{
-				List<Object> parameters = new ArrayList<>();
-
-				String sql = getSqlSelect(getEntityType(), batchQuery, parameters, true);
-				RowMapper<Entity> entityMapper = postgreSqlEntityFactory.createRowMapper(getEntityType(),
-						batchQuery.getFetch());
-				LOG.debug("Fetching [{}] data for query [{}]", getName(), batchQuery);
-				LOG.trace("SQL: {}, parameters: {}", sql, parameters);
-				Stopwatch sw = createStarted();
-				List<Entity> result = jdbcTemplate.query(sql, parameters.toArray(new Object[parameters.size()]),
-						entityMapper);
-				LOG.trace("That took {}", sw);
-				return result;
+				return findAllBatch(batchQuery);
 			}
 		};
 	}
 
+	private List<Entity> findAllBatch(Query<Entity> batchQuery)
+	{
+		List<Object> parameters = new ArrayList<>();
+
+		String sql = getSqlSelect(getEntityType(), batchQuery, parameters, true);
+		RowMapper<Entity> entityMapper = postgreSqlEntityFactory.createRowMapper(getEntityType(),
+				batchQuery.getFetch());
+		LOG.debug("Fetching [{}] data for query [{}]", getName(), batchQuery);
+		LOG.trace("SQL: {}, parameters: {}", sql, parameters);
+		Stopwatch sw = createStarted();
+		List<Entity> result = jdbcTemplate.query(sql, parameters.toArray(new Object[parameters.size()]),
+				entityMapper);
+		LOG.trace("That took {}", sw);
+		return result;
+	}
+
+	/**
+	 * Iterates over the batches of a query result that is ordered by entity id using keyset pagination: instead of
+	 * skipping the rows of all previous batches with an offset, each batch selects the entities after the id of the
+	 * last entity of the previous batch. Retrieving all batches is linear in the number of rows and entities that are
+	 * added or deleted while iterating do not shift the batches.
+	 */
+	private class IdKeysetBatchIterator implements Iterator<List<Entity>>
+	{
+		private final Query<Entity> query;
+		private final Operator keysetOperator;
+		private int nrRemainingEntities;
+		private Object lastId;
+		private boolean isLastBatch;
+		private List<Entity> batch;
+
+		IdKeysetBatchIterator(Query<Entity> query, Operator keysetOperator)
+		{
+			this.query = query;
+			this.keysetOperator = keysetOperator;
+			this.nrRemainingEntities = query.getPageSize() > 0 ? query.getPageSize() : Integer.MAX_VALUE;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			if (batch == null && !isLastBatch)
+			{
+				batch = fetchBatch();
+			}
+			return batch != null && !batch.isEmpty();
+		}
+
+		@Override
+		public List<Entity> next()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			List<Entity> nextBatch = batch;
+			batch = null;
+			return nextBatch;
+		}
+
+		private List<Entity> fetchBatch()
+		{
+			int batchSize = Math.min(BATCH_SIZE, nrRemainingEntities);
+
+			QueryImpl<Entity> batchQuery;
+			if (lastId == null)
+			{
+				batchQuery = new QueryImpl<>(query);
+			}
+			else
+			{
+				QueryRule keysetRule = new QueryRule(entityType.getIdAttribute().getName(), keysetOperator,
+						lastId);
+				List<QueryRule> rules = query.getRules();
+				if (rules.isEmpty())
+				{
+					batchQuery = new QueryImpl<>(keysetRule);
+				}
+				else
+				{
+					batchQuery = new QueryImpl<>(
+							asList(new QueryRule(rules), new QueryRule(Operator.AND), keysetRule));
+				}
+				batchQuery.setOffset(0);
+				batchQuery.sort(query.getSort());
+				batchQuery.fetch(query.getFetch());
+			}
+			batchQuery.setPageSize(batchSize);
+
+			List<Entity> entities = findAllBatch(batchQuery);
+			nrRemainingEntities -= entities.size();
+			if (entities.size() < batchSize || nrRemainingEntities == 0)
+			{
+				isLastBatch = true;
+			}
+			else
+			{
+				lastId = entities.get(entities.size() - 1).getIdValue();
+			}
+			return entities;
+		}
+	}
+
 	private Integer addBatching(Iterator<? extends Entity> entities)
 	{
 		AtomicInteger count = new AtomicInteger();
@@ -428,7 +601,7 @@ class PostgreSqlRepository extends AbstractRepository
 		final Attribute idAttr = entityType.getIdAttribute();
 		final List<Attribute> tableAttrs = getTableAttributes(entityType).collect(toList());
 		final List<Attribute> junctionTableAttrs = getJunctionTableAttributes(entityType).collect(toList());
-		final String insertSql = getSqlInsert(entityType);
+		final String copySql = getSqlCopy(entityType);
 
 		Iterators.partition(entities, BATCH_SIZE).forEachRemaining(entitiesBatch ->
 		{
@@ -437,12 +610,16 @@ class PostgreSqlRepository extends AbstractRepository
 				LOG.debug("Adding {} [{}] entities", entitiesBatch.size(), getName());
 				if (LOG.isTraceEnabled())
 				{
-					LOG.trace("SQL: {}", insertSql);
+					LOG.trace("SQL: {}", copySql);
 				}
 			}
 
 			// persist values in entity table
-			jdbcTemplate.batchUpdate(insertSql, new BatchAddPreparedStatementSetter(entitiesBatch, tableAttrs));
+			copy(copySql, entitiesBatch.stream()
+									   .map(entity -> tableAttrs.stream()
+																.map(attr -> getPostgreSqlValue(entity, attr))
+																.collect(toList()))
+									   .iterator());
 
 			// persist values in entity junction table
 			if (!junctionTableAttrs.isEmpty())
@@ -454,7 +631,7 @@ class PostgreSqlRepository extends AbstractRepository
 					List<Map<String, Object>> attrMrefs = mrefs.get(attr.getName());
 					if (attrMrefs != null && !attrMrefs.isEmpty())
 					{
-						addMrefs(attrMrefs, attr);
+						copyMrefs(attrMrefs, attr);
 					}
 				}
 			}
@@ -611,51 +788,95 @@ class PostgreSqlRepository extends AbstractRepository
 		}
 	}
 
-	private void removeMrefs(final List<Object> ids, final Attribute attr)
+	/**
+	 * Bulk inserts junction table rows using the PostgreSQL COPY command.
+	 */
+	private void copyMrefs(final List<Map<String, Object>> mrefs, final Attribute attr)
 	{
-		final Attribute idAttr = attr.isMappedBy() ? attr.getMappedBy() : entityType.getIdAttribute();
-		String deleteMrefSql = getSqlDelete(PostgreSqlNameGenerator.getJunctionTableName(entityType, attr), idAttr);
+		final Attribute idAttr = entityType.getIdAttribute();
+		String copyMrefSql = getSqlCopyJunction(entityType, attr);
 
 		if (LOG.isDebugEnabled())
 		{
-			LOG.debug("Removing junction table entries for entity [{}] attribute [{}]", getName(), attr.getName());
+			LOG.debug("Adding junction table entries for entity [{}] attribute [{}]", getName(), attr.getName());
 			if (LOG.isTraceEnabled())
 			{
-				LOG.trace("SQL: {}", deleteMrefSql);
+				LOG.trace("SQL: {}", copyMrefSql);
 			}
 		}
-		jdbcTemplate.batchUpdate(deleteMrefSql, new BatchJunctionTableDeletePreparedStatementSetter(ids));
-	}
 
-	private static class BatchAddPreparedStatementSetter implements BatchPreparedStatementSetter
-	{
-		private final List<? extends Entity> entities;
-		private final List<Attribute> tableAttrs;
-
-		BatchAddPreparedStatementSetter(List<? extends Entity> entities, List<Attribute> tableAttrs)
+		try
 		{
-			this.entities = entities;
-			this.tableAttrs = tableAttrs;
+			copy(copyMrefSql, mrefs.stream().map(mref -> getJunctionTableRowValues(mref, attr, idAttr)).iterator());
 		}
-
-		@Override
-		public void setValues(PreparedStatement preparedStatement, int rowIndex) throws SQLException
+		catch (MolgenisValidationException mve)
 		{
-			Entity entity = entities.get(rowIndex);
+			if (mve.getMessage().equals(VALUE_TOO_LONG_MSG))
+			{
+				mve = new MolgenisValidationException(new ConstraintViolation(
+						format("One of the mref values in entity type [%s] attribute [%s] is too long.",
+								getEntityType().getId(), attr.getName())));
+			}
+			throw mve;
+		}
+	}
 
-			int fieldIndex = 1;
-			for (Attribute attr : tableAttrs)
+	/**
+	 * Streams rows to PostgreSQL using the COPY command on the connection of the current transaction. Exceptions are
+	 * translated by the exception translator of the {@link JdbcTemplate} as if the rows were inserted one by one.
+	 *
+	 * @param copySql COPY statement
+	 * @param rows    PostgreSQL values of each row in the order of the columns of the COPY statement
+	 */
+	private void copy(String copySql, Iterator<List<Object>> rows)
+	{
+		jdbcTemplate.execute((ConnectionCallback<Long>) connection ->
+		{
+			CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+			try
 			{
-				Object postgreSqlValue = getPostgreSqlValue(entity, attr);
-				preparedStatement.setObject(fieldIndex++, postgreSqlValue);
+				return copyManager.copyIn(copySql, new PostgreSqlCopyReader(rows));
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
 			}
+		});
+	}
+
+	private static List<Object> getJunctionTableRowValues(Map<String, Object> mref, Attribute attr, Attribute idAttr)
+	{
+		Object idValue0;
+		Object idValue1;
+		if (attr.isMappedBy())
+		{
+			Entity mrefEntity = (Entity) mref.get(attr.getName());
+			idValue0 = getPostgreSqlValue(mrefEntity, attr.getRefEntity().getIdAttribute());
+			idValue1 = mref.get(idAttr.getName());
 		}
+		else
+		{
+			idValue0 = mref.get(idAttr.getName());
+			Entity mrefEntity = (Entity) mref.get(attr.getName());
+			idValue1 = getPostgreSqlValue(mrefEntity, mrefEntity.getEntityType().getIdAttribute());
+		}
+		return Arrays.asList(mref.get(getJunctionTableOrderColumnName()), idValue0, idValue1);
+	}
 
-		@Override
-		public int getBatchSize()
+	private void removeMrefs(final List<Object> ids, final Attribute attr)
+	{
+		final Attribute idAttr = attr.isMappedBy() ? attr.getMappedBy() : entityType.getIdAttribute();
+		String deleteMrefSql = getSqlDelete(PostgreSqlNameGenerator.getJunctionTableName(entityType, attr), idAttr);
+
+		if (LOG.isDebugEnabled())
 		{
-			return entities.size();
+			LOG.debug("Removing junction table entries for entity [{}] attribute [{}]", getName(), attr.getName());
+			if (LOG.isTraceEnabled())
+			{
+				LOG.trace("SQL: {}", deleteMrefSql);
+			}
 		}
+		jdbcTemplate.batchUpdate(deleteMrefSql, new BatchJunctionTableDeletePreparedStatementSetter(ids));
 	}
 
 	private static class BatchUpdatePreparedStatementSetter implements BatchPreparedStatementSetter
@@ -732,25 +953,10 @@ class PostgreSqlRepository extends AbstractRepository
 		@Override
 		public void setValues(PreparedStatement preparedStatement, int i) throws SQLException
 		{
-			Map<String, Object> mref = mrefs.get(i);
-
-			Object idValue0;
-			Object idValue1;
-			if (attr.isMappedBy())
-			{
-				Entity mrefEntity = (Entity) mref.get(attr.getName());
-				idValue0 = getPostgreSqlValue(mrefEntity, attr.getRefEntity().getIdAttribute());
-				idValue1 = mref.get(idAttr.getName());
-			}
-			else
-			{
-				idValue0 = mref.get(idAttr.getName());
-				Entity mrefEntity = (Entity) mref.get(attr.getName());
-				idValue1 = getPostgreSqlValue(mrefEntity, mrefEntity.getEntityType().getIdAttribute());
-			}
-			preparedStatement.setInt(1, (int) mref.get(getJunctionTableOrderColumnName()));
-			preparedStatement.setObject(2, idValue0);
-			preparedStatement.setObject(3, idValue1);
+			List<Object> rowValues = getJunctionTableRowValues(mrefs.get(i), attr, idAttr);
+			preparedStatement.setInt(1, (int) rowValues.get(0));
+			preparedStatement.setObject(2, rowValues.get(1));
+			preparedStatement.setObject(3, rowValues.get(2));
 		}
 
 		@Override
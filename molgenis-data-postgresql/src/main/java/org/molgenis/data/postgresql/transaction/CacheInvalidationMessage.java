@@ -0,0 +1,281 @@
+package org.molgenis.data.postgresql.transaction;
+
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.SetMultimap;
+import org.molgenis.data.EntityKey;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newLinkedHashSet;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Entities and repositories dirtied by one or more transactions, encoded in PostgreSQL notification payloads.
+ * <p>
+ * A payload consists of lines. The first line contains the id of the MOLGENIS instance that published the payload, the
+ * other lines each describe a dirty repository or entity:
+ * <ul>
+ * <li><code>R&lt;tab&gt;entityTypeId</code> for an entirely dirty repository</li>
+ * <li><code>D&lt;tab&gt;entityTypeId</code> for a partially dirty repository</li>
+ * <li><code>E&lt;tab&gt;entityTypeId&lt;tab&gt;id</code> for a dirty entity, the id is prefixed with a character
+ * describing its type</li>
+ * </ul>
+ */
+class CacheInvalidationMessage
+{
+	/**
+	 * PostgreSQL notification payloads must be shorter than 8000 bytes
+	 */
+	static final int MAX_PAYLOAD_LENGTH = 7500;
+	/**
+	 * Entity types with more dirty entities are published as entirely dirty repositories
+	 */
+	static final int MAX_DIRTY_ENTITIES_PER_ENTITY_TYPE = 100;
+
+	private static final String LINE_SEPARATOR = "\n";
+	private static final String FIELD_SEPARATOR = "\t";
+	private static final String ENTIRELY_DIRTY_REPOSITORY = "R";
+	private static final String DIRTY_REPOSITORY = "D";
+	private static final String DIRTY_ENTITY = "E";
+	private static final char STRING_ID = 'S';
+	private static final char INTEGER_ID = 'I';
+	private static final char LONG_ID = 'L';
+	private static final String CHARSET = "UTF-8";
+
+	private final SetMultimap<String, Object> dirtyEntityIds;
+	private final Set<String> entirelyDirtyRepositories;
+	private final Set<String> dirtyRepositories;
+
+	CacheInvalidationMessage()
+	{
+		dirtyEntityIds = LinkedHashMultimap.create();
+		entirelyDirtyRepositories = newLinkedHashSet();
+		dirtyRepositories = newLinkedHashSet();
+	}
+
+	/**
+	 * Creates a coalesced message: dirty entities of entirely dirty repositories are left out and entity types with
+	 * many dirty entities are marked as entirely dirty.
+	 */
+	static CacheInvalidationMessage create(Set<EntityKey> dirtyEntities, Set<String> entirelyDirtyRepositories,
+			Set<String> dirtyRepositories)
+	{
+		CacheInvalidationMessage message = new CacheInvalidationMessage();
+		message.entirelyDirtyRepositories.addAll(entirelyDirtyRepositories);
+		message.dirtyRepositories.addAll(dirtyRepositories);
+		dirtyEntities.forEach(message::addDirtyEntity);
+		message.coalesce();
+		return message;
+	}
+
+	private void addDirtyEntity(EntityKey entityKey)
+	{
+		String entityTypeId = entityKey.getEntityTypeId();
+		dirtyRepositories.add(entityTypeId);
+		if (isSupportedId(entityKey.getId()))
+		{
+			dirtyEntityIds.put(entityTypeId, entityKey.getId());
+		}
+		else
+		{
+			entirelyDirtyRepositories.add(entityTypeId);
+		}
+	}
+
+	private void coalesce()
+	{
+		dirtyEntityIds.asMap()
+					  .entrySet()
+					  .stream()
+					  .filter(entry -> entry.getValue().size() > MAX_DIRTY_ENTITIES_PER_ENTITY_TYPE)
+					  .map(Map.Entry::getKey)
+					  .forEach(entirelyDirtyRepositories::add);
+		entirelyDirtyRepositories.forEach(dirtyEntityIds::removeAll);
+		dirtyRepositories.addAll(entirelyDirtyRepositories);
+	}
+
+	private static boolean isSupportedId(Object id)
+	{
+		return id instanceof String || id instanceof Integer || id instanceof Long;
+	}
+
+	boolean isEmpty()
+	{
+		return dirtyRepositories.isEmpty();
+	}
+
+	Set<EntityKey> getDirtyEntities()
+	{
+		Set<EntityKey> dirtyEntities = newLinkedHashSet();
+		dirtyEntityIds.forEach((entityTypeId, id) -> dirtyEntities.add(EntityKey.create(entityTypeId, id)));
+		return dirtyEntities;
+	}
+
+	Set<String> getEntirelyDirtyRepositories()
+	{
+		return entirelyDirtyRepositories;
+	}
+
+	Set<String> getDirtyRepositories()
+	{
+		return dirtyRepositories;
+	}
+
+	/**
+	 * Merges the content of another message into this message.
+	 */
+	void addAll(CacheInvalidationMessage message)
+	{
+		dirtyEntityIds.putAll(message.dirtyEntityIds);
+		entirelyDirtyRepositories.addAll(message.entirelyDirtyRepositories);
+		dirtyRepositories.addAll(message.dirtyRepositories);
+		entirelyDirtyRepositories.forEach(dirtyEntityIds::removeAll);
+	}
+
+	/**
+	 * Encodes this message in one or more payloads that each fit in a PostgreSQL notification.
+	 *
+	 * @param nodeId id of the publishing MOLGENIS instance
+	 */
+	List<String> toPayloads(String nodeId)
+	{
+		List<String> lines = newArrayList();
+		entirelyDirtyRepositories.forEach(
+				entityTypeId -> lines.add(ENTIRELY_DIRTY_REPOSITORY + FIELD_SEPARATOR + entityTypeId));
+		dirtyRepositories.stream()
+						 .filter(entityTypeId -> !entirelyDirtyRepositories.contains(entityTypeId))
+						 .forEach(entityTypeId -> lines.add(DIRTY_REPOSITORY + FIELD_SEPARATOR + entityTypeId));
+		dirtyEntityIds.forEach((entityTypeId, id) -> lines.add(
+				DIRTY_ENTITY + FIELD_SEPARATOR + entityTypeId + FIELD_SEPARATOR + encodeId(id)));
+
+		List<String> payloads = newArrayList();
+		StringBuilder payload = new StringBuilder(nodeId);
+		for (String line : lines)
+		{
+			if (payload.length() + LINE_SEPARATOR.length() + line.length() > MAX_PAYLOAD_LENGTH
+					&& payload.length() > nodeId.length())
+			{
+				payloads.add(payload.toString());
+				payload = new StringBuilder(nodeId);
+			}
+			payload.append(LINE_SEPARATOR).append(line);
+		}
+		if (payload.length() > nodeId.length())
+		{
+			payloads.add(payload.toString());
+		}
+		return payloads;
+	}
+
+	/**
+	 * @return id of the MOLGENIS instance that published the payload
+	 */
+	static String getNodeId(String payload)
+	{
+		int index = payload.indexOf(LINE_SEPARATOR);
+		return index != -1 ? payload.substring(0, index) : payload;
+	}
+
+	/**
+	 * Decodes a payload created with {@link #toPayloads(String)}.
+	 *
+	 * @throws IllegalArgumentException if the payload is malformed
+	 */
+	static CacheInvalidationMessage fromPayload(String payload)
+	{
+		CacheInvalidationMessage message = new CacheInvalidationMessage();
+		String[] lines = payload.split(LINE_SEPARATOR);
+		for (int i = 1; i < lines.length; ++i)
+		{
+			String[] fields = lines[i].split(FIELD_SEPARATOR);
+			if (fields.length < 2)
+			{
+				throw new IllegalArgumentException(format("Malformed cache invalidation line [%s]", lines[i]));
+			}
+			String entityTypeId = fields[1];
+			switch (fields[0])
+			{
+				case ENTIRELY_DIRTY_REPOSITORY:
+					message.entirelyDirtyRepositories.add(entityTypeId);
+					message.dirtyRepositories.add(entityTypeId);
+					break;
+				case DIRTY_REPOSITORY:
+					message.dirtyRepositories.add(entityTypeId);
+					break;
+				case DIRTY_ENTITY:
+					if (fields.length != 3)
+					{
+						throw new IllegalArgumentException(
+								format("Malformed cache invalidation line [%s]", lines[i]));
+					}
+					message.dirtyEntityIds.put(entityTypeId, decodeId(fields[2]));
+					message.dirtyRepositories.add(entityTypeId);
+					break;
+				default:
+					throw new IllegalArgumentException(format("Malformed cache invalidation line [%s]", lines[i]));
+			}
+		}
+		return message;
+	}
+
+	private static String encodeId(Object id)
+	{
+		if (id instanceof Integer)
+		{
+			return INTEGER_ID + id.toString();
+		}
+		if (id instanceof Long)
+		{
+			return LONG_ID + id.toString();
+		}
+		try
+		{
+			return STRING_ID + URLEncoder.encode((String) requireNonNull(id), CHARSET);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Object decodeId(String encodedId)
+	{
+		if (encodedId.isEmpty())
+		{
+			throw new IllegalArgumentException("Malformed cache invalidation id");
+		}
+		String value = encodedId.substring(1);
+		switch (encodedId.charAt(0))
+		{
+			case INTEGER_ID:
+				return Integer.valueOf(value);
+			case LONG_ID:
+				return Long.valueOf(value);
+			case STRING_ID:
+				try
+				{
+					return URLDecoder.decode(value, CHARSET);
+				}
+				catch (UnsupportedEncodingException e)
+				{
+					throw new IllegalStateException(e);
+				}
+			default:
+				throw new IllegalArgumentException(format("Malformed cache invalidation id [%s]", encodedId));
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CacheInvalidationMessage{" + "dirtyEntityIds=" + dirtyEntityIds + ", entirelyDirtyRepositories="
+				+ entirelyDirtyRepositories + ", dirtyRepositories=" + dirtyRepositories + '}';
+	}
+}
@@ -0,0 +1,193 @@
+package org.molgenis.data.postgresql.transaction;
+
+import org.molgenis.data.populate.IdGenerator;
+import org.molgenis.data.transaction.DefaultMolgenisTransactionListener;
+import org.molgenis.data.transaction.RemoteTransactionListener;
+import org.molgenis.data.transaction.TransactionInformation;
+import org.molgenis.data.transaction.TransactionManager;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps the caches of MOLGENIS instances that share the same database coherent using PostgreSQL LISTEN/NOTIFY.
+ * <p>
+ * The entities and repositories dirtied by a transaction are published on a notification channel as part of the
+ * transaction, so other instances only receive them if the transaction commits. Each instance listens on the channel
+ * with a dedicated connection and passes the changes of the other instances to the
+ * {@link RemoteTransactionListener}s. Whenever the listening connection is (re)established, notifications might
+ * have been missed and the listeners are told to flush everything.
+ * <p>
+ * Enable by setting the property <code>cache.cluster.enabled=true</code> on every instance.
+ */
+@Component
+public class PostgreSqlCacheInvalidationChannel extends DefaultMolgenisTransactionListener
+{
+	private static final Logger LOG = LoggerFactory.getLogger(PostgreSqlCacheInvalidationChannel.class);
+
+	static final String CHANNEL = "molgenis_cache_invalidation";
+
+	private final boolean enabled;
+	private final String nodeId;
+	private final TransactionInformation transactionInformation;
+	private final DataSource dataSource;
+	private final JdbcTemplate jdbcTemplate;
+	private final List<RemoteTransactionListener> remoteTransactionListeners;
+
+	private Connection listenConnection;
+
+	public PostgreSqlCacheInvalidationChannel(@Value("${cache.cluster.enabled:false}") boolean enabled,
+			IdGenerator idGenerator, TransactionManager transactionManager,
+			TransactionInformation transactionInformation, DataSource dataSource, JdbcTemplate jdbcTemplate,
+			@Nullable List<RemoteTransactionListener> remoteTransactionListeners)
+	{
+		this.enabled = enabled;
+		this.nodeId = requireNonNull(idGenerator).generateId();
+		this.transactionInformation = requireNonNull(transactionInformation);
+		this.dataSource = requireNonNull(dataSource);
+		this.jdbcTemplate = requireNonNull(jdbcTemplate);
+		this.remoteTransactionListeners =
+				remoteTransactionListeners != null ? remoteTransactionListeners : emptyList();
+		if (enabled)
+		{
+			requireNonNull(transactionManager).addTransactionListener(this);
+		}
+	}
+
+	/**
+	 * Publishes the changes of the transaction on the channel. The notifications are sent by PostgreSQL when the
+	 * transaction commits.
+	 */
+	@Override
+	public void commitTransaction(String transactionId)
+	{
+		CacheInvalidationMessage message = CacheInvalidationMessage.create(transactionInformation.getDirtyEntities(),
+				transactionInformation.getEntirelyDirtyRepositories(),
+				transactionInformation.getDirtyRepositories());
+		if (message.isEmpty())
+		{
+			return;
+		}
+
+		LOG.trace("Publishing cache invalidation for transaction [{}]: {}", transactionId, message);
+		for (String payload : message.toPayloads(nodeId))
+		{
+			jdbcTemplate.query("SELECT pg_notify(?, ?)", (ResultSetExtractor<Void>) resultSet -> null, CHANNEL,
+					payload);
+		}
+	}
+
+	/**
+	 * Receives the notifications published by other MOLGENIS instances since the previous call and passes the
+	 * combined changes to the listeners.
+	 */
+	@Scheduled(fixedDelay = 1000)
+	public synchronized void receiveNotifications()
+	{
+		if (!enabled)
+		{
+			return;
+		}
+
+		try
+		{
+			if (listenConnection == null)
+			{
+				listen();
+			}
+
+			// notifications are only received as part of a round trip to the database
+			try (Statement statement = listenConnection.createStatement())
+			{
+				statement.execute("SELECT 1");
+			}
+			PGNotification[] notifications = listenConnection.unwrap(PGConnection.class).getNotifications();
+			if (notifications != null)
+			{
+				handleNotifications(notifications);
+			}
+		}
+		catch (SQLException e)
+		{
+			LOG.warn("Error receiving cache invalidations, reconnecting", e);
+			closeListenConnection();
+		}
+	}
+
+	private void listen() throws SQLException
+	{
+		listenConnection = dataSource.getConnection();
+		listenConnection.setAutoCommit(true);
+		try (Statement statement = listenConnection.createStatement())
+		{
+			statement.execute("LISTEN " + CHANNEL);
+		}
+
+		LOG.info("Listening for cache invalidations of other instances");
+		remoteTransactionListeners.forEach(RemoteTransactionListener::remoteCommitsMissed);
+	}
+
+	private void handleNotifications(PGNotification[] notifications)
+	{
+		CacheInvalidationMessage combinedMessage = new CacheInvalidationMessage();
+		for (PGNotification notification : notifications)
+		{
+			String payload = notification.getParameter();
+			if (!nodeId.equals(CacheInvalidationMessage.getNodeId(payload)))
+			{
+				try
+				{
+					combinedMessage.addAll(CacheInvalidationMessage.fromPayload(payload));
+				}
+				catch (IllegalArgumentException e)
+				{
+					LOG.error("Error parsing cache invalidation, flushing caches", e);
+					remoteTransactionListeners.forEach(RemoteTransactionListener::remoteCommitsMissed);
+					return;
+				}
+			}
+		}
+
+		if (!combinedMessage.isEmpty())
+		{
+			LOG.trace("Received cache invalidation: {}", combinedMessage);
+			remoteTransactionListeners.forEach(
+					listener -> listener.afterRemoteCommit(combinedMessage.getDirtyEntities(),
+							combinedMessage.getEntirelyDirtyRepositories(), combinedMessage.getDirtyRepositories()));
+		}
+	}
+
+	@PreDestroy
+	public synchronized void closeListenConnection()
+	{
+		if (listenConnection != null)
+		{
+			try
+			{
+				listenConnection.close();
+			}
+			catch (SQLException e)
+			{
+				LOG.debug("Error closing cache invalidation connection", e);
+			}
+			listenConnection = null;
+		}
+	}
+}
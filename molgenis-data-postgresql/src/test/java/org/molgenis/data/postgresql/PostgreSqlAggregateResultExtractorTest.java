@@ -0,0 +1,186 @@
+package org.molgenis.data.postgresql;
+
+import org.molgenis.data.Entity;
+import org.molgenis.data.aggregation.AggregateResult;
+import org.molgenis.data.meta.model.Attribute;
+import org.molgenis.data.meta.model.EntityType;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.molgenis.data.meta.AttributeType.*;
+import static org.testng.Assert.assertEquals;
+
+public class PostgreSqlAggregateResultExtractorTest
+{
+	private PostgreSqlEntityFactory postgreSqlEntityFactory;
+	private ResultSet resultSet;
+
+	@BeforeMethod
+	public void setUpBeforeMethod()
+	{
+		postgreSqlEntityFactory = mock(PostgreSqlEntityFactory.class);
+		resultSet = mock(ResultSet.class);
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void PostgreSqlAggregateResultExtractor()
+	{
+		new PostgreSqlAggregateResultExtractor(postgreSqlEntityFactory, null, null);
+	}
+
+	@Test
+	public void extractDataOneDimensional() throws SQLException
+	{
+		Attribute attrX = mock(Attribute.class);
+		when(attrX.getDataType()).thenReturn(STRING);
+
+		when(resultSet.next()).thenReturn(true, true, false);
+		when(resultSet.getString(1)).thenReturn("b", "a");
+		when(resultSet.getLong(2)).thenReturn(3L, 2L);
+
+		AggregateResult aggregateResult = new PostgreSqlAggregateResultExtractor(postgreSqlEntityFactory, attrX,
+				null).extractData(resultSet);
+		assertEquals(aggregateResult,
+				new AggregateResult(asList(singletonList(2L), singletonList(3L)), asList((Object) "a", "b"), emptyList()));
+	}
+
+	@Test
+	public void extractDataOneDimensionalNoRows() throws SQLException
+	{
+		Attribute attrX = mock(Attribute.class);
+		when(attrX.getDataType()).thenReturn(STRING);
+
+		AggregateResult aggregateResult = new PostgreSqlAggregateResultExtractor(postgreSqlEntityFactory, attrX,
+				null).extractData(resultSet);
+		assertEquals(aggregateResult, new AggregateResult(emptyList(), emptyList(), emptyList()));
+	}
+
+	@Test
+	public void extractDataOneDimensionalNillable() throws SQLException
+	{
+		Attribute attrX = mock(Attribute.class);
+		when(attrX.getDataType()).thenReturn(INT);
+		when(attrX.isNillable()).thenReturn(true);
+
+		when(resultSet.next()).thenReturn(true, true, true, false);
+		when(resultSet.getLong(1)).thenReturn(9L, 0L, 10L);
+		when(resultSet.wasNull()).thenReturn(false, true, false);
+		when(resultSet.getLong(2)).thenReturn(1L, 2L, 3L);
+
+		// labels are ordered by their string value with the missing value label last
+		AggregateResult aggregateResult = new PostgreSqlAggregateResultExtractor(postgreSqlEntityFactory, attrX,
+				null).extractData(resultSet);
+		assertEquals(aggregateResult,
+				new AggregateResult(asList(singletonList(3L), singletonList(1L), singletonList(2L)),
+						asList((Object) 10L, 9L, null), emptyList()));
+	}
+
+	@Test
+	public void extractDataOneDimensionalNillableWithoutMissingValues() throws SQLException
+	{
+		Attribute attrX = mock(Attribute.class);
+		when(attrX.getDataType()).thenReturn(BOOL);
+		when(attrX.isNillable()).thenReturn(true);
+
+		when(resultSet.next()).thenReturn(true, true, false);
+		when(resultSet.getBoolean(1)).thenReturn(true, false);
+		when(resultSet.getLong(2)).thenReturn(3L, 2L);
+
+		AggregateResult aggregateResult = new PostgreSqlAggregateResultExtractor(postgreSqlEntityFactory, attrX,
+				null).extractData(resultSet);
+		assertEquals(aggregateResult,
+				new AggregateResult(asList(singletonList(2L), singletonList(3L), singletonList(0L)),
+						asList((Object) 0L, 1L, null), emptyList()));
+	}
+
+	@Test
+	public void extractDataTwoDimensional() throws SQLException
+	{
+		Attribute attrX = mock(Attribute.class);
+		when(attrX.getDataType()).thenReturn(STRING);
+		Attribute attrY = mock(Attribute.class);
+		when(attrY.getDataType()).thenReturn(STRING);
+
+		when(resultSet.next()).thenReturn(true, true, true, false);
+		when(resultSet.getString(1)).thenReturn("x1", "x0", "x0");
+		when(resultSet.getString(2)).thenReturn("y1", "y1", "y0");
+		when(resultSet.getLong(3)).thenReturn(1L, 2L, 3L);
+
+		// the count of x1 and y0 is missing from the result set
+		AggregateResult aggregateResult = new PostgreSqlAggregateResultExtractor(postgreSqlEntityFactory, attrX,
+				attrY).extractData(resultSet);
+		assertEquals(aggregateResult,
+				new AggregateResult(asList(asList(3L, 2L), asList(0L, 1L)), asList((Object) "x0", "x1"),
+						asList((Object) "y0", "y1")));
+	}
+
+	@Test
+	public void extractDataTwoDimensionalNillable() throws SQLException
+	{
+		Attribute attrX = mock(Attribute.class);
+		when(attrX.getDataType()).thenReturn(STRING);
+		Attribute attrY = mock(Attribute.class);
+		when(attrY.getDataType()).thenReturn(STRING);
+		when(attrY.isNillable()).thenReturn(true);
+
+		when(resultSet.next()).thenReturn(true, true, false);
+		when(resultSet.getString(1)).thenReturn("x0", "x1");
+		when(resultSet.getString(2)).thenReturn(null, "y0");
+		when(resultSet.getLong(3)).thenReturn(1L, 2L);
+
+		AggregateResult aggregateResult = new PostgreSqlAggregateResultExtractor(postgreSqlEntityFactory, attrX,
+				attrY).extractData(resultSet);
+		assertEquals(aggregateResult,
+				new AggregateResult(asList(asList(0L, 1L), asList(2L, 0L)), asList((Object) "x0", "x1"),
+						asList((Object) "y0", null)));
+	}
+
+	@Test
+	public void extractDataReferenceAttributes() throws SQLException
+	{
+		Attribute refIdAttrX = mock(Attribute.class);
+		when(refIdAttrX.getDataType()).thenReturn(STRING);
+		EntityType refEntityTypeX = mock(EntityType.class);
+		when(refEntityTypeX.getIdAttribute()).thenReturn(refIdAttrX);
+		Attribute attrX = mock(Attribute.class);
+		when(attrX.getDataType()).thenReturn(XREF);
+		when(attrX.getRefEntity()).thenReturn(refEntityTypeX);
+		when(attrX.isNillable()).thenReturn(true);
+
+		Attribute refIdAttrY = mock(Attribute.class);
+		when(refIdAttrY.getDataType()).thenReturn(INT);
+		EntityType refEntityTypeY = mock(EntityType.class);
+		when(refEntityTypeY.getIdAttribute()).thenReturn(refIdAttrY);
+		Attribute attrY = mock(Attribute.class);
+		when(attrY.getDataType()).thenReturn(CATEGORICAL);
+		when(attrY.getRefEntity()).thenReturn(refEntityTypeY);
+
+		when(resultSet.next()).thenReturn(true, true, false);
+		when(resultSet.getString(1)).thenReturn("idX1", "idX0");
+		when(resultSet.getLong(2)).thenReturn(1L, 0L);
+		when(resultSet.getLong(3)).thenReturn(1L, 2L);
+
+		Entity refEntityX0 = mock(Entity.class);
+		Entity refEntityX1 = mock(Entity.class);
+		when(postgreSqlEntityFactory.getReferences(refEntityTypeX, asList("idX0", "idX1"))).thenReturn(
+				asList(refEntityX0, refEntityX1));
+		Entity refEntityY0 = mock(Entity.class);
+		Entity refEntityY1 = mock(Entity.class);
+		when(postgreSqlEntityFactory.getReferences(refEntityTypeY, asList(0L, 1L))).thenReturn(
+				asList(refEntityY0, refEntityY1));
+
+		AggregateResult aggregateResult = new PostgreSqlAggregateResultExtractor(postgreSqlEntityFactory, attrX,
+				attrY).extractData(resultSet);
+		assertEquals(aggregateResult,
+				new AggregateResult(asList(asList(2L, 0L), asList(0L, 1L), asList(0L, 0L)),
+						asList((Object) refEntityX0, refEntityX1, null), asList((Object) refEntityY0, refEntityY1)));
+	}
+}
@@ -0,0 +1,51 @@
+package org.molgenis.data.postgresql;
+
+import com.google.common.io.CharStreams;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static java.time.ZoneOffset.UTC;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyIterator;
+import static org.testng.Assert.assertEquals;
+
+public class PostgreSqlCopyReaderTest
+{
+	@Test
+	public void testRead() throws IOException
+	{
+		List<Object> row0 = asList("str", 1, 2L, 1.5, true, LocalDate.of(2017, 6, 13),
+				OffsetDateTime.of(2017, 6, 13, 10, 20, 30, 0, UTC));
+		List<Object> row1 = asList("", null, "a \"quoted\", multi\nline value", false);
+
+		Reader reader = new PostgreSqlCopyReader(asList(row0, row1).iterator());
+		assertEquals(CharStreams.toString(reader),
+				"\"str\",1,2,1.5,true,\"2017-06-13\",2017-06-13 10:20:30.000000+00:00\n"
+						+ "\"\",,\"a \"\"quoted\"\", multi\nline value\",false\n");
+	}
+
+	@Test
+	public void testReadSmallBuffer() throws IOException
+	{
+		Reader reader = new PostgreSqlCopyReader(asList(asList((Object) "abc", 1), asList((Object) "def", 2)).iterator());
+		StringBuilder stringBuilder = new StringBuilder();
+		char[] chars = new char[2];
+		int nrChars;
+		while ((nrChars = reader.read(chars, 0, chars.length)) != -1)
+		{
+			stringBuilder.append(chars, 0, nrChars);
+		}
+		assertEquals(stringBuilder.toString(), "\"abc\",1\n\"def\",2\n");
+	}
+
+	@Test
+	public void testReadNoRows() throws IOException
+	{
+		assertEquals(new PostgreSqlCopyReader(emptyIterator()).read(new char[10], 0, 10), -1);
+	}
+}
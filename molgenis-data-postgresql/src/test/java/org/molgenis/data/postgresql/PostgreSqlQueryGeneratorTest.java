@@ -1,11 +1,14 @@
 package org.molgenis.data.postgresql;
 
+import com.google.common.collect.ImmutableSet;
 import org.molgenis.data.*;
+import org.molgenis.data.aggregation.AggregateQuery;
 import org.molgenis.data.meta.AttributeType;
 import org.molgenis.data.meta.model.Attribute;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.data.meta.model.Package;
 import org.molgenis.data.postgresql.PostgreSqlQueryGenerator.ColumnMode;
+import org.molgenis.data.support.AggregateQueryImpl;
 import org.molgenis.data.support.QueryImpl;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -20,6 +23,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonList;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.molgenis.data.QueryRule.Operator.*;
@@ -419,6 +424,32 @@ public class PostgreSqlQueryGeneratorTest
 				"INSERT INTO \"entityTypeId#c34894ba_attr\" (\"order\",\"idAttr\",\"attr\") VALUES (?,?,?)");
 	}
 
+	@Test
+	public void getSqlCopy()
+	{
+		Attribute idAttr = when(mock(Attribute.class).getName()).thenReturn("idAttr").getMock();
+		when(idAttr.getDataType()).thenReturn(STRING);
+		Attribute attr = when(mock(Attribute.class).getName()).thenReturn("attr").getMock();
+		when(attr.getDataType()).thenReturn(INT);
+		Attribute mrefAttr = when(mock(Attribute.class).getName()).thenReturn("mrefAttr").getMock();
+		when(mrefAttr.getDataType()).thenReturn(MREF);
+		EntityType entityType = when(mock(EntityType.class).getId()).thenReturn("entityTypeId").getMock();
+		when(entityType.getAtomicAttributes()).thenReturn(newArrayList(idAttr, attr, mrefAttr));
+		assertEquals(PostgreSqlQueryGenerator.getSqlCopy(entityType),
+				"COPY \"entityTypeId#c34894ba\" (\"idAttr\", \"attr\") FROM STDIN WITH (FORMAT csv)");
+	}
+
+	@Test
+	public void getSqlCopyJunction()
+	{
+		EntityType entityType = when(mock(EntityType.class).getId()).thenReturn("entityTypeId").getMock();
+		Attribute idAttr = when(mock(Attribute.class).getName()).thenReturn("idAttr").getMock();
+		Attribute attr = when(mock(Attribute.class).getName()).thenReturn("attr").getMock();
+		when(entityType.getIdAttribute()).thenReturn(idAttr);
+		assertEquals(PostgreSqlQueryGenerator.getSqlCopyJunction(entityType, attr),
+				"COPY \"entityTypeId#c34894ba_attr\" (\"order\",\"idAttr\",\"attr\") FROM STDIN WITH (FORMAT csv)");
+	}
+
 	@Test
 	public void getSqlSelectXref()
 	{
@@ -538,6 +569,60 @@ public class PostgreSqlQueryGeneratorTest
 		assertEquals(parameters, expectedParameters);
 	}
 
+	@Test
+	public void getSqlAggregate()
+	{
+		Attribute idAttr = when(mock(Attribute.class).getName()).thenReturn("id").getMock();
+		when(idAttr.getIdentifier()).thenReturn("idAttrId");
+		when(idAttr.getDataType()).thenReturn(STRING);
+		Attribute attr = when(mock(Attribute.class).getName()).thenReturn("attr").getMock();
+		when(attr.getIdentifier()).thenReturn("attrId");
+		when(attr.getDataType()).thenReturn(STRING);
+		EntityType entityType = when(mock(EntityType.class).getId()).thenReturn("entityTypeId").getMock();
+		when(entityType.getIdAttribute()).thenReturn(idAttr);
+		when(entityType.getAtomicAttributes()).thenReturn(asList(idAttr, attr));
+
+		AggregateQuery aggregateQuery = new AggregateQueryImpl().attrX(attr);
+		List<Object> parameters = Lists.newArrayList();
+
+		assertEquals(PostgreSqlQueryGenerator.getSqlAggregate(entityType, aggregateQuery, parameters),
+				"SELECT this.\"attr\", COUNT(*) FROM \"entityTypeId#c34894ba\" AS this GROUP BY 1");
+		assertEquals(parameters, emptyList());
+	}
+
+	@Test
+	public void getSqlAggregateMref()
+	{
+		Attribute refIdAttr = when(mock(Attribute.class).getName()).thenReturn("refId").getMock();
+		when(refIdAttr.getIdentifier()).thenReturn("refIdAttrId");
+		EntityType refEntityType = when(mock(EntityType.class).getId()).thenReturn("refEntityTypeId").getMock();
+		when(refEntityType.getIdAttribute()).thenReturn(refIdAttr);
+
+		Attribute idAttr = when(mock(Attribute.class).getName()).thenReturn("id").getMock();
+		when(idAttr.getIdentifier()).thenReturn("idAttrId");
+		when(idAttr.getDataType()).thenReturn(STRING);
+		Attribute attr = when(mock(Attribute.class).getName()).thenReturn("attr").getMock();
+		when(attr.getIdentifier()).thenReturn("attrId");
+		when(attr.getDataType()).thenReturn(STRING);
+		Attribute mrefAttr = when(mock(Attribute.class).getName()).thenReturn("mref").getMock();
+		when(mrefAttr.getIdentifier()).thenReturn("mrefAttrId");
+		when(mrefAttr.getDataType()).thenReturn(MREF);
+		when(mrefAttr.getRefEntity()).thenReturn(refEntityType);
+		EntityType entityType = when(mock(EntityType.class).getId()).thenReturn("entityTypeId").getMock();
+		when(entityType.getIdAttribute()).thenReturn(idAttr);
+		when(entityType.getAttribute("attr")).thenReturn(attr);
+		when(entityType.getAtomicAttributes()).thenReturn(asList(idAttr, attr, mrefAttr));
+
+		QueryImpl<Entity> q = new QueryImpl<>();
+		q.eq("attr", "value");
+		AggregateQuery aggregateQuery = new AggregateQueryImpl().attrX(attr).attrY(mrefAttr).query(q);
+		List<Object> parameters = Lists.newArrayList();
+
+		assertEquals(PostgreSqlQueryGenerator.getSqlAggregate(entityType, aggregateQuery, parameters),
+				"SELECT this.\"attr\", aggregate_y.\"mref\", COUNT(DISTINCT this.\"id\") FROM \"entityTypeId#c34894ba\" AS this LEFT JOIN \"entityTypeId#c34894ba_mref\" AS aggregate_y ON (this.\"id\" = aggregate_y.\"id\") WHERE this.\"attr\" = ? GROUP BY 1, 2");
+		assertEquals(parameters, singletonList("value"));
+	}
+
 	@Test
 	public void getSqlSelectMref()
 	{
@@ -993,6 +1078,45 @@ public class PostgreSqlQueryGeneratorTest
 				+ "(\"data_categories_filter3\".\"data_categories\" = ?  OR \"data_categories_filter4\".\"data_categories\" = ?))");
 	}
 
+	@Test
+	public void getSqlWherePermitted()
+	{
+		Attribute idAttribute = createIdAttribute("id");
+		EntityType entityType = createMockEntityWithIdAttribute("entity", idAttribute, "id");
+		Attribute attribute = when(mock(Attribute.class).getName()).thenReturn("attr").getMock();
+		when(attribute.getDataType()).thenReturn(STRING);
+		when(entityType.getAttribute("attr")).thenReturn(attribute);
+
+		RowLevelSecurityFilter filter = RowLevelSecurityFilter.create("entity-entity", "user",
+				ImmutableSet.of("ROLE_USER", "ROLE_ANONYMOUS"), 6);
+		QueryImpl<Entity> q = new QueryImpl<>(
+				newArrayList(new QueryRule("attr", EQUALS, "value"), new QueryRule(AND),
+						new QueryRule(PERMITTED, filter)));
+
+		List<Object> parameters = Lists.newArrayList();
+		String sqlWhere = PostgreSqlQueryGenerator.getSqlWhere(entityType, q, parameters, new AtomicInteger());
+		assertEquals(sqlWhere, "this.\"attr\" = ?  AND EXISTS (SELECT 1 FROM acl_object_identity"
+				+ " JOIN acl_class ON acl_object_identity.object_id_class = acl_class.id"
+				+ " JOIN acl_entry ON acl_entry.acl_object_identity = acl_object_identity.id"
+				+ " JOIN acl_sid ON acl_entry.sid = acl_sid.id WHERE acl_class.class = ?"
+				+ " AND acl_object_identity.object_id_identity = this.\"id\"::varchar AND acl_entry.granting"
+				+ " AND (acl_entry.mask & ?) <> 0 AND (acl_sid.principal AND acl_sid.sid = ?"
+				+ " OR NOT acl_sid.principal AND acl_sid.sid IN (?,?)))");
+		assertEquals(parameters, asList("value", "entity-entity", 6, "user", "ROLE_USER", "ROLE_ANONYMOUS"));
+	}
+
+	@Test
+	public void getSqlWherePermittedNoSids()
+	{
+		EntityType entityType = createMockEntityWithIdAttribute("entity", createIdAttribute("id"), "id");
+		QueryImpl<Entity> q = new QueryImpl<>(
+				new QueryRule(PERMITTED, RowLevelSecurityFilter.create("entity-entity", null, emptySet(), 6)));
+
+		List<Object> parameters = Lists.newArrayList();
+		assertEquals(PostgreSqlQueryGenerator.getSqlWhere(entityType, q, parameters, new AtomicInteger()), "FALSE");
+		assertEquals(parameters, emptyList());
+	}
+
 	private Attribute createIdAttribute(String idAttributeName)
 	{
 		final String idAttributeIdentifier = idAttributeName + "AttrId";
@@ -4,18 +4,25 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Multimap;
+import com.google.common.io.CharStreams;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoSession;
 import org.molgenis.data.Entity;
 import org.molgenis.data.Query;
 import org.molgenis.data.QueryRule;
+import org.molgenis.data.Sort;
 import org.molgenis.data.meta.AttributeType;
 import org.molgenis.data.meta.model.Attribute;
 import org.molgenis.data.meta.model.EntityType;
+import org.molgenis.data.support.QueryImpl;
 import org.molgenis.data.validation.ConstraintViolation;
 import org.molgenis.data.validation.MolgenisValidationException;
 import org.molgenis.util.UnexpectedEnumException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
@@ -25,6 +32,9 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
@@ -34,6 +44,8 @@ import java.util.stream.Stream;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
+import static java.util.Arrays.asList;
+import static java.util.Collections.nCopies;
 import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 import static org.mockito.Mockito.*;
@@ -169,6 +181,68 @@ public class PostgreSqlRepositoryTest
 		assertEquals(postgreSqlRepo.findAll(query).collect(toList()), singletonList(entity0));
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testFindAllKeysetPagination()
+	{
+		Attribute idAttr = mock(Attribute.class);
+		when(idAttr.getName()).thenReturn("id");
+		when(idAttr.getDataType()).thenReturn(INT);
+		when(entityType.getId()).thenReturn("entity");
+		when(entityType.getIdAttribute()).thenReturn(idAttr);
+		when(entityType.getAttribute("id")).thenReturn(idAttr);
+		when(entityType.getAtomicAttributes()).thenReturn(singletonList(idAttr));
+		when(postgreSqlEntityFactory.createRowMapper(entityType, null)).thenReturn(rowMapper);
+
+		Entity lastEntity = mock(Entity.class);
+		when(lastEntity.getIdValue()).thenReturn(1000);
+		List<Entity> batch0 = newArrayList(nCopies(999, mock(Entity.class)));
+		batch0.add(lastEntity);
+		List<Entity> batch1 = singletonList(mock(Entity.class));
+		when(jdbcTemplate.query(any(String.class), any(Object[].class), eq(rowMapper))).thenReturn(batch0, batch1);
+
+		Query<Entity> q = new QueryImpl<>().eq("id", 3).or().gt("id", 5);
+		assertEquals(postgreSqlRepo.findAll(q).count(), 1001L);
+
+		ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+		ArgumentCaptor<Object[]> parametersCaptor = ArgumentCaptor.forClass(Object[].class);
+		verify(jdbcTemplate, times(2)).query(sqlCaptor.capture(), parametersCaptor.capture(), eq(rowMapper));
+		assertEquals(sqlCaptor.getAllValues(), asList(
+				"SELECT this.\"id\" FROM \"entity#6844280e\" AS this WHERE this.\"id\" = ?  OR this.\"id\" > ? ORDER BY \"id\" ASC LIMIT 1000",
+				"SELECT this.\"id\" FROM \"entity#6844280e\" AS this WHERE (this.\"id\" = ?  OR this.\"id\" > ?) AND this.\"id\" > ? ORDER BY \"id\" ASC LIMIT 1000"));
+		assertEquals(parametersCaptor.getAllValues().get(1), new Object[] { 3, 5, 1000 });
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testFindAllSortedOffsetPagination()
+	{
+		Attribute idAttr = mock(Attribute.class);
+		when(idAttr.getName()).thenReturn("id");
+		when(idAttr.getDataType()).thenReturn(INT);
+		Attribute attr = mock(Attribute.class);
+		when(attr.getName()).thenReturn("attr");
+		when(attr.getDataType()).thenReturn(STRING);
+		when(entityType.getId()).thenReturn("entity");
+		when(entityType.getIdAttribute()).thenReturn(idAttr);
+		doReturn(idAttr).when(entityType).getAttribute("id");
+		doReturn(attr).when(entityType).getAttribute("attr");
+		when(entityType.getAtomicAttributes()).thenReturn(newArrayList(idAttr, attr));
+		when(postgreSqlEntityFactory.createRowMapper(entityType, null)).thenReturn(rowMapper);
+
+		List<Entity> batch0 = nCopies(1000, mock(Entity.class));
+		List<Entity> batch1 = singletonList(mock(Entity.class));
+		when(jdbcTemplate.query(any(String.class), any(Object[].class), eq(rowMapper))).thenReturn(batch0, batch1);
+
+		Query<Entity> q = new QueryImpl<>().sort(new Sort("attr"));
+		assertEquals(postgreSqlRepo.findAll(q).count(), 1001L);
+
+		ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+		verify(jdbcTemplate, times(2)).query(sqlCaptor.capture(), any(Object[].class), eq(rowMapper));
+		assertEquals(sqlCaptor.getAllValues().get(1),
+				"SELECT this.\"id\", this.\"attr\" FROM \"entity#6844280e\" AS this ORDER BY \"attr\" ASC, \"id\" ASC LIMIT 1000 OFFSET 1000");
+	}
+
 	@Test
 	public void testUpdateEntitiesExist()
 	{
@@ -225,6 +299,44 @@ public class PostgreSqlRepositoryTest
 		postgreSqlRepo.add(entity);
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testAddStream() throws SQLException, IOException
+	{
+		Attribute idAttr = mock(Attribute.class);
+		when(idAttr.getName()).thenReturn("id");
+		when(idAttr.getDataType()).thenReturn(STRING);
+		Attribute intAttr = mock(Attribute.class);
+		when(intAttr.getName()).thenReturn("int");
+		when(intAttr.getDataType()).thenReturn(INT);
+
+		when(entityType.getIdAttribute()).thenReturn(idAttr);
+		when(entityType.getAtomicAttributes()).thenReturn(newArrayList(idAttr, intAttr));
+		when(entityType.getId()).thenReturn("entity");
+
+		Entity entity0 = mock(Entity.class);
+		when(entity0.getString("id")).thenReturn("id0");
+		when(entity0.getInt("int")).thenReturn(1);
+		Entity entity1 = mock(Entity.class);
+		when(entity1.getString("id")).thenReturn("id1");
+
+		assertEquals(postgreSqlRepo.add(Stream.of(entity0, entity1)), Integer.valueOf(2));
+
+		ArgumentCaptor<ConnectionCallback<Long>> callbackCaptor = ArgumentCaptor.forClass(ConnectionCallback.class);
+		verify(jdbcTemplate).execute(callbackCaptor.capture());
+
+		Connection connection = mock(Connection.class);
+		PGConnection pgConnection = mock(PGConnection.class);
+		when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+		CopyManager copyManager = mock(CopyManager.class);
+		when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+		String copySql = "COPY \"entity#6844280e\" (\"id\", \"int\") FROM STDIN WITH (FORMAT csv)";
+		when(copyManager.copyIn(eq(copySql), any(Reader.class))).thenAnswer(
+				invocation -> (long) CharStreams.readLines(invocation.<Reader>getArgument(1)).size());
+
+		assertEquals(callbackCaptor.getValue().doInConnection(connection), Long.valueOf(2));
+	}
+
 	@DataProvider(name = "provideValidMrefIds")
 	public Object[][] provideValidMrefIds() throws SQLException
 	{
@@ -0,0 +1,101 @@
+package org.molgenis.data.postgresql.transaction;
+
+import org.molgenis.data.EntityKey;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.stream.Collectors.toSet;
+import static org.molgenis.data.postgresql.transaction.CacheInvalidationMessage.MAX_DIRTY_ENTITIES_PER_ENTITY_TYPE;
+import static org.molgenis.data.postgresql.transaction.CacheInvalidationMessage.MAX_PAYLOAD_LENGTH;
+import static org.testng.Assert.*;
+
+public class CacheInvalidationMessageTest
+{
+	@Test
+	public void testToPayloadsFromPayload()
+	{
+		Set<EntityKey> dirtyEntities = newHashSet(EntityKey.create("entityType0", "id\t0\n"),
+				EntityKey.create("entityType0", 1), EntityKey.create("entityType1", 2L));
+		CacheInvalidationMessage message = CacheInvalidationMessage.create(dirtyEntities, singleton("entityType2"),
+				newHashSet("entityType0", "entityType1", "entityType2", "entityType3"));
+
+		List<String> payloads = message.toPayloads("node0");
+		assertEquals(payloads.size(), 1);
+		assertEquals(CacheInvalidationMessage.getNodeId(payloads.get(0)), "node0");
+
+		CacheInvalidationMessage decodedMessage = CacheInvalidationMessage.fromPayload(payloads.get(0));
+		assertEquals(decodedMessage.getDirtyEntities(), dirtyEntities);
+		assertEquals(decodedMessage.getEntirelyDirtyRepositories(), singleton("entityType2"));
+		assertEquals(decodedMessage.getDirtyRepositories(),
+				newHashSet("entityType0", "entityType1", "entityType2", "entityType3"));
+	}
+
+	@Test
+	public void testCreateCoalescesDirtyEntitiesOfEntirelyDirtyRepositories()
+	{
+		CacheInvalidationMessage message = CacheInvalidationMessage.create(
+				singleton(EntityKey.create("entityType0", "id0")), singleton("entityType0"), singleton("entityType0"));
+		assertEquals(message.getDirtyEntities(), emptySet());
+		assertEquals(message.getEntirelyDirtyRepositories(), singleton("entityType0"));
+	}
+
+	@Test
+	public void testCreateCoalescesManyDirtyEntities()
+	{
+		Set<EntityKey> dirtyEntities = IntStream.rangeClosed(0, MAX_DIRTY_ENTITIES_PER_ENTITY_TYPE)
+												.mapToObj(id -> EntityKey.create("entityType0", id))
+												.collect(toSet());
+		CacheInvalidationMessage message = CacheInvalidationMessage.create(dirtyEntities, emptySet(),
+				singleton("entityType0"));
+		assertEquals(message.getDirtyEntities(), emptySet());
+		assertEquals(message.getEntirelyDirtyRepositories(), singleton("entityType0"));
+	}
+
+	@Test
+	public void testToPayloadsSplitsLargeMessages()
+	{
+		Set<EntityKey> dirtyEntities = IntStream.range(0, 1000)
+												.mapToObj(id -> EntityKey.create("entityType" + id / 50, id))
+												.collect(toSet());
+		CacheInvalidationMessage message = CacheInvalidationMessage.create(dirtyEntities, emptySet(), emptySet());
+
+		List<String> payloads = message.toPayloads("node0");
+		assertTrue(payloads.size() > 1);
+		CacheInvalidationMessage decodedMessage = new CacheInvalidationMessage();
+		for (String payload : payloads)
+		{
+			assertTrue(payload.length() <= MAX_PAYLOAD_LENGTH);
+			decodedMessage.addAll(CacheInvalidationMessage.fromPayload(payload));
+		}
+		assertEquals(decodedMessage.getDirtyEntities(), dirtyEntities);
+	}
+
+	@Test
+	public void testAddAll()
+	{
+		CacheInvalidationMessage message = CacheInvalidationMessage.create(
+				singleton(EntityKey.create("entityType0", "id0")), emptySet(), emptySet());
+		message.addAll(CacheInvalidationMessage.create(emptySet(), singleton("entityType0"), emptySet()));
+		assertEquals(message.getDirtyEntities(), emptySet());
+		assertEquals(message.getEntirelyDirtyRepositories(), singleton("entityType0"));
+	}
+
+	@Test
+	public void testIsEmpty()
+	{
+		assertTrue(new CacheInvalidationMessage().isEmpty());
+		assertFalse(CacheInvalidationMessage.create(emptySet(), emptySet(), singleton("entityType0")).isEmpty());
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testFromPayloadMalformed()
+	{
+		CacheInvalidationMessage.fromPayload("node0\nX\tentityType0");
+	}
+}
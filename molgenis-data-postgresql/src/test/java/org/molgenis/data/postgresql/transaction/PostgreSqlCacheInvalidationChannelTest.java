@@ -0,0 +1,162 @@
+package org.molgenis.data.postgresql.transaction;
+
+import org.mockito.Mock;
+import org.molgenis.data.EntityKey;
+import org.molgenis.data.populate.IdGenerator;
+import org.molgenis.data.transaction.RemoteTransactionListener;
+import org.molgenis.data.transaction.TransactionInformation;
+import org.molgenis.data.transaction.TransactionManager;
+import org.molgenis.test.AbstractMockitoTest;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.molgenis.data.postgresql.transaction.PostgreSqlCacheInvalidationChannel.CHANNEL;
+
+public class PostgreSqlCacheInvalidationChannelTest extends AbstractMockitoTest
+{
+	@Mock
+	private IdGenerator idGenerator;
+	@Mock
+	private TransactionManager transactionManager;
+	@Mock
+	private TransactionInformation transactionInformation;
+	@Mock
+	private DataSource dataSource;
+	@Mock
+	private JdbcTemplate jdbcTemplate;
+	@Mock
+	private RemoteTransactionListener remoteTransactionListener;
+	@Mock
+	private Connection connection;
+	@Mock
+	private Statement statement;
+	@Mock
+	private PGConnection pgConnection;
+
+	private PostgreSqlCacheInvalidationChannel channel;
+
+	@BeforeMethod
+	public void setUpBeforeMethod()
+	{
+		when(idGenerator.generateId()).thenReturn("node0");
+		channel = new PostgreSqlCacheInvalidationChannel(true, idGenerator, transactionManager,
+				transactionInformation, dataSource, jdbcTemplate, singletonList(remoteTransactionListener));
+	}
+
+	@Test
+	public void testPostgreSqlCacheInvalidationChannel()
+	{
+		verify(transactionManager).addTransactionListener(channel);
+	}
+
+	@Test
+	public void testPostgreSqlCacheInvalidationChannelDisabled() throws SQLException
+	{
+		TransactionManager otherTransactionManager = mock(TransactionManager.class);
+		PostgreSqlCacheInvalidationChannel disabledChannel = new PostgreSqlCacheInvalidationChannel(false,
+				idGenerator, otherTransactionManager, transactionInformation, dataSource, jdbcTemplate, null);
+		disabledChannel.receiveNotifications();
+		verifyZeroInteractions(otherTransactionManager);
+		verify(dataSource, never()).getConnection();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testCommitTransaction()
+	{
+		when(transactionInformation.getDirtyEntities()).thenReturn(singleton(EntityKey.create("entityType0", "id0")));
+		when(transactionInformation.getEntirelyDirtyRepositories()).thenReturn(emptySet());
+		when(transactionInformation.getDirtyRepositories()).thenReturn(singleton("entityType0"));
+
+		channel.commitTransaction("transaction0");
+
+		verify(jdbcTemplate).query(eq("SELECT pg_notify(?, ?)"), any(ResultSetExtractor.class), eq(CHANNEL),
+				eq("node0\nD\tentityType0\nE\tentityType0\tSid0"));
+	}
+
+	@Test
+	public void testCommitTransactionNothingDirty()
+	{
+		when(transactionInformation.getDirtyEntities()).thenReturn(emptySet());
+		when(transactionInformation.getEntirelyDirtyRepositories()).thenReturn(emptySet());
+		when(transactionInformation.getDirtyRepositories()).thenReturn(emptySet());
+
+		channel.commitTransaction("transaction0");
+
+		verifyZeroInteractions(jdbcTemplate);
+	}
+
+	@Test
+	public void testReceiveNotifications() throws SQLException
+	{
+		setUpConnection();
+		PGNotification ownNotification = createNotification("node0\nR\tentityType0");
+		PGNotification notification = createNotification("node1\nE\tentityType1\tI1");
+		when(pgConnection.getNotifications()).thenReturn(null, new PGNotification[] { ownNotification, notification });
+
+		channel.receiveNotifications();
+		verify(statement).execute("LISTEN " + CHANNEL);
+		verify(remoteTransactionListener).remoteCommitsMissed();
+
+		channel.receiveNotifications();
+		verify(remoteTransactionListener).afterRemoteCommit(singleton(EntityKey.create("entityType1", 1)), emptySet(),
+				singleton("entityType1"));
+		verifyNoMoreInteractions(remoteTransactionListener);
+	}
+
+	@Test
+	public void testReceiveNotificationsReconnects() throws SQLException
+	{
+		setUpConnection();
+		when(pgConnection.getNotifications()).thenThrow(new SQLException("connection lost")).thenReturn(null);
+
+		channel.receiveNotifications();
+		verify(connection).close();
+
+		channel.receiveNotifications();
+		verify(dataSource, times(2)).getConnection();
+		verify(remoteTransactionListener, times(2)).remoteCommitsMissed();
+	}
+
+	@Test
+	public void testReceiveNotificationsMalformed() throws SQLException
+	{
+		setUpConnection();
+		PGNotification notification = createNotification("node1\nX\tentityType1");
+		when(pgConnection.getNotifications()).thenReturn(new PGNotification[] { notification });
+
+		channel.receiveNotifications();
+
+		verify(remoteTransactionListener, times(2)).remoteCommitsMissed();
+		verifyNoMoreInteractions(remoteTransactionListener);
+	}
+
+	private void setUpConnection() throws SQLException
+	{
+		when(dataSource.getConnection()).thenReturn(connection);
+		when(connection.createStatement()).thenReturn(statement);
+		when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+	}
+
+	private static PGNotification createNotification(String payload)
+	{
+		PGNotification notification = mock(PGNotification.class);
+		when(notification.getParameter()).thenReturn(payload);
+		return notification;
+	}
+}
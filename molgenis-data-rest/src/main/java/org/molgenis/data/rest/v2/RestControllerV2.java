@@ -1,5 +1,6 @@
 package org.molgenis.data.rest.v2;
 
+import com.google.common.util.concurrent.Striped;
 import org.molgenis.data.*;
 import org.molgenis.data.aggregation.AggregateQuery;
 import org.molgenis.data.aggregation.AggregateResult;
@@ -44,6 +45,7 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Stream;
 
 import static com.google.common.collect.Lists.transform;
@@ -51,7 +53,9 @@ import static java.lang.String.format;
 import static java.time.ZonedDateTime.now;
 import static java.time.format.FormatStyle.MEDIUM;
 import static java.util.Objects.requireNonNull;
+import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
 import static org.molgenis.data.meta.model.AttributeMetadata.ATTRIBUTE_META_DATA;
 import static org.molgenis.data.rest.v2.AttributeFilterToFetchConverter.createDefaultAttributeFetch;
@@ -69,6 +73,12 @@ public class RestControllerV2
 
 	static final int MAX_ENTITIES = 1000;
 
+	/**
+	 * Number of locks used to serialize batch updates, batch updates of different entity types only wait for each other
+	 * in the rare case that both entity types map to the same lock.
+	 */
+	private static final int NR_ENTITY_TYPE_LOCKS = 256;
+
 	public static final String BASE_URI = "/api/v2";
 	public static final String TIME_PARAM_NAME = "_t";
 
@@ -78,6 +88,7 @@ public class RestControllerV2
 	private final PermissionSystemService permissionSystemService;
 	private final RepositoryCopier repoCopier;
 	private final LocalizationService localizationService;
+	private final Striped<Lock> entityTypeLocks = Striped.lazyWeakLock(NR_ENTITY_TYPE_LOCKS);
 
 	static MolgenisRepositoryCapabilitiesException createNoWriteCapabilitiesOnEntityException(String entityTypeId)
 	{
@@ -373,7 +384,7 @@ public class RestControllerV2
 	 * @param response     HttpServletResponse
 	 */
 	@PutMapping("/{entityTypeId}")
-	public synchronized void updateEntities(@PathVariable("entityTypeId") String entityTypeId,
+	public void updateEntities(@PathVariable("entityTypeId") String entityTypeId,
 			@RequestBody @Valid EntityCollectionBatchRequestV2 request, HttpServletResponse response) throws Exception
 	{
 		final EntityType meta = dataService.getEntityType(entityTypeId);
@@ -382,17 +393,25 @@ public class RestControllerV2
 			throw new UnknownEntityTypeException(entityTypeId);
 		}
 
+		Lock lock = entityTypeLocks.get(entityTypeId);
+		lock.lock();
 		try
 		{
-			List<Entity> entities = request.getEntities()
-										   .stream()
-										   .map(e -> this.restService.toEntity(meta, e))
-										   .collect(toList());
+			Stream<Entity> entities = request.getEntities().stream().map(e -> this.restService.toEntity(meta, e));
+			if (meta.hasMappedByAttributes())
+			{
+				List<Entity> entityList = entities.collect(toList());
 
-			// update all entities
-			this.dataService.update(entityTypeId, entities.stream());
-			entities.forEach(entity -> restService.updateMappedByEntities(entity,
-					dataService.findOneById(entityTypeId, entity.getIdValue())));
+				// update all entities
+				this.dataService.update(entityTypeId, entityList.stream());
+				entityList.forEach(entity -> restService.updateMappedByEntities(entity,
+						dataService.findOneById(entityTypeId, entity.getIdValue())));
+			}
+			else
+			{
+				// update all entities, no other side of relationships to update
+				this.dataService.update(entityTypeId, entities);
+			}
 			response.setStatus(HttpServletResponse.SC_OK);
 		}
 		catch (Exception e)
@@ -400,6 +419,10 @@ public class RestControllerV2
 			response.setStatus(HttpServletResponse.SC_NO_CONTENT);
 			throw e;
 		}
+		finally
+		{
+			lock.unlock();
+		}
 	}
 
 	/**
@@ -410,7 +433,7 @@ public class RestControllerV2
 	 */
 	@PutMapping("/{entityTypeId}/{attributeName}")
 	@ResponseStatus(OK)
-	public synchronized void updateAttribute(@PathVariable("entityTypeId") String entityTypeId,
+	public void updateAttribute(@PathVariable("entityTypeId") String entityTypeId,
 			@PathVariable("attributeName") String attributeName,
 			@RequestBody @Valid EntityCollectionBatchRequestV2 request, HttpServletResponse response) throws Exception
 	{
@@ -420,6 +443,8 @@ public class RestControllerV2
 			throw new UnknownEntityTypeException(entityTypeId);
 		}
 
+		Lock lock = entityTypeLocks.get(entityTypeId);
+		lock.lock();
 		try
 		{
 			Attribute attr = meta.getAttribute(attributeName);
@@ -443,13 +468,25 @@ public class RestControllerV2
 				throw createMolgenisDataExceptionIdentifierAndValue();
 			}
 
-			final List<Entity> updatedEntities = new ArrayList<>();
+			List<Object> ids = new ArrayList<>(entities.size());
 			int count = 0;
 			for (Entity entity : entities)
 			{
-				Object id = checkForEntityId(entity, count);
+				ids.add(checkForEntityId(entity, count));
+				count++;
+			}
 
-				Entity originalEntity = dataService.findOneById(entityTypeId, id);
+			// retrieve all original entities with one query instead of one query per entity, an id can occur more
+			// than once in the request
+			Map<Object, Entity> originalEntities = dataService.findAll(entityTypeId, ids.stream())
+															  .collect(toMap(Entity::getIdValue, identity(),
+																	  (entity, otherEntity) -> entity));
+
+			final List<Entity> updatedEntities = new ArrayList<>(entities.size());
+			for (Entity entity : entities)
+			{
+				Object id = entity.getIdValue();
+				Entity originalEntity = originalEntities.get(id);
 				if (originalEntity == null)
 				{
 					throw new UnknownEntityException(meta, id);
@@ -458,7 +495,6 @@ public class RestControllerV2
 				Object value = this.restService.toEntityValue(attr, entity.get(attributeName), id);
 				originalEntity.set(attributeName, value);
 				updatedEntities.add(originalEntity);
-				count++;
 			}
 
 			// update all entities
@@ -470,6 +506,10 @@ public class RestControllerV2
 			response.setStatus(HttpServletResponse.SC_NO_CONTENT);
 			throw e;
 		}
+		finally
+		{
+			lock.unlock();
+		}
 	}
 
 	/**
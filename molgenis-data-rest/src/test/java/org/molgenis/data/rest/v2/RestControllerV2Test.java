@@ -820,6 +820,7 @@ public class RestControllerV2Test extends AbstractMolgenisSpringTest
 			   .andExpect(status().isOk());
 
 		verify(dataService, times(1)).update(eq(ENTITY_NAME), (Stream<Entity>) any(Stream.class));
+		verify(dataService, never()).findOneById(eq(ENTITY_NAME), any());
 	}
 
 	@SuppressWarnings("unchecked")
@@ -884,6 +885,9 @@ public class RestControllerV2Test extends AbstractMolgenisSpringTest
 	@Test
 	public void testUpdateEntitiesSpecificAttribute() throws Exception
 	{
+		Entity originalEntity = dataService.findOneById(ENTITY_NAME, ENTITY_ID);
+		when(dataService.findAll(eq(ENTITY_NAME), any(Stream.class))).thenReturn(Stream.of(originalEntity));
+
 		mockMvc.perform(put(HREF_ENTITY_COLLECTION + "/date_time").content(
 				"{entities:[{id:'0', date_time:'1985-08-12T08:12:13+0200'}]}").contentType(APPLICATION_JSON))
 			   .andExpect(status().isOk());
@@ -894,6 +898,25 @@ public class RestControllerV2Test extends AbstractMolgenisSpringTest
 		assertEquals(entity.get("date_time"), MolgenisDateFormat.parseInstant("1985-08-12T08:12:13+0200"));
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testUpdateEntitiesSpecificAttributeDuplicateId() throws Exception
+	{
+		Entity originalEntity = dataService.findOneById(ENTITY_NAME, ENTITY_ID);
+		when(dataService.findAll(eq(ENTITY_NAME), any(Stream.class))).thenReturn(
+				Stream.of(originalEntity, originalEntity));
+
+		mockMvc.perform(put(HREF_ENTITY_COLLECTION + "/date_time").content(
+				"{entities:[{id:'0', date_time:'1985-08-12T08:12:13+0200'}, {id:'0', date_time:'1986-08-12T08:12:13+0200'}]}")
+																  .contentType(APPLICATION_JSON))
+			   .andExpect(status().isOk());
+
+		verify(dataService, times(1)).update(eq(ENTITY_NAME), (Stream<Entity>) any(Stream.class));
+
+		Entity entity = dataService.findOneById(ENTITY_NAME, ENTITY_ID);
+		assertEquals(entity.get("date_time"), MolgenisDateFormat.parseInstant("1986-08-12T08:12:13+0200"));
+	}
+
 	@Test
 	public void testUpdateEntitiesSpecificAttributeNoExceptions() throws Exception
 	{
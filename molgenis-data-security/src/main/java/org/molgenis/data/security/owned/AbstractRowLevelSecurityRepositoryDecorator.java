@@ -7,6 +7,7 @@ import org.molgenis.data.support.QueryImpl;
 import org.springframework.security.acls.model.MutableAclService;
 import org.springframework.security.acls.model.ObjectIdentity;
 
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.Consumer;
@@ -15,6 +16,8 @@ import java.util.stream.Stream;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.StreamSupport.stream;
+import static org.molgenis.data.QueryRule.Operator.PERMITTED;
+import static org.molgenis.data.QueryUtils.containsAnyOperator;
 import static org.molgenis.data.security.owned.AbstractRowLevelSecurityRepositoryDecorator.Action.*;
 import static org.molgenis.security.core.utils.SecurityUtils.currentUserIsSuOrSystem;
 
@@ -66,6 +69,11 @@ public abstract class AbstractRowLevelSecurityRepositoryDecorator<E extends Enti
 	@Override
 	public long count(Query<E> q)
 	{
+		Query<E> permittedQuery = toPermittedQuery(q, COUNT);
+		if (permittedQuery != null)
+		{
+			return delegate().count(permittedQuery);
+		}
 		return findAllPermitted(q, COUNT).count();
 	}
 
@@ -78,6 +86,11 @@ public abstract class AbstractRowLevelSecurityRepositoryDecorator<E extends Enti
 	@Override
 	public E findOne(Query<E> q)
 	{
+		Query<E> permittedQuery = toPermittedQuery(q, READ);
+		if (permittedQuery != null)
+		{
+			return delegate().findOne(permittedQuery);
+		}
 		return findAllPermitted(q, READ).findFirst().orElse(null);
 	}
 
@@ -242,6 +255,12 @@ public abstract class AbstractRowLevelSecurityRepositoryDecorator<E extends Enti
 
 	private Stream<E> findAllPermitted(Query<E> query, Action action)
 	{
+		Query<E> permittedQuery = toPermittedQuery(query, action);
+		if (permittedQuery != null)
+		{
+			return delegate().findAll(permittedQuery);
+		}
+
 		Query<E> qWithoutLimitOffset = new QueryImpl<>(query);
 		qWithoutLimitOffset.offset(0).pageSize(Integer.MAX_VALUE);
 		Stream<E> permittedEntityStream = delegate().findAll(qWithoutLimitOffset)
@@ -257,6 +276,36 @@ public abstract class AbstractRowLevelSecurityRepositoryDecorator<E extends Enti
 		return permittedEntityStream;
 	}
 
+	/**
+	 * Returns the query that lets the decorated repository select the entities on which an action is permitted, or
+	 * null if the decorated repository cannot filter on permissions. Queries that already contain a
+	 * {@link QueryRule.Operator#PERMITTED} query rule are checked entity by entity, so that the decorated repository
+	 * only receives a single permission rule in the top-level conjunction of the query.
+	 */
+	private Query<E> toPermittedQuery(Query<E> query, Action action)
+	{
+		if (!delegate().getQueryOperators().contains(PERMITTED) || containsAnyOperator(query.getRules(),
+				EnumSet.of(PERMITTED)))
+		{
+			return null;
+		}
+		return createPermittedQuery(query, action);
+	}
+
+	/**
+	 * Creates a query that only matches the entities of the given query on which the given action is permitted, for
+	 * example by adding a {@link QueryRule.Operator#PERMITTED} query rule. Returns null by default, in which case
+	 * permissions are checked entity by entity.
+	 *
+	 * @param query  query
+	 * @param action the action being performed
+	 * @return query or null if permissions can only be checked entity by entity
+	 */
+	protected Query<E> createPermittedQuery(Query<E> query, Action action)
+	{
+		return null;
+	}
+
 	void deleteAcl(ObjectIdentity objectIdentity)
 	{
 		mutableAclService.deleteAcl(objectIdentity, true);
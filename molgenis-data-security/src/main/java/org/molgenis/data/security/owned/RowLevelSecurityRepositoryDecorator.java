@@ -1,21 +1,33 @@
 package org.molgenis.data.security.owned;
 
-import org.molgenis.data.Entity;
-import org.molgenis.data.Repository;
+import org.molgenis.data.*;
 import org.molgenis.data.security.EntityIdentity;
+import org.molgenis.data.security.EntityIdentityUtils;
 import org.molgenis.data.security.EntityPermission;
 import org.molgenis.data.security.exception.EntityPermissionDeniedException;
+import org.molgenis.security.acl.MutableAclClassService;
 import org.molgenis.security.core.Permission;
+import org.molgenis.security.core.PermissionRegistry;
 import org.molgenis.security.core.PermissionSet;
 import org.molgenis.security.core.UserPermissionEvaluator;
 import org.molgenis.security.core.utils.SecurityUtils;
+import org.molgenis.data.support.QueryImpl;
 import org.molgenis.util.UnexpectedEnumException;
+import org.springframework.security.acls.domain.GrantedAuthoritySid;
 import org.springframework.security.acls.domain.PrincipalSid;
-import org.springframework.security.acls.model.MutableAcl;
-import org.springframework.security.acls.model.MutableAclService;
-import org.springframework.security.acls.model.Sid;
+import org.springframework.security.acls.domain.SidRetrievalStrategyImpl;
+import org.springframework.security.acls.model.*;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static java.util.Objects.requireNonNull;
+import static org.molgenis.data.QueryRule.Operator.AND;
+import static org.molgenis.data.QueryRule.Operator.PERMITTED;
 
 /**
  * RepositoryDecorator that works on EntityTypes that are row-level secured.
@@ -25,13 +37,20 @@ public class RowLevelSecurityRepositoryDecorator extends AbstractRowLevelSecurit
 {
 	private final UserPermissionEvaluator userPermissionEvaluator;
 	private final MutableAclService mutableAclService;
+	private final MutableAclClassService mutableAclClassService;
+	private final PermissionRegistry permissionRegistry;
+	private final SidRetrievalStrategy sidRetrievalStrategy;
 
-	RowLevelSecurityRepositoryDecorator(Repository delegateRepository,
-			UserPermissionEvaluator userPermissionEvaluator, MutableAclService mutableAclService)
+	RowLevelSecurityRepositoryDecorator(Repository<Entity> delegateRepository,
+			UserPermissionEvaluator userPermissionEvaluator, MutableAclService mutableAclService,
+			MutableAclClassService mutableAclClassService, PermissionRegistry permissionRegistry)
 	{
 		super(delegateRepository, mutableAclService);
 		this.userPermissionEvaluator = requireNonNull(userPermissionEvaluator);
 		this.mutableAclService = requireNonNull(mutableAclService);
+		this.mutableAclClassService = requireNonNull(mutableAclClassService);
+		this.permissionRegistry = requireNonNull(permissionRegistry);
+		this.sidRetrievalStrategy = new SidRetrievalStrategyImpl();
 	}
 
 	@Override
@@ -62,6 +81,70 @@ public class RowLevelSecurityRepositoryDecorator extends AbstractRowLevelSecurit
 		return userPermissionEvaluator.hasPermission(entityIdentity, entityPermission);
 	}
 
+	/**
+	 * Adds a {@link QueryRule.Operator#PERMITTED} query rule to the query that matches the same access control entries
+	 * as {@link UserPermissionEvaluator#hasPermission(ObjectIdentity, Permission)} does for a single entity, so that
+	 * the decorated repository only returns the permitted entities. The rule only matches granting entries of the
+	 * access control list of an entity, so permissions are checked entity by entity if one of the access control lists
+	 * of the entity type denies permissions or inherits entries from a parent.
+	 */
+	@Override
+	protected Query<Entity> createPermittedQuery(Query<Entity> query, Action action)
+	{
+		if (SecurityUtils.currentUserIsSuOrSystem())
+		{
+			return query;
+		}
+		if (!mutableAclClassService.hasGrantingAclsOnly(EntityIdentityUtils.toType(getEntityType())))
+		{
+			return null;
+		}
+
+		List<QueryRule> rules = new ArrayList<>();
+		if (!query.getRules().isEmpty())
+		{
+			rules.add(new QueryRule(query.getRules()));
+			rules.add(new QueryRule(AND));
+		}
+		rules.add(new QueryRule(PERMITTED, createRowLevelSecurityFilter(action)));
+
+		QueryImpl<Entity> permittedQuery = new QueryImpl<>(rules);
+		permittedQuery.offset(query.getOffset());
+		permittedQuery.pageSize(query.getPageSize());
+		permittedQuery.setSort(query.getSort());
+		permittedQuery.setFetch(query.getFetch());
+		return permittedQuery;
+	}
+
+	private RowLevelSecurityFilter createRowLevelSecurityFilter(Action action)
+	{
+		String principal = null;
+		Set<String> authorities = new HashSet<>();
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (authentication != null)
+		{
+			for (Sid sid : sidRetrievalStrategy.getSids(authentication))
+			{
+				if (sid instanceof PrincipalSid)
+				{
+					principal = ((PrincipalSid) sid).getPrincipal();
+				}
+				else if (sid instanceof GrantedAuthoritySid)
+				{
+					authorities.add(((GrantedAuthoritySid) sid).getGrantedAuthority());
+				}
+			}
+		}
+
+		int mask = 0;
+		for (PermissionSet permissionSet : permissionRegistry.getPermissions(getPermission(action)))
+		{
+			mask |= permissionSet.getMask();
+		}
+		return RowLevelSecurityFilter.create(EntityIdentityUtils.toType(getEntityType()), principal, authorities,
+				mask);
+	}
+
 	/**
 	 * Finds out what permission to check for an operation that is being performed on this repository.
 	 *
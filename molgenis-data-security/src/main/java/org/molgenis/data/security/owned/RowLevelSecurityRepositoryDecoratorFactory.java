@@ -4,6 +4,7 @@ import org.molgenis.data.Entity;
 import org.molgenis.data.Repository;
 import org.molgenis.data.security.EntityIdentityUtils;
 import org.molgenis.security.acl.MutableAclClassService;
+import org.molgenis.security.core.PermissionRegistry;
 import org.molgenis.security.core.UserPermissionEvaluator;
 import org.springframework.security.acls.model.MutableAclService;
 import org.springframework.stereotype.Component;
@@ -19,13 +20,16 @@ public class RowLevelSecurityRepositoryDecoratorFactory
 	private final UserPermissionEvaluator userPermissionEvaluator;
 	private final MutableAclService mutableAclService;
 	private final MutableAclClassService mutableAclClassService;
+	private final PermissionRegistry permissionRegistry;
 
 	RowLevelSecurityRepositoryDecoratorFactory(UserPermissionEvaluator userPermissionEvaluator,
-			MutableAclService mutableAclService, MutableAclClassService mutableAclClassService)
+			MutableAclService mutableAclService, MutableAclClassService mutableAclClassService,
+			PermissionRegistry permissionRegistry)
 	{
 		this.userPermissionEvaluator = requireNonNull(userPermissionEvaluator);
 		this.mutableAclService = requireNonNull(mutableAclService);
 		this.mutableAclClassService = requireNonNull(mutableAclClassService);
+		this.permissionRegistry = requireNonNull(permissionRegistry);
 	}
 
 	public Repository<Entity> createDecoratedRepository(Repository<Entity> repository)
@@ -34,7 +38,7 @@ public class RowLevelSecurityRepositoryDecoratorFactory
 		if (isRowLevelSecured(repository))
 		{
 			decoratedRepository = new RowLevelSecurityRepositoryDecorator(repository, userPermissionEvaluator,
-					mutableAclService);
+					mutableAclService, mutableAclClassService, permissionRegistry);
 		}
 		else
 		{
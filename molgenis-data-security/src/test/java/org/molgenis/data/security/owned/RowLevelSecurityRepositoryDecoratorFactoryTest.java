@@ -5,6 +5,7 @@ import org.molgenis.data.Entity;
 import org.molgenis.data.Repository;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.security.acl.MutableAclClassService;
+import org.molgenis.security.core.PermissionRegistry;
 import org.molgenis.security.core.UserPermissionEvaluator;
 import org.molgenis.test.AbstractMockitoTest;
 import org.springframework.security.acls.model.MutableAclService;
@@ -24,19 +25,21 @@ public class RowLevelSecurityRepositoryDecoratorFactoryTest extends AbstractMock
 	private MutableAclService mutableAclService;
 	@Mock
 	private MutableAclClassService mutableAclClassService;
+	@Mock
+	private PermissionRegistry permissionRegistry;
 	private RowLevelSecurityRepositoryDecoratorFactory rowLevelSecurityRepositoryDecoratorFactory;
 
 	@BeforeMethod
 	public void setUpBeforeMethod()
 	{
 		rowLevelSecurityRepositoryDecoratorFactory = new RowLevelSecurityRepositoryDecoratorFactory(
-				userPermissionEvaluator, mutableAclService, mutableAclClassService);
+				userPermissionEvaluator, mutableAclService, mutableAclClassService, permissionRegistry);
 	}
 
 	@Test(expectedExceptions = NullPointerException.class)
 	public void testRowLevelSecurityRepositoryDecoratorFactory()
 	{
-		new RowLevelSecurityRepositoryDecoratorFactory(null, null, null);
+		new RowLevelSecurityRepositoryDecoratorFactory(null, null, null, null);
 	}
 
 	@Test
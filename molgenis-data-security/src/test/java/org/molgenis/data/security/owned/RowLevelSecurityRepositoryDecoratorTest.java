@@ -1,11 +1,10 @@
 package org.molgenis.data.security.owned;
 
 import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
-import org.molgenis.data.Entity;
-import org.molgenis.data.Fetch;
-import org.molgenis.data.Query;
-import org.molgenis.data.Repository;
+import com.google.common.collect.ImmutableSet;
+import org.molgenis.data.*;
 import org.molgenis.data.aggregation.AggregateQuery;
 import org.molgenis.data.aggregation.AggregateResult;
 import org.molgenis.data.meta.model.EntityType;
@@ -13,6 +12,8 @@ import org.molgenis.data.security.EntityIdentity;
 import org.molgenis.data.security.EntityPermission;
 import org.molgenis.data.security.exception.EntityPermissionDeniedException;
 import org.molgenis.data.support.QueryImpl;
+import org.molgenis.security.acl.MutableAclClassService;
+import org.molgenis.security.core.PermissionRegistry;
 import org.molgenis.security.core.PermissionSet;
 import org.molgenis.security.core.UserPermissionEvaluator;
 import org.molgenis.test.AbstractMockitoTestNGSpringContextTests;
@@ -27,15 +28,17 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import static com.google.common.collect.Lists.newArrayList;
-import static java.util.Collections.emptyList;
-import static java.util.Collections.singletonList;
+import static java.util.Arrays.asList;
+import static java.util.Collections.*;
 import static java.util.stream.Collectors.toList;
 import static org.mockito.Mockito.*;
+import static org.molgenis.data.QueryRule.Operator.*;
 import static org.molgenis.data.security.EntityPermission.READ;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
@@ -52,19 +55,23 @@ public class RowLevelSecurityRepositoryDecoratorTest extends AbstractMockitoTest
 	private UserPermissionEvaluator userPermissionEvaluator;
 	@Mock
 	private MutableAclService mutableAclService;
+	@Mock
+	private MutableAclClassService mutableAclClassService;
+	@Mock
+	private PermissionRegistry permissionRegistry;
 	private RowLevelSecurityRepositoryDecorator rowLevelSecurityRepositoryDecorator;
 
 	@BeforeMethod
 	public void setUpBeforeMethod()
 	{
 		rowLevelSecurityRepositoryDecorator = new RowLevelSecurityRepositoryDecorator(delegateRepository,
-				userPermissionEvaluator, mutableAclService);
+				userPermissionEvaluator, mutableAclService, mutableAclClassService, permissionRegistry);
 	}
 
 	@Test(expectedExceptions = NullPointerException.class)
 	public void testRowLevelSecurityRepositoryDecorator()
 	{
-		new RowLevelSecurityRepositoryDecorator(null, null, null);
+		new RowLevelSecurityRepositoryDecorator(null, null, null, null, null);
 	}
 
 	@WithMockUser(username = USERNAME)
@@ -375,6 +382,89 @@ public class RowLevelSecurityRepositoryDecoratorTest extends AbstractMockitoTest
 		assertEquals(rowLevelSecurityRepositoryDecorator.findAll(query).collect(toList()), emptyList());
 	}
 
+	@WithMockUser(username = USERNAME, roles = { "USER" })
+	@Test
+	public void testFindAllQueryPermittedQuery()
+	{
+		EntityType entityType = when(mock(EntityType.class).getId()).thenReturn("entityTypeId").getMock();
+		when(delegateRepository.getEntityType()).thenReturn(entityType);
+		when(delegateRepository.getQueryOperators()).thenReturn(EnumSet.of(EQUALS, AND, NESTED, PERMITTED));
+		when(mutableAclClassService.hasGrantingAclsOnly("entity-entityTypeId")).thenReturn(true);
+		when(permissionRegistry.getPermissions(READ)).thenReturn(
+				ImmutableSet.of(PermissionSet.READ, PermissionSet.WRITE));
+
+		Query<Entity> query = new QueryImpl<>().eq("attr", "value").pageSize(10).offset(20);
+		Query<Entity> permittedQuery = new QueryImpl<>(
+				asList(new QueryRule(query.getRules()), new QueryRule(AND), new QueryRule(PERMITTED,
+						RowLevelSecurityFilter.create("entity-entityTypeId", USERNAME, singleton("ROLE_USER"),
+								6)))).pageSize(10).offset(20);
+		Entity entity = mock(Entity.class);
+		when(delegateRepository.findAll(permittedQuery)).thenReturn(Stream.of(entity));
+		assertEquals(rowLevelSecurityRepositoryDecorator.findAll(query).collect(toList()), singletonList(entity));
+		verifyZeroInteractions(userPermissionEvaluator);
+	}
+
+	@WithMockUser(username = USERNAME, roles = { "USER" })
+	@Test
+	public void testFindAllQueryPermittedQueryNonGrantingAcls()
+	{
+		EntityType entityType = when(mock(EntityType.class).getId()).thenReturn("entityTypeId").getMock();
+		when(delegateRepository.getEntityType()).thenReturn(entityType);
+		when(delegateRepository.getQueryOperators()).thenReturn(EnumSet.of(EQUALS, AND, NESTED, PERMITTED));
+		when(mutableAclClassService.hasGrantingAclsOnly("entity-entityTypeId")).thenReturn(false);
+
+		Query<Entity> query = new QueryImpl<>().eq("attr", "value");
+		Entity entity = getEntityMock();
+		Query<Entity> delegateQuery = new QueryImpl<>().eq("attr", "value").offset(0).pageSize(Integer.MAX_VALUE);
+		when(delegateRepository.findAll(delegateQuery)).thenAnswer(invocation -> Stream.of(entity));
+		when(userPermissionEvaluator.hasPermission(new EntityIdentity(entity), READ)).thenReturn(true);
+		assertEquals(rowLevelSecurityRepositoryDecorator.findAll(query).collect(toList()), singletonList(entity));
+	}
+
+	@WithMockUser(username = USERNAME, roles = { "USER" })
+	@Test
+	public void testFindAllQueryPermittedQueryContainsPermitted()
+	{
+		when(delegateRepository.getQueryOperators()).thenReturn(EnumSet.of(EQUALS, OR, PERMITTED));
+
+		QueryImpl<Entity> query = new QueryImpl<>();
+		query.eq("attr", "value").or();
+		query.addRule(new QueryRule(PERMITTED,
+				RowLevelSecurityFilter.create("entity-entityTypeId", USERNAME, emptySet(), 2)));
+		Entity entity = getEntityMock();
+		when(delegateRepository.findAll(ArgumentMatchers.<Query<Entity>>any())).thenAnswer(
+				invocation -> Stream.of(entity));
+		when(userPermissionEvaluator.hasPermission(new EntityIdentity(entity), READ)).thenReturn(false);
+		assertEquals(rowLevelSecurityRepositoryDecorator.findAll(query).collect(toList()), emptyList());
+		verifyZeroInteractions(mutableAclClassService);
+	}
+
+	@WithMockUser(username = USERNAME, roles = { "SU" })
+	@Test
+	public void testFindAllQueryPermittedQuerySuperuser()
+	{
+		when(delegateRepository.getQueryOperators()).thenReturn(EnumSet.of(EQUALS, PERMITTED));
+		Query<Entity> query = new QueryImpl<>().eq("attr", "value");
+		Entity entity = mock(Entity.class);
+		when(delegateRepository.findAll(query)).thenReturn(Stream.of(entity));
+		assertEquals(rowLevelSecurityRepositoryDecorator.findAll(query).collect(toList()), singletonList(entity));
+	}
+
+	@Test
+	public void testCountQueryPermittedQueryNoAuthentication()
+	{
+		EntityType entityType = when(mock(EntityType.class).getId()).thenReturn("entityTypeId").getMock();
+		when(delegateRepository.getEntityType()).thenReturn(entityType);
+		when(delegateRepository.getQueryOperators()).thenReturn(EnumSet.of(PERMITTED));
+		when(mutableAclClassService.hasGrantingAclsOnly("entity-entityTypeId")).thenReturn(true);
+		when(permissionRegistry.getPermissions(READ)).thenReturn(ImmutableSet.of(PermissionSet.READ));
+
+		Query<Entity> permittedQuery = new QueryImpl<>(new QueryRule(PERMITTED,
+				RowLevelSecurityFilter.create("entity-entityTypeId", null, emptySet(), 2)));
+		when(delegateRepository.count(permittedQuery)).thenReturn(0L);
+		assertEquals(rowLevelSecurityRepositoryDecorator.count(new QueryImpl<>()), 0L);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	public void testFindAllStream()
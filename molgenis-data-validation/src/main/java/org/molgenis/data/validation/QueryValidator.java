@@ -105,6 +105,18 @@ public class QueryValidator
 				}
 				break;
 			}
+			case PERMITTED:
+			{
+				Object queryRuleValue = queryRule.getValue();
+				if (!(queryRuleValue instanceof RowLevelSecurityFilter))
+				{
+					throw new MolgenisValidationException(new ConstraintViolation(
+							format("Query rule with operator [%s] value is of type [%s] instead of [%s]", operator,
+									queryRuleValue != null ? queryRuleValue.getClass().getSimpleName() : null,
+									RowLevelSecurityFilter.class.getSimpleName())));
+				}
+				break;
+			}
 			case DIS_MAX:
 			case NESTED:
 			case SHOULD:
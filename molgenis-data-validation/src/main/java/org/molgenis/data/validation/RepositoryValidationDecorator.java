@@ -1,5 +1,8 @@
 package org.molgenis.data.validation;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.Streams;
 import org.molgenis.data.*;
 import org.molgenis.data.meta.model.Attribute;
 import org.molgenis.data.meta.model.EntityType;
@@ -7,11 +10,11 @@ import org.molgenis.data.support.QueryImpl;
 import org.molgenis.util.HugeMap;
 import org.molgenis.util.HugeSet;
 
-import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
+import static com.google.common.collect.Iterators.partition;
 import static java.lang.String.format;
 import static java.util.Collections.*;
 import static java.util.Objects.requireNonNull;
@@ -20,8 +23,21 @@ import static java.util.stream.StreamSupport.stream;
 import static org.molgenis.data.RepositoryCapability.*;
 import static org.molgenis.data.support.EntityTypeUtils.*;
 
+/**
+ * Validates entities before they are added or updated. Entities that are streamed are validated in batches: unique
+ * attribute values and referenced entity ids are only looked up for the entities in the current batch instead of
+ * loading all existing values and ids up front.
+ */
 public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<Entity>
 {
+	private static final int VALIDATION_BATCH_SIZE = 1000;
+
+	/**
+	 * Maximum number of existing entity ids per referenced entity type remembered between batches, avoids looking up
+	 * frequently referenced entities (e.g. categorical values) again for each batch.
+	 */
+	private static final int MAX_CACHED_REF_ENTITY_IDS = 10000;
+
 	private enum ValidationMode
 	{
 		ADD, UPDATE
@@ -44,7 +60,7 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 	@Override
 	public void update(Entity entity)
 	{
-		try (ValidationResource validationResource = new ValidationResource())
+		try (ValidationResource validationResource = new ValidationResource(getEntityType().getId()))
 		{
 			validate(entity, validationResource, ValidationMode.UPDATE);
 		}
@@ -54,7 +70,7 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 	@Override
 	public void update(Stream<Entity> entities)
 	{
-		try (ValidationResource validationResource = new ValidationResource())
+		try (ValidationResource validationResource = new ValidationResource(getEntityType().getId()))
 		{
 			entities = validate(entities, validationResource, ValidationMode.UPDATE);
 			delegate().update(entities);
@@ -64,7 +80,7 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 	@Override
 	public void add(Entity entity)
 	{
-		try (ValidationResource validationResource = new ValidationResource())
+		try (ValidationResource validationResource = new ValidationResource(getEntityType().getId()))
 		{
 			validate(entity, validationResource, ValidationMode.ADD);
 		}
@@ -74,7 +90,7 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 	@Override
 	public Integer add(Stream<Entity> entities)
 	{
-		try (ValidationResource validationResource = new ValidationResource())
+		try (ValidationResource validationResource = new ValidationResource(getEntityType().getId()))
 		{
 			entities = validate(entities, validationResource, ValidationMode.ADD);
 			return delegate().add(entities);
@@ -123,17 +139,18 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 		ValidationProfile validationProfile = new ValidationProfile().invoke();
 
 		// add validation operation to stream
-		return entities.filter(entity ->
+		return Streams.stream(partition(entities.iterator(), VALIDATION_BATCH_SIZE)).flatMap(batch ->
 		{
-			validate(entity, validationResource, validationMode, validationProfile);
-
-			return true;
+			initBatchValidation(batch, validationResource);
+			batch.forEach(entity -> validate(entity, validationResource, validationMode, validationProfile));
+			return batch.stream();
 		});
 	}
 
 	private void validate(Entity entity, ValidationResource validationResource, ValidationMode validationMode)
 	{
 		initValidation(validationResource, validationMode);
+		initBatchValidation(singletonList(entity), validationResource);
 		validate(entity, validationResource, validationMode, new ValidationProfile().invoke());
 	}
 
@@ -215,32 +232,6 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 																						 .collect(toList());
 		}
 
-		// get referenced entity ids
-		if (!refAttrs.isEmpty())
-		{
-			Map<String, HugeSet<Object>> refEntitiesIds = new HashMap<>();
-			refAttrs.forEach(refAttr ->
-			{
-				EntityType refEntityType = refAttr.getRefEntity();
-				String refEntityName = refEntityType.getId();
-				HugeSet<Object> refEntityIds = refEntitiesIds.get(refEntityName);
-				if (refEntityIds == null)
-				{
-					refEntityIds = new HugeSet<>();
-					refEntitiesIds.put(refEntityName, refEntityIds);
-
-					Query<Entity> q = new QueryImpl<>().fetch(
-							new Fetch().field(refEntityType.getIdAttribute().getName()));
-					for (Iterator<Entity> it = dataService.findAll(refEntityName, q).iterator(); it.hasNext(); )
-					{
-						refEntityIds.add(it.next().getIdValue());
-					}
-				}
-			});
-
-			validationResource.setRefEntitiesIds(refEntitiesIds);
-		}
-
 		validationResource.setSelfReferencing(
 				refAttrs.stream().anyMatch(refAttr -> refAttr.getRefEntity().getId().equals(getEntityType().getId())));
 		validationResource.setRefAttrs(refAttrs);
@@ -261,38 +252,135 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 			List<Attribute> uniqueAttrs = stream(getEntityType().getAtomicAttributes().spliterator(), false).filter(
 					attr -> attr.isUnique() && attr.getExpression() == null).collect(toList());
 
-			// get existing values for each attributes
+			// values of entities validated in this operation, existing values are retrieved per batch
 			if (!uniqueAttrs.isEmpty())
 			{
 				Map<String, HugeMap<Object, Object>> uniqueAttrsValues = new HashMap<>();
+				uniqueAttrs.forEach(uniqueAttr -> uniqueAttrsValues.put(uniqueAttr.getName(), new HugeMap<>()));
+				validationResource.setUniqueAttrsValues(uniqueAttrsValues);
+			}
+
+			validationResource.setUniqueAttrs(uniqueAttrs);
+		}
+	}
+
+	/**
+	 * Retrieves the referenced entity ids and unique attribute values that already exist for a batch of entities.
+	 */
+	private void initBatchValidation(List<Entity> entities, ValidationResource validationResource)
+	{
+		initBatchReferenceValidation(entities, validationResource);
+		initBatchUniqueValidation(entities, validationResource);
+	}
+
+	private void initBatchReferenceValidation(List<Entity> entities, ValidationResource validationResource)
+	{
+		Map<String, Set<Object>> refEntitiesIds = new HashMap<>();
+		validationResource.getRefAttrs().forEach(refAttr ->
+		{
+			Set<Object> refEntityIds = refEntitiesIds.computeIfAbsent(refAttr.getRefEntity().getId(),
+					refEntityTypeId -> new HashSet<>());
+			entities.forEach(entity -> getRefEntities(entity, refAttr).forEach(
+					refEntity -> refEntityIds.add(refEntity.getIdValue())));
+		});
 
-				Fetch fetch = new Fetch();
-				uniqueAttrs.forEach(uniqueAttr ->
+		Map<String, Set<Object>> existingRefEntitiesIds = new HashMap<>();
+		refEntitiesIds.forEach((refEntityTypeId, refEntityIds) ->
+		{
+			Cache<Object, Boolean> cachedRefEntityIds = validationResource.getCachedRefEntityIds(refEntityTypeId);
+			Set<Object> existingRefEntityIds = new HashSet<>();
+			Set<Object> unknownRefEntityIds = new HashSet<>();
+			refEntityIds.forEach(refEntityId ->
+			{
+				if (cachedRefEntityIds.getIfPresent(refEntityId) != null)
 				{
-					uniqueAttrsValues.put(uniqueAttr.getName(), new HugeMap<>());
-					fetch.field(uniqueAttr.getName());
-				});
+					existingRefEntityIds.add(refEntityId);
+				}
+				else
+				{
+					unknownRefEntityIds.add(refEntityId);
+				}
+			});
 
-				Query<Entity> q = new QueryImpl<>().fetch(fetch);
-				delegate().findAll(q).forEach(entity -> uniqueAttrs.forEach(uniqueAttr ->
+			if (!unknownRefEntityIds.isEmpty())
+			{
+				Set<Object> foundRefEntityIds = dataService.getRepository(refEntityTypeId)
+														   .getExistingIDs(unknownRefEntityIds);
+				existingRefEntityIds.addAll(foundRefEntityIds);
+				foundRefEntityIds.forEach(foundRefEntityId -> cachedRefEntityIds.put(foundRefEntityId, Boolean.TRUE));
+			}
+			existingRefEntitiesIds.put(refEntityTypeId, existingRefEntityIds);
+		});
+		validationResource.setRefEntitiesIds(existingRefEntitiesIds);
+	}
+
+	private void initBatchUniqueValidation(List<Entity> entities, ValidationResource validationResource)
+	{
+		Map<String, Map<Object, Object>> existingUniqueAttrsValues = new HashMap<>();
+		validationResource.getUniqueAttrs().forEach(uniqueAttr ->
+		{
+			String uniqueAttrName = uniqueAttr.getName();
+			Set<Object> attrValues = new HashSet<>();
+			entities.forEach(entity ->
+			{
+				Object attrValue = getUniqueAttributeValue(entity, uniqueAttr);
+				if (attrValue != null)
+				{
+					attrValues.add(attrValue);
+				}
+			});
+
+			Map<Object, Object> existingAttrValues = new HashMap<>();
+			if (!attrValues.isEmpty())
+			{
+				Query<Entity> q = new QueryImpl<>().in(uniqueAttrName, attrValues)
+												   .fetch(new Fetch().field(getEntityType().getIdAttribute()
+																						   .getName())
+																	 .field(uniqueAttrName));
+				delegate().findAll(q).forEach(entity ->
 				{
-					HugeMap<Object, Object> uniqueAttrValues = uniqueAttrsValues.get(uniqueAttr.getName());
-					Object attrValue = entity.get(uniqueAttr.getName());
+					Object attrValue = getUniqueAttributeValue(entity, uniqueAttr);
 					if (attrValue != null)
 					{
-						if (isSingleReferenceType(uniqueAttr))
-						{
-							attrValue = ((Entity) attrValue).getIdValue();
-						}
-						uniqueAttrValues.put(attrValue, entity.getIdValue());
+						existingAttrValues.put(attrValue, entity.getIdValue());
 					}
-				}));
-
-				validationResource.setUniqueAttrsValues(uniqueAttrsValues);
+				});
 			}
+			existingUniqueAttrsValues.put(uniqueAttrName, existingAttrValues);
+		});
+		validationResource.setExistingUniqueAttrsValues(existingUniqueAttrsValues);
+	}
 
-			validationResource.setUniqueAttrs(uniqueAttrs);
+	private static Object getUniqueAttributeValue(Entity entity, Attribute uniqueAttr)
+	{
+		Object attrValue = entity.get(uniqueAttr.getName());
+		if (attrValue != null && isSingleReferenceType(uniqueAttr))
+		{
+			attrValue = ((Entity) attrValue).getIdValue();
 		}
+		return attrValue;
+	}
+
+	private static Iterable<Entity> getRefEntities(Entity entity, Attribute refAttr)
+	{
+		Iterable<Entity> refEntities;
+		if (isSingleReferenceType(refAttr))
+		{
+			Entity refEntity = entity.getEntity(refAttr.getName());
+			if (refEntity != null)
+			{
+				refEntities = singleton(refEntity);
+			}
+			else
+			{
+				refEntities = emptyList();
+			}
+		}
+		else
+		{
+			refEntities = entity.getEntities(refAttr.getName());
+		}
+		return refEntities;
 	}
 
 	private void initReadonlyValidation(ValidationResource validationResource)
@@ -341,17 +429,18 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 	{
 		validationResource.getUniqueAttrs().forEach(uniqueAttr ->
 		{
-			Object attrValue = entity.get(uniqueAttr.getName());
+			Object attrValue = getUniqueAttributeValue(entity, uniqueAttr);
 			if (attrValue != null)
 			{
-				if (isSingleReferenceType(uniqueAttr))
-				{
-					attrValue = ((Entity) attrValue).getIdValue();
-				}
-
 				HugeMap<Object, Object> uniqueAttrValues = validationResource.getUniqueAttrsValues()
 																			 .get(uniqueAttr.getName());
 				Object existingEntityId = uniqueAttrValues.get(attrValue);
+				if (existingEntityId == null)
+				{
+					existingEntityId = validationResource.getExistingUniqueAttrsValues()
+														 .get(uniqueAttr.getName())
+														 .get(attrValue);
+				}
 				if ((validationMode == ValidationMode.ADD && existingEntityId != null) || (
 						validationMode == ValidationMode.UPDATE && existingEntityId != null && !existingEntityId.equals(
 								entity.getIdValue())))
@@ -373,29 +462,13 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 	{
 		validationResource.getRefAttrs().forEach(refAttr ->
 		{
-			HugeSet<Object> refEntityIds = validationResource.getRefEntitiesIds().get(refAttr.getRefEntity().getId());
+			String refEntityTypeId = refAttr.getRefEntity().getId();
+			Set<Object> refEntityIds = validationResource.getRefEntitiesIds().get(refEntityTypeId);
 
-			Iterable<Entity> refEntities;
-			if (isSingleReferenceType(refAttr))
+			for (Entity refEntity : getRefEntities(entity, refAttr))
 			{
-				Entity refEntity = entity.getEntity(refAttr.getName());
-				if (refEntity != null)
-				{
-					refEntities = singleton(refEntity);
-				}
-				else
-				{
-					refEntities = emptyList();
-				}
-			}
-			else
-			{
-				refEntities = entity.getEntities(refAttr.getName());
-			}
-
-			for (Entity refEntity : refEntities)
-			{
-				if (!refEntityIds.contains(refEntity.getIdValue()))
+				if (!refEntityIds.contains(refEntity.getIdValue()) && !validationResource.isValidatedEntityId(
+						refEntityTypeId, refEntity.getIdValue()))
 				{
 					boolean selfReference = entity.getEntityType().getId().equals(refAttr.getRefEntity().getId());
 					if (!(selfReference && entity.getIdValue().equals(refEntity.getIdValue())))
@@ -413,7 +486,7 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 			// only do if self reference
 			if (validationResource.isSelfReferencing())
 			{
-				validationResource.addRefEntityId(getName(), entity.getIdValue());
+				validationResource.addValidatedEntityId(entity.getIdValue());
 			}
 		});
 	}
@@ -470,16 +543,22 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 		private AtomicInteger rowNr;
 		private List<Attribute> requiredValueAttrs;
 		private List<Attribute> refAttrs;
-		private Map<String, HugeSet<Object>> refEntitiesIds;
+		private Map<String, Set<Object>> refEntitiesIds;
+		private final Map<String, Cache<Object, Boolean>> cachedRefEntitiesIds;
+		private final String entityTypeId;
+		private HugeSet<Object> validatedEntityIds;
 		private List<Attribute> uniqueAttrs;
 		private Map<String, HugeMap<Object, Object>> uniqueAttrsValues;
+		private Map<String, Map<Object, Object>> existingUniqueAttrsValues;
 		private List<Attribute> readonlyAttrs;
 		private boolean selfReferencing;
 		private Set<ConstraintViolation> violations;
 
-		ValidationResource()
+		ValidationResource(String entityTypeId)
 		{
+			this.entityTypeId = requireNonNull(entityTypeId);
 			rowNr = new AtomicInteger();
+			cachedRefEntitiesIds = new HashMap<>();
 		}
 
 		public int getRow()
@@ -504,7 +583,7 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 
 		List<Attribute> getRefAttrs()
 		{
-			return unmodifiableList(refAttrs);
+			return refAttrs != null ? unmodifiableList(refAttrs) : emptyList();
 		}
 
 		void setRefAttrs(List<Attribute> refAttrs)
@@ -512,24 +591,44 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 			this.refAttrs = refAttrs;
 		}
 
-		Map<String, HugeSet<Object>> getRefEntitiesIds()
+		/**
+		 * Returns the existing referenced entity ids of the current batch per referenced entity type.
+		 */
+		Map<String, Set<Object>> getRefEntitiesIds()
 		{
 			return refEntitiesIds != null ? unmodifiableMap(refEntitiesIds) : emptyMap();
 		}
 
-		void setRefEntitiesIds(Map<String, HugeSet<Object>> refEntitiesIds)
+		void setRefEntitiesIds(Map<String, Set<Object>> refEntitiesIds)
 		{
 			this.refEntitiesIds = refEntitiesIds;
 		}
 
-		void addRefEntityId(String name, Object idValue)
+		/**
+		 * Returns a size-bounded cache of existing referenced entity ids, retained between batches.
+		 */
+		Cache<Object, Boolean> getCachedRefEntityIds(String refEntityTypeId)
+		{
+			return cachedRefEntitiesIds.computeIfAbsent(refEntityTypeId,
+					id -> Caffeine.newBuilder().maximumSize(MAX_CACHED_REF_ENTITY_IDS).build());
+		}
+
+		void addValidatedEntityId(Object idValue)
 		{
-			HugeSet<Object> refEntityIds = refEntitiesIds.get(name);
-			// only add entity id if this validation run requires entity
-			if (refEntityIds != null)
+			if (validatedEntityIds == null)
 			{
-				refEntityIds.add(idValue);
+				validatedEntityIds = new HugeSet<>();
 			}
+			validatedEntityIds.add(idValue);
+		}
+
+		/**
+		 * Returns whether an entity of a self-referencing entity type was validated earlier in this operation.
+		 */
+		boolean isValidatedEntityId(String refEntityTypeId, Object idValue)
+		{
+			return validatedEntityIds != null && entityTypeId.equals(refEntityTypeId) && validatedEntityIds.contains(
+					idValue);
 		}
 
 		List<Attribute> getUniqueAttrs()
@@ -552,6 +651,19 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 			this.uniqueAttrsValues = uniqueAttrsValues;
 		}
 
+		/**
+		 * Returns the existing unique attribute values of the current batch per unique attribute.
+		 */
+		Map<String, Map<Object, Object>> getExistingUniqueAttrsValues()
+		{
+			return existingUniqueAttrsValues != null ? unmodifiableMap(existingUniqueAttrsValues) : emptyMap();
+		}
+
+		void setExistingUniqueAttrsValues(Map<String, Map<Object, Object>> existingUniqueAttrsValues)
+		{
+			this.existingUniqueAttrsValues = existingUniqueAttrsValues;
+		}
+
 		List<Attribute> getReadonlyAttrs()
 		{
 			return readonlyAttrs != null ? unmodifiableList(readonlyAttrs) : emptyList();
@@ -594,33 +706,13 @@ public class RepositoryValidationDecorator extends AbstractRepositoryDecorator<E
 		@Override
 		public void close()
 		{
-			if (refEntitiesIds != null)
+			if (validatedEntityIds != null)
 			{
-				for (HugeSet<Object> refEntityIds : refEntitiesIds.values())
-				{
-					try
-					{
-						refEntityIds.close();
-					}
-					catch (IOException e)
-					{
-						throw new RuntimeException(e);
-					}
-				}
+				validatedEntityIds.close();
 			}
 			if (uniqueAttrsValues != null)
 			{
-				for (HugeMap<Object, Object> uniqueAttrValues : uniqueAttrsValues.values())
-				{
-					try
-					{
-						uniqueAttrValues.close();
-					}
-					catch (IOException e)
-					{
-						throw new RuntimeException(e);
-					}
-				}
+				uniqueAttrsValues.values().forEach(HugeMap::close);
 			}
 		}
 	}
@@ -1,6 +1,8 @@
 package org.molgenis.data.validation;
 
 import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.stubbing.Answer;
 import org.molgenis.data.*;
 import org.molgenis.data.meta.MetaDataService;
 import org.molgenis.data.meta.model.Attribute;
@@ -18,6 +20,7 @@ import java.util.stream.Stream;
 
 import static java.util.Collections.*;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static org.mockito.Mockito.*;
 import static org.molgenis.data.meta.AttributeType.*;
 import static org.testng.Assert.assertEquals;
@@ -163,17 +166,13 @@ public class RepositoryValidationDecoratorTest
 		delegateRepository = mock(Repository.class);
 		when(delegateRepository.getEntityType()).thenReturn(entityType);
 		when(delegateRepository.getName()).thenReturn(entityTypeId);
-		when(delegateRepository.findAll(
-				new QueryImpl<>().fetch(new Fetch().field(attrUniqueStringName).field(attrUniqueXrefName)))).thenReturn(
-				Stream.empty());
 		refRepo = mock(Repository.class);
 		when(refRepo.getEntityType()).thenReturn(refEntityType);
 
 		dataService = mock(DataService.class);
 		when(dataService.getRepository(entityTypeId)).thenReturn(delegateRepository);
 		when(dataService.getRepository(refEntityName)).thenReturn(refRepo);
-		when(dataService.findAll(refEntityName, new QueryImpl<>().fetch(new Fetch().field(refAttrIdName)))).thenReturn(
-				Stream.of(refEntity0, refEntity1));
+		when(refRepo.getExistingIDs(any())).thenAnswer(existingIDs(refEntity0, refEntity1));
 
 		metaDataService = mock(MetaDataService.class);
 		when(dataService.getMeta()).thenReturn(metaDataService);
@@ -474,8 +473,7 @@ public class RepositoryValidationDecoratorTest
 		when(entity0.get(attrUniqueXrefName)).thenReturn(refEntity0);
 
 		// actual tests
-		when(dataService.findAll(entityTypeId, new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entity0));
+		when(delegateRepository.getExistingIDs(any())).thenAnswer(existingIDs(entity0));
 		repositoryValidationDecorator.add(entity0);
 
 		verify(delegateRepository, times(1)).add(entity0);
@@ -630,8 +628,7 @@ public class RepositoryValidationDecoratorTest
 		when(entityInBackend0.get(attrUniqueStringName)).thenReturn("unique0");
 		when(entityInBackend0.get(attrUniqueXrefName)).thenReturn(refEntity0);
 
-		when(delegateRepository.findAll(new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entityInBackend0));
+		when(delegateRepository.findAll(ArgumentMatchers.<Query<Entity>>any())).thenAnswer(invocation -> Stream.of(entityInBackend0));
 
 		// entities
 		Entity entity0 = mock(Entity.class);
@@ -691,8 +688,7 @@ public class RepositoryValidationDecoratorTest
 		when(entityInBackend0.get(attrUniqueStringName)).thenReturn("unique0");
 		when(entityInBackend0.get(attrUniqueXrefName)).thenReturn(refEntity0);
 
-		when(delegateRepository.findAll(new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entityInBackend0));
+		when(delegateRepository.findAll(ArgumentMatchers.<Query<Entity>>any())).thenAnswer(invocation -> Stream.of(entityInBackend0));
 
 		// entities
 		Entity entity0 = mock(Entity.class);
@@ -742,8 +738,7 @@ public class RepositoryValidationDecoratorTest
 		when(entityInBackend0.get(attrUniqueStringName)).thenReturn("unique0");
 		when(entityInBackend0.get(attrUniqueXrefName)).thenReturn(refEntity0);
 
-		when(delegateRepository.findAll(new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entityInBackend0));
+		when(delegateRepository.findAll(ArgumentMatchers.<Query<Entity>>any())).thenAnswer(invocation -> Stream.of(entityInBackend0));
 
 		// entities
 		Entity entity0 = mock(Entity.class);
@@ -815,6 +810,40 @@ public class RepositoryValidationDecoratorTest
 		verify(entityAttributesValidator, times(1)).validate(entity0, entityType);
 	}
 
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Test
+	public void addStreamLooksUpReferencedIdsOnce()
+	{
+		// entities
+		Entity entity0 = mock(Entity.class);
+		when(entity0.getEntityType()).thenReturn(entityType);
+
+		when(entity0.getIdValue()).thenReturn("id0");
+		when(entity0.getEntity(attrXrefName)).thenReturn(refEntity0);
+		when(entity0.getEntity(attrNillableXrefName)).thenReturn(null);
+		when(entity0.getEntities(attrMrefName)).thenReturn(Arrays.asList(refEntity0));
+		when(entity0.getEntities(attrNillableMrefName)).thenReturn(emptyList());
+		when(entity0.getString(attrUniqueStringName)).thenReturn("unique0");
+		when(entity0.getEntity(attrUniqueXrefName)).thenReturn(refEntity0);
+
+		when(entity0.get(attrIdName)).thenReturn("id0");
+		when(entity0.get(attrXrefName)).thenReturn(refEntity0);
+		when(entity0.get(attrNillableXrefName)).thenReturn(null);
+		when(entity0.get(attrMrefName)).thenReturn(Arrays.asList(refEntity0));
+		when(entity0.get(attrNillableMrefName)).thenReturn(emptyList());
+		when(entity0.get(attrUniqueStringName)).thenReturn("unique0");
+		when(entity0.get(attrUniqueXrefName)).thenReturn(refEntity0);
+
+		// actual tests
+		repositoryValidationDecorator.add(Stream.of(entity0));
+		ArgumentCaptor<Stream<Entity>> captor = ArgumentCaptor.forClass(Stream.class);
+		verify(delegateRepository, times(1)).add(captor.capture());
+		captor.getValue().collect(toList()); // process stream to enable validation
+
+		verify(refRepo, times(1)).getExistingIDs(singleton("idref0"));
+		verify(delegateRepository, times(2)).findAll(ArgumentMatchers.<Query<Entity>>any());
+	}
+
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Test
 	public void addStreamEntityAttributesValidationError()
@@ -1035,8 +1064,7 @@ public class RepositoryValidationDecoratorTest
 
 		// actual tests
 		List<Entity> entities = Arrays.asList(entity0);
-		when(dataService.findAll(entityTypeId, new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entity0));
+		when(delegateRepository.getExistingIDs(any())).thenAnswer(existingIDs(entity0));
 		repositoryValidationDecorator.add(entities.stream());
 
 		ArgumentCaptor<Stream<Entity>> captor = ArgumentCaptor.forClass(Stream.class);
@@ -1094,8 +1122,7 @@ public class RepositoryValidationDecoratorTest
 
 		// actual tests
 		List<Entity> entities = Arrays.asList(entity0, entity1);
-		when(dataService.findAll(entityTypeId, new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.empty());
+		when(delegateRepository.getExistingIDs(any())).thenAnswer(existingIDs());
 		repositoryValidationDecorator.add(entities.stream());
 
 		ArgumentCaptor<Stream<Entity>> captor = ArgumentCaptor.forClass(Stream.class);
@@ -1339,8 +1366,7 @@ public class RepositoryValidationDecoratorTest
 		when(entityInBackend0.get(attrUniqueStringName)).thenReturn("unique0");
 		when(entityInBackend0.get(attrUniqueXrefName)).thenReturn(refEntity0);
 
-		when(delegateRepository.findAll(new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entityInBackend0));
+		when(delegateRepository.findAll(ArgumentMatchers.<Query<Entity>>any())).thenAnswer(invocation -> Stream.of(entityInBackend0));
 
 		// entities
 		Entity entity0 = mock(Entity.class);
@@ -1408,8 +1434,7 @@ public class RepositoryValidationDecoratorTest
 		when(entityInBackend0.get(attrUniqueStringName)).thenReturn("unique0");
 		when(entityInBackend0.get(attrUniqueXrefName)).thenReturn(refEntity0);
 
-		when(delegateRepository.findAll(new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entityInBackend0));
+		when(delegateRepository.findAll(ArgumentMatchers.<Query<Entity>>any())).thenAnswer(invocation -> Stream.of(entityInBackend0));
 
 		// entities
 		Entity entity0 = mock(Entity.class);
@@ -1531,8 +1556,7 @@ public class RepositoryValidationDecoratorTest
 		when(entityInBackend0.get(attrUniqueStringName)).thenReturn("unique0");
 		when(entityInBackend0.get(attrUniqueXrefName)).thenReturn(refEntity0);
 
-		when(delegateRepository.findAll(new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entityInBackend0));
+		when(delegateRepository.findAll(ArgumentMatchers.<Query<Entity>>any())).thenAnswer(invocation -> Stream.of(entityInBackend0));
 
 		// entities
 		Entity entity0 = mock(Entity.class);
@@ -1771,8 +1795,7 @@ public class RepositoryValidationDecoratorTest
 		when(entity0.get(attrUniqueXrefName)).thenReturn(refEntity0);
 
 		// actual tests
-		when(dataService.findAll(entityTypeId, new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entity0));
+		when(delegateRepository.getExistingIDs(any())).thenAnswer(existingIDs(entity0));
 		repositoryValidationDecorator.update(entity0);
 		verify(delegateRepository, times(1)).update(entity0);
 		verify(entityAttributesValidator, times(1)).validate(entity0, entityType);
@@ -1926,8 +1949,7 @@ public class RepositoryValidationDecoratorTest
 		when(entityInBackend0.get(attrUniqueStringName)).thenReturn("unique0");
 		when(entityInBackend0.get(attrUniqueXrefName)).thenReturn(refEntity0);
 
-		when(delegateRepository.findAll(new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entityInBackend0));
+		when(delegateRepository.findAll(ArgumentMatchers.<Query<Entity>>any())).thenAnswer(invocation -> Stream.of(entityInBackend0));
 
 		// entities
 		Entity entity0 = mock(Entity.class);
@@ -1987,8 +2009,7 @@ public class RepositoryValidationDecoratorTest
 		when(entityInBackend0.get(attrUniqueStringName)).thenReturn("unique0");
 		when(entityInBackend0.get(attrUniqueXrefName)).thenReturn(refEntity0);
 
-		when(delegateRepository.findAll(new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entityInBackend0));
+		when(delegateRepository.findAll(ArgumentMatchers.<Query<Entity>>any())).thenAnswer(invocation -> Stream.of(entityInBackend0));
 
 		// entities
 		Entity entity0 = mock(Entity.class);
@@ -2038,8 +2059,7 @@ public class RepositoryValidationDecoratorTest
 		when(entityInBackend0.get(attrUniqueStringName)).thenReturn("unique0");
 		when(entityInBackend0.get(attrUniqueXrefName)).thenReturn(refEntity0);
 
-		when(delegateRepository.findAll(new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entityInBackend0));
+		when(delegateRepository.findAll(ArgumentMatchers.<Query<Entity>>any())).thenAnswer(invocation -> Stream.of(entityInBackend0));
 
 		// entities
 		Entity entity0 = mock(Entity.class);
@@ -2748,8 +2768,7 @@ public class RepositoryValidationDecoratorTest
 
 		// actual tests
 		List<Entity> entities = Arrays.asList(entity0);
-		when(dataService.findAll(entityTypeId, new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entity0));
+		when(delegateRepository.getExistingIDs(any())).thenAnswer(existingIDs(entity0));
 		repositoryValidationDecorator.update(entities.stream());
 
 		ArgumentCaptor<Stream<Entity>> captor = ArgumentCaptor.forClass(Stream.class);
@@ -2807,8 +2826,7 @@ public class RepositoryValidationDecoratorTest
 
 		// actual tests
 		List<Entity> entities = Arrays.asList(entity0, entity1);
-		when(dataService.findAll(entityTypeId, new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entity0, entity1));
+		when(delegateRepository.getExistingIDs(any())).thenAnswer(existingIDs(entity0, entity1));
 		repositoryValidationDecorator.update(entities.stream());
 
 		ArgumentCaptor<Stream<Entity>> captor = ArgumentCaptor.forClass(Stream.class);
@@ -3052,8 +3070,7 @@ public class RepositoryValidationDecoratorTest
 		when(entityInBackend0.get(attrUniqueStringName)).thenReturn("unique0");
 		when(entityInBackend0.get(attrUniqueXrefName)).thenReturn(refEntity0);
 
-		when(delegateRepository.findAll(new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entityInBackend0));
+		when(delegateRepository.findAll(ArgumentMatchers.<Query<Entity>>any())).thenAnswer(invocation -> Stream.of(entityInBackend0));
 
 		// entities
 		Entity entity0 = mock(Entity.class);
@@ -3121,8 +3138,7 @@ public class RepositoryValidationDecoratorTest
 		when(entityInBackend0.get(attrUniqueStringName)).thenReturn("unique0");
 		when(entityInBackend0.get(attrUniqueXrefName)).thenReturn(refEntity0);
 
-		when(delegateRepository.findAll(new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entityInBackend0));
+		when(delegateRepository.findAll(ArgumentMatchers.<Query<Entity>>any())).thenAnswer(invocation -> Stream.of(entityInBackend0));
 
 		// entities
 		Entity entity0 = mock(Entity.class);
@@ -3244,8 +3260,7 @@ public class RepositoryValidationDecoratorTest
 		when(entityInBackend0.get(attrUniqueStringName)).thenReturn("unique0");
 		when(entityInBackend0.get(attrUniqueXrefName)).thenReturn(refEntity0);
 
-		when(delegateRepository.findAll(new QueryImpl<>().fetch(new Fetch().field(attrIdName)))).thenReturn(
-				Stream.of(entityInBackend0));
+		when(delegateRepository.findAll(ArgumentMatchers.<Query<Entity>>any())).thenAnswer(invocation -> Stream.of(entityInBackend0));
 
 		// entities
 		Entity entity0 = mock(Entity.class);
@@ -3849,4 +3864,13 @@ public class RepositoryValidationDecoratorTest
 												  .validateEntitiesNotReferencedById(entityIdStream, entityType);
 		repositoryValidationDecorator.deleteAll(entityIdStream);
 	}
+
+	private static Answer<Set<Object>> existingIDs(Entity... entities)
+	{
+		return invocation ->
+		{
+			Set<Object> ids = invocation.getArgument(0);
+			return Arrays.stream(entities).map(Entity::getIdValue).filter(ids::contains).collect(toSet());
+		};
+	}
 }
@@ -159,7 +159,13 @@ public class QueryRule
 		/**
 		 * Fuzzy match operator
 		 */
-		FUZZY_MATCH_NGRAM("FUZZY_MATCH_NGRAM");
+		FUZZY_MATCH_NGRAM("FUZZY_MATCH_NGRAM"),
+
+		/**
+		 * Row-level security: matches the entities on which the permission described by the
+		 * {@link RowLevelSecurityFilter} 'value' has been granted. The parameter 'field' is omitted.
+		 */
+		PERMITTED("PERMITTED");
 
 		private String label;
 
@@ -213,7 +219,7 @@ public class QueryRule
 	@SuppressWarnings("unchecked")
 	public QueryRule(Operator operator, Object value)
 	{
-		if (operator == Operator.SEARCH)
+		if (operator == Operator.SEARCH || operator == Operator.PERMITTED)
 		{
 			this.operator = operator;
 			setValue(value);
@@ -0,0 +1,44 @@
+package org.molgenis.data;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+
+/**
+ * Value of a {@link QueryRule.Operator#PERMITTED} query rule. Describes the access control entries that grant a
+ * permission on an entity: entries of the access control list class of the entity type, granted to one of the
+ * security identities of the current user, of which the permission mask overlaps with the given mask.
+ */
+@AutoValue
+@SuppressWarnings("squid:S1610") // Abstract classes without fields should be converted to interfaces
+public abstract class RowLevelSecurityFilter
+{
+	/**
+	 * @return access control list class of the entity type
+	 */
+	public abstract String getAclClass();
+
+	/**
+	 * @return principal security identity (e.g. username) or null if the current user is not authenticated
+	 */
+	@Nullable
+	public abstract String getPrincipal();
+
+	/**
+	 * @return granted authority security identities (e.g. roles)
+	 */
+	public abstract ImmutableSet<String> getAuthorities();
+
+	/**
+	 * @return cumulative permission mask
+	 */
+	public abstract int getMask();
+
+	public static RowLevelSecurityFilter create(String aclClass, @Nullable String principal, Set<String> authorities,
+			int mask)
+	{
+		return new AutoValue_RowLevelSecurityFilter(aclClass, principal, ImmutableSet.copyOf(authorities), mask);
+	}
+}
@@ -80,6 +80,37 @@ public class EntityTypeDependencyResolver
 		}
 	}
 
+	/**
+	 * Groups {@link EntityType} collection in levels based on their dependencies. Entity types in the first level do
+	 * not depend on other entity types in the collection, entity types in the next levels only depend on entity types
+	 * in previous levels.
+	 *
+	 * @param entityTypes entity meta data collection
+	 * @return entity meta data levels, entity meta data within a level are sorted based on dependencies
+	 */
+	public List<List<EntityType>> resolveLevels(Collection<EntityType> entityTypes)
+	{
+		Map<String, Integer> levelsPerEntityTypeId = new HashMap<>();
+		List<List<EntityType>> levels = new ArrayList<>();
+		for (EntityType entityType : resolve(entityTypes))
+		{
+			int level = getDependencies().apply(new EntityTypeNode(entityType))
+										 .stream()
+										 .map(node -> levelsPerEntityTypeId.get(node.getEntityType().getId()))
+										 .filter(Objects::nonNull)
+										 .mapToInt(dependencyLevel -> dependencyLevel + 1)
+										 .max()
+										 .orElse(0);
+			levelsPerEntityTypeId.put(entityType.getId(), level);
+			if (level == levels.size())
+			{
+				levels.add(new ArrayList<>());
+			}
+			levels.get(level).add(entityType);
+		}
+		return levels;
+	}
+
 	/**
 	 * Returns dependencies of the given entity meta data.
 	 *
@@ -46,7 +46,7 @@ public abstract class AbstractRepository implements Repository<Entity>
 		}
 		else
 		{
-			return EnumSet.allOf(Operator.class);
+			return EnumSet.complementOf(EnumSet.of(Operator.PERMITTED));
 		}
 	}
 
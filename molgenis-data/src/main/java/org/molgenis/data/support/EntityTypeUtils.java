@@ -334,6 +334,12 @@ public class EntityTypeUtils
 			{
 				fetch.field(attr.getName(), createFetchForReindexing(refEntityType, indexingDepth - 1));
 			}
+			else if (refEntityType != null)
+			{
+				// documents contain the label of references beyond the indexing depth
+				fetch.field(attr.getName(), new Fetch().field(refEntityType.getIdAttribute().getName())
+													   .field(refEntityType.getLabelAttribute().getName()));
+			}
 			else
 			{
 				fetch.field(attr.getName());
@@ -0,0 +1,30 @@
+package org.molgenis.data.transaction;
+
+import org.molgenis.data.EntityKey;
+
+import java.util.Set;
+
+/**
+ * Interface that can be implemented by classes that want to be notified of transactions committed by other MOLGENIS
+ * instances sharing the same database, e.g. to evict cached data.
+ * <p>
+ * A RemoteTransactionListener is bootstrapped by the component that receives the remote commits.
+ */
+public interface RemoteTransactionListener
+{
+	/**
+	 * Called after one or more transactions were committed by other MOLGENIS instances.
+	 *
+	 * @param dirtyEntities             entity instances dirtied by the transactions
+	 * @param entirelyDirtyRepositories ids of the entity types whose repositories were entirely dirtied
+	 * @param dirtyRepositories         ids of the entity types whose repositories were partially or entirely dirtied
+	 */
+	void afterRemoteCommit(Set<EntityKey> dirtyEntities, Set<String> entirelyDirtyRepositories,
+			Set<String> dirtyRepositories);
+
+	/**
+	 * Called when commits of other MOLGENIS instances might have been missed, e.g. after the connection used to
+	 * receive them was lost.
+	 */
+	void remoteCommitsMissed();
+}
@@ -10,6 +10,7 @@ import org.testng.annotations.Test;
 import java.util.List;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newHashSet;
 import static java.util.Collections.*;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -102,6 +103,23 @@ public class EntityTypeDependencyResolverTest
 				newArrayList(entityType0, entityType2));
 	}
 
+	@Test
+	public void resolveLevels()
+	{
+		when(entityType1.getExtends()).thenReturn(entityType0);
+
+		when(attr0.getRefEntity()).thenReturn(entityType0); // self-reference
+		when(attr2.getRefEntity()).thenReturn(entityType1);
+		when(attr3.getRefEntity()).thenReturn(entityType0);
+
+		List<List<EntityType>> levels = entityTypeDependencyResolver.resolveLevels(
+				newArrayList(entityType2, entityType3, entityType1, entityType0));
+		assertEquals(levels.size(), 3);
+		assertEquals(levels.get(0), singletonList(entityType0));
+		assertEquals(newHashSet(levels.get(1)), newHashSet(entityType1, entityType3));
+		assertEquals(levels.get(2), singletonList(entityType2));
+	}
+
 	@Test()
 	public void resolveDependenciesExtends3Level()
 	{
@@ -153,7 +153,8 @@ public class EntityTypeUtilsTest
 	{
 		EntityType entityType = createMockEntityType();
 		when(entityType.getIndexingDepth()).thenReturn(0);
-		Fetch expectedFetch = new Fetch().field("MyEntityTypeAttr").field("MyEntityTypeRefAttr");
+		Fetch expectedFetch = new Fetch().field("MyEntityTypeAttr")
+										 .field("MyEntityTypeRefAttr", new Fetch().field("MyRefEntityTypeAttr"));
 		assertEquals(EntityTypeUtils.createFetchForReindexing(entityType), expectedFetch);
 	}
 
@@ -164,7 +165,9 @@ public class EntityTypeUtilsTest
 		when(entityType.getIndexingDepth()).thenReturn(1);
 		Fetch expectedFetch = new Fetch().field("MyEntityTypeAttr")
 										 .field("MyEntityTypeRefAttr", new Fetch().field("MyRefEntityTypeAttr")
-																				  .field("MyRefEntityTypeRefAttr"));
+																				  .field("MyRefEntityTypeRefAttr",
+																						  new Fetch().field(
+																								  "MyRefRefEntityTypeAttr")));
 		assertEquals(EntityTypeUtils.createFetchForReindexing(entityType), expectedFetch);
 	}
 
@@ -178,7 +181,9 @@ public class EntityTypeUtilsTest
 																				  .field("MyRefEntityTypeRefAttr",
 																						  new Fetch().field(
 																								  "MyRefRefEntityTypeAttr")
-																									 .field("MyRefRefEntityTypeRefAttr")));
+																									 .field("MyRefRefEntityTypeRefAttr",
+																											 new Fetch().field(
+																													 "MyRefRefEntityTypeAttr"))));
 		assertEquals(EntityTypeUtils.createFetchForReindexing(entityType), expectedFetch);
 	}
 
@@ -191,6 +196,8 @@ public class EntityTypeUtilsTest
 				"MyRefRefEntityTypeRefAttr").getMock();
 		when(refRefEntityTypeRefAttr.getRefEntity()).thenReturn(refRefEntityType);
 		when(refRefEntityType.getAtomicAttributes()).thenReturn(asList(refRefEntityTypeAttr, refRefEntityTypeRefAttr));
+		when(refRefEntityType.getIdAttribute()).thenReturn(refRefEntityTypeAttr);
+		when(refRefEntityType.getLabelAttribute()).thenReturn(refRefEntityTypeAttr);
 
 		EntityType refEntityType = mock(EntityType.class);
 		Attribute refEntityTypeAttr = when(mock(Attribute.class).getName()).thenReturn("MyRefEntityTypeAttr").getMock();
@@ -198,6 +205,8 @@ public class EntityTypeUtilsTest
 																			  .getMock();
 		when(refEntityTypeRefAttr.getRefEntity()).thenReturn(refRefEntityType);
 		when(refEntityType.getAtomicAttributes()).thenReturn(asList(refEntityTypeAttr, refEntityTypeRefAttr));
+		when(refEntityType.getIdAttribute()).thenReturn(refEntityTypeAttr);
+		when(refEntityType.getLabelAttribute()).thenReturn(refEntityTypeAttr);
 
 		EntityType entityType = mock(EntityType.class);
 		Attribute attr = when(mock(Attribute.class).getName()).thenReturn("MyEntityTypeAttr").getMock();
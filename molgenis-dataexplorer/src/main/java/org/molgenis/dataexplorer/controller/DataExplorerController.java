@@ -43,10 +43,13 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 import static org.molgenis.data.util.EntityUtils.getTypedValue;
 import static org.molgenis.dataexplorer.controller.DataExplorerController.URI;
 import static org.molgenis.dataexplorer.controller.DataRequest.DownloadType.DOWNLOAD_TYPE_CSV;
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
 
 /**
  * Controller class for the data explorer.
@@ -299,8 +302,9 @@ public class DataExplorerController extends PluginController
 	}
 
 	@PostMapping("/download")
-	public void download(@RequestParam("dataRequest") String dataRequestStr, HttpServletResponse response)
-			throws IOException
+	public void download(@RequestParam("dataRequest") String dataRequestStr,
+			@RequestHeader(value = ACCEPT_ENCODING, required = false) String acceptEncoding,
+			HttpServletResponse response) throws IOException
 	{
 		DataExplorerDownloadHandler download = new DataExplorerDownloadHandler(dataService, attrMetaFactory);
 
@@ -321,12 +325,22 @@ public class DataExplorerController extends PluginController
 				response.addHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
 
 				outputStream = response.getOutputStream();
-				download.writeToCsv(dataRequest, outputStream, ',');
+				// the response is streamed while writing, compress it if possible since csv compresses very well
+				if (acceptEncoding != null && acceptEncoding.contains("gzip"))
+				{
+					response.addHeader(CONTENT_ENCODING, "gzip");
+					download.writeToCsv(dataRequest, new GZIPOutputStream(outputStream), ',');
+				}
+				else
+				{
+					download.writeToCsv(dataRequest, outputStream, ',');
+				}
 				break;
 			case DOWNLOAD_TYPE_XLSX:
 				response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
 				response.addHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
 
+				// xlsx is already a zip file, compressing the response is pointless
 				outputStream = response.getOutputStream();
 				download.writeToExcel(dataRequest, outputStream);
 				break;
@@ -1,8 +1,8 @@
 package org.molgenis.dataexplorer.download;
 
 import com.google.common.collect.Streams;
-import org.molgenis.data.DataService;
-import org.molgenis.data.MolgenisDataException;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.molgenis.data.*;
 import org.molgenis.data.csv.CsvWriter;
 import org.molgenis.data.excel.ExcelSheetWriter;
 import org.molgenis.data.excel.ExcelWriter;
@@ -19,15 +19,23 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import static com.google.common.collect.Sets.newHashSet;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
 
+/**
+ * Writes the entities of a data explorer download request to a CSV or XLSX output stream. Entities are streamed from the
+ * data service with a fetch that only describes the downloaded attributes, so that referenced entities are resolved in
+ * batches instead of one by one, and written while streaming, so downloads of any size are written in constant memory.
+ */
 public class DataExplorerDownloadHandler
 {
-	// Magic value: https://github.com/molgenis/molgenis/issues/6687
-	private static final long MAX_EXCEL_CELLS = 500000L;
+	/**
+	 * Maximum number of entities in a XLSX download, a XLSX sheet has at most 1048576 rows of which one is the header
+	 */
+	private static final long MAX_EXCEL_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1L;
 	private final DataService dataService;
 	private final AttributeFactory attrMetaFactory;
 
@@ -41,14 +49,14 @@ public class DataExplorerDownloadHandler
 	{
 		String entityTypeId = dataRequest.getEntityName();
 		List<Attribute> attributes = filterAttributes(dataRequest);
-		checkNumberOfCells(dataRequest, entityTypeId, attributes.size());
+		checkNumberOfRows(dataRequest, entityTypeId);
 		AttributeWriteMode attributeWriteMode = getAttributeWriteMode(dataRequest.getColNames());
 		try (ExcelWriter excelWriter = new ExcelWriter(outputStream, attrMetaFactory, FileFormat.XLSX);
 				ExcelSheetWriter excelSheetWriter = excelWriter.createWritable(entityTypeId, attributes,
-						attributeWriteMode))
+						attributeWriteMode); Stream<Entity> entities = findAll(dataRequest, attributes))
 		{
 			excelSheetWriter.setEntityWriteMode(getEntityWriteMode(dataRequest.getEntityValues()));
-			excelSheetWriter.add(dataService.findAll(entityTypeId, dataRequest.getQuery()));
+			excelSheetWriter.add(entities);
 		}
 	}
 
@@ -61,17 +69,60 @@ public class DataExplorerDownloadHandler
 					  .collect(toList());
 	}
 
-	private void checkNumberOfCells(DataRequest dataRequest, String entityTypeId, int cols)
+	private void checkNumberOfRows(DataRequest dataRequest, String entityTypeId)
 	{
 		long rows = dataService.count(entityTypeId, dataRequest.getQuery());
-		if (rows * cols >= MAX_EXCEL_CELLS)
+		if (rows > MAX_EXCEL_ROWS)
 		{
 			throw new MolgenisDataException(String.format(
-					"Total number of cells for this download exceeds the maximum of %s for .xlsx downloads, please use .csv instead",
-					MAX_EXCEL_CELLS));
+					"Total number of rows for this download exceeds the maximum of %s for .xlsx downloads, please use .csv instead",
+					MAX_EXCEL_ROWS));
 		}
 	}
 
+	/**
+	 * Returns the entities to download. The query fetch is restricted to the downloaded attributes and the id and label
+	 * attributes of referenced entities, so references are resolved in batches.
+	 */
+	private Stream<Entity> findAll(DataRequest dataRequest, List<Attribute> attributes)
+	{
+		Query<Entity> query = dataRequest.getQuery();
+		if (query.getFetch() == null)
+		{
+			query.fetch(createFetch(dataService.getEntityType(dataRequest.getEntityName()), attributes));
+		}
+		return dataService.findAll(dataRequest.getEntityName(), query);
+	}
+
+	private static Fetch createFetch(EntityType entityType, List<Attribute> attributes)
+	{
+		Fetch fetch = new Fetch();
+		Attribute idAttribute = entityType.getIdAttribute();
+		if (idAttribute != null)
+		{
+			fetch.field(idAttribute.getName());
+		}
+		for (Attribute attribute : attributes)
+		{
+			EntityType refEntityType = attribute.getRefEntity();
+			if (refEntityType != null)
+			{
+				Fetch refFetch = new Fetch().field(refEntityType.getIdAttribute().getName());
+				Attribute labelAttribute = refEntityType.getLabelAttribute();
+				if (labelAttribute != null)
+				{
+					refFetch.field(labelAttribute.getName());
+				}
+				fetch.field(attribute.getName(), refFetch);
+			}
+			else
+			{
+				fetch.field(attribute.getName());
+			}
+		}
+		return fetch;
+	}
+
 	public void writeToCsv(DataRequest request, OutputStream outputStream, char separator) throws IOException
 	{
 		writeToCsv(request, outputStream, separator, false);
@@ -80,18 +131,19 @@ public class DataExplorerDownloadHandler
 	public void writeToCsv(DataRequest dataRequest, OutputStream outputStream, char separator, boolean noQuotes)
 			throws IOException
 	{
-		try (CsvWriter csvWriter = new CsvWriter(outputStream, separator, noQuotes))
+		List<Attribute> attributes = filterAttributes(dataRequest);
+		try (CsvWriter csvWriter = new CsvWriter(outputStream, separator, noQuotes);
+				Stream<Entity> entities = findAll(dataRequest, attributes))
 		{
 			csvWriter.setEntityWriteMode(getEntityWriteMode(dataRequest.getEntityValues()));
-			String entityTypeId = dataRequest.getEntityName();
-			writeCsvHeaders(dataRequest, csvWriter);
-			csvWriter.add(dataService.findAll(entityTypeId, dataRequest.getQuery()));
+			writeCsvHeaders(dataRequest, attributes, csvWriter);
+			csvWriter.add(entities);
 		}
 	}
 
-	private void writeCsvHeaders(DataRequest dataRequest, CsvWriter csvWriter) throws IOException
+	private void writeCsvHeaders(DataRequest dataRequest, List<Attribute> attributes, CsvWriter csvWriter)
+			throws IOException
 	{
-		List<Attribute> attributes = filterAttributes(dataRequest);
 		switch (dataRequest.getColNames())
 		{
 			case ATTRIBUTE_LABELS:
@@ -10,6 +10,7 @@ import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.mockito.Mock;
 import org.molgenis.data.DataService;
 import org.molgenis.data.Entity;
+import org.molgenis.data.Fetch;
 import org.molgenis.data.MolgenisDataException;
 import org.molgenis.data.meta.model.Attribute;
 import org.molgenis.data.meta.model.AttributeFactory;
@@ -52,6 +53,14 @@ public class DataExplorerDownloadHandlerTest extends AbstractMockitoTest
 	@Mock
 	private Attribute attribute3;
 	@Mock
+	private Attribute idAttribute;
+	@Mock
+	private EntityType refEntityType;
+	@Mock
+	private Attribute refIdAttribute;
+	@Mock
+	private Attribute refLabelAttribute;
+	@Mock
 	private QueryImpl<Entity> query;
 	@Mock
 	private Entity entity1;
@@ -93,6 +102,13 @@ public class DataExplorerDownloadHandlerTest extends AbstractMockitoTest
 		dataRequest.setColNames(colNames);
 		dataRequest.setEntityValues(entityValues);
 
+		when(entityType.getIdAttribute()).thenReturn(idAttribute);
+		when(idAttribute.getName()).thenReturn("id");
+		when(attribute2.getRefEntity()).thenReturn(refEntityType);
+		when(refEntityType.getIdAttribute()).thenReturn(refIdAttribute);
+		when(refIdAttribute.getName()).thenReturn("refId");
+		when(refEntityType.getLabelAttribute()).thenReturn(refLabelAttribute);
+		when(refLabelAttribute.getName()).thenReturn("refLabel");
 		when(dataService.findAll(entityTypeId, query)).thenReturn(Stream.of(entity1, entity2));
 		doReturn("entity1attr1").when(entity1).get("attr1");
 		doReturn(refEntity1).when(entity1).get("attr2");
@@ -113,15 +129,19 @@ public class DataExplorerDownloadHandlerTest extends AbstractMockitoTest
 		File tmpFile = File.createTempFile("download", ".csv");
 		FileOutputStream fos = new FileOutputStream(tmpFile);
 		dataExplorerDownloadHandler.writeToCsv(dataRequest, fos, ',');
+		verify(query).fetch(new Fetch().field("id")
+									   .field("attr1")
+									   .field("attr2", new Fetch().field("refId").field("refLabel")));
 		assertEquals(readCsv(tmpFile), expected.get(entityTypeId), "entities should get exported");
 		assertTrue(tmpFile.delete());
+		verify(attribute1).getRefEntity();
 		verifyNoMoreInteractions(refEntity1, refEntity2, attribute1, attribute2);
 	}
 
-	@Test(expectedExceptions = MolgenisDataException.class, expectedExceptionsMessageRegExp = "Total number of cells for this download exceeds the maximum of 500000 for .xlsx downloads, please use .csv instead")
-	public void testWriteToExcelTooManyCells() throws Exception
+	@Test(expectedExceptions = MolgenisDataException.class, expectedExceptionsMessageRegExp = "Total number of rows for this download exceeds the maximum of 1048575 for .xlsx downloads, please use .csv instead")
+	public void testWriteToExcelTooManyRows() throws Exception
 	{
-		when(dataService.count("sys_set_thousandgenomes", query)).thenReturn(2500001L);
+		when(dataService.count("sys_set_thousandgenomes", query)).thenReturn(1048576L);
 		when(dataService.getEntityType("sys_set_thousandgenomes")).thenReturn(entityType);
 		when(entityType.getAtomicAttributes()).thenReturn(asList(attribute1, attribute2, attribute3));
 		when(attribute1.getName()).thenReturn("attr1");
@@ -184,6 +204,13 @@ public class DataExplorerDownloadHandlerTest extends AbstractMockitoTest
 		dataRequest.setColNames(colNames);
 		dataRequest.setEntityValues(entityValues);
 
+		when(entityType.getIdAttribute()).thenReturn(idAttribute);
+		when(idAttribute.getName()).thenReturn("id");
+		when(attribute2.getRefEntity()).thenReturn(refEntityType);
+		when(refEntityType.getIdAttribute()).thenReturn(refIdAttribute);
+		when(refIdAttribute.getName()).thenReturn("refId");
+		when(refEntityType.getLabelAttribute()).thenReturn(refLabelAttribute);
+		when(refLabelAttribute.getName()).thenReturn("refLabel");
 		when(dataService.findAll(entityTypeId, query)).thenReturn(Stream.of(entity1, entity2));
 		doReturn("entity1attr1").when(entity1).get("attr1");
 		doReturn(refEntity1).when(entity1).get("attr2");
@@ -204,8 +231,12 @@ public class DataExplorerDownloadHandlerTest extends AbstractMockitoTest
 		File tmpFile = File.createTempFile("download", ".xlsx");
 		FileOutputStream fos = new FileOutputStream(tmpFile);
 		dataExplorerDownloadHandler.writeToExcel(dataRequest, fos);
+		verify(query).fetch(new Fetch().field("id")
+									   .field("attr1")
+									   .field("attr2", new Fetch().field("refId").field("refLabel")));
 		assertEquals(readExcel(tmpFile), expected, "entities should get exported");
 		assertTrue(tmpFile.delete());
+		verify(attribute1).getRefEntity();
 		verifyNoMoreInteractions(refEntity1, refEntity2, attribute1, attribute2);
 	}
 
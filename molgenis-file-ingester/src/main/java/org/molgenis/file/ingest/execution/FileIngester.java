@@ -15,6 +15,8 @@ import org.molgenis.jobs.Progress;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 import static java.util.Objects.requireNonNull;
 import static org.molgenis.data.DatabaseAction.ADD_UPDATE_EXISTING;
@@ -61,9 +63,17 @@ public class FileIngester
 		progress.progress(0, "Downloading url '" + url + "'");
 		File file = fileStoreDownload.downloadFile(url, jobExecutionID, entityTypeId + ".csv");
 		progress.progress(1, "Importing...");
-		FileRepositoryCollection repoCollection = fileRepositoryCollectionFactory.createFileRepositoryCollection(file);
-		ImportService importService = importServiceFactory.getImportService(file, repoCollection);
-		EntityImportReport report = importService.doImport(repoCollection, ADD_UPDATE_EXISTING, null);
+		EntityImportReport report;
+		try (FileRepositoryCollection repoCollection = fileRepositoryCollectionFactory.createFileRepositoryCollection(
+				file))
+		{
+			ImportService importService = importServiceFactory.getImportService(file, repoCollection);
+			report = importService.doImport(repoCollection, ADD_UPDATE_EXISTING, null);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
 
 		progress.status("Ingestion of url '" + url + "' done.");
 		Integer count = report.getNrImportedEntitiesMap().get(entityTypeId);
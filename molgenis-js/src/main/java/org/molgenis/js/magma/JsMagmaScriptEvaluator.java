@@ -1,8 +1,6 @@
 package org.molgenis.js.magma;
 
-import com.google.common.base.Stopwatch;
 import com.google.common.collect.Maps;
-import jdk.nashorn.api.scripting.JSObject;
 import jdk.nashorn.api.scripting.ScriptObjectMirror;
 import org.molgenis.data.Entity;
 import org.molgenis.data.meta.AttributeType;
@@ -13,43 +11,56 @@ import org.molgenis.script.core.ScriptException;
 import org.molgenis.util.UnexpectedEnumException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import javax.script.Bindings;
-import javax.script.SimpleBindings;
+import javax.script.CompiledScript;
 import java.io.IOException;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static java.util.Objects.requireNonNull;
-import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.stream.Collectors.toList;
 import static org.molgenis.util.ResourceUtils.getString;
 
 /**
  * JavaScript script evaluator using the Nashorn script engine.
+ * <p>
+ * Scripts are evaluated in pooled engine contexts that have the MagmaScript library scripts loaded. A context is used
+ * by one evaluation at a time, so scripts can be evaluated concurrently. Contexts are created on demand, at most
+ * {@link #MAX_CONTEXTS} contexts exist at the same time and evaluations wait for a context when all are in use.
+ * Contexts changed by an evaluation are discarded instead of reused. Compiled expressions are shared by all contexts.
  */
 @Component
 public class JsMagmaScriptEvaluator
 {
 	private static final Logger LOG = LoggerFactory.getLogger(JsMagmaScriptEvaluator.class);
 	private static final int ENTITY_REFERENCE_DEFAULT_FETCHING_DEPTH = 1;
-	private static final String KEY_IS_NULL = "_isNull";
-	private static final String KEY_NEW_VALUE = "newValue";
-	private static final String KEY_DOLLAR = "$";
-	private static final String KEY_MAGMA_SCRIPT = "MagmaScript";
-	private static final String BIND = "bind";
+	private static final int MAX_CONTEXTS = 2 * Runtime.getRuntime().availableProcessors();
 	public static final String KEY_ID_VALUE = "_idValue";
 
 	private final NashornScriptEngine jsScriptEngine;
-	private final Bindings magmaBindings = new SimpleBindings();
+	private final List<CompiledScript> libraryScripts;
+	private final CompiledScript watcherScript;
+	private final Deque<MagmaScriptContext> idleContexts = new ConcurrentLinkedDeque<>();
+	private final Semaphore contextPermits = new Semaphore(MAX_CONTEXTS);
+	private final AtomicInteger nrContexts = new AtomicInteger();
+	private final LongAdder nrDiscardedContexts = new LongAdder();
+	private final LongAdder nrEvaluations = new LongAdder();
+	private final LongAdder evaluationTimeNanos = new LongAdder();
 
 	private static final List<String> RESOURCE_NAMES;
+	private static final String WATCHER_RESOURCE_NAME = "/js/script-context-watcher.js";
 
 	static
 	{
@@ -59,40 +70,58 @@ public class JsMagmaScriptEvaluator
 	public JsMagmaScriptEvaluator(NashornScriptEngine jsScriptEngine) throws javax.script.ScriptException, IOException
 	{
 		this.jsScriptEngine = requireNonNull(jsScriptEngine);
+		this.libraryScripts = new ArrayList<>(RESOURCE_NAMES.size());
 		for (String resourceName : RESOURCE_NAMES)
 		{
-			loadScript(resourceName);
+			libraryScripts.add(jsScriptEngine.compile(getString(getClass(), resourceName)));
 		}
+		this.watcherScript = jsScriptEngine.compile(getString(getClass(), WATCHER_RESOURCE_NAME));
+		idleContexts.push(new MagmaScriptContext(libraryScripts, watcherScript));
+		nrContexts.incrementAndGet();
 	}
 
-	private void loadScript(String resourceName) throws javax.script.ScriptException, IOException
+	/**
+	 * Evaluates multiple expressions for a single entity instance.
+	 *
+	 * @param expressions {@link Collection} containing the expression {@link String}s
+	 * @param entity      the entity to bind the magmascript $ function to
+	 * @return Collection containing the expression result {@link Object}s
+	 */
+	public Collection<Object> eval(Collection<String> expressions, Entity entity)
 	{
-		String string = getString(getClass(), resourceName);
-		jsScriptEngine.eval(magmaBindings, string);
+		return eval(expressions, entity, ENTITY_REFERENCE_DEFAULT_FETCHING_DEPTH);
 	}
 
 	/**
-	 * Evaluates multiple expressions for a single entity instance.
+	 * Evaluates multiple expressions for a single entity instance. The entity is converted to a JavaScript object
+	 * once for all expressions.
 	 *
 	 * @param expressions {@link Collection} containing the expression {@link String}s
 	 * @param entity      the entity to bind the magmascript $ function to
+	 * @param depth       maximum depth to follow references when creating the entity value map
 	 * @return Collection containing the expression result {@link Object}s
 	 */
-	public Collection<Object> eval(Collection<String> expressions, Entity entity)
+	public Collection<Object> eval(Collection<String> expressions, Entity entity, int depth)
 	{
-		Stopwatch stopwatch = null;
-		if (LOG.isTraceEnabled())
+		long startTime = System.nanoTime();
+		// retrieve the entity values before taking a context: retrieving referenced entities can evaluate other
+		// expressions, which would wait for a context as well
+		Object entityValue = toScriptEngineValueMap(entity, depth);
+		MagmaScriptContext context = borrowContext();
+		try
 		{
-			stopwatch = Stopwatch.createStarted();
+			Bindings bindings = context.bind(toScriptObject(entityValue, context));
+			return expressions.stream().map(expression -> eval(bindings, expression)).collect(toList());
 		}
-		Bindings bindings = createBindings(entity, ENTITY_REFERENCE_DEFAULT_FETCHING_DEPTH);
-		List<Object> result = expressions.stream().map(expression -> eval(bindings, expression)).collect(toList());
-		if (stopwatch != null)
+		finally
 		{
-			stopwatch.stop();
-			LOG.trace("Script evaluation took {} µs", stopwatch.elapsed(MICROSECONDS));
+			releaseContext(context);
+
+			long evaluationTime = System.nanoTime() - startTime;
+			nrEvaluations.increment();
+			evaluationTimeNanos.add(evaluationTime);
+			LOG.trace("Script evaluation took {} µs", NANOSECONDS.toMicros(evaluationTime));
 		}
-		return result;
 	}
 
 	public Object eval(String expression, Entity entity)
@@ -109,7 +138,28 @@ public class JsMagmaScriptEvaluator
 	 */
 	public Object eval(String expression, Entity entity, int depth)
 	{
-		return eval(createBindings(entity, depth), expression);
+		return eval(singletonList(expression), entity, depth).iterator().next();
+	}
+
+	/**
+	 * @return snapshot of the context pool, compiled expression cache and evaluation time statistics
+	 */
+	public JsMagmaScriptEvaluatorStatistics getStatistics()
+	{
+		return new JsMagmaScriptEvaluatorStatistics(nrContexts.get(), idleContexts.size(), nrDiscardedContexts.sum(),
+				jsScriptEngine.getCompiledExpressionStats(), nrEvaluations.sum(), evaluationTimeNanos.sum());
+	}
+
+	/**
+	 * Logs cumulative context pool, compiled expression cache and evaluation time statistics.
+	 */
+	@Scheduled(fixedRate = 60000)
+	public void logStatistics()
+	{
+		if (LOG.isDebugEnabled())
+		{
+			LOG.debug("{}", getStatistics());
+		}
 	}
 
 	/**
@@ -135,25 +185,70 @@ public class JsMagmaScriptEvaluator
 		}
 	}
 
-	/**
-	 * Creates magmascript bindings for a given Entity.
-	 *
-	 * @param entity the entity to bind to the magmascript $ function
-	 * @param depth  maximum depth to follow references when creating the entity value map
-	 * @return Bindings with $ function bound to the entity
-	 */
-	private Bindings createBindings(Entity entity, int depth)
+	private MagmaScriptContext borrowContext()
 	{
-		Bindings bindings = new SimpleBindings();
-		JSObject global = (JSObject) magmaBindings.get("nashorn.global");
-		JSObject magmaScript = (JSObject) global.getMember(KEY_MAGMA_SCRIPT);
-		JSObject dollarFunction = (JSObject) magmaScript.getMember(KEY_DOLLAR);
-		JSObject bindFunction = (JSObject) dollarFunction.getMember(BIND);
-		Object boundDollar = bindFunction.call(dollarFunction, toScriptEngineValueMap(entity, depth));
-		bindings.put(KEY_DOLLAR, boundDollar);
-		bindings.put(KEY_NEW_VALUE, magmaScript.getMember(KEY_NEW_VALUE));
-		bindings.put(KEY_IS_NULL, magmaScript.getMember(KEY_IS_NULL));
-		return bindings;
+		contextPermits.acquireUninterruptibly();
+		MagmaScriptContext context = idleContexts.poll();
+		if (context == null)
+		{
+			try
+			{
+				context = createContext();
+			}
+			finally
+			{
+				if (context == null)
+				{
+					contextPermits.release();
+				}
+			}
+		}
+		return context;
+	}
+
+	private MagmaScriptContext createContext()
+	{
+		MagmaScriptContext context;
+		try
+		{
+			context = new MagmaScriptContext(libraryScripts, watcherScript);
+		}
+		catch (javax.script.ScriptException e)
+		{
+			throw new ScriptException(e);
+		}
+		int contextCount = nrContexts.incrementAndGet();
+		LOG.debug("Created script engine context, {} contexts in total", contextCount);
+		return context;
+	}
+
+	private void releaseContext(MagmaScriptContext context)
+	{
+		if (isReusable(context))
+		{
+			idleContexts.push(context);
+		}
+		else
+		{
+			nrContexts.decrementAndGet();
+			nrDiscardedContexts.increment();
+			LOG.debug("Discarded script engine context changed by an evaluation");
+		}
+		contextPermits.release();
+	}
+
+	private static boolean isReusable(MagmaScriptContext context)
+	{
+		try
+		{
+			context.reset();
+			return context.isUnchanged();
+		}
+		catch (RuntimeException e)
+		{
+			// an expression broke the context
+			return false;
+		}
 	}
 
 	/**
@@ -162,7 +257,8 @@ public class JsMagmaScriptEvaluator
 	 *
 	 * @param entity The entity to be flattened, should start with non null entity
 	 * @param depth  Represents the number of reference levels being added to the JavaScript object
-	 * @return A JavaScript object in Tree form, containing entities and there references
+	 * @return A JavaScript object in Tree form, containing entities and there references, with lists instead of
+	 * JavaScript arrays
 	 */
 	private Object toScriptEngineValueMap(Entity entity, int depth)
 	{
@@ -189,6 +285,32 @@ public class JsMagmaScriptEvaluator
 		}
 	}
 
+	/**
+	 * Replaces the lists in a value created by {@link #toScriptEngineValueMap(Entity, int)} with JavaScript arrays
+	 * of the given context.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object toScriptObject(Object value, MagmaScriptContext context)
+	{
+		if (value instanceof Map)
+		{
+			Map<String, Object> map = (Map<String, Object>) value;
+			map.replaceAll((name, attrValue) -> toScriptObject(attrValue, context));
+			return map;
+		}
+		else if (value instanceof List)
+		{
+			ScriptObjectMirror jsArray = context.newArray();
+			List<Object> jsArrayValues = jsArray.to(List.class);
+			((List<Object>) value).forEach(element -> jsArrayValues.add(toScriptObject(element, context)));
+			return jsArray;
+		}
+		else
+		{
+			return value;
+		}
+	}
+
 	private Object toScriptEngineValue(Entity entity, Attribute attr, int depth)
 	{
 		Object value = null;
@@ -209,12 +331,10 @@ public class JsMagmaScriptEvaluator
 			case CATEGORICAL_MREF:
 			case MREF:
 			case ONE_TO_MANY:
-				ScriptObjectMirror jsArray = jsScriptEngine.newJSArray();
-				@SuppressWarnings("unchecked")
-				List<Object> mrefValues = jsArray.to(List.class);
+				List<Object> mrefValues = new ArrayList<>();
 				entity.getEntities(attrName)
 					  .forEach(mrefEntity -> mrefValues.add(toScriptEngineValueMap(mrefEntity, depth - 1)));
-				value = jsArray;
+				value = mrefValues;
 				break;
 			case DATE:
 				LocalDate localDate = entity.getLocalDate(attrName);
@@ -0,0 +1,94 @@
+package org.molgenis.js.magma;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Snapshot of the statistics of the {@link JsMagmaScriptEvaluator}.
+ */
+public class JsMagmaScriptEvaluatorStatistics
+{
+	private final int nrContexts;
+	private final int nrIdleContexts;
+	private final long nrDiscardedContexts;
+	private final CacheStats compiledExpressionStats;
+	private final long nrEvaluations;
+	private final long evaluationTimeNanos;
+
+	JsMagmaScriptEvaluatorStatistics(int nrContexts, int nrIdleContexts, long nrDiscardedContexts,
+			CacheStats compiledExpressionStats, long nrEvaluations, long evaluationTimeNanos)
+	{
+		this.nrContexts = nrContexts;
+		this.nrIdleContexts = nrIdleContexts;
+		this.nrDiscardedContexts = nrDiscardedContexts;
+		this.compiledExpressionStats = requireNonNull(compiledExpressionStats);
+		this.nrEvaluations = nrEvaluations;
+		this.evaluationTimeNanos = evaluationTimeNanos;
+	}
+
+	/**
+	 * @return number of script engine contexts, in use or idle
+	 */
+	public int getNrContexts()
+	{
+		return nrContexts;
+	}
+
+	/**
+	 * @return number of script engine contexts in the pool waiting to be used
+	 */
+	public int getNrIdleContexts()
+	{
+		return nrIdleContexts;
+	}
+
+	/**
+	 * @return number of script engine contexts discarded because an evaluation changed them
+	 */
+	public long getNrDiscardedContexts()
+	{
+		return nrDiscardedContexts;
+	}
+
+	/**
+	 * @return cumulative hit, miss, load and eviction counts of the compiled expression cache
+	 */
+	public CacheStats getCompiledExpressionStats()
+	{
+		return compiledExpressionStats;
+	}
+
+	/**
+	 * @return number of evaluations, an evaluation of multiple expressions for one entity counts as one
+	 */
+	public long getNrEvaluations()
+	{
+		return nrEvaluations;
+	}
+
+	/**
+	 * @return total time in nanoseconds spent in evaluations
+	 */
+	public long getEvaluationTimeNanos()
+	{
+		return evaluationTimeNanos;
+	}
+
+	/**
+	 * @return average time in nanoseconds per evaluation, zero if nothing was evaluated
+	 */
+	public double getAverageEvaluationTimeNanos()
+	{
+		return nrEvaluations > 0 ? (double) evaluationTimeNanos / nrEvaluations : 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "JsMagmaScriptEvaluatorStatistics{" + "nrContexts=" + nrContexts + ", nrIdleContexts=" + nrIdleContexts
+				+ ", nrDiscardedContexts=" + nrDiscardedContexts + ", compiledExpressionStats="
+				+ compiledExpressionStats + ", nrEvaluations=" + nrEvaluations + ", evaluationTimeNanos="
+				+ evaluationTimeNanos + '}';
+	}
+}
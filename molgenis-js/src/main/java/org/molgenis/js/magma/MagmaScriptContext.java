@@ -0,0 +1,105 @@
+package org.molgenis.js.magma;
+
+import jdk.nashorn.api.scripting.JSObject;
+import jdk.nashorn.api.scripting.ScriptObjectMirror;
+
+import javax.script.Bindings;
+import javax.script.CompiledScript;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Script engine global with the MagmaScript library scripts loaded. A context is used by one thread at a time and is
+ * reused for many evaluations, so the library scripts are only evaluated once per context. A context that was changed
+ * by an evaluation, e.g. by an expression that modifies a prototype or replaces a library function, must not be
+ * reused.
+ */
+class MagmaScriptContext
+{
+	private static final String KEY_GLOBAL = "nashorn.global";
+	private static final String KEY_IS_NULL = "_isNull";
+	private static final String KEY_NEW_VALUE = "newValue";
+	private static final String KEY_DOLLAR = "$";
+	private static final String KEY_MAGMA_SCRIPT = "MagmaScript";
+	private static final String KEY_ARRAY = "Array";
+	private static final String BIND = "bind";
+	private static final String CLEAR_FUNCTION = "(function (name) { if (!delete this[name]) { this[name] = undefined } })";
+
+	private final ScriptObjectMirror global;
+	private final Set<String> globalNames;
+	private final JSObject dollarFunction;
+	private final JSObject bindFunction;
+	private final Object newValueFunction;
+	private final Object isNullFunction;
+	private final JSObject arrayConstructor;
+	private final JSObject clearFunction;
+	private final JSObject isUnchangedFunction;
+
+	/**
+	 * @param libraryScripts compiled scripts to evaluate in the new global
+	 * @param watcherScript  compiled script that records the state of the global after the library scripts were
+	 *                       evaluated and returns a function that checks whether that state is unchanged
+	 */
+	MagmaScriptContext(List<CompiledScript> libraryScripts, CompiledScript watcherScript) throws ScriptException
+	{
+		Bindings bindings = new SimpleBindings();
+		for (CompiledScript libraryScript : libraryScripts)
+		{
+			libraryScript.eval(bindings);
+		}
+		global = (ScriptObjectMirror) bindings.get(KEY_GLOBAL);
+		globalNames = new HashSet<>(global.keySet());
+
+		JSObject magmaScript = (JSObject) global.getMember(KEY_MAGMA_SCRIPT);
+		dollarFunction = (JSObject) magmaScript.getMember(KEY_DOLLAR);
+		bindFunction = (JSObject) dollarFunction.getMember(BIND);
+		newValueFunction = magmaScript.getMember(KEY_NEW_VALUE);
+		isNullFunction = magmaScript.getMember(KEY_IS_NULL);
+		arrayConstructor = (JSObject) global.getMember(KEY_ARRAY);
+		clearFunction = (JSObject) global.eval(CLEAR_FUNCTION);
+		isUnchangedFunction = (JSObject) watcherScript.eval(global);
+	}
+
+	/**
+	 * Binds the MagmaScript $ function to a script engine value.
+	 *
+	 * @param entityValue the value to bind to the magmascript $ function
+	 * @return Bindings to use as engine scope
+	 */
+	Bindings bind(Object entityValue)
+	{
+		global.setMember(KEY_DOLLAR, bindFunction.call(dollarFunction, entityValue));
+		global.setMember(KEY_NEW_VALUE, newValueFunction);
+		global.setMember(KEY_IS_NULL, isNullFunction);
+		return global;
+	}
+
+	ScriptObjectMirror newArray()
+	{
+		return (ScriptObjectMirror) arrayConstructor.newObject();
+	}
+
+	/**
+	 * Removes the bound functions and the global variables declared by evaluated expressions, so that evaluations
+	 * in this context do not see each other's variables.
+	 */
+	void reset()
+	{
+		List<String> names = global.keySet().stream().filter(name -> !globalNames.contains(name)).collect(toList());
+		names.forEach(name -> clearFunction.call(global, name));
+	}
+
+	/**
+	 * Returns whether the global object, the objects it references and their prototypes are still in the state they
+	 * had after the library scripts were evaluated. Call after {@link #reset()}.
+	 */
+	boolean isUnchanged()
+	{
+		return Boolean.TRUE.equals(isUnchangedFunction.call(null));
+	}
+}
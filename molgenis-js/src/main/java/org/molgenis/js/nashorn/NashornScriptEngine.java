@@ -3,6 +3,7 @@ package org.molgenis.js.nashorn;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.github.benmanes.caffeine.cache.Weigher;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import jdk.nashorn.api.scripting.JSObject;
 import jdk.nashorn.api.scripting.NashornScriptEngineFactory;
 import jdk.nashorn.api.scripting.ScriptObjectMirror;
@@ -50,6 +51,27 @@ public class NashornScriptEngine
 		return convertNashornValue(returnValue);
 	}
 
+	/**
+	 * Compiles a script without adding it to the compiled expression cache, e.g. a library script that is evaluated
+	 * in multiple contexts.
+	 *
+	 * @param script the script to compile
+	 * @return compiled script
+	 * @throws ScriptException if the compilation fails
+	 */
+	public CompiledScript compile(String script) throws ScriptException
+	{
+		return ((Compilable) scriptEngine).compile(script);
+	}
+
+	/**
+	 * @return cumulative hit, miss, load and eviction counts of the compiled expression cache
+	 */
+	public CacheStats getCompiledExpressionStats()
+	{
+		return expressions.stats();
+	}
+
 	public ScriptObjectMirror newJSArray()
 	{
 		return (ScriptObjectMirror) ((JSObject) scriptEngine.get("Array")).newObject();
@@ -63,6 +85,7 @@ public class NashornScriptEngine
 		expressions = Caffeine.newBuilder()
 							  .maximumWeight(MAX_COMPILED_EXPRESSIONS_SCRIPTS_LENGTH)
 							  .weigher((Weigher<String, CompiledScript>) (key, value) -> key.length())
+							  .recordStats()
 							  .build(((Compilable) this.scriptEngine)::compile);
 		LOG.debug("Initialized Nashorn script engine");
 	}
@@ -0,0 +1,103 @@
+/**
+ * Records the state of the global object, the objects referenced by the global object and their prototypes.
+ *
+ * Accessor properties, e.g. the lazily initialized math.js functions, are not read because that would initialize
+ * them. Instead they are redefined as non-configurable, with a setter that records that a value was assigned.
+ *
+ * @param global the global object
+ * @returns function that returns true if the recorded state is unchanged
+ */
+(function (global) {
+    // keep references, expressions could replace these functions
+    var getOwnPropertyNames = Object.getOwnPropertyNames
+    var getOwnPropertyDescriptor = Object.getOwnPropertyDescriptor
+    var defineProperty = Object.defineProperty
+    var getPrototypeOf = Object.getPrototypeOf
+    var isExtensible = Object.isExtensible
+
+    var objects = []
+    var nrNames = []
+    var prototypes = []
+    var extensibles = []
+    var dataObjects = []
+    var dataNames = []
+    var dataValues = []
+    var assigned = false
+
+    function isObject (value) {
+        return (typeof value === 'object' && value !== null) || typeof value === 'function'
+    }
+
+    function recordAssignment (set) {
+        return function (value) {
+            assigned = true
+            return set.call(this, value)
+        }
+    }
+
+    function watch (object, names) {
+        objects.push(object)
+        nrNames.push(names.length)
+        prototypes.push(getPrototypeOf(object))
+        extensibles.push(isExtensible(object))
+        for (var i = 0; i < names.length; ++i) {
+            var descriptor = getOwnPropertyDescriptor(object, names[i])
+            if ('value' in descriptor) {
+                dataObjects.push(object)
+                dataNames.push(names[i])
+                dataValues.push(descriptor.value)
+            } else if (descriptor.configurable) {
+                if (descriptor.set !== undefined) {
+                    descriptor.set = recordAssignment(descriptor.set)
+                }
+                descriptor.configurable = false
+                defineProperty(object, names[i], descriptor)
+            }
+        }
+    }
+
+    var globalNames = getOwnPropertyNames(global)
+    watch(global, globalNames)
+    for (var i = 0; i < globalNames.length; ++i) {
+        var value = getOwnPropertyDescriptor(global, globalNames[i]).value
+        if (isObject(value)) {
+            var valueNames
+            try {
+                valueNames = getOwnPropertyNames(value)
+            } catch (e) {
+                // not a script object, e.g. a Java package
+                continue
+            }
+            watch(value, valueNames)
+
+            var prototype = getOwnPropertyDescriptor(value, 'prototype')
+            if (prototype !== undefined && isObject(prototype.value)) {
+                watch(prototype.value, getOwnPropertyNames(prototype.value))
+            }
+        }
+    }
+
+    return function () {
+        if (assigned) {
+            return false
+        }
+        for (var i = 0; i < objects.length; ++i) {
+            var object = objects[i]
+            if (getPrototypeOf(object) !== prototypes[i] || isExtensible(object) !== extensibles[i]) {
+                return false
+            }
+            // global variables declared by expressions are removed separately
+            if (object !== global && getOwnPropertyNames(object).length !== nrNames[i]) {
+                return false
+            }
+        }
+        for (var j = 0; j < dataObjects.length; ++j) {
+            var dataValue = dataObjects[j][dataNames[j]]
+            // NaN is the only value that is not equal to itself
+            if (dataValue !== dataValues[j] && (dataValue === dataValue || dataValues[j] === dataValues[j])) {
+                return false
+            }
+        }
+        return true
+    }
+})(this)
@@ -6,6 +6,7 @@ import org.molgenis.data.meta.model.Attribute;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.data.support.DynamicEntity;
 import org.molgenis.js.magma.JsMagmaScriptEvaluator;
+import org.molgenis.js.magma.JsMagmaScriptEvaluatorStatistics;
 import org.molgenis.js.nashorn.NashornScriptEngine;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -20,6 +21,8 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static com.google.common.collect.Lists.newArrayList;
@@ -32,6 +35,7 @@ import static org.mockito.Mockito.when;
 import static org.molgenis.data.meta.AttributeType.*;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 public class JsMagmaScriptEvaluatorTest
 {
@@ -162,6 +166,97 @@ public class JsMagmaScriptEvaluatorTest
 		assertEquals(result, lastUpdate.toEpochMilli());
 	}
 
+	@Test
+	public void testEvalMultipleExpressionsOtherThread() throws Exception
+	{
+		Entity person = new DynamicEntity(personLongEntityType);
+		person.set("long", Long.MAX_VALUE);
+
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		try
+		{
+			Collection<Object> result = executorService.submit(
+					() -> jsMagmaScriptEvaluator.eval(asList("$('long').value()", "$('long').isNull().value()"), person,
+							1)).get();
+			assertEquals(result, asList(Long.MAX_VALUE, false));
+		}
+		finally
+		{
+			executorService.shutdown();
+		}
+	}
+
+	@Test
+	public void testEvalDoesNotShareVariables()
+	{
+		Entity person = new DynamicEntity(personLongEntityType);
+		person.set("long", 1L);
+
+		assertEquals(jsMagmaScriptEvaluator.eval("var tmp = $('long').value(); tmp", person, 1), 1L);
+		assertEquals(jsMagmaScriptEvaluator.eval("typeof tmp", person, 1), "undefined");
+	}
+
+	@Test
+	public void testEvalDoesNotSharePrototypeChanges()
+	{
+		Entity person = new DynamicEntity(personLongEntityType);
+		person.set("long", 1L);
+
+		long nrDiscardedContexts = jsMagmaScriptEvaluator.getStatistics().getNrDiscardedContexts();
+		assertEquals(jsMagmaScriptEvaluator.eval("Array.prototype.tmp = 'tmp'; [].tmp", person, 1), "tmp");
+		assertEquals(jsMagmaScriptEvaluator.eval("typeof [].tmp", person, 1), "undefined");
+		assertEquals(jsMagmaScriptEvaluator.getStatistics().getNrDiscardedContexts(), nrDiscardedContexts + 1);
+	}
+
+	@Test
+	public void testEvalDoesNotShareLibraryChanges()
+	{
+		Entity person = new DynamicEntity(personLongEntityType);
+		person.set("long", 1L);
+
+		assertEquals(jsMagmaScriptEvaluator.eval(
+				"MagmaScript.prototype.value = function () { return 'tmp' }; $('long').value()", person, 1), "tmp");
+		assertEquals(jsMagmaScriptEvaluator.eval("$('long').value()", person, 1), 1L);
+	}
+
+	@Test
+	public void testEvalDoesNotShareLazyLibraryChanges()
+	{
+		Entity person = new DynamicEntity(personLongEntityType);
+		person.set("long", 1L);
+
+		assertEquals(jsMagmaScriptEvaluator.eval("math.sqrt = function () { return 'tmp' }; math.sqrt(4)", person, 1),
+				"tmp");
+		assertEquals(jsMagmaScriptEvaluator.eval("typeof math.sqrt(4)", person, 1), "number");
+	}
+
+	@Test
+	public void testEvalDoesNotShareGlobalChanges()
+	{
+		Entity person = new DynamicEntity(personLongEntityType);
+		person.set("long", 1L);
+
+		assertEquals(jsMagmaScriptEvaluator.eval("var math = 'tmp'; math", person, 1), "tmp");
+		assertEquals(jsMagmaScriptEvaluator.eval("typeof math", person, 1), "object");
+	}
+
+	@Test
+	public void testGetStatistics()
+	{
+		Entity person = new DynamicEntity(personLongEntityType);
+		person.set("long", 1L);
+
+		long nrEvaluations = jsMagmaScriptEvaluator.getStatistics().getNrEvaluations();
+		jsMagmaScriptEvaluator.eval("$('long').value() + 1", person, 1);
+		jsMagmaScriptEvaluator.eval("$('long').value() + 1", person, 1);
+
+		JsMagmaScriptEvaluatorStatistics statistics = jsMagmaScriptEvaluator.getStatistics();
+		assertEquals(statistics.getNrEvaluations(), nrEvaluations + 2);
+		assertTrue(statistics.getNrContexts() >= 1);
+		assertEquals(statistics.getNrIdleContexts(), statistics.getNrContexts());
+		assertTrue(statistics.getCompiledExpressionStats().hitCount() >= 1);
+	}
+
 	@Test
 	public void testValueForBool()
 	{
@@ -1,7 +1,6 @@
 package org.molgenis.oneclickimporter.job;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
-import org.apache.poi.ss.usermodel.Sheet;
 import org.molgenis.data.file.CodedUnzipException;
 import org.molgenis.data.file.FileStore;
 import org.molgenis.data.meta.model.EntityType;
@@ -64,8 +63,7 @@ public class OneClickImportJob
 		}
 		else if (fileExtension.equals("xls") || fileExtension.equals("xlsx"))
 		{
-			List<Sheet> sheets = excelService.buildExcelSheetsFromFile(file);
-			dataCollections.addAll(oneClickImporterService.buildDataCollectionsFromExcel(sheets));
+			dataCollections.addAll(excelService.buildDataCollectionsFromFile(file));
 		}
 		else if (fileExtension.equals("csv"))
 		{
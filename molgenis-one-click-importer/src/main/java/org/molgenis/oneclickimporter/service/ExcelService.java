@@ -1,26 +1,27 @@
 package org.molgenis.oneclickimporter.service;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
-import org.apache.poi.ss.usermodel.Sheet;
 import org.molgenis.oneclickimporter.exceptions.EmptySheetException;
+import org.molgenis.oneclickimporter.model.DataCollection;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
 /**
- * Creates a list of {@link Sheet}s from an excel file
+ * Creates a list of {@link DataCollection}s from an excel file
  */
 public interface ExcelService
 {
 	/**
-	 * Builds one or more excel sheets based on a xls or xlsx file
+	 * Builds a {@link DataCollection} for each sheet of a xls or xlsx file. The sheets of a xlsx file are read row by
+	 * row instead of loading the workbook in memory.
 	 *
 	 * @param file
 	 * @return
 	 * @throws IOException
 	 * @throws InvalidFormatException
 	 */
-	List<Sheet> buildExcelSheetsFromFile(final File file)
+	List<DataCollection> buildDataCollectionsFromFile(final File file)
 			throws IOException, InvalidFormatException, EmptySheetException;
 }
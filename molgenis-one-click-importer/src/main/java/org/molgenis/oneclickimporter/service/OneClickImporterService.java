@@ -1,6 +1,5 @@
 package org.molgenis.oneclickimporter.service;
 
-import org.apache.poi.ss.usermodel.Sheet;
 import org.molgenis.data.meta.AttributeType;
 import org.molgenis.oneclickimporter.model.Column;
 import org.molgenis.oneclickimporter.model.DataCollection;
@@ -9,13 +8,6 @@ import java.util.List;
 
 public interface OneClickImporterService
 {
-	/**
-	 * Generate {@link DataCollection}s from one or more Excel sheets
-	 *
-	 * @param sheets
-	 */
-	List<DataCollection> buildDataCollectionsFromExcel(List<Sheet> sheets);
-
 	/**
 	 * Generate {@link DataCollection} from a List of file lines
 	 *
@@ -0,0 +1,30 @@
+package org.molgenis.oneclickimporter.service.impl;
+
+import org.apache.poi.ss.usermodel.CellType;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Type and value of a cell, the value is converted to the Java type that is imported for the cell type.
+ */
+class ExcelCell
+{
+	private final CellType cellType;
+	private final Object value;
+
+	ExcelCell(CellType cellType, Object value)
+	{
+		this.cellType = requireNonNull(cellType);
+		this.value = value;
+	}
+
+	CellType getCellType()
+	{
+		return cellType;
+	}
+
+	Object getValue()
+	{
+		return value;
+	}
+}
@@ -1,22 +1,36 @@
 package org.molgenis.oneclickimporter.service.impl;
 
+import com.google.common.collect.Iterators;
 import org.apache.poi.EncryptedDocumentException;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.util.LocaleUtil;
 import org.molgenis.data.MolgenisDataException;
+import org.molgenis.data.MolgenisInvalidFormatException;
+import org.molgenis.data.excel.XlsxCell;
+import org.molgenis.data.excel.XlsxSheetReader;
+import org.molgenis.data.excel.XlsxWorkbook;
 import org.molgenis.oneclickimporter.exceptions.EmptySheetException;
+import org.molgenis.oneclickimporter.model.Column;
+import org.molgenis.oneclickimporter.model.DataCollection;
 import org.molgenis.oneclickimporter.service.ExcelService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.List;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.*;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static java.time.ZoneOffset.UTC;
+import static org.apache.poi.ss.usermodel.DateUtil.isCellDateFormatted;
+import static org.apache.poi.util.LocaleUtil.resetUserTimeZone;
+import static org.apache.poi.util.LocaleUtil.setUserTimeZone;
 
 @Component
 public class ExcelServiceImpl implements ExcelService
@@ -24,39 +38,264 @@ public class ExcelServiceImpl implements ExcelService
 	private static final Logger LOG = LoggerFactory.getLogger(ExcelServiceImpl.class);
 
 	@Override
-	public List<Sheet> buildExcelSheetsFromFile(File file)
+	public List<DataCollection> buildDataCollectionsFromFile(File file)
 			throws IOException, InvalidFormatException, EmptySheetException
 	{
-		List<Sheet> sheets = newArrayList();
+		try
+		{
+			return isOoxml(file) ? buildDataCollectionsFromXlsx(file) : buildDataCollectionsFromWorkbook(file);
+		}
+		catch (IOException | InvalidFormatException | MolgenisInvalidFormatException | EncryptedDocumentException ex)
+		{
+			LOG.error(ex.getLocalizedMessage());
+			throw new MolgenisDataException("Could not create excel workbook from file");
+		}
+	}
+
+	private static boolean isOoxml(File file) throws IOException
+	{
+		try (InputStream in = FileMagic.prepareToCheckMagic(new FileInputStream(file)))
+		{
+			return FileMagic.valueOf(in) == FileMagic.OOXML;
+		}
+	}
+
+	private static List<DataCollection> buildDataCollectionsFromXlsx(File file)
+			throws IOException, MolgenisInvalidFormatException, EmptySheetException
+	{
+		List<DataCollection> dataCollections = newArrayList();
+		try (XlsxWorkbook workbook = XlsxWorkbook.open(file))
+		{
+			for (String sheetName : workbook.getSheetNames())
+			{
+				try (XlsxSheetReader<ExcelCell> rows = workbook.readSheet(sheetName, ExcelServiceImpl::toCell))
+				{
+					dataCollections.add(createDataCollection(sheetName, rows));
+				}
+			}
+		}
+		return dataCollections;
+	}
+
+	private static List<DataCollection> buildDataCollectionsFromWorkbook(File file)
+			throws IOException, InvalidFormatException, EmptySheetException
+	{
+		List<DataCollection> dataCollections = newArrayList();
 		try (Workbook workbook = WorkbookFactory.create(file))
 		{
-			int numberOfSheets = workbook.getNumberOfSheets();
+			for (Sheet sheet : workbook)
+			{
+				dataCollections.add(createDataCollection(sheet.getSheetName(),
+						Iterators.transform(sheet.rowIterator(), ExcelServiceImpl::toCells)));
+			}
+		}
+		return dataCollections;
+	}
+
+	/**
+	 * Creates a column for each cell in the header row, with the values of the cells in the other rows.
+	 *
+	 * @param sheetName sheet name
+	 * @param rows      rows that map the column indices to the cells in the row
+	 */
+	private static DataCollection createDataCollection(String sheetName, Iterator<Map<Integer, ExcelCell>> rows)
+			throws EmptySheetException
+	{
+		if (!rows.hasNext())
+		{
+			throw new EmptySheetException("Sheet [" + sheetName + "] is empty");
+		}
+		Map<Integer, ExcelCell> headerRow = rows.next();
+		if (!rows.hasNext())
+		{
+			throw new MolgenisDataException("Header was found, but no data is present in sheet [" + sheetName + "]");
+		}
 
-			for (int index = 0; index < numberOfSheets; index++)
+		Map<Integer, List<Object>> columnDataValues = new LinkedHashMap<>();
+		headerRow.forEach((columnIndex, cell) ->
+		{
+			if (cell.getCellType() != CellType.STRING)
 			{
-				Sheet sheet = workbook.getSheetAt(index);
-				if (sheet.getPhysicalNumberOfRows() == 0)
+				throw new MolgenisDataException(
+						String.format("Celltype [%s] is not supported for columnheaders", cell.getCellType()));
+			}
+			columnDataValues.put(columnIndex, newArrayList());
+		});
+
+		rows.forEachRemaining(row -> columnDataValues.forEach((columnIndex, dataValues) ->
+		{
+			// Empty cells are null, instead of BLANK
+			ExcelCell cell = row.get(columnIndex);
+			dataValues.add(cell != null ? cell.getValue() : null);
+		}));
+
+		List<Column> columns = newArrayList();
+		columnDataValues.forEach(
+				(columnIndex, dataValues) -> columns.add(Column.create((String) headerRow.get(columnIndex).getValue(),
+						columnIndex, dataValues)));
+		return DataCollection.create(sheetName, columns);
+	}
+
+	private static Map<Integer, ExcelCell> toCells(Row row)
+	{
+		Map<Integer, ExcelCell> cells = new LinkedHashMap<>();
+		row.cellIterator()
+		   .forEachRemaining(cell -> cells.put(cell.getColumnIndex(),
+				   new ExcelCell(cell.getCellTypeEnum(), getCellValue(cell))));
+		return cells;
+	}
+
+	/**
+	 * Gets a cell of a streamed xlsx sheet in the same way as {@link #getCellValue} gets the cell of a workbook that was
+	 * loaded in memory.
+	 */
+	private static ExcelCell toCell(XlsxCell cell)
+	{
+		if (cell.getFormula() != null)
+		{
+			return new ExcelCell(CellType.FORMULA, getTypedFormulaValue(cell));
+		}
+
+		CellType cellType = cell.getValueType();
+		Object value;
+		switch (cellType)
+		{
+			case STRING:
+				value = cell.getValue() != null ? cell.getStringValue() : "";
+				break;
+			case NUMERIC:
+				if (cell.isDateFormatted())
 				{
-					throw new EmptySheetException("Sheet [" + sheet.getSheetName() + "] is empty");
+					value = formatUTCDateAsLocalDateTime(cell.getDateValue());
 				}
-				else if (sheet.getPhysicalNumberOfRows() == 1)
+				else
+				{
+					value = cell.getNumericValue();
+				}
+				break;
+			case BOOLEAN:
+				value = cell.getBooleanValue();
+				break;
+			default:
+				value = null;
+				break;
+		}
+		return new ExcelCell(cellType, value);
+	}
+
+	/**
+	 * Retrieves the proper Java type instance based on the Excel CellTypeEnum
+	 */
+	private static Object getCellValue(Cell cell)
+	{
+		Object value;
+		switch (cell.getCellTypeEnum())
+		{
+			case STRING:
+				value = cell.getStringCellValue();
+				break;
+			case NUMERIC:
+				if (isCellDateFormatted(cell))
 				{
-					throw new MolgenisDataException(
-							"Header was found, but no data is present in sheet [" + sheet.getSheetName() + "]");
+					try
+					{
+						// Excel dates are LocalDateTime, stored without timezone.
+						// Interpret them as UTC to prevent ambiguous DST overlaps which happen in other timezones.
+						setUserTimeZone(LocaleUtil.TIMEZONE_UTC);
+						Date dateCellValue = cell.getDateCellValue();
+						value = formatUTCDateAsLocalDateTime(dateCellValue);
+					}
+					finally
+					{
+						resetUserTimeZone();
+					}
 				}
 				else
 				{
-					sheets.add(sheet);
+					value = cell.getNumericCellValue();
 				}
-			}
+				break;
+			case BOOLEAN:
+				value = cell.getBooleanCellValue();
+				break;
+			case FORMULA:
+				value = getTypedFormulaValue(cell);
+				break;
+			default:
+				value = null;
+				break;
+		}
+		return value;
+	}
+
+	/**
+	 * Formats parsed Date as LocalDateTime string at zone UTC to express that we don't know the timezone.
+	 *
+	 * @param javaDate Parsed Date representing start of day in UTC
+	 * @return Formatted {@link LocalDateTime} string of the java.util.Date
+	 */
+	static String formatUTCDateAsLocalDateTime(Date javaDate)
+	{
+		String value;// Now back from start of day in UTC to LocalDateTime to express that we don't know the timezone.
+		LocalDateTime localDateTime = javaDate.toInstant().atZone(UTC).toLocalDateTime();
+		// And format to string
+		value = localDateTime.toString();
+		return value;
+	}
 
+	private static Object getTypedFormulaValue(Cell cell)
+	{
+		Object value;
+		switch (cell.getCachedFormulaResultTypeEnum())
+		{
+			case STRING:
+				value = cell.getStringCellValue();
+				break;
+			case NUMERIC:
+				value = cell.getNumericCellValue();
+				break;
+			case BOOLEAN:
+				value = cell.getBooleanCellValue();
+				break;
+			case BLANK:
+				value = null;
+				break;
+			case ERROR:
+				value = "#ERROR";
+				break;
+			default:
+				value = null;
+				break;
 		}
-		catch (IOException | InvalidFormatException | EncryptedDocumentException ex)
+		return value;
+	}
+
+	private static Object getTypedFormulaValue(XlsxCell cell)
+	{
+		if (cell.getValue() == null)
 		{
-			LOG.error(ex.getLocalizedMessage());
-			throw new MolgenisDataException("Could not create excel workbook from file");
+			return null;
 		}
-		return sheets;
 
+		Object value;
+		switch (cell.getValueType())
+		{
+			case STRING:
+				value = cell.getStringValue();
+				break;
+			case NUMERIC:
+				value = cell.getNumericValue();
+				break;
+			case BOOLEAN:
+				value = cell.getBooleanValue();
+				break;
+			case ERROR:
+				value = "#ERROR";
+				break;
+			default:
+				value = null;
+				break;
+		}
+		return value;
 	}
 }
@@ -1,7 +1,6 @@
 package org.molgenis.oneclickimporter.job;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
-import org.apache.poi.ss.usermodel.Sheet;
 import org.mockito.Mock;
 import org.molgenis.data.file.FileStore;
 import org.molgenis.data.meta.model.EntityType;
@@ -65,12 +64,9 @@ public class OneClickImportJobTest
 		File file = loadFile(OneClickImportJobTest.class, "/" + filename);
 		when(fileStore.getFile(filename)).thenReturn(file);
 
-		List<Sheet> sheets = new ArrayList<>();
-		when(excelService.buildExcelSheetsFromFile(file)).thenReturn(sheets);
-
 		DataCollection dataCollection = mock(DataCollection.class);
 		when(dataCollection.getName()).thenReturn("Sheet1");
-		when(oneClickImporterService.buildDataCollectionsFromExcel(sheets)).thenReturn(newArrayList(dataCollection));
+		when(excelService.buildDataCollectionsFromFile(file)).thenReturn(newArrayList(dataCollection));
 
 		EntityType entityType = mock(EntityType.class);
 		when(entityService.createEntityType(dataCollection, "simple_valid")).thenReturn(entityType);
@@ -81,8 +77,7 @@ public class OneClickImportJobTest
 		oneClickImporterJob.getEntityType(progress, filename);
 
 		verify(progress).status("Preparing import");
-		verify(excelService).buildExcelSheetsFromFile(file);
-		verify(oneClickImporterService).buildDataCollectionsFromExcel(sheets);
+		verify(excelService).buildDataCollectionsFromFile(file);
 		verify(progress).status("Importing [Sheet1] into package [simple_valid]");
 		verify(entityService).createEntityType(dataCollection, "simple_valid");
 	}
@@ -3,29 +3,131 @@ package org.molgenis.oneclickimporter.service;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.molgenis.data.MolgenisDataException;
 import org.molgenis.oneclickimporter.exceptions.EmptySheetException;
+import org.molgenis.oneclickimporter.model.Column;
+import org.molgenis.oneclickimporter.model.DataCollection;
 import org.molgenis.oneclickimporter.service.impl.ExcelServiceImpl;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
 
+import static com.google.common.collect.Lists.newArrayList;
 import static org.molgenis.oneclickimporter.service.utils.OneClickImporterTestUtils.loadFile;
+import static org.testng.Assert.assertEquals;
 
 public class ExcelServiceTest
 {
 	private ExcelService excelService = new ExcelServiceImpl();
 
 	@Test(expectedExceptions = EmptySheetException.class, expectedExceptionsMessageRegExp = "Sheet \\[empty_sheet\\] is empty")
-	public void buildExcelSheetsWithEmptyFile()
+	public void buildDataCollectionsWithEmptyFile()
 			throws InvalidFormatException, IOException, URISyntaxException, EmptySheetException
 	{
-		excelService.buildExcelSheetsFromFile(loadFile(ExcelServiceTest.class, "/empty-sheet.xlsx"));
+		excelService.buildDataCollectionsFromFile(loadFile(ExcelServiceTest.class, "/empty-sheet.xlsx"));
 	}
 
 	@Test(expectedExceptions = MolgenisDataException.class, expectedExceptionsMessageRegExp = "Header was found, but no data is present in sheet \\[Sheet1\\]")
-	public void buildExcelSheetsWithHeaderOnly()
+	public void buildDataCollectionsWithHeaderOnly()
 			throws InvalidFormatException, IOException, URISyntaxException, EmptySheetException
 	{
-		excelService.buildExcelSheetsFromFile(loadFile(ExcelServiceTest.class, "/header-without-data.xlsx"));
+		excelService.buildDataCollectionsFromFile(loadFile(ExcelServiceTest.class, "/header-without-data.xlsx"));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testBuildDataCollectionWithSimpleValidExcelFile()
+			throws IOException, InvalidFormatException, URISyntaxException, EmptySheetException
+	{
+		DataCollection actual = excelService.buildDataCollectionsFromFile(
+				loadFile(ExcelServiceTest.class, "/simple-valid.xlsx")).get(0);
+
+		Column c1 = Column.create("name", 0, newArrayList("Mark", "Connor", "Fleur", "Dennis"));
+		Column c2 = Column.create("superpower", 1,
+				newArrayList("arrow functions", "Oldschool syntax", "Lambda Magician", "Root access"));
+
+		DataCollection expected = DataCollection.create("Sheet1", newArrayList(c1, c2));
+
+		assertEquals(actual, expected);
+	}
+
+	@Test
+	public void testBuildDataSheetWithValidFormulaFile()
+			throws IOException, InvalidFormatException, URISyntaxException, EmptySheetException
+	{
+		DataCollection actual = excelService.buildDataCollectionsFromFile(
+				loadFile(ExcelServiceTest.class, "/valid-with-formula.xlsx")).get(0);
+
+		Column c1 = Column.create("name", 0, newArrayList("Mark", "Mariska"));
+		Column c2 = Column.create("age", 1, newArrayList(26.0, 22.0));
+
+		DataCollection expected = DataCollection.create("Sheet1", newArrayList(c1, c2));
+
+		assertEquals(actual, expected);
+	}
+
+	@Test
+	public void testBuildDataSheetBuildsColumnsOfEqualLength()
+			throws IOException, InvalidFormatException, URISyntaxException, EmptySheetException
+	{
+		DataCollection actual = excelService.buildDataCollectionsFromFile(
+				loadFile(ExcelServiceTest.class, "/valid-with-blank-values.xlsx")).get(0);
+
+		Column c1 = Column.create("name", 0, newArrayList("Mark", "Bart", "Tommy", "Sido", "Connor", null));
+		Column c2 = Column.create("favorite food", 1,
+				newArrayList("Fries", null, "Vegan food", "Pizza", null, "Spinache"));
+
+		DataCollection expected = DataCollection.create("Sheet1", newArrayList(c1, c2));
+		assertEquals(actual, expected);
+
+		assertEquals(6, c1.getDataValues().size());
+		assertEquals(6, c2.getDataValues().size());
+	}
+
+	@Test
+	public void testBuildDataSheetWithComplexFile()
+			throws IOException, InvalidFormatException, URISyntaxException, EmptySheetException
+	{
+		DataCollection actual = excelService.buildDataCollectionsFromFile(
+				loadFile(ExcelServiceTest.class, "/complex-valid.xlsx")).get(0);
+
+		Column c1 = Column.create("first name", 0,
+				newArrayList("Mark", "Fleur", "Dennis", "Bart", "Sido", "Mariska", "Tommy", "Connor", "Piet", "Jan"));
+		Column c2 = Column.create("last name", 1,
+				newArrayList("de Haan", "Kelpin", "Hendriksen", "Charbon", "Haakma", "Slofstra", "de Boer",
+						"Stroomberg", "Klaassen", null));
+		Column c3 = Column.create("full name", 2,
+				newArrayList("Mark de Haan", "Fleur Kelpin", "Dennis Hendriksen", "Bart Charbon", "Sido Haakma",
+						"Mariska Slofstra", "Tommy de Boer", "Connor Stroomberg", "Piet Klaassen", null));
+		Column c4 = Column.create("UMCG employee", 3,
+				newArrayList(true, true, true, true, true, true, true, true, false, false));
+		Column c5 = Column.create("Age", 4, newArrayList(26.0, null, null, null, null, 22.0, 27.0, null, 53.0, 32.0));
+
+		DataCollection expected = DataCollection.create("Sheet1", newArrayList(c1, c2, c3, c4, c5));
+		assertEquals(actual, expected);
+	}
+
+	@Test
+	public void testBuildDataSheetWithDates()
+			throws IOException, InvalidFormatException, URISyntaxException, EmptySheetException
+	{
+		DataCollection actual = excelService.buildDataCollectionsFromFile(
+				loadFile(ExcelServiceTest.class, "/valid-with-dates.xlsx")).get(0);
+
+		Column c1 = Column.create("dates", 0,
+				newArrayList("2018-01-03T00:00", "2018-01-04T00:00", "2018-01-05T00:00", "2018-01-06T00:00",
+						"2018-01-07T00:00"));
+
+		Column c2 = Column.create("event", 1,
+				newArrayList("being cool day", "bike day", "sleep day", "bye bye day", "work day"));
+
+		DataCollection expected = DataCollection.create("Sheet1", newArrayList(c1, c2));
+		assertEquals(actual, expected);
+	}
+
+	@Test
+	public void testBuildDataCollectionWithSimpleValidXlsFile()
+			throws IOException, InvalidFormatException, URISyntaxException, EmptySheetException
+	{
+		assertEquals(excelService.buildDataCollectionsFromFile(loadFile(ExcelServiceTest.class, "/simple-valid.xls")),
+				excelService.buildDataCollectionsFromFile(loadFile(ExcelServiceTest.class, "/simple-valid.xlsx")));
+	}
+}
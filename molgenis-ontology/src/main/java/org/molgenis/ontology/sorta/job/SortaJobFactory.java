@@ -9,6 +9,7 @@ import org.molgenis.ontology.sorta.service.SortaService;
 import org.molgenis.security.core.runas.RunAsSystem;
 import org.molgenis.security.token.RunAsUserTokenFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.MailSender;
 import org.springframework.security.access.intercept.RunAsUserToken;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -46,6 +47,9 @@ public class SortaJobFactory
 	@Autowired
 	private RunAsUserTokenFactory runAsUserTokenFactory;
 
+	@Value("${sorta.threads:4}")
+	private int sortaThreads;
+
 	@RunAsSystem
 	public SortaJobImpl create(SortaJobExecution jobExecution)
 	{
@@ -59,7 +63,7 @@ public class SortaJobFactory
 
 		SortaJobProcessor matchInputTermBatchService = new SortaJobProcessor(jobExecution.getOntologyIri(),
 				jobExecution.getSourceEntityName(), jobExecution.getResultEntityName(), progress, dataService,
-				sortaService, idGenerator, menuReaderService);
+				sortaService, idGenerator, menuReaderService, sortaThreads);
 
 		return new SortaJobImpl(matchInputTermBatchService, runAsAuthentication, progress, transactionTemplate);
 	}
@@ -1,9 +1,11 @@
 package org.molgenis.ontology.sorta.job;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import org.molgenis.core.ui.menu.MenuReaderService;
 import org.molgenis.data.DataService;
 import org.molgenis.data.Entity;
+import org.molgenis.data.MolgenisDataException;
 import org.molgenis.data.populate.IdGenerator;
 import org.molgenis.data.support.DynamicEntity;
 import org.molgenis.data.support.QueryImpl;
@@ -13,19 +15,30 @@ import org.molgenis.ontology.sorta.controller.SortaController;
 import org.molgenis.ontology.sorta.meta.MatchingTaskContentMetaData;
 import org.molgenis.ontology.sorta.service.SortaService;
 import org.molgenis.security.core.runas.RunAsSystemAspect;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.molgenis.ontology.sorta.meta.OntologyTermHitMetaData.SCORE;
 import static org.molgenis.util.ApplicationContextProvider.getApplicationContext;
 
 public class SortaJobProcessor
 {
 	private static final int ADD_BATCH_SIZE = 1000;
-	private static final int PROGRESS_UPDATE_BATCH_SIZE = 50;
+	/**
+	 * Number of input terms matched by one worker task, the progress is updated after each batch
+	 */
+	private static final int MATCH_BATCH_SIZE = 50;
 
 	private final String ontologyIri;
 	private final String inputRepositoryName;
@@ -36,11 +49,16 @@ public class SortaJobProcessor
 	private final IdGenerator idGenerator;
 	private final AtomicInteger counter;
 	private final MenuReaderService menuReaderService;
+	private final int matchingThreads;
 
 	public SortaJobProcessor(String ontologyIri, String inputRepositoryName, String resultRepositoryName,
 			Progress progress, DataService dataService, SortaService sortaService, IdGenerator idGenerator,
-			MenuReaderService menuReaderService)
+			MenuReaderService menuReaderService, int matchingThreads)
 	{
+		if (matchingThreads < 1)
+		{
+			throw new IllegalArgumentException("Number of matching threads must be at least one");
+		}
 		this.ontologyIri = requireNonNull(ontologyIri);
 		this.inputRepositoryName = requireNonNull(inputRepositoryName);
 		this.resultRepositoryName = requireNonNull(resultRepositoryName);
@@ -50,6 +68,7 @@ public class SortaJobProcessor
 		this.idGenerator = requireNonNull(idGenerator);
 		this.counter = new AtomicInteger(0);
 		this.menuReaderService = requireNonNull(menuReaderService);
+		this.matchingThreads = matchingThreads;
 	}
 
 	public void process()
@@ -63,65 +82,128 @@ public class SortaJobProcessor
 
 			progress.setProgressMax((int) maxCount);
 
+			// Look up the ontology once instead of once per input term
+			Entity ontologyEntity = sortaService.getOntologyEntity(ontologyIri);
+			if (ontologyEntity == null)
+			{
+				throw new IllegalArgumentException("Ontology IRI " + ontologyIri + " does not exist in the database!");
+			}
+
 			// FIXME get rid of getApplicationContext reference
 			MatchingTaskContentMetaData matchingTaskContentMetaData = getApplicationContext().getBean(
 					MatchingTaskContentMetaData.class);
 
-			// Match input terms with code
-			List<Entity> entitiesToAdd = newArrayList();
-			dataService.findAll(inputRepositoryName).forEach(inputRow ->
+			// Match batches of input terms on the worker threads while reading the next batches, the results are
+			// added in input order on this thread
+			ExecutorService executorService = new DelegatingSecurityContextExecutorService(
+					newFixedThreadPool(matchingThreads));
+			try
 			{
-				Entity resultEntity = new DynamicEntity(matchingTaskContentMetaData)
-				{
-					@Override
-					protected void validateValueType(String attrName, Object value)
-					{
-						// FIXME enable validation by not overriding this method
-					}
-				};
-				resultEntity.set(MatchingTaskContentMetaData.INPUT_TERM, inputRow);
-				resultEntity.set(MatchingTaskContentMetaData.IDENTIFIER, idGenerator.generateId());
-				resultEntity.set(MatchingTaskContentMetaData.VALIDATED, false);
-				entitiesToAdd.add(resultEntity);
-
-				Iterable<Entity> ontologyTermEntities = sortaService.findOntologyTermEntities(ontologyIri, inputRow);
-				if (Iterables.size(ontologyTermEntities) > 0)
+				Deque<Future<List<Entity>>> matchedBatches = new ArrayDeque<>();
+				List<Entity> entitiesToAdd = newArrayList();
+				Iterators.partition(dataService.findAll(inputRepositoryName).iterator(), MATCH_BATCH_SIZE)
+						 .forEachRemaining(inputRows ->
+						 {
+							 matchedBatches.add(executorService.submit(
+									 () -> matchInputRows(ontologyEntity, matchingTaskContentMetaData, inputRows)));
+							 if (matchedBatches.size() > matchingThreads)
+							 {
+								 addMatchedBatch(matchedBatches.remove(), entitiesToAdd);
+							 }
+						 });
+				while (!matchedBatches.isEmpty())
 				{
-					Entity firstMatchedOntologyTerm = Iterables.getFirst(ontologyTermEntities,
-							new DynamicEntity(matchingTaskContentMetaData));
-					resultEntity.set(MatchingTaskContentMetaData.MATCHED_TERM,
-							firstMatchedOntologyTerm.get(OntologyTermMetaData.ONTOLOGY_TERM_IRI));
-					resultEntity.set(MatchingTaskContentMetaData.SCORE, firstMatchedOntologyTerm.get(SCORE));
-				}
-				else
-				{
-					resultEntity.set(MatchingTaskContentMetaData.SCORE, 0.0);
+					addMatchedBatch(matchedBatches.remove(), entitiesToAdd);
 				}
 
-				// Add entity in batch
-				if (entitiesToAdd.size() >= ADD_BATCH_SIZE)
+				// Add the rest
+				if (!entitiesToAdd.isEmpty())
 				{
 					dataService.add(resultRepositoryName, entitiesToAdd.stream());
-					entitiesToAdd.clear();
 				}
-
-				// Increase the number of the progress
-				counter.incrementAndGet();
-
-				// Update the progress only when the progress proceeds the threshold
-				if (counter.get() % PROGRESS_UPDATE_BATCH_SIZE == 0)
-				{
-					progress.progress(counter.get(), "Processed " + counter + " input terms.");
-				}
-			});
-			// Add the rest
-			if (!entitiesToAdd.isEmpty())
+			}
+			finally
 			{
-				dataService.add(resultRepositoryName, entitiesToAdd.stream());
+				executorService.shutdownNow();
 			}
 			progress.progress(counter.get(), "Processed " + counter + " input terms.");
 			progress.setResultUrl(menuReaderService.getMenu().findMenuItemPath(SortaController.ID) + "/result/"
 					+ resultRepositoryName);
 		});
 	}
-}
\ No newline at end of file
+
+	private List<Entity> matchInputRows(Entity ontologyEntity, MatchingTaskContentMetaData matchingTaskContentMetaData,
+			List<Entity> inputRows)
+	{
+		List<Entity> resultEntities = new ArrayList<>(inputRows.size());
+		for (Entity inputRow : inputRows)
+		{
+			Entity resultEntity = new DynamicEntity(matchingTaskContentMetaData)
+			{
+				@Override
+				protected void validateValueType(String attrName, Object value)
+				{
+					// FIXME enable validation by not overriding this method
+				}
+			};
+			resultEntity.set(MatchingTaskContentMetaData.INPUT_TERM, inputRow);
+			resultEntity.set(MatchingTaskContentMetaData.IDENTIFIER, idGenerator.generateId());
+			resultEntity.set(MatchingTaskContentMetaData.VALIDATED, false);
+			resultEntities.add(resultEntity);
+
+			Iterable<Entity> ontologyTermEntities = sortaService.findOntologyTermEntities(ontologyEntity, inputRow);
+			if (Iterables.size(ontologyTermEntities) > 0)
+			{
+				Entity firstMatchedOntologyTerm = Iterables.getFirst(ontologyTermEntities,
+						new DynamicEntity(matchingTaskContentMetaData));
+				resultEntity.set(MatchingTaskContentMetaData.MATCHED_TERM,
+						firstMatchedOntologyTerm.get(OntologyTermMetaData.ONTOLOGY_TERM_IRI));
+				resultEntity.set(MatchingTaskContentMetaData.SCORE, firstMatchedOntologyTerm.get(SCORE));
+			}
+			else
+			{
+				resultEntity.set(MatchingTaskContentMetaData.SCORE, 0.0);
+			}
+		}
+		return resultEntities;
+	}
+
+	private void addMatchedBatch(Future<List<Entity>> matchedBatch, List<Entity> entitiesToAdd)
+	{
+		List<Entity> resultEntities = getResultEntities(matchedBatch);
+		entitiesToAdd.addAll(resultEntities);
+
+		// Add entity in batch
+		if (entitiesToAdd.size() >= ADD_BATCH_SIZE)
+		{
+			dataService.add(resultRepositoryName, entitiesToAdd.stream());
+			entitiesToAdd.clear();
+		}
+
+		// Increase the number of the progress
+		counter.addAndGet(resultEntities.size());
+		progress.progress(counter.get(), "Processed " + counter + " input terms.");
+	}
+
+	private static List<Entity> getResultEntities(Future<List<Entity>> matchedBatch)
+	{
+		try
+		{
+			return matchedBatch.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new MolgenisDataException(e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			throw new MolgenisDataException(cause);
+		}
+	}
+}
@@ -33,4 +33,12 @@ public interface SortaService
 	 */
 	Iterable<Entity> findOntologyTermEntities(String ontologyIri, Entity inputEntity);
 
+	/**
+	 * Find a list of relevant ontologyterm typed entities for the given ontology entity, use this method instead of
+	 * {@link #findOntologyTermEntities(String, Entity)} when matching many inputs against the same ontology
+	 *
+	 * @return a list of ontologyterm entities in generic type
+	 */
+	Iterable<Entity> findOntologyTermEntities(Entity ontologyEntity, Entity inputEntity);
+
 }
\ No newline at end of file
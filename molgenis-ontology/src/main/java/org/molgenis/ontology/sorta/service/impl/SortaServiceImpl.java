@@ -1,5 +1,8 @@
 package org.molgenis.ontology.sorta.service.impl;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
@@ -14,6 +17,7 @@ import org.molgenis.ontology.sorta.bean.OntologyTermHitEntity;
 import org.molgenis.ontology.sorta.meta.OntologyTermHitMetaData;
 import org.molgenis.ontology.sorta.service.SortaService;
 import org.molgenis.semanticsearch.string.NGramDistanceAlgorithm;
+import org.molgenis.semanticsearch.string.NGramProfile;
 import org.molgenis.semanticsearch.string.Stemmer;
 
 import java.util.*;
@@ -37,6 +41,7 @@ public class SortaServiceImpl implements SortaService
 	private static final String SINGLE_WHITESPACE = " ";
 	private static final int MAX_NUMBER_MATCHES = 50;
 	private static final int NUMBER_NGRAM_MATCHES = 10;
+	private static final int MAX_CACHED_NGRAMS = 100000;
 
 	// Global fields that are used by other classes
 	public static final String SIGNIFICANT_VALUE = "Significant";
@@ -50,6 +55,15 @@ public class SortaServiceImpl implements SortaService
 	private final OntologyTermHitMetaData ontologyTermHitMetaData;
 	private final OntologyTermSynonymFactory ontologyTermSynonymFactory;
 
+	/**
+	 * N-gram profiles of cleaned query strings and ontology term synonyms, the synonyms of popular ontology terms are
+	 * scored against many input terms so their profiles are only created once
+	 */
+	private final LoadingCache<String, NGramProfile> nGramCache = CacheBuilder.newBuilder()
+																			  .maximumSize(MAX_CACHED_NGRAMS)
+																			  .build(CacheLoader.from(
+																					  NGramDistanceAlgorithm::createNGramProfile));
+
 	public SortaServiceImpl(DataService dataService, InformationContentService informationContentService,
 			OntologyTermHitMetaData ontologyTermHitMetaData, OntologyTermSynonymFactory ontologyTermSynonymFactory)
 	{
@@ -93,6 +107,18 @@ public class SortaServiceImpl implements SortaService
 		if (ontologyEntity == null)
 			throw new IllegalArgumentException("Ontology IRI " + ontologyIri + " does not exist in the database!");
 
+		return findOntologyTermEntities(ontologyIri, ontologyEntity, inputEntity);
+	}
+
+	@Override
+	public Iterable<Entity> findOntologyTermEntities(Entity ontologyEntity, Entity inputEntity)
+	{
+		return findOntologyTermEntities(ontologyEntity.getString(OntologyMetaData.ONTOLOGY_IRI), ontologyEntity,
+				inputEntity);
+	}
+
+	private Iterable<Entity> findOntologyTermEntities(String ontologyIri, Entity ontologyEntity, Entity inputEntity)
+	{
 		// a list to store most relevant entities
 		List<Entity> relevantEntities = new ArrayList<>();
 		// query rules for ontology anntations, e.g. OMIM:124343
@@ -276,6 +302,7 @@ public class SortaServiceImpl implements SortaService
 		if (Iterables.size(entities) > 0)
 		{
 			String cleanedQueryString = removeIllegalCharWithSingleWhiteSpace(queryString);
+			NGramProfile queryNGrams = nGramCache.getUnchecked(cleanedQueryString);
 
 			// Calculate the Ngram silmiarity score for all the synonyms and sort them in descending order
 			List<Entity> synonymEntities = FluentIterable.from(entities).transform(ontologyTermSynonymEntity ->
@@ -284,7 +311,8 @@ public class SortaServiceImpl implements SortaService
 				mapEntity.set(ontologyTermSynonymEntity);
 				String ontologyTermSynonym = removeIllegalCharWithSingleWhiteSpace(
 						ontologyTermSynonymEntity.getString(OntologyTermSynonymMetaData.ONTOLOGY_TERM_SYNONYM_ATTR));
-				mapEntity.set(SCORE, NGramDistanceAlgorithm.stringMatching(cleanedQueryString, ontologyTermSynonym));
+				mapEntity.set(SCORE, NGramDistanceAlgorithm.calculateScore(queryNGrams,
+						nGramCache.getUnchecked(ontologyTermSynonym)));
 				return mapEntity;
 			}).toSortedList((entity1, entity2) -> entity2.getDouble(SCORE).compareTo(entity1.getDouble(SCORE)));
 
@@ -292,6 +320,8 @@ public class SortaServiceImpl implements SortaService
 			double topNgramScore = firstMatchedSynonymEntity.getDouble(SCORE);
 			String topMatchedSynonym = firstMatchedSynonymEntity.getString(
 					OntologyTermSynonymMetaData.ONTOLOGY_TERM_SYNONYM_ATTR);
+			NGramProfile topMatchedSynonymNGrams = nGramCache.getUnchecked(
+					removeIllegalCharWithSingleWhiteSpace(topMatchedSynonym));
 
 			// the algorithm to combine synonyms to re-calculate the similarity scores to deal with the case where the
 			// input query string contains multiple words from different synonyms of the same ontology term. E.g.
@@ -316,13 +346,17 @@ public class SortaServiceImpl implements SortaService
 				StringBuilder tempCombinedSynonym = new StringBuilder();
 				tempCombinedSynonym.append(topMatchedSynonym).append(SINGLE_WHITESPACE).append(nextMatchedSynonym);
 
-				double newScore = NGramDistanceAlgorithm.stringMatching(cleanedQueryString,
-						removeIllegalCharWithSingleWhiteSpace(tempCombinedSynonym.toString()));
+				// the n-grams of the combined synonyms are the n-grams of both synonyms together, because n-grams are
+				// created per word
+				NGramProfile tempCombinedSynonymNGrams = topMatchedSynonymNGrams.merge(
+						nGramCache.getUnchecked(removeIllegalCharWithSingleWhiteSpace(nextMatchedSynonym)));
+				double newScore = NGramDistanceAlgorithm.calculateScore(queryNGrams, tempCombinedSynonymNGrams);
 
 				if (newScore > topNgramScore)
 				{
 					topNgramScore = newScore;
 					topMatchedSynonym = tempCombinedSynonym.toString();
+					topMatchedSynonymNGrams = tempCombinedSynonymNGrams;
 				}
 			}
 
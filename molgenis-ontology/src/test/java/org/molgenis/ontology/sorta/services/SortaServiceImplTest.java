@@ -31,8 +31,7 @@ import java.util.stream.Stream;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 import static org.molgenis.data.QueryRule.Operator.*;
 import static org.molgenis.data.meta.AttributeType.STRING;
 import static org.molgenis.ontology.core.meta.OntologyMetaData.ONTOLOGY;
@@ -308,6 +307,31 @@ public class SortaServiceImplTest extends AbstractMolgenisSpringTest
 		assertEquals(iterator_test3.hasNext(), false);
 	}
 
+	@Test
+	public void findOntologyTermEntitiesOntologyEntity()
+	{
+		Attribute nameAttr = when(mock(Attribute.class).getName()).thenReturn("Name").getMock();
+		when(nameAttr.getDataType()).thenReturn(STRING);
+
+		EntityType entityType = mock(EntityType.class);
+		when(entityType.getAtomicAttributes()).thenReturn(singletonList(nameAttr));
+		when(entityType.getAttribute("Name")).thenReturn(nameAttr);
+
+		Entity input = new DynamicEntity(entityType);
+		input.set("Name", "proptosis, protruding eye, Exophthalmos ");
+
+		Entity ontologyEntity = sortaServiceImpl.getOntologyEntity(ONTOLOGY_IRI);
+		Iterator<Entity> iterator = sortaServiceImpl.findOntologyTermEntities(ontologyEntity, input).iterator();
+
+		assertEquals(iterator.hasNext(), true);
+		assertEquals(iterator.next().getDouble(COMBINED_SCORE).intValue(), 100);
+		assertEquals(iterator.hasNext(), false);
+
+		// the ontology is not looked up again
+		verify(dataService, times(1)).findOne(ONTOLOGY,
+				new QueryImpl<>().eq(OntologyMetaData.ONTOLOGY_IRI, ONTOLOGY_IRI));
+	}
+
 	@Test
 	public void getAllOntologyEntities()
 	{
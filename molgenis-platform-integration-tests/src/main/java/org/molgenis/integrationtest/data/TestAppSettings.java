@@ -187,4 +187,16 @@ public class TestAppSettings implements AppSettings
 		return null;
 	}
 
+	@Override
+	public int getCacheMaxSizeMb()
+	{
+		return 128;
+	}
+
+	@Override
+	public void setCacheMaxSizeMb(int cacheMaxSizeMb)
+	{
+
+	}
+
 }
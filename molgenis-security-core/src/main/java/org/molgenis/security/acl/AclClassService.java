@@ -17,6 +17,15 @@ public interface AclClassService
 	 */
 	boolean hasAclClass(String type);
 
+	/**
+	 * Returns whether the ACLs of the given type only grant permissions: none of their entries deny a permission and
+	 * none of them inherits entries from a parent ACL.
+	 *
+	 * @param type domain object type
+	 * @return <tt>true</tt> if the ACLs of the given type only contain granting entries
+	 */
+	boolean hasGrantingAclsOnly(String type);
+
 	/**
 	 * Returns all ACL class types.
 	 */
@@ -25,6 +25,11 @@ public class MutableAclClassServiceImpl implements MutableAclClassService
 	private static final String SQL_DELETE_FROM_ACL_CLASS = "delete from acl_class where class=?";
 	private static final String SQL_COUNT_ACL_CLASS = "select count(*) from acl_class WHERE class = ?";
 	private static final String SQL_SELECT_ACL_CLASS = "select class from acl_class";
+	private static final String SQL_EXISTS_NON_GRANTING_ACL = "select exists (select 1 from acl_object_identity"
+			+ " join acl_class on acl_object_identity.object_id_class = acl_class.id where acl_class.class = ?"
+			+ " and ((acl_object_identity.parent_object is not null and acl_object_identity.entries_inheriting)"
+			+ " or exists (select 1 from acl_entry where acl_entry.acl_object_identity = acl_object_identity.id"
+			+ " and not acl_entry.granting)))";
 
 	private final JdbcTemplate jdbcTemplate;
 	private final AclCache aclCache;
@@ -74,6 +79,16 @@ public class MutableAclClassServiceImpl implements MutableAclClassService
 		return result;
 	}
 
+	@Override
+	public boolean hasGrantingAclsOnly(String type)
+	{
+		// not cached, entries change whenever permissions on entities change
+		boolean result = !Boolean.TRUE.equals(
+				jdbcTemplate.queryForObject(SQL_EXISTS_NON_GRANTING_ACL, new Object[] { type }, Boolean.class));
+		LOGGER.trace("hasGrantingAclsOnly({}): {}", type, result);
+		return result;
+	}
+
 	@Override
 	public Collection<String> getAclClassTypes()
 	{
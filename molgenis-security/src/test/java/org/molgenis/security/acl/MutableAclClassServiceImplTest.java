@@ -75,6 +75,22 @@ public class MutableAclClassServiceImplTest extends AbstractMockitoTest
 				new Object[] { type }, Integer.class);
 	}
 
+	@Test
+	public void testHasGrantingAclsOnly()
+	{
+		String type = "MyType";
+		when(jdbcTemplate.queryForObject(anyString(), eq(new Object[] { type }), eq(Boolean.class))).thenReturn(false);
+		assertTrue(mutableAclClassService.hasGrantingAclsOnly(type));
+	}
+
+	@Test
+	public void testHasGrantingAclsOnlyNonGrantingAcl()
+	{
+		String type = "MyType";
+		when(jdbcTemplate.queryForObject(anyString(), eq(new Object[] { type }), eq(Boolean.class))).thenReturn(true);
+		assertFalse(mutableAclClassService.hasGrantingAclsOnly(type));
+	}
+
 	@Test
 	public void testGetAclClassTypes()
 	{
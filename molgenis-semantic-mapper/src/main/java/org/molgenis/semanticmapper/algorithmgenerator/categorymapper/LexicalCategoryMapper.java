@@ -5,6 +5,7 @@ import org.molgenis.semanticmapper.algorithmgenerator.bean.Category;
 import org.molgenis.semanticmapper.algorithmgenerator.rules.CategoryMatchQuality;
 import org.molgenis.semanticmapper.algorithmgenerator.rules.CategoryRule;
 import org.molgenis.semanticsearch.string.NGramDistanceAlgorithm;
+import org.molgenis.semanticsearch.string.NGramProfile;
 
 import java.util.List;
 import java.util.Objects;
@@ -22,6 +23,7 @@ public class LexicalCategoryMapper extends CategoryMapper
 	public Category findBestCategoryMatch(Category sourceCategory, List<Category> targetCategories)
 	{
 		String sourceCategoryLabel = sourceCategory.getLabel().toLowerCase();
+		NGramProfile sourceCategoryProfile = NGramDistanceAlgorithm.createNGramProfile(sourceCategoryLabel);
 		Category bestCategory = null;
 		double bestNGramScore = -1;
 		for (Category targetCategory : targetCategories)
@@ -33,7 +35,8 @@ public class LexicalCategoryMapper extends CategoryMapper
 				return targetCategory;
 			}
 
-			double ngramScore = NGramDistanceAlgorithm.stringMatching(sourceCategoryLabel, targetCategoryLabel);
+			double ngramScore = NGramDistanceAlgorithm.calculateScore(sourceCategoryProfile,
+					NGramDistanceAlgorithm.createNGramProfile(targetCategoryLabel));
 			if (bestNGramScore == -1 || bestNGramScore < ngramScore)
 			{
 				bestNGramScore = ngramScore;
@@ -25,6 +25,7 @@ import org.molgenis.semanticmapper.service.impl.*;
 import org.molgenis.semanticsearch.service.OntologyTagService;
 import org.molgenis.semanticsearch.service.SemanticSearchService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
@@ -72,11 +73,14 @@ public class MappingConfig
 	@Autowired
 	SystemPackageRegistry systemPackageRegistry;
 
+	@Value("${mapping.threads:4}")
+	int mappingThreads;
+
 	@Bean
 	public MappingService mappingService()
 	{
 		return new MappingServiceImpl(dataService, algorithmServiceImpl(), mappingProjectRepository(),
-				permissionSystemService, attrMetaFactory, entityManager);
+				permissionSystemService, attrMetaFactory, entityManager, mappingThreads);
 	}
 
 	@Bean
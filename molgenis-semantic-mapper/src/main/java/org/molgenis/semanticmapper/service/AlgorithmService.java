@@ -1,6 +1,7 @@
 package org.molgenis.semanticmapper.service;
 
 import org.molgenis.data.Entity;
+import org.molgenis.data.Fetch;
 import org.molgenis.data.meta.model.Attribute;
 import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.semanticmapper.mapping.model.AttributeMapping;
@@ -29,6 +30,25 @@ public interface AlgorithmService
 	 */
 	Object apply(AttributeMapping attributeMapping, Entity sourceEntity, EntityType sourceEntityType);
 
+	/**
+	 * Applies {@link AttributeMapping}s to a source {@link Entity}. The algorithms of all attribute mappings are
+	 * evaluated against a single script representation of the source entity.
+	 *
+	 * @param attributeMappings {@link AttributeMapping}s to apply
+	 * @param sourceEntity      {@link Entity} to apply the mappings to
+	 * @return List containing the mapped value of each attribute mapping
+	 */
+	List<Object> apply(List<AttributeMapping> attributeMappings, Entity sourceEntity, EntityType sourceEntityType);
+
+	/**
+	 * Creates a {@link Fetch} for the source entity values that algorithms can read, so that referenced entities can
+	 * be retrieved together with the source entities instead of while applying the algorithms.
+	 *
+	 * @param sourceEntityType source {@link EntityType}
+	 * @return fetch of the source entity values up to the entity reference depth of the algorithms
+	 */
+	Fetch createSourceFetch(EntityType sourceEntityType);
+
 	/**
 	 * Retrieves the names of the source attributes in an algorithm
 	 *
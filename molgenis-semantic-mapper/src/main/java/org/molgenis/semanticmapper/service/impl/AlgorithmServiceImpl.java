@@ -4,6 +4,7 @@ import com.google.common.collect.Multimap;
 import org.apache.commons.lang3.StringUtils;
 import org.molgenis.data.Entity;
 import org.molgenis.data.EntityManager;
+import org.molgenis.data.Fetch;
 import org.molgenis.data.meta.AttributeType;
 import org.molgenis.data.meta.IllegalAttributeTypeException;
 import org.molgenis.data.meta.model.Attribute;
@@ -28,7 +29,9 @@ import org.slf4j.LoggerFactory;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +43,7 @@ import static java.lang.Double.parseDouble;
 import static java.lang.Math.round;
 import static java.lang.Math.toIntExact;
 import static java.lang.String.format;
+import static java.util.Collections.emptyIterator;
 import static java.util.Collections.emptyList;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
@@ -147,7 +151,62 @@ public class AlgorithmServiceImpl implements AlgorithmService
 			return null;
 		}
 		Object result = jsMagmaScriptEvaluator.eval(algorithm, sourceEntity, ENTITY_REFERENCE_FETCHING_DEPTH);
+		return toValue(result, attributeMapping);
+	}
+
+	@Override
+	public List<Object> apply(List<AttributeMapping> attributeMappings, Entity sourceEntity,
+			EntityType sourceEntityType)
+	{
+		List<String> algorithms = attributeMappings.stream()
+												   .map(AttributeMapping::getAlgorithm)
+												   .filter(algorithm -> !isEmpty(algorithm))
+												   .collect(toList());
+		Iterator<Object> results = algorithms.isEmpty() ? emptyIterator() : jsMagmaScriptEvaluator.eval(algorithms,
+				sourceEntity, ENTITY_REFERENCE_FETCHING_DEPTH).iterator();
+
+		List<Object> values = new ArrayList<>(attributeMappings.size());
+		for (AttributeMapping attributeMapping : attributeMappings)
+		{
+			values.add(isEmpty(attributeMapping.getAlgorithm()) ? null : toValue(results.next(), attributeMapping));
+		}
+		return values;
+	}
+
+	@Override
+	public Fetch createSourceFetch(EntityType sourceEntityType)
+	{
+		return createFetch(sourceEntityType, ENTITY_REFERENCE_FETCHING_DEPTH);
+	}
 
+	/**
+	 * Fetches all attributes up to the given depth, which is how far the script evaluator follows references. Of
+	 * entities referenced beyond the depth only the id is read.
+	 */
+	private static Fetch createFetch(EntityType entityType, int depth)
+	{
+		Fetch fetch = new Fetch();
+		for (Attribute attr : entityType.getAtomicAttributes())
+		{
+			EntityType refEntityType = attr.getRefEntity();
+			if (refEntityType == null)
+			{
+				fetch.field(attr.getName());
+			}
+			else if (depth > 1)
+			{
+				fetch.field(attr.getName(), createFetch(refEntityType, depth - 1));
+			}
+			else
+			{
+				fetch.field(attr.getName(), new Fetch().field(refEntityType.getIdAttribute().getName()));
+			}
+		}
+		return fetch;
+	}
+
+	private Object toValue(Object result, AttributeMapping attributeMapping)
+	{
 		// jsMagmaScriptEvaluator.eval() catches and returns the error instead of throwing it
 		// so check instance of result object here
 		if (result instanceof ScriptException)
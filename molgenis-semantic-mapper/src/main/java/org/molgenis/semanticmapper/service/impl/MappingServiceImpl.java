@@ -17,10 +17,19 @@ import org.molgenis.semanticmapper.repository.MappingProjectRepository;
 import org.molgenis.semanticmapper.service.AlgorithmService;
 import org.molgenis.semanticmapper.service.MappingService;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -29,6 +38,7 @@ import static com.google.common.collect.Maps.newHashMap;
 import static java.lang.Boolean.TRUE;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.stream.Collectors.toList;
 import static org.molgenis.data.EntityManager.CreationMode.POPULATE;
 import static org.molgenis.data.meta.model.EntityType.AttributeCopyMode.DEEP_COPY_ATTRS;
@@ -49,17 +59,32 @@ public class MappingServiceImpl implements MappingService
 	private final PermissionSystemService permissionSystemService;
 	private final AttributeFactory attrMetaFactory;
 	private final EntityManager entityManager;
+	private final int mappingThreads;
+	private final ExecutorService mappingExecutorService;
 
 	public MappingServiceImpl(DataService dataService, AlgorithmService algorithmService,
 			MappingProjectRepository mappingProjectRepository, PermissionSystemService permissionSystemService,
-			AttributeFactory attrMetaFactory, EntityManager entityManager)
+			AttributeFactory attrMetaFactory, EntityManager entityManager, int mappingThreads)
 	{
+		if (mappingThreads < 1)
+		{
+			throw new IllegalArgumentException("Number of mapping threads must be at least one");
+		}
 		this.dataService = requireNonNull(dataService);
 		this.algorithmService = requireNonNull(algorithmService);
 		this.mappingProjectRepository = requireNonNull(mappingProjectRepository);
 		this.permissionSystemService = requireNonNull(permissionSystemService);
 		this.attrMetaFactory = requireNonNull(attrMetaFactory);
 		this.entityManager = requireNonNull(entityManager);
+		this.mappingThreads = mappingThreads;
+		this.mappingExecutorService = new DelegatingSecurityContextExecutorService(
+				newFixedThreadPool(mappingThreads));
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		mappingExecutorService.shutdownNow();
 	}
 
 	@Override
@@ -324,25 +349,64 @@ public class MappingServiceImpl implements MappingService
 							.sum();
 	}
 
+	/**
+	 * Maps the source entities in batches. Batches are mapped concurrently by a pool of workers shared by all
+	 * mappings, while the calling thread reads the source batches and writes the mapped batches to the target
+	 * repository in source order. The entities referenced by the algorithms are retrieved by the calling thread
+	 * together with the source batch, so that the workers do not access the repositories.
+	 */
 	long applyMappingToRepo(EntityMapping sourceMapping, Repository<Entity> targetRepo, Progress progress)
 	{
 		progress.status(format("Mapping source [%s]...", sourceMapping.getLabel()));
 		AtomicLong counter = new AtomicLong();
 
 		boolean canAdd = targetRepo.count() == 0;
-		dataService.getRepository(sourceMapping.getName())
-				   .forEachBatched(
-						   entities -> processBatch(sourceMapping, targetRepo, progress, counter, canAdd, entities),
-						   MAPPING_BATCH_SIZE);
+		EntityType targetEntityType = targetRepo.getEntityType();
+		Fetch sourceFetch = algorithmService.createSourceFetch(sourceMapping.getSourceEntityType());
+		Deque<Future<List<Entity>>> mappedBatches = new ArrayDeque<>();
+		try
+		{
+			dataService.getRepository(sourceMapping.getName()).forEachBatched(sourceFetch, entities ->
+			{
+				List<Entity> batch = new ArrayList<>(entities);
+				mappedBatches.add(submitBatch(sourceMapping, targetEntityType, batch));
+				if (mappedBatches.size() > mappingThreads)
+				{
+					writeBatch(targetRepo, progress, counter, canAdd, mappedBatches.remove());
+				}
+			}, MAPPING_BATCH_SIZE);
+
+			while (!mappedBatches.isEmpty())
+			{
+				writeBatch(targetRepo, progress, counter, canAdd, mappedBatches.remove());
+			}
+		}
+		finally
+		{
+			mappedBatches.forEach(mappedBatch -> mappedBatch.cancel(true));
+		}
 
 		progress.status(format("Mapped %s [%s] entities.", counter, sourceMapping.getLabel()));
 		return counter.get();
 	}
 
-	private void processBatch(EntityMapping sourceMapping, Repository<Entity> targetRepo, Progress progress,
-			AtomicLong counter, boolean canAdd, List<Entity> entities)
+	private Future<List<Entity>> submitBatch(EntityMapping sourceMapping, EntityType targetEntityType,
+			List<Entity> batch)
+	{
+		try
+		{
+			return mappingExecutorService.submit(() -> mapEntities(sourceMapping, targetEntityType, batch));
+		}
+		catch (RejectedExecutionException e)
+		{
+			throw new MolgenisDataException("Mapping rejected, the mapping service is shutting down", e);
+		}
+	}
+
+	private static void writeBatch(Repository<Entity> targetRepo, Progress progress, AtomicLong counter,
+			boolean canAdd, Future<List<Entity>> mappedBatch)
 	{
-		List<Entity> mappedEntities = mapEntities(sourceMapping, targetRepo.getEntityType(), entities);
+		List<Entity> mappedEntities = getMappedEntities(mappedBatch);
 		if (canAdd)
 		{
 			targetRepo.add(mappedEntities.stream());
@@ -352,7 +416,29 @@ public class MappingServiceImpl implements MappingService
 			targetRepo.upsertBatch(mappedEntities);
 		}
 		progress.increment(1);
-		counter.addAndGet(entities.size());
+		counter.addAndGet(mappedEntities.size());
+	}
+
+	private static List<Entity> getMappedEntities(Future<List<Entity>> mappedBatch)
+	{
+		try
+		{
+			return mappedBatch.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new MolgenisDataException(e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			throw new MolgenisDataException(cause);
+		}
 	}
 
 	private List<Entity> mapEntities(EntityMapping sourceMapping, EntityType targetMetaData, List<Entity> entities)
@@ -374,20 +460,16 @@ public class MappingServiceImpl implements MappingService
 			target.set(SOURCE, sourceMapping.getName());
 		}
 
-		sourceMapping.getAttributeMappings()
-					 .forEach(attributeMapping -> applyMappingToAttribute(attributeMapping, sourceEntity, target,
-							 sourceMapping.getSourceEntityType()));
+		List<AttributeMapping> attributeMappings = new ArrayList<>(sourceMapping.getAttributeMappings());
+		List<Object> typedValues = algorithmService.apply(attributeMappings, sourceEntity,
+				sourceMapping.getSourceEntityType());
+		for (int i = 0; i < attributeMappings.size(); i++)
+		{
+			target.set(attributeMappings.get(i).getTargetAttribute().getName(), typedValues.get(i));
+		}
 		return target;
 	}
 
-	private void applyMappingToAttribute(AttributeMapping attributeMapping, Entity sourceEntity, Entity target,
-			EntityType entityType)
-	{
-		String targetAttributeName = attributeMapping.getTargetAttribute().getName();
-		Object typedValue = algorithmService.apply(attributeMapping, sourceEntity, entityType);
-		target.set(targetAttributeName, typedValue);
-	}
-
 	int calculateMaxProgress(MappingTarget mappingTarget)
 	{
 		int batches = mappingTarget.getEntityMappings().stream().mapToInt(this::countBatches).sum();
@@ -4,8 +4,10 @@ import com.google.common.collect.Lists;
 import org.mockito.Mock;
 import org.molgenis.data.Entity;
 import org.molgenis.data.EntityManager;
+import org.molgenis.data.Fetch;
 import org.molgenis.data.meta.AttributeType;
 import org.molgenis.data.meta.model.Attribute;
+import org.molgenis.data.meta.model.EntityType;
 import org.molgenis.js.magma.JsMagmaScriptEvaluator;
 import org.molgenis.script.core.ScriptException;
 import org.molgenis.semanticmapper.algorithmgenerator.service.AlgorithmGeneratorService;
@@ -16,6 +18,7 @@ import org.molgenis.test.AbstractMockitoTest;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import static java.util.Arrays.asList;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.molgenis.data.meta.AttributeType.*;
@@ -130,6 +133,45 @@ public class AlgorithmServiceImplTest extends AbstractMockitoTest
 		algorithmServiceImpl.apply(attributeMapping, sourceEntity, null);
 	}
 
+	@Test
+	public void testApplyAttributeMappings()
+	{
+		AttributeMapping attributeMapping0 = mock(AttributeMapping.class);
+		when(attributeMapping0.getAlgorithm()).thenReturn("algorithm0");
+		Attribute targetAttribute0 = when(mock(Attribute.class).getDataType()).thenReturn(INT).getMock();
+		when(attributeMapping0.getTargetAttribute()).thenReturn(targetAttribute0);
+		AttributeMapping attributeMapping1 = mock(AttributeMapping.class);
+		AttributeMapping attributeMapping2 = mock(AttributeMapping.class);
+		when(attributeMapping2.getAlgorithm()).thenReturn("algorithm2");
+		Attribute targetAttribute2 = when(mock(Attribute.class).getDataType()).thenReturn(STRING).getMock();
+		when(attributeMapping2.getTargetAttribute()).thenReturn(targetAttribute2);
+
+		Entity sourceEntity = mock(Entity.class);
+		when(jsMagmaScriptEvaluator.eval(asList("algorithm0", "algorithm2"), sourceEntity, 3)).thenReturn(
+				asList(1, "str"));
+
+		assertEquals(
+				algorithmServiceImpl.apply(asList(attributeMapping0, attributeMapping1, attributeMapping2), sourceEntity,
+						null), asList(1, null, "str"));
+	}
+
+	@Test
+	public void testCreateSourceFetch()
+	{
+		EntityType entityType = mock(EntityType.class);
+		Attribute idAttribute = when(mock(Attribute.class).getName()).thenReturn("id").getMock();
+		Attribute parentAttribute = when(mock(Attribute.class).getName()).thenReturn("parent").getMock();
+		when(parentAttribute.getRefEntity()).thenReturn(entityType);
+		when(entityType.getAtomicAttributes()).thenReturn(asList(idAttribute, parentAttribute));
+		when(entityType.getIdAttribute()).thenReturn(idAttribute);
+
+		Fetch depth3Fetch = new Fetch().field("id");
+		Fetch depth2Fetch = new Fetch().field("id").field("parent", depth3Fetch);
+		Fetch depth1Fetch = new Fetch().field("id").field("parent", depth2Fetch);
+		Fetch expectedFetch = new Fetch().field("id").field("parent", depth1Fetch);
+		assertEquals(algorithmServiceImpl.createSourceFetch(entityType), expectedFetch);
+	}
+
 	private void testApplyConvertException(String algorithmResult, AttributeType attributeType)
 	{
 		AttributeMapping attributeMapping = mock(AttributeMapping.class);
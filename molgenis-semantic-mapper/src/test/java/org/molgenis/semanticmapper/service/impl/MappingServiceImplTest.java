@@ -13,6 +13,7 @@ import org.molgenis.data.security.permission.PermissionSystemService;
 import org.molgenis.data.support.DynamicEntity;
 import org.molgenis.data.util.EntityUtils;
 import org.molgenis.jobs.Progress;
+import org.molgenis.script.core.ScriptException;
 import org.molgenis.js.magma.JsMagmaScriptEvaluator;
 import org.molgenis.semanticmapper.mapping.model.AttributeMapping;
 import org.molgenis.semanticmapper.mapping.model.EntityMapping;
@@ -41,6 +42,7 @@ import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.when;
@@ -52,8 +54,7 @@ import static org.molgenis.semanticmapper.service.impl.MappingServiceImpl.SOURCE
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
 
-@ContextConfiguration(classes = { MappingServiceImplTest.Config.class, MappingServiceImpl.class,
-		EntityBaseTestConfig.class })
+@ContextConfiguration(classes = { MappingServiceImplTest.Config.class, EntityBaseTestConfig.class })
 public class MappingServiceImplTest extends AbstractMolgenisSpringTest
 {
 	private static final String TARGET_HOP_ENTITY = "HopEntity";
@@ -325,11 +326,12 @@ public class MappingServiceImplTest extends AbstractMolgenisSpringTest
 		Mockito.doAnswer(invocationOnMock ->
 		{
 			@SuppressWarnings("unchecked")
-			Consumer<List<Entity>> consumer = (Consumer<List<Entity>>) invocationOnMock.<Consumer>getArgument(0);
+			Consumer<List<Entity>> consumer = (Consumer<List<Entity>>) invocationOnMock.<Consumer>getArgument(1);
 
 			consumer.accept(sourceGeneEntities);
 			return null;
-		}).when(geneRepo).forEachBatched(ArgumentMatchers.any(Consumer.class), ArgumentMatchers.eq(MAPPING_BATCH_SIZE));
+		}).when(geneRepo).forEachBatched(ArgumentMatchers.any(), ArgumentMatchers.any(Consumer.class),
+				ArgumentMatchers.eq(MAPPING_BATCH_SIZE));
 
 		// make project and apply mappings once
 		MappingProject project = createMappingProjectWithMappings();
@@ -341,7 +343,8 @@ public class MappingServiceImplTest extends AbstractMolgenisSpringTest
 		assertEquals(mappingService.applyMappings("TestRun", entityTypeId, true, "packageId", "label", progress), 4);
 
 		Mockito.verify(geneRepo)
-			   .forEachBatched(ArgumentMatchers.any(Consumer.class), ArgumentMatchers.any(Integer.class));
+			   .forEachBatched(ArgumentMatchers.any(), ArgumentMatchers.any(Consumer.class),
+					   ArgumentMatchers.any(Integer.class));
 
 		ArgumentCaptor<EntityType> entityTypeCaptor = ArgumentCaptor.forClass(EntityType.class);
 		Mockito.verify(permissionSystemService).giveUserWriteMetaPermissions(entityTypeCaptor.capture());
@@ -391,10 +394,11 @@ public class MappingServiceImplTest extends AbstractMolgenisSpringTest
 		Mockito.doAnswer(invocationOnMock ->
 		{
 			@SuppressWarnings("unchecked")
-			Consumer<List<Entity>> consumer = (Consumer<List<Entity>>) invocationOnMock.<Consumer>getArgument(0);
+			Consumer<List<Entity>> consumer = (Consumer<List<Entity>>) invocationOnMock.<Consumer>getArgument(1);
 			consumer.accept(sourceGeneEntities);
 			return null;
-		}).when(geneRepo).forEachBatched(ArgumentMatchers.any(Consumer.class), ArgumentMatchers.eq(MAPPING_BATCH_SIZE));
+		}).when(geneRepo).forEachBatched(ArgumentMatchers.any(), ArgumentMatchers.any(Consumer.class),
+				ArgumentMatchers.eq(MAPPING_BATCH_SIZE));
 
 		// make project and apply mappings once
 		MappingProject project = createMappingProjectWithMappings();
@@ -406,7 +410,8 @@ public class MappingServiceImplTest extends AbstractMolgenisSpringTest
 		assertEquals(mappingService.applyMappings("TestRun", entityTypeId, false, "packageId", "label", progress), 4);
 
 		Mockito.verify(geneRepo)
-			   .forEachBatched(ArgumentMatchers.any(Consumer.class), ArgumentMatchers.any(Integer.class));
+			   .forEachBatched(ArgumentMatchers.any(), ArgumentMatchers.any(Consumer.class),
+					   ArgumentMatchers.any(Integer.class));
 
 		Mockito.verify(updateEntityRepo).upsertBatch(batchCaptor.capture());
 		Assert.assertTrue(EntityUtils.equalsEntities(batchCaptor.getValue(), expectedEntities));
@@ -443,10 +448,14 @@ public class MappingServiceImplTest extends AbstractMolgenisSpringTest
 		when(targetEntityType.getIdAttribute()).thenReturn(targetID);
 		when(targetRepo.getEntityType()).thenReturn(targetEntityType);
 
+		when(sourceMapping.getSourceEntityType()).thenReturn(sourceEntityType);
+		Fetch sourceFetch = new Fetch().field("sourceID");
+		when(algorithmService.createSourceFetch(sourceEntityType)).thenReturn(sourceFetch);
+
 		List<Entity> batch = Lists.newArrayList(Mockito.mock(Entity.class));
 		Mockito.doAnswer(invocationOnMock ->
 		{
-			Consumer<List<Entity>> consumer = (Consumer<List<Entity>>) invocationOnMock.<Consumer>getArgument(0);
+			Consumer<List<Entity>> consumer = (Consumer<List<Entity>>) invocationOnMock.<Consumer>getArgument(1);
 
 			consumer.accept(batch);
 			consumer.accept(batch);
@@ -454,7 +463,8 @@ public class MappingServiceImplTest extends AbstractMolgenisSpringTest
 			return null;
 		})
 			   .when(sourceRepo)
-			   .forEachBatched(ArgumentMatchers.any(Consumer.class), ArgumentMatchers.eq(MAPPING_BATCH_SIZE));
+			   .forEachBatched(ArgumentMatchers.eq(sourceFetch), ArgumentMatchers.any(Consumer.class),
+					   ArgumentMatchers.eq(MAPPING_BATCH_SIZE));
 
 		mappingService.applyMappingToRepo(sourceMapping, targetRepo, progress);
 
@@ -490,13 +500,14 @@ public class MappingServiceImplTest extends AbstractMolgenisSpringTest
 
 		Mockito.doAnswer(invocationOnMock ->
 		{
-			Consumer<List<Entity>> consumer = (Consumer<List<Entity>>) invocationOnMock.<Consumer>getArgument(0);
+			Consumer<List<Entity>> consumer = (Consumer<List<Entity>>) invocationOnMock.<Consumer>getArgument(1);
 			consumer.accept(batch);
 			consumer.accept(batch);
 			return null;
 		})
 			   .when(sourceRepo)
-			   .forEachBatched(ArgumentMatchers.any(Consumer.class), ArgumentMatchers.eq(MAPPING_BATCH_SIZE));
+			   .forEachBatched(ArgumentMatchers.any(), ArgumentMatchers.any(Consumer.class),
+					   ArgumentMatchers.eq(MAPPING_BATCH_SIZE));
 
 		mappingService.applyMappingToRepo(sourceMapping, targetRepo, progress);
 
@@ -507,6 +518,41 @@ public class MappingServiceImplTest extends AbstractMolgenisSpringTest
 		Mockito.verifyNoMoreInteractions(progress);
 	}
 
+	@Test(expectedExceptions = ScriptException.class, expectedExceptionsMessageRegExp = "algorithm is not defined")
+	@SuppressWarnings("unchecked")
+	public void testApplyMappingsToRepoAlgorithmException()
+	{
+		Repository<Entity> targetRepo = Mockito.mock(Repository.class);
+		Repository<Entity> sourceRepo = Mockito.mock(Repository.class);
+		EntityMapping sourceMapping = Mockito.mock(EntityMapping.class);
+		when(sourceMapping.getName()).thenReturn("sourceMappingID");
+		when(dataService.getRepository("sourceMappingID")).thenReturn(sourceRepo);
+		when(targetRepo.getEntityType()).thenReturn(Mockito.mock(EntityType.class));
+		when(algorithmService.apply(ArgumentMatchers.<List<AttributeMapping>>any(), ArgumentMatchers.any(),
+				ArgumentMatchers.any())).thenThrow(new ScriptException("algorithm is not defined"));
+
+		List<Entity> batch = newArrayList(Mockito.mock(Entity.class));
+		Mockito.doAnswer(invocationOnMock ->
+		{
+			Consumer<List<Entity>> consumer = (Consumer<List<Entity>>) invocationOnMock.<Consumer>getArgument(1);
+			consumer.accept(batch);
+			return null;
+		})
+			   .when(sourceRepo)
+			   .forEachBatched(ArgumentMatchers.any(), ArgumentMatchers.any(Consumer.class),
+					   ArgumentMatchers.eq(MAPPING_BATCH_SIZE));
+
+		try
+		{
+			mappingService.applyMappingToRepo(sourceMapping, targetRepo, progress);
+		}
+		finally
+		{
+			Mockito.verify(targetRepo, Mockito.never()).add(ArgumentMatchers.any(Stream.class));
+			Mockito.reset(algorithmService);
+		}
+	}
+
 	@Test(expectedExceptions = MolgenisDataException.class, expectedExceptionsMessageRegExp = "Target repository does not contain the following attribute: COUNTRY_1")
 	public void testIncompatibleMetaDataUnknownAttribute()
 	{
@@ -693,13 +739,16 @@ public class MappingServiceImplTest extends AbstractMolgenisSpringTest
 			geneEntity.set("length", i * 2d);
 			sourceGeneEntities.add(geneEntity);
 
-			when(algorithmService.apply(argThat(obj -> obj != null && obj.getAlgorithm().equals("$('id').value()")),
-					ArgumentMatchers.eq(geneEntity), ArgumentMatchers.eq(geneMetaData))).thenReturn(
-					geneEntity.getString("id"));
-
-			when(algorithmService.apply(argThat(obj -> obj != null && obj.getAlgorithm().equals("$('length').value()")),
-					ArgumentMatchers.eq(geneEntity), ArgumentMatchers.eq(geneMetaData))).thenReturn(
-					geneEntity.getDouble("length"));
+			when(algorithmService.apply(ArgumentMatchers.<List<AttributeMapping>>any(), ArgumentMatchers.eq(geneEntity),
+					ArgumentMatchers.eq(geneMetaData))).thenAnswer(invocation ->
+			{
+				List<AttributeMapping> attributeMappings = invocation.getArgument(0);
+				return attributeMappings.stream()
+										.map(attributeMapping -> attributeMapping.getAlgorithm()
+																				 .equals("$('id').value()") ? geneEntity
+												.getString("id") : geneEntity.getDouble("length"))
+										.collect(toList());
+			});
 
 			Entity expectedEntity = new DynamicEntity(targetMeta);
 			expectedEntity.set("identifier", String.valueOf(i));
@@ -746,6 +795,15 @@ public class MappingServiceImplTest extends AbstractMolgenisSpringTest
 			return Mockito.mock(EntityManager.class);
 		}
 
+		@Bean
+		MappingServiceImpl mappingService(DataService dataService, AlgorithmService algorithmService,
+				MappingProjectRepository mappingProjectRepository, PermissionSystemService permissionSystemService,
+				AttributeFactory attrMetaFactory, EntityManager entityManager)
+		{
+			return new MappingServiceImpl(dataService, algorithmService, mappingProjectRepository,
+					permissionSystemService, attrMetaFactory, entityManager, 2);
+		}
+
 		@Bean
 		public AlgorithmService algorithmService()
 		{
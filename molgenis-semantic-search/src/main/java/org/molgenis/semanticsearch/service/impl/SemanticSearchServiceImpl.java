@@ -29,6 +29,7 @@ import org.molgenis.semanticsearch.explain.service.ElasticSearchExplainService;
 import org.molgenis.semanticsearch.semantic.Hit;
 import org.molgenis.semanticsearch.service.SemanticSearchService;
 import org.molgenis.semanticsearch.string.NGramDistanceAlgorithm;
+import org.molgenis.semanticsearch.string.NGramProfile;
 import org.molgenis.semanticsearch.string.Stemmer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -353,20 +354,30 @@ public class SemanticSearchServiceImpl implements SemanticSearchService
 	 */
 	public Hit<String> bestMatchingSynonym(OntologyTerm ontologyTerm, Set<String> searchTerms)
 	{
+		String stemmedSearchTerms = Stemmer.stemAndJoin(searchTerms);
+		NGramProfile searchTermsProfile = NGramDistanceAlgorithm.createNGramProfile(stemmedSearchTerms);
 		Optional<Hit<String>> bestSynonym = ontologyTerm.getSynonyms()
 														.stream()
 														.map(synonym -> Hit.create(synonym,
-																distanceFrom(synonym, searchTerms)))
+																distanceFrom(synonym, stemmedSearchTerms,
+																		searchTermsProfile)))
 														.max(Comparator.naturalOrder());
 		return bestSynonym.get();
 	}
 
 	float distanceFrom(String synonym, Set<String> searchTerms)
+	{
+		String stemmedSearchTerms = Stemmer.stemAndJoin(searchTerms);
+		return distanceFrom(synonym, stemmedSearchTerms,
+				NGramDistanceAlgorithm.createNGramProfile(stemmedSearchTerms));
+	}
+
+	private float distanceFrom(String synonym, String stemmedSearchTerms, NGramProfile searchTermsProfile)
 	{
 		String s1 = Stemmer.stemAndJoin(splitIntoTerms(synonym));
-		String s2 = Stemmer.stemAndJoin(searchTerms);
-		float distance = (float) NGramDistanceAlgorithm.stringMatching(s1, s2) / 100;
-		LOG.debug("Similarity between: {} and {} is {}", s1, s2, distance);
+		float distance = (float) NGramDistanceAlgorithm.calculateScore(NGramDistanceAlgorithm.createNGramProfile(s1),
+				searchTermsProfile) / 100;
+		LOG.debug("Similarity between: {} and {} is {}", s1, stemmedSearchTerms, distance);
 		return distance;
 	}
 
@@ -22,9 +22,10 @@ import java.util.stream.Collectors;
  * How to use? LevenShteinDistanceModel model = new LevenShteinDistanceModel(2); double similarityScore =
  * model.stringMatching("Smoking", "Smoker", false); System.out.println(similarityScore);
  * <p>
- * The other way List<String> tokens_1 = model.createNGrams("Smoking", false); List<String> tokens_2 =
- * model.createNGrams("Have you smoked last year?", true); //remove stop words! double similarityScore =
- * model.calculateScore(tokens_1, tokens_2);
+ * The other way, for strings that are compared more than once: NGramProfile profile_1 =
+ * NGramDistanceAlgorithm.createNGramProfile("Smoking", false); NGramProfile profile_2 =
+ * NGramDistanceAlgorithm.createNGramProfile("Have you smoked last year?", true); //remove stop words! double
+ * similarityScore = NGramDistanceAlgorithm.calculateScore(profile_1, profile_2);
  *
  * @author Chao Pang
  */
@@ -59,15 +60,13 @@ public class NGramDistanceAlgorithm
 
 	public static double stringMatching(String queryOne, String queryTwo)
 	{
-		double similarityScore = calculateScore(createNGrams(queryOne.toLowerCase().trim(), true),
-				createNGrams(queryTwo.toLowerCase().trim(), true));
-		return similarityScore;
+		return stringMatching(queryOne, queryTwo, true);
 	}
 
 	public static double stringMatching(String queryOne, String queryTwo, boolean removeStopWords)
 	{
-		double similarityScore = calculateScore(createNGrams(queryOne.toLowerCase().trim(), removeStopWords),
-				createNGrams(queryTwo.toLowerCase().trim(), removeStopWords));
+		double similarityScore = calculateScore(createNGramProfile(queryOne, removeStopWords),
+				createNGramProfile(queryTwo, removeStopWords));
 		return similarityScore;
 	}
 
@@ -121,34 +120,27 @@ public class NGramDistanceAlgorithm
 	}
 
 	/**
-	 * Calculate the ngram distance
+	 * Create the n-gram profile of a string with stop words removed, use this method for strings that are compared
+	 * more than once.
 	 */
-	private static double calculateScore(Map<String, Integer> inputStringTokens,
-			Map<String, Integer> ontologyTermTokens)
+	public static NGramProfile createNGramProfile(String query)
 	{
-		if (inputStringTokens.size() == 0 || ontologyTermTokens.size() == 0) return (double) 0;
-		int totalToken = getTotalNumTokens(inputStringTokens) + getTotalNumTokens(ontologyTermTokens);
-		int numMatchedToken = 0;
-
-		for (String token : inputStringTokens.keySet())
-		{
-			if (ontologyTermTokens.containsKey(token))
-			{
-				numMatchedToken += Math.min(inputStringTokens.get(token), ontologyTermTokens.get(token));
-			}
-		}
-
-		return 2.0 * numMatchedToken / totalToken * 100;
+		return createNGramProfile(query, true);
 	}
 
-	private static int getTotalNumTokens(Map<String, Integer> inputStringTokens)
+	public static NGramProfile createNGramProfile(String query, boolean removeStopWords)
 	{
-		int totalNum = 0;
+		return NGramProfile.create(createNGrams(query.toLowerCase().trim(), removeStopWords));
+	}
 
-		for (Integer frequency : inputStringTokens.values())
-		{
-			totalNum += frequency;
-		}
-		return totalNum;
+	/**
+	 * Calculate the ngram distance between two n-gram profiles
+	 */
+	public static double calculateScore(NGramProfile inputStringProfile, NGramProfile ontologyTermProfile)
+	{
+		if (inputStringProfile.size() == 0 || ontologyTermProfile.size() == 0) return (double) 0;
+		int totalToken = inputStringProfile.getTotalFrequency() + ontologyTermProfile.getTotalFrequency();
+		int numMatchedToken = inputStringProfile.countMatchingTokens(ontologyTermProfile);
+		return 2.0 * numMatchedToken / totalToken * 100;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,129 @@
+package org.molgenis.semanticsearch.string;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable n-gram tokens of a string with their frequencies, created with
+ * {@link NGramDistanceAlgorithm#createNGramProfile(String)}. Tokens are stored as sorted primitive arrays, so a profile
+ * can be created once for a string that is compared many times and comparing two profiles does not allocate.
+ */
+public final class NGramProfile
+{
+	private final int[] tokens;
+	private final int[] frequencies;
+	private final int totalFrequency;
+
+	private NGramProfile(int[] tokens, int[] frequencies, int totalFrequency)
+	{
+		this.tokens = tokens;
+		this.frequencies = frequencies;
+		this.totalFrequency = totalFrequency;
+	}
+
+	static NGramProfile create(Map<String, Integer> nGrams)
+	{
+		long[] tokenFrequencies = new long[nGrams.size()];
+		int index = 0;
+		for (Map.Entry<String, Integer> entry : nGrams.entrySet())
+		{
+			tokenFrequencies[index++] = ((long) encode(entry.getKey()) << 32) | entry.getValue();
+		}
+		Arrays.sort(tokenFrequencies);
+
+		int[] tokens = new int[tokenFrequencies.length];
+		int[] frequencies = new int[tokenFrequencies.length];
+		int totalFrequency = 0;
+		for (int i = 0; i < tokenFrequencies.length; i++)
+		{
+			tokens[i] = (int) (tokenFrequencies[i] >>> 32);
+			frequencies[i] = (int) tokenFrequencies[i];
+			totalFrequency += frequencies[i];
+		}
+		return new NGramProfile(tokens, frequencies, totalFrequency);
+	}
+
+	/**
+	 * Encodes a token consisting of two characters in one int
+	 */
+	private static int encode(String token)
+	{
+		if (token.length() != 2)
+		{
+			throw new IllegalArgumentException("N-gram token [" + token + "] does not consist of two characters");
+		}
+		return token.charAt(0) << 16 | token.charAt(1);
+	}
+
+	/**
+	 * @return number of distinct tokens
+	 */
+	public int size()
+	{
+		return tokens.length;
+	}
+
+	/**
+	 * @return sum of the token frequencies
+	 */
+	public int getTotalFrequency()
+	{
+		return totalFrequency;
+	}
+
+	/**
+	 * Returns the profile of two strings joined by a whitespace. N-grams are created per word, so these are the tokens
+	 * of both profiles with their frequencies added up.
+	 */
+	public NGramProfile merge(NGramProfile other)
+	{
+		int[] mergedTokens = new int[tokens.length + other.tokens.length];
+		int[] mergedFrequencies = new int[mergedTokens.length];
+		int i = 0, j = 0, k = 0;
+		while (i < tokens.length || j < other.tokens.length)
+		{
+			if (j == other.tokens.length || (i < tokens.length && tokens[i] < other.tokens[j]))
+			{
+				mergedTokens[k] = tokens[i];
+				mergedFrequencies[k++] = frequencies[i++];
+			}
+			else if (i == tokens.length || tokens[i] > other.tokens[j])
+			{
+				mergedTokens[k] = other.tokens[j];
+				mergedFrequencies[k++] = other.frequencies[j++];
+			}
+			else
+			{
+				mergedTokens[k] = tokens[i];
+				mergedFrequencies[k++] = frequencies[i++] + other.frequencies[j++];
+			}
+		}
+		return new NGramProfile(Arrays.copyOf(mergedTokens, k), Arrays.copyOf(mergedFrequencies, k),
+				totalFrequency + other.totalFrequency);
+	}
+
+	/**
+	 * @return number of matching tokens, counting a token that occurs in both profiles with its lowest frequency
+	 */
+	int countMatchingTokens(NGramProfile other)
+	{
+		int numMatchedTokens = 0;
+		int i = 0, j = 0;
+		while (i < tokens.length && j < other.tokens.length)
+		{
+			if (tokens[i] < other.tokens[j])
+			{
+				i++;
+			}
+			else if (tokens[i] > other.tokens[j])
+			{
+				j++;
+			}
+			else
+			{
+				numMatchedTokens += Math.min(frequencies[i++], other.frequencies[j++]);
+			}
+		}
+		return numMatchedTokens;
+	}
+}
@@ -35,4 +35,33 @@ public class NgramDistanceAlgorithmTest
 		assertEquals(NGramDistanceAlgorithm.createNGrams("WHERE IS PAitent", false).toString(),
 				"{nt=1, ai=1, en=1, ^i=1, it=1, er=1, t$=1, wh=1, pa=1, te=1, ^p=1, re=1, ^w=1, i$=1, he=1, e$=1}");
 	}
+
+	@Test
+	public void calculateScoreProfiles()
+	{
+		NGramProfile profile = NGramDistanceAlgorithm.createNGramProfile("hypertensive disorder");
+		assertEquals(NGramDistanceAlgorithm.calculateScore(profile,
+				NGramDistanceAlgorithm.createNGramProfile("hypertensive order")), 72.727, 0.001);
+		assertEquals(NGramDistanceAlgorithm.calculateScore(profile, NGramDistanceAlgorithm.createNGramProfile("")),
+				0.0);
+	}
+
+	@Test
+	public void createNGramProfile()
+	{
+		NGramProfile profile = NGramDistanceAlgorithm.createNGramProfile("hypertensive disorder disorder");
+		assertEquals(profile.size(), 17);
+		assertEquals(profile.getTotalFrequency(), 24);
+	}
+
+	@Test
+	public void mergeNGramProfiles()
+	{
+		NGramProfile profile = NGramDistanceAlgorithm.createNGramProfile("hypertensive disorder")
+													 .merge(NGramDistanceAlgorithm.createNGramProfile("disorder"));
+		NGramProfile expectedProfile = NGramDistanceAlgorithm.createNGramProfile("hypertensive disorder disorder");
+		assertEquals(profile.size(), expectedProfile.size());
+		assertEquals(profile.getTotalFrequency(), expectedProfile.getTotalFrequency());
+		assertEquals(NGramDistanceAlgorithm.calculateScore(profile, expectedProfile), 100.0);
+	}
 }
@@ -7,6 +7,8 @@ import javax.annotation.Nullable;
  */
 public interface AppSettings
 {
+	int DEFAULT_CACHE_MAX_SIZE_MB = 128;
+
 	/**
 	 * @return application title
 	 */
@@ -189,4 +191,13 @@ public interface AppSettings
 	@Nullable
 	String getCustomJavascript();
 
+	/**
+	 * @return global memory budget of the entity cache in megabytes
+	 */
+	int getCacheMaxSizeMb();
+
+	/**
+	 * @param cacheMaxSizeMb global memory budget of the entity cache in megabytes
+	 */
+	void setCacheMaxSizeMb(int cacheMaxSizeMb);
 }
\ No newline at end of file
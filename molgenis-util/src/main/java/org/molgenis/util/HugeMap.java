@@ -1,142 +1,179 @@
 package org.molgenis.util;
 
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
+import com.google.common.collect.Iterators;
+import org.mapdb.Serializer;
 
 import java.io.Closeable;
-import java.io.File;
-import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.util.Collection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
-public class HugeMap<K, V> implements Map<K, V>, Closeable
+/**
+ * Map that can contain a huge amount of data. The first {@link #THRESHOLD} entries are stored on the heap, further
+ * entries are stored off-heap in the {@link HugeStore}. Entries are never moved between both, so growing beyond the
+ * threshold does not require copying the entries that were already added.
+ * <p>
+ * Use {@link #withLongKeys()}, {@link #withIntegerKeys()} or {@link #withStringKeys()} for maps of which the key type
+ * is known, these store keys off-heap in a compact type specific format. Null keys and values are not supported.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class HugeMap<K, V> extends AbstractMap<K, V> implements Closeable
 {
 	protected static final int THRESHOLD = 10000;
-	private DB mapDB;
-	private Map<K, V> map;
-	private final Map<K, V> hashMap = new HashMap<>();
+
+	private final Serializer<K> keySerializer;
+	private final Map<K, V> heapMap = new HashMap<>();
+	private String offHeapMapName;
+	private Map<K, V> offHeapMap;
+
+	public HugeMap()
+	{
+		this(null);
+	}
+
+	private HugeMap(Serializer<K> keySerializer)
+	{
+		this.keySerializer = keySerializer;
+	}
+
+	public static <V> HugeMap<Long, V> withLongKeys()
+	{
+		return new HugeMap<>(Serializer.LONG);
+	}
+
+	public static <V> HugeMap<Integer, V> withIntegerKeys()
+	{
+		return new HugeMap<>(Serializer.INTEGER);
+	}
+
+	public static <V> HugeMap<String, V> withStringKeys()
+	{
+		return new HugeMap<>(Serializer.STRING);
+	}
+
+	/**
+	 * @return number of entries stored on the heap
+	 */
+	public int getHeapSize()
+	{
+		return heapMap.size();
+	}
+
+	/**
+	 * @return number of entries stored off-heap
+	 */
+	public int getOffHeapSize()
+	{
+		return offHeapMap != null ? offHeapMap.size() : 0;
+	}
 
 	@Override
 	public int size()
 	{
-		if (map == null) return hashMap.size();
-		return map.size();
+		return getHeapSize() + getOffHeapSize();
 	}
 
 	@Override
 	public boolean isEmpty()
 	{
-		if (map == null) return hashMap.isEmpty();
-		return map.isEmpty();
+		return heapMap.isEmpty() && (offHeapMap == null || offHeapMap.isEmpty());
 	}
 
 	@Override
 	public boolean containsKey(Object key)
 	{
-		if (map == null) return hashMap.containsKey(key);
-		return map.containsKey(key);
+		return heapMap.containsKey(key) || (offHeapMap != null && offHeapMap.containsKey(key));
 	}
 
 	@Override
 	public boolean containsValue(Object value)
 	{
-		if (map == null) return hashMap.containsValue(value);
-		return map.containsValue(value);
+		return heapMap.containsValue(value) || (offHeapMap != null && offHeapMap.containsValue(value));
 	}
 
 	@Override
 	public V get(Object key)
 	{
-		if (map == null) return hashMap.get(key);
-		return map.get(key);
+		V value = heapMap.get(key);
+		if (value == null && offHeapMap != null)
+		{
+			value = offHeapMap.get(key);
+		}
+		return value;
 	}
 
 	@Override
 	public V put(K key, V value)
 	{
-		if (hashMap.size() == THRESHOLD)
+		if (heapMap.containsKey(key) || (offHeapMap == null && heapMap.size() < THRESHOLD))
 		{
-			File dbFile;
-			try
-			{
-				dbFile = File.createTempFile("mapdb", "temp");
-			}
-			catch (IOException e)
-			{
-				throw new UncheckedIOException(e);
-			}
-
-			mapDB = DBMaker.newFileDB(dbFile).deleteFilesAfterClose().transactionDisable().make();
-			map = mapDB.createHashMap("map").make();
-			map.putAll(hashMap);
-			hashMap.clear();
+			return heapMap.put(key, value);
 		}
 
-		if (map == null)
+		if (offHeapMap == null)
 		{
-			return hashMap.put(key, value);
+			offHeapMapName = HugeStore.createCollectionName();
+			offHeapMap = HugeStore.createMap(offHeapMapName, keySerializer);
 		}
-
-		return map.put(key, value);
+		return offHeapMap.put(key, value);
 	}
 
 	@Override
 	public V remove(Object key)
 	{
-		if (map == null) return hashMap.remove(key);
-		return map.remove(key);
-	}
-
-	@Override
-	public void putAll(Map<? extends K, ? extends V> m)
-	{
-		m.forEach(this::put);
+		V value = heapMap.remove(key);
+		if (value == null && offHeapMap != null)
+		{
+			value = offHeapMap.remove(key);
+		}
+		return value;
 	}
 
 	@Override
 	public void clear()
 	{
-		if (map == null)
+		heapMap.clear();
+		if (offHeapMap != null)
 		{
-			hashMap.clear();
-		}
-		else
-		{
-			map.clear();
+			offHeapMap.clear();
 		}
 	}
 
 	@Override
-	public Set<K> keySet()
+	public Set<Entry<K, V>> entrySet()
 	{
-		if (map == null) return hashMap.keySet();
-		return map.keySet();
-	}
-
-	@Override
-	public Collection<V> values()
-	{
-		if (map == null) return hashMap.values();
-		return map.values();
-	}
+		return new AbstractSet<Entry<K, V>>()
+		{
+			@Override
+			public Iterator<Entry<K, V>> iterator()
+			{
+				Iterator<Entry<K, V>> heapIterator = heapMap.entrySet().iterator();
+				return offHeapMap != null ? Iterators.concat(heapIterator,
+						offHeapMap.entrySet().iterator()) : heapIterator;
+			}
 
-	@Override
-	public Set<java.util.Map.Entry<K, V>> entrySet()
-	{
-		if (map == null) return hashMap.entrySet();
-		return map.entrySet();
+			@Override
+			public int size()
+			{
+				return HugeMap.this.size();
+			}
+		};
 	}
 
 	@Override
-	public void close() throws IOException
+	public void close()
 	{
-		if (mapDB != null)
+		heapMap.clear();
+		if (offHeapMap != null)
 		{
-			mapDB.close();
+			offHeapMap.clear();
+			HugeStore.deleteCollection(offHeapMapName);
+			offHeapMap = null;
 		}
 	}
-
 }
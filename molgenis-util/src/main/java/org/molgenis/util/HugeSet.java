@@ -1,155 +1,144 @@
 package org.molgenis.util;
 
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
+import com.google.common.collect.Iterators;
+import org.mapdb.Serializer;
 
 import java.io.Closeable;
-import java.io.File;
-import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.util.Collection;
+import java.util.AbstractSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
 /**
- * Set that can contain a huge amount of data by storing it on disk.
+ * Set that can contain a huge amount of data. The first {@link #THRESHOLD} elements are stored on the heap, further
+ * elements are stored off-heap in the {@link HugeStore}. Elements are never moved between both, so growing beyond the
+ * threshold does not require copying the elements that were already added.
+ * <p>
+ * Use {@link #ofLongs()}, {@link #ofIntegers()} or {@link #ofStrings()} for sets of which the element type is known,
+ * these store elements off-heap in a compact type specific format. Null elements are not supported.
  *
- * @param <E>
+ * @param <E> element type
  */
-public class HugeSet<E> implements Set<E>, Closeable
+public class HugeSet<E> extends AbstractSet<E> implements Closeable
 {
 	protected static final int THRESHOLD = 10000;
-	private DB mapDB;
-	private Set<E> set;
-	private final HashSet<E> hashSet = new HashSet<>();
 
-	@Override
-	public int size()
+	private final Serializer<E> serializer;
+	private final Set<E> heapSet = new HashSet<>();
+	private String offHeapSetName;
+	private Set<E> offHeapSet;
+
+	public HugeSet()
 	{
-		if (set == null) return hashSet.size();
-		return set.size();
+		this(null);
 	}
 
-	@Override
-	public boolean isEmpty()
+	private HugeSet(Serializer<E> serializer)
 	{
-		if (set == null) return hashSet.isEmpty();
-		return set.isEmpty();
+		this.serializer = serializer;
 	}
 
-	@Override
-	public boolean contains(Object o)
+	public static HugeSet<Long> ofLongs()
 	{
-		if (set == null) return hashSet.contains(o);
-		return set.contains(o);
+		return new HugeSet<>(Serializer.LONG);
 	}
 
-	@Override
-	public Iterator<E> iterator()
+	public static HugeSet<Integer> ofIntegers()
 	{
-		if (set == null) return hashSet.iterator();
-		return set.iterator();
+		return new HugeSet<>(Serializer.INTEGER);
 	}
 
-	@Override
-	public Object[] toArray()
+	public static HugeSet<String> ofStrings()
 	{
-		if (set == null) return hashSet.toArray();
-		return set.toArray();
+		return new HugeSet<>(Serializer.STRING);
 	}
 
-	@Override
-	public <T> T[] toArray(T[] a)
+	/**
+	 * @return number of elements stored on the heap
+	 */
+	public int getHeapSize()
 	{
-		if (set == null) return hashSet.toArray(a);
-		return set.toArray(a);
+		return heapSet.size();
 	}
 
-	@Override
-	public boolean add(E obj)
+	/**
+	 * @return number of elements stored off-heap
+	 */
+	public int getOffHeapSize()
 	{
-		if (hashSet.size() == THRESHOLD)
-		{
-			File dbFile;
-			try
-			{
-				dbFile = File.createTempFile("mapdb", "temp");
-			}
-			catch (IOException e)
-			{
-				throw new UncheckedIOException(e);
-			}
-
-			mapDB = DBMaker.newFileDB(dbFile).deleteFilesAfterClose().transactionDisable().make();
-			set = mapDB.createHashSet("set").make();
-			set.addAll(hashSet);
-			hashSet.clear();
-		}
-
-		if (set == null)
-		{
-			return hashSet.add(obj);
-		}
+		return offHeapSet != null ? offHeapSet.size() : 0;
+	}
 
-		return set.add(obj);
+	@Override
+	public int size()
+	{
+		return getHeapSize() + getOffHeapSize();
 	}
 
 	@Override
-	public boolean remove(Object o)
+	public boolean isEmpty()
 	{
-		if (set == null) return hashSet.remove(o);
-		return set.remove(o);
+		return heapSet.isEmpty() && (offHeapSet == null || offHeapSet.isEmpty());
 	}
 
 	@Override
-	public boolean containsAll(Collection<?> c)
+	public boolean contains(Object o)
 	{
-		if (set == null) return hashSet.containsAll(c);
-		return set.containsAll(c);
+		return heapSet.contains(o) || (offHeapSet != null && offHeapSet.contains(o));
 	}
 
 	@Override
-	public boolean addAll(Collection<? extends E> c)
+	public Iterator<E> iterator()
 	{
-		c.forEach(this::add);
-		return true;
+		Iterator<E> heapIterator = heapSet.iterator();
+		return offHeapSet != null ? Iterators.concat(heapIterator, offHeapSet.iterator()) : heapIterator;
 	}
 
 	@Override
-	public boolean retainAll(Collection<?> c)
+	public boolean add(E e)
 	{
-		if (set == null) return hashSet.retainAll(c);
-		return set.retainAll(c);
+		if (offHeapSet == null && heapSet.size() < THRESHOLD)
+		{
+			return heapSet.add(e);
+		}
+		if (heapSet.contains(e))
+		{
+			return false;
+		}
+
+		if (offHeapSet == null)
+		{
+			offHeapSetName = HugeStore.createCollectionName();
+			offHeapSet = HugeStore.createSet(offHeapSetName, serializer);
+		}
+		return offHeapSet.add(e);
 	}
 
 	@Override
-	public boolean removeAll(Collection<?> c)
+	public boolean remove(Object o)
 	{
-		if (set == null) return hashSet.removeAll(c);
-		return set.removeAll(c);
+		return heapSet.remove(o) || (offHeapSet != null && offHeapSet.remove(o));
 	}
 
 	@Override
 	public void clear()
 	{
-		if (set == null)
-		{
-			hashSet.clear();
-		}
-		else
+		heapSet.clear();
+		if (offHeapSet != null)
 		{
-			set.clear();
+			offHeapSet.clear();
 		}
 	}
 
 	@Override
-	public void close() throws IOException
+	public void close()
 	{
-		if (mapDB != null)
+		heapSet.clear();
+		if (offHeapSet != null)
 		{
-			mapDB.close();
+			offHeapSet.clear();
+			HugeStore.deleteCollection(offHeapSetName);
+			offHeapSet = null;
 		}
 	}
-
 }
@@ -0,0 +1,102 @@
+package org.molgenis.util;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+import org.mapdb.Store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Off-heap storage shared by all {@link HugeMap} and {@link HugeSet} instances. Entries that do not fit on the heap
+ * are stored in named collections of a single MapDB store that is backed by a memory-mapped temporary file, which is
+ * created on first use and deleted when the JVM shuts down.
+ */
+public final class HugeStore
+{
+	private static final AtomicLong COLLECTION_COUNTER = new AtomicLong();
+	private static DB db;
+
+	private HugeStore()
+	{
+	}
+
+	/**
+	 * @return number of bytes allocated by the off-heap store, zero if the store was not created yet
+	 */
+	public static synchronized long getAllocatedBytes()
+	{
+		return db != null ? Store.forDB(db).getCurrSize() : 0L;
+	}
+
+	/**
+	 * @return number of allocated bytes that are free to be reused by the off-heap store, zero if the store was not
+	 * created yet
+	 */
+	public static synchronized long getFreeBytes()
+	{
+		return db != null ? Store.forDB(db).getFreeSize() : 0L;
+	}
+
+	static String createCollectionName()
+	{
+		return "collection" + COLLECTION_COUNTER.incrementAndGet();
+	}
+
+	static synchronized <K, V> Map<K, V> createMap(String name, Serializer<K> keySerializer)
+	{
+		DB.HTreeMapMaker mapMaker = getDb().createHashMap(name).counterEnable();
+		if (keySerializer != null)
+		{
+			mapMaker.keySerializer(keySerializer);
+		}
+		return mapMaker.make();
+	}
+
+	static synchronized <E> Set<E> createSet(String name, Serializer<E> serializer)
+	{
+		DB.HTreeSetMaker setMaker = getDb().createHashSet(name).counterEnable();
+		if (serializer != null)
+		{
+			setMaker.serializer(serializer);
+		}
+		return setMaker.make();
+	}
+
+	static synchronized void deleteCollection(String name)
+	{
+		if (db != null && !db.isClosed())
+		{
+			db.delete(name);
+		}
+	}
+
+	private static synchronized DB getDb()
+	{
+		if (db == null)
+		{
+			File dbFile;
+			try
+			{
+				dbFile = File.createTempFile("mapdb", "temp");
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+
+			db = DBMaker.newFileDB(dbFile)
+						.mmapFileEnableIfSupported()
+						.transactionDisable()
+						.deleteFilesAfterClose()
+						.closeOnJvmShutdown()
+						.make();
+		}
+		return db;
+	}
+}
@@ -187,6 +187,51 @@ public class HugeMapTest
 		assertEquals(hugeMap.values().size(), HugeMap.THRESHOLD);
 	}
 
+	@Test
+	public void putBeyondThreshold()
+	{
+		fillToThreshold();
+		assertNull(hugeMap.put("key", "value"));
+		assertEquals(hugeMap.put("key", "otherValue"), "value");
+		assertEquals(hugeMap.put("2", "otherValue"), "2");
+		assertEquals(hugeMap.getHeapSize(), HugeMap.THRESHOLD);
+		assertEquals(hugeMap.getOffHeapSize(), 1);
+		assertEquals(hugeMap.get("key"), "otherValue");
+		assertEquals(hugeMap.get("2"), "otherValue");
+		assertTrue(HugeStore.getAllocatedBytes() > 0);
+	}
+
+	@Test
+	public void removeBeyondThreshold()
+	{
+		fillToThreshold();
+		hugeMap.put("key", "value");
+		assertEquals(hugeMap.remove("key"), "value");
+		assertEquals(hugeMap.remove("2"), "2");
+		assertEquals(hugeMap.size(), HugeMap.THRESHOLD - 1);
+	}
+
+	@Test
+	public void entrySetBeyondThreshold()
+	{
+		fillToThreshold();
+		hugeMap.put("key", "value");
+		assertEquals(hugeMap.entrySet().size(), HugeMap.THRESHOLD + 1);
+		assertEquals(hugeMap.keySet().stream().filter("key"::equals).count(), 1L);
+	}
+
+	@Test
+	public void withIntegerKeys()
+	{
+		try (HugeMap<Integer, String> integerMap = HugeMap.withIntegerKeys())
+		{
+			IntStream.rangeClosed(0, HugeMap.THRESHOLD).forEach(i -> integerMap.put(i, Integer.toString(i)));
+			assertEquals(integerMap.getOffHeapSize(), 1);
+			assertEquals(integerMap.get(HugeMap.THRESHOLD), Integer.toString(HugeMap.THRESHOLD));
+			assertNull(integerMap.get(HugeMap.THRESHOLD + 1));
+		}
+	}
+
 	private void fillToThreshold()
 	{
 		IntStream.range(0, HugeMap.THRESHOLD).mapToObj(Integer::toString).forEach(s -> hugeMap.put(s, s));
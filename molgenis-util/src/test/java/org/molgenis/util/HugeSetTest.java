@@ -8,6 +8,7 @@ import org.testng.annotations.Test;
 import java.io.IOException;
 import java.util.*;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import static org.testng.Assert.*;
 
@@ -194,6 +195,49 @@ public class HugeSetTest
 		assertEquals(hugeSet.toArray().length, HugeSet.THRESHOLD);
 	}
 
+	@Test
+	public void addBeyondThreshold()
+	{
+		fillToThreshold();
+		assertTrue(hugeSet.add("test"));
+		assertFalse(hugeSet.add("test"));
+		assertFalse(hugeSet.add("2"));
+		assertEquals(hugeSet.getHeapSize(), HugeSet.THRESHOLD);
+		assertEquals(hugeSet.getOffHeapSize(), 1);
+		assertTrue(hugeSet.contains("test"));
+		assertTrue(HugeStore.getAllocatedBytes() > 0);
+	}
+
+	@Test
+	public void removeBeyondThreshold()
+	{
+		fillToThreshold();
+		hugeSet.add("test");
+		assertTrue(hugeSet.remove("test"));
+		assertTrue(hugeSet.remove("2"));
+		assertEquals(hugeSet.size(), HugeSet.THRESHOLD - 1);
+	}
+
+	@Test
+	public void iteratorBeyondThreshold()
+	{
+		fillToThreshold();
+		hugeSet.add("test");
+		assertEquals(Iterators.size(hugeSet.iterator()), HugeSet.THRESHOLD + 1);
+	}
+
+	@Test
+	public void ofLongs()
+	{
+		try (HugeSet<Long> longSet = HugeSet.ofLongs())
+		{
+			LongStream.rangeClosed(0, HugeSet.THRESHOLD).forEach(longSet::add);
+			assertEquals(longSet.getOffHeapSize(), 1);
+			assertTrue(longSet.contains((long) HugeSet.THRESHOLD));
+			assertFalse(longSet.contains(HugeSet.THRESHOLD + 1L));
+		}
+	}
+
 	private void fillToThreshold()
 	{
 		IntStream.range(0, HugeSet.THRESHOLD).mapToObj(Integer::toString).forEach(hugeSet::add);